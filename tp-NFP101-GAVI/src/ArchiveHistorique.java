@@ -0,0 +1,157 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Archive locale des segments d'historique déchargés de la mémoire (voir {@link HistoriqueCompact}).
+ * Les segments sont compressés (Deflate) et ajoutés à la fin d'un fichier temporaire,
+ * supprimé à la fermeture de l'archive. Une archive est partagée par tous les historiques
+ * d'une ou plusieurs circonscriptions ; chaque historique garde en mémoire l'index de ses segments.
+ *
+ * Le déchargement se fait sur un thread dédié, hors du chemin d'ingestion des voix.
+ *
+ * Format d'un segment : [longueur compressée][longueur décompressée][données compressées].
+ */
+public final class ArchiveHistorique implements Closeable {
+    private static final int TAILLE_ENTETE_SEGMENT = 8;
+
+    private final FileChannel canal;
+    private final ExecutorService dechargement; // Thread dédié au déchargement des segments
+    private long fin; // Fin du fichier (protégée par le verrou de l'instance)
+    private volatile boolean fermee;
+
+    private ArchiveHistorique(FileChannel canal) {
+        this.canal = canal;
+        this.dechargement = Executors.newSingleThreadExecutor(tache -> {
+            Thread thread = new Thread(tache, "archive-historique");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Crée une archive dans un répertoire local.
+     *
+     * @param repertoire Le répertoire où créer le fichier de l'archive.
+     * @return L'archive ouverte.
+     * @throws IOException si le fichier ne peut pas être créé.
+     */
+    public static ArchiveHistorique ouvrir(Path repertoire) throws IOException {
+        Path fichier = Files.createTempFile(repertoire, "historique-", ".archive");
+        return new ArchiveHistorique(FileChannel.open(fichier,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE));
+    }
+
+    /**
+     * Confie une tâche de déchargement au thread de l'archive.
+     */
+    void planifier(Runnable tache) {
+        if (!fermee) {
+            dechargement.execute(tache);
+        }
+    }
+
+    /**
+     * Compresse un segment et l'ajoute à l'archive.
+     *
+     * @param donnees  Les événements du segment, encodés.
+     * @param longueur Le nombre d'octets utiles de {@code donnees}.
+     * @return La position du segment dans l'archive.
+     */
+    long ecrire(byte[] donnees, int longueur) {
+        Deflater compression = new Deflater(Deflater.BEST_SPEED);
+        byte[] compresses = new byte[TAILLE_ENTETE_SEGMENT + longueur + longueur / 16 + 64];
+        int n;
+        try {
+            compression.setInput(donnees, 0, longueur);
+            compression.finish();
+            n = compression.deflate(compresses, TAILLE_ENTETE_SEGMENT, compresses.length - TAILLE_ENTETE_SEGMENT);
+            if (!compression.finished()) {
+                throw new IllegalStateException("Segment d'historique incompressible.");
+            }
+        } finally {
+            compression.end();
+        }
+        ByteBuffer segment = ByteBuffer.wrap(compresses, 0, TAILLE_ENTETE_SEGMENT + n);
+        segment.putInt(0, n).putInt(4, longueur);
+        try {
+            synchronized (this) {
+                long position = fin;
+                while (segment.hasRemaining()) {
+                    canal.write(segment, position + segment.position());
+                }
+                fin += segment.limit();
+                return position;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Écriture de l'archive d'historique impossible.", e);
+        }
+    }
+
+    /**
+     * Relit et décompresse un segment.
+     *
+     * @param position La position du segment (voir {@link #ecrire(byte[], int)}).
+     * @return Les événements du segment, encodés.
+     */
+    ByteBuffer lire(long position) {
+        try {
+            ByteBuffer entete = ByteBuffer.allocate(TAILLE_ENTETE_SEGMENT);
+            lireA(entete, position);
+            ByteBuffer compresses = ByteBuffer.allocate(entete.getInt(0));
+            lireA(compresses, position + TAILLE_ENTETE_SEGMENT);
+            byte[] donnees = new byte[entete.getInt(4)];
+            Inflater decompression = new Inflater();
+            try {
+                decompression.setInput(compresses.array());
+                if (decompression.inflate(donnees) != donnees.length) {
+                    throw new IOException("Segment d'archive tronqué.");
+                }
+            } finally {
+                decompression.end();
+            }
+            return ByteBuffer.wrap(donnees);
+        } catch (IOException | DataFormatException e) {
+            throw new UncheckedIOException("Lecture de l'archive d'historique impossible.",
+                    e instanceof IOException ? (IOException) e : new IOException(e));
+        }
+    }
+
+    private void lireA(ByteBuffer tampon, long position) throws IOException {
+        while (tampon.hasRemaining()) {
+            if (canal.read(tampon, position + tampon.position()) < 0) {
+                throw new IOException("Fin inattendue de l'archive d'historique.");
+            }
+        }
+    }
+
+    /**
+     * @return La taille de l'archive sur disque, en octets.
+     */
+    public synchronized long getOctets() {
+        return fin;
+    }
+
+    /**
+     * Ferme l'archive et supprime son fichier. Les historiques qui l'utilisent
+     * ne doivent plus être lus ensuite.
+     *
+     * @throws IOException en cas d'erreur de fermeture.
+     */
+    @Override
+    public void close() throws IOException {
+        fermee = true;
+        dechargement.shutdownNow();
+        canal.close();
+    }
+}
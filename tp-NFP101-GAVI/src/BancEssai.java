@@ -0,0 +1,389 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Banc d'essai des chemins critiques du modèle électoral.
+ * Chaque mesure suit le déroulement d'un banc JMH : un état neuf est préparé avant
+ * chaque itération (hors chronométrage), puis l'opération est répétée par un ou
+ * plusieurs threads pendant une durée fixe. Après les itérations de préchauffage,
+ * le banc publie le débit (opérations par seconde, avec son écart-type) et
+ * le nombre d'octets alloués par opération.
+ * Une dernière mesure compare l'empreinte des compteurs de voix (tas occupé après collection,
+ * mémoire hors tas, collections pendant la construction) avant et après l'ajout de candidats,
+ * qui agrandit les vecteurs de tous les bureaux de vote.
+ *
+ * Usage : {@code java BancEssai [filtre]}, où le filtre restreint les mesures
+ * à celles dont le nom le contient.
+ */
+public class BancEssai {
+    private static final int ITERATIONS_PRECHAUFFAGE = 3;
+    private static final int ITERATIONS_MESURE = 5;
+    private static final long DUREE_ITERATION_NANOS = 500_000_000L;
+    private static final int NB_CIRCONSCRIPTIONS = 5_000;
+    private static final int CANDIDATS_PAR_CIRCONSCRIPTION = 20;
+    private static final String[] AFFILIATIONS = {"Parti A", "Parti B", "Parti C", "Parti D", null};
+    private static final int BUREAUX_PAR_CIRCONSCRIPTION = 200; // Pour la mesure de l'empreinte mémoire
+    private static final int CANDIDATS_AJOUTES = 5;
+    private static final double MO = 1024.0 * 1024.0;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static volatile long puits; // Empêche l'élimination des résultats par le compilateur
+
+    /**
+     * Opération mesurée, appliquée à un état préparé pour l'itération.
+     */
+    @FunctionalInterface
+    private interface Operation {
+        /**
+         * @param thread Le numéro du thread qui exécute l'opération.
+         * @param i      Le numéro de l'opération dans ce thread.
+         * @return Une valeur dépendant du résultat, consommée par le banc.
+         */
+        long executer(int thread, long i);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String filtre = args.length > 0 ? args[0] : "";
+        System.out.printf("%-40s %-14s %7s %14s %12s %10s%n",
+                "Mesure", "Paramètre", "Threads", "ops/s", "± ops/s", "o/op");
+
+        for (int nbCandidats : new int[]{10, 100, 1_000, 10_000}) {
+            mesurer(filtre, "Circonscription.ajouterVoix(id)", nbCandidats + " cand.", 1, () -> {
+                Circonscription circonscription = circonscription(nbCandidats);
+                return (thread, i) -> {
+                    circonscription.ajouterVoix((int) (i % nbCandidats), 1);
+                    return i;
+                };
+            });
+        }
+        mesurer(filtre, "Circonscription.ajouterVoix(id) métriques", "10 cand.", 1, () -> {
+            Metriques.activer();
+            Circonscription circonscription = circonscription(10);
+            return (thread, i) -> {
+                circonscription.ajouterVoix((int) (i % 10), 1);
+                return i;
+            };
+        });
+        Metriques.desactiver();
+        mesurer(filtre, "Circonscription.ajouterVoix(id) publication", "1000 abonnés", 1, () -> {
+            Circonscription circonscription = circonscription(10);
+            PublicationResultats publication = new PublicationResultats(circonscription);
+            for (int a = 0; a < 1_000; a++) {
+                publication.subscribe(new AbonneBanc());
+            }
+            return (thread, i) -> {
+                circonscription.ajouterVoix((int) (i % 10), 1);
+                return i;
+            };
+        });
+        for (int nbCandidats : new int[]{10, 100, 1_000, 10_000}) {
+            mesurer(filtre, "Circonscription.ajouterVoix(nom)", nbCandidats + " cand.", 1, () -> {
+                Circonscription circonscription = circonscription(nbCandidats);
+                String[] noms = new String[nbCandidats];
+                for (int c = 0; c < nbCandidats; c++) {
+                    noms[c] = circonscription.getCandidat(c).getNomComplet();
+                }
+                return (thread, i) -> {
+                    circonscription.ajouterVoix(noms[(int) (i % nbCandidats)], 1);
+                    return i;
+                };
+            });
+        }
+
+        mesurer(filtre, "Candidat.ajouterAction", "historique", 1, () -> {
+            Candidat candidat = new Candidat("NOM", "Prenom", null);
+            return (thread, i) -> {
+                candidat.ajouterAction("Action de test");
+                return i;
+            };
+        });
+        for (int taille : new int[]{1_000, 100_000}) {
+            mesurer(filtre, "Candidat.getHistoriqueActions", taille + " actions", 1, () -> {
+                Candidat candidat = new Candidat("NOM", "Prenom", null);
+                for (int i = 1; i < taille; i++) {
+                    candidat.ajouterVoix(1);
+                }
+                return (thread, i) -> candidat.getHistoriqueActions().size();
+            });
+        }
+
+        mesurer(filtre, "Circonscription.scrutation", "100 cand.", 1, () -> {
+            Circonscription circonscription = circonscription(100);
+            Random aleatoire = new Random(42);
+            for (int c = 0; c < 100; c++) {
+                circonscription.ajouterVoix(c, 1 + aleatoire.nextInt(1_000));
+            }
+            return (thread, i) -> (long) circonscription.tauxParticipation()
+                    + circonscription.trouverVainqueur().size();
+        });
+
+        int nbCoeurs = Runtime.getRuntime().availableProcessors();
+        for (int nbThreads = 1; nbThreads <= Math.max(8, nbCoeurs); nbThreads *= 2) {
+            mesurer(filtre, "Circonscription.ajouterVoix concurrent", "8 cand.", nbThreads, () -> {
+                Circonscription circonscription = circonscription(8);
+                return (thread, i) -> {
+                    circonscription.ajouterVoix((int) ((i + thread) & 7), 1);
+                    return i;
+                };
+            });
+        }
+
+        for (boolean parallele : new boolean[]{false, true}) {
+            mesurer(filtre, "Scrutin.depouillement", parallele ? "parallèle" : "séquentiel", 1, () -> {
+                Scrutin scrutin = scrutin(parallele);
+                return (thread, i) -> (long) scrutin.tauxParticipation() + scrutin.siegesParAffiliation().size()
+                        + scrutin.vainqueursParCirconscription().size();
+            });
+        }
+
+        mesurer(filtre, "IndexAffiliations.classement", AFFILIATIONS.length + " affiliations", 1, () -> {
+            IndexAffiliations index = scrutin(true).getIndexAffiliations();
+            return (thread, i) -> index.classementVoix(3).size() + index.getSieges(AFFILIATIONS[0]);
+        });
+
+        if ("Mémoire des compteurs".contains(filtre)) {
+            mesurerMemoire();
+        }
+    }
+
+    /**
+     * Mesure l'empreinte des compteurs de voix de {@code NB_CIRCONSCRIPTIONS / 50} circonscriptions
+     * de {@code BUREAUX_PAR_CIRCONSCRIPTION} bureaux : d'abord stockés dans un tableau par bureau
+     * sur le tas (référence), puis dans les colonnes hors tas, avant et après l'ajout de candidats.
+     * Le tas occupé est mesuré après une collection complète, relativement à l'état initial.
+     */
+    private static void mesurerMemoire() {
+        int nbCirconscriptions = NB_CIRCONSCRIPTIONS / 50;
+        System.out.printf("%n%-40s %10s %14s %12s %12s %12s%n",
+                "Mémoire des compteurs", "Tas (Mo)", "Hors tas (Mo)", "Libre (Mo)", "Collections", "GC (ms)");
+        Random aleatoire = new Random(42);
+
+        long tasInitial = tasOccupe();
+        long[] gc = collections();
+        List<int[][]> reference = new ArrayList<>();
+        for (int c = 0; c < nbCirconscriptions; c++) {
+            int[][] bureaux = new int[BUREAUX_PAR_CIRCONSCRIPTION][];
+            for (int b = 0; b < bureaux.length; b++) {
+                bureaux[b] = new int[CANDIDATS_PAR_CIRCONSCRIPTION];
+                for (int v = 0; v < CANDIDATS_PAR_CIRCONSCRIPTION; v++) {
+                    bureaux[b][v] = aleatoire.nextInt(500);
+                }
+            }
+            reference.add(bureaux);
+        }
+        afficherMemoire("Vecteurs sur le tas (référence)", tasInitial, gc, 0, 0);
+        puits = reference.size();
+        reference = null;
+
+        tasInitial = tasOccupe();
+        gc = collections();
+        List<Circonscription> circonscriptions = new ArrayList<>();
+        int[] resultats = new int[CANDIDATS_PAR_CIRCONSCRIPTION + CANDIDATS_AJOUTES];
+        for (int c = 0; c < nbCirconscriptions; c++) {
+            Circonscription circonscription = circonscription(CANDIDATS_PAR_CIRCONSCRIPTION);
+            for (int b = 0; b < BUREAUX_PAR_CIRCONSCRIPTION; b++) {
+                BureauDeVote bureau = circonscription.ajouterBureau("Bureau " + b);
+                for (int v = 0; v < CANDIDATS_PAR_CIRCONSCRIPTION; v++) {
+                    resultats[v] = aleatoire.nextInt(500);
+                }
+                bureau.declarer(Arrays.copyOf(resultats, CANDIDATS_PAR_CIRCONSCRIPTION));
+            }
+            circonscriptions.add(circonscription);
+        }
+        afficherMemoire("Colonnes hors tas", tasInitial, gc, octetsHorsTas(circonscriptions, false),
+                octetsHorsTas(circonscriptions, true));
+
+        gc = collections();
+        for (Circonscription circonscription : circonscriptions) {
+            for (int a = 0; a < CANDIDATS_AJOUTES; a++) {
+                circonscription.ajouterCandidat(new Candidat("AJOUT" + a, "Prenom" + a, null));
+            }
+            for (int b = 0; b < BUREAUX_PAR_CIRCONSCRIPTION; b++) {
+                BureauDeVote bureau = circonscription.getBureau(b);
+                for (int v = 0; v < resultats.length; v++) {
+                    resultats[v] = bureau.getVoix(v) + 1;
+                }
+                bureau.declarer(resultats); // Agrandit le vecteur du bureau
+            }
+        }
+        afficherMemoire("Colonnes hors tas, " + CANDIDATS_AJOUTES + " candidats ajoutés", tasInitial, gc,
+                octetsHorsTas(circonscriptions, false), octetsHorsTas(circonscriptions, true));
+        puits = circonscriptions.size();
+    }
+
+    private static long octetsHorsTas(List<Circonscription> circonscriptions, boolean libres) {
+        long octets = 0;
+        for (Circonscription circonscription : circonscriptions) {
+            octets += libres ? circonscription.colonnes().octetsLibres() : circonscription.getOctetsHorsTas();
+        }
+        return octets;
+    }
+
+    private static void afficherMemoire(String nom, long tasInitial, long[] gcInitial, long horsTas, long libres) {
+        long[] gc = collections(); // Avant la collection forcée par la mesure du tas
+        long tas = tasOccupe() - tasInitial;
+        System.out.printf("%-40s %10.1f %14.1f %12.1f %12d %12d%n", nom, tas / MO, horsTas / MO, libres / MO,
+                gc[0] - gcInitial[0], gc[1] - gcInitial[1]);
+    }
+
+    private static long tasOccupe() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * @return Le nombre de collections et leur durée cumulée (en ms) depuis le démarrage.
+     */
+    private static long[] collections() {
+        long[] gc = new long[2];
+        for (GarbageCollectorMXBean collecteur : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gc[0] += Math.max(0, collecteur.getCollectionCount());
+            gc[1] += Math.max(0, collecteur.getCollectionTime());
+        }
+        return gc;
+    }
+
+    /**
+     * Abonné aux résultats qui consomme chaque variation au fil de l'eau.
+     */
+    private static final class AbonneBanc implements Flow.Subscriber<ResultatsPartiels> {
+        @Override
+        public void onSubscribe(Flow.Subscription abonnement) {
+            abonnement.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(ResultatsPartiels resultats) {
+            puits = resultats.getVersion();
+        }
+
+        @Override
+        public void onError(Throwable erreur) {
+            erreur.printStackTrace();
+        }
+
+        @Override
+        public void onComplete() {
+            // Rien à libérer
+        }
+    }
+
+    private static Circonscription circonscription(int nbCandidats) {
+        Circonscription circonscription = new Circonscription("Banc d'essai", Integer.MAX_VALUE);
+        for (int c = 0; c < nbCandidats; c++) {
+            circonscription.ajouterCandidat(new Candidat("NOM" + c, "Prenom" + c, null));
+        }
+        return circonscription;
+    }
+
+    private static Scrutin scrutin(boolean parallele) {
+        Scrutin scrutin = new Scrutin("Banc d'essai", parallele);
+        Random aleatoire = new Random(42);
+        for (int i = 0; i < NB_CIRCONSCRIPTIONS; i++) {
+            Circonscription circonscription = new Circonscription("Circonscription " + i, 100_000);
+            for (int c = 0; c < CANDIDATS_PAR_CIRCONSCRIPTION; c++) {
+                circonscription.ajouterCandidat(
+                        new Candidat("NOM" + c, "Prenom" + c, AFFILIATIONS[c % AFFILIATIONS.length]));
+                circonscription.ajouterVoix(c, 1 + aleatoire.nextInt(3_000));
+            }
+            scrutin.ajouterCirconscription(circonscription);
+        }
+        return scrutin;
+    }
+
+    /**
+     * Exécute une mesure et affiche son résultat.
+     *
+     * @param filtre      Le filtre sur le nom des mesures (vide pour toutes).
+     * @param nom         Le nom de la mesure.
+     * @param parametre   Le paramètre de la mesure, affiché à côté de son nom.
+     * @param nbThreads   Le nombre de threads exécutant l'opération simultanément.
+     * @param preparation Prépare l'état d'une itération et renvoie l'opération à mesurer.
+     */
+    private static void mesurer(String filtre, String nom, String parametre, int nbThreads,
+                                Supplier<Operation> preparation) throws InterruptedException {
+        if (!nom.contains(filtre)) {
+            return;
+        }
+        double[] debits = new double[ITERATIONS_MESURE];
+        double octetsParOperation = 0;
+        for (int iteration = 0; iteration < ITERATIONS_PRECHAUFFAGE + ITERATIONS_MESURE; iteration++) {
+            double[] resultat = iterer(preparation.get(), nbThreads);
+            if (iteration >= ITERATIONS_PRECHAUFFAGE) {
+                debits[iteration - ITERATIONS_PRECHAUFFAGE] = resultat[0];
+                octetsParOperation += resultat[1] / ITERATIONS_MESURE;
+            }
+        }
+        double moyenne = 0;
+        for (double debit : debits) {
+            moyenne += debit / ITERATIONS_MESURE;
+        }
+        double variance = 0;
+        for (double debit : debits) {
+            variance += (debit - moyenne) * (debit - moyenne) / ITERATIONS_MESURE;
+        }
+        System.out.printf("%-40s %-14s %7d %14.0f %12.0f %10.1f%n",
+                nom, parametre, nbThreads, moyenne, Math.sqrt(variance), octetsParOperation);
+    }
+
+    /**
+     * Exécute une itération chronométrée.
+     *
+     * @return Le débit en opérations par seconde et le nombre d'octets alloués par opération.
+     */
+    private static double[] iterer(Operation operation, int nbThreads) throws InterruptedException {
+        LongAdder operations = new LongAdder();
+        LongAdder octets = new LongAdder();
+        CountDownLatch pret = new CountDownLatch(nbThreads);
+        CountDownLatch depart = new CountDownLatch(1);
+        long[] fin = new long[1];
+        Thread[] threads = new Thread[nbThreads];
+        for (int t = 0; t < nbThreads; t++) {
+            int numero = t;
+            threads[t] = new Thread(() -> {
+                long identifiant = Thread.currentThread().getId();
+                pret.countDown();
+                try {
+                    depart.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long alloues = THREADS.getThreadAllocatedBytes(identifiant);
+                long echeance = fin[0];
+                long somme = 0;
+                long i = 0;
+                do {
+                    for (int lot = 0; lot < 256; lot++, i++) {
+                        somme += operation.executer(numero, i);
+                    }
+                } while (System.nanoTime() < echeance);
+                octets.add(THREADS.getThreadAllocatedBytes(identifiant) - alloues);
+                operations.add(i);
+                puits = somme;
+            }, "banc-" + t);
+            threads[t].start();
+        }
+        pret.await();
+        long debut = System.nanoTime();
+        fin[0] = debut + DUREE_ITERATION_NANOS; // Publié aux threads par le décompte de départ
+        depart.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long duree = System.nanoTime() - debut;
+        long total = operations.sum();
+        return new double[]{total * 1e9 / duree, (double) octets.sum() / total};
+    }
+}
@@ -0,0 +1,151 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission des écritures de voix d'une circonscription, et leur arrêt pour la clôture
+ * sans verrou global.
+ *
+ * Chaque écriture s'inscrit dans l'une des bandes d'un compteur réparti (choisie d'après
+ * le thread) puis vérifie que la clôture n'a pas commencé ; elle se désinscrit de la même
+ * bande une fois terminée. La clôture lève d'abord l'indicateur de fermeture, puis attend
+ * que chaque bande soit vide. Les deux côtés écrivent puis lisent des variables volatiles :
+ * une écriture qui n'a pas vu l'indicateur a forcément été vue par la clôture, qui l'attend ;
+ * toute écriture qui commence après l'indicateur est refusée.
+ *
+ * Une suspension ({@link #suspendre()}) attend de la même façon la fin des écritures en cours,
+ * mais les écritures suivantes attendent la reprise au lieu d'être refusées : elle permet
+ * de copier un état cohérent des voix, ou de décider d'une clôture sans refuser à tort
+ * des écritures si elle échoue. Une seule suspension ou clôture a lieu à la fois.
+ *
+ * Les écritures étant brèves, leur fin est d'abord attendue activement, puis en suspendant
+ * le thread pour des durées croissantes (bornées par {@code ATTENTE_MAX_NANOS}) si l'une d'elles
+ * tarde, par exemple parce que son thread a été désordonnancé.
+ */
+final class BarriereCloture {
+    private static final int ESPACEMENT = 16; // Une bande par ligne de cache (128 octets)
+    private static final int TOURS_ACTIFS = 1_000; // Attente active avant de suspendre le thread
+    private static final long ATTENTE_MIN_NANOS = 1_000;
+    private static final long ATTENTE_MAX_NANOS = 1_000_000;
+    private static final int OUVERTE = 0;
+    private static final int SUSPENDUE = 1;
+    private static final int FERMEE = 2;
+
+    private final AtomicLongArray bandes; // Écritures en cours, par bande
+    private final int masque;
+    private final ReentrantLock verrouSuspension; // Détenu pendant une suspension ou une clôture
+    private volatile int etat;
+
+    BarriereCloture() {
+        int nbBandes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1) * 2;
+        this.bandes = new AtomicLongArray(nbBandes * ESPACEMENT);
+        this.masque = nbBandes - 1;
+        this.verrouSuspension = new ReentrantLock();
+    }
+
+    /**
+     * Inscrit une écriture, après la fin de la suspension en cours s'il y en a une.
+     *
+     * @return La position de la bande, à rendre à {@link #sortir(int)}.
+     * @throws IllegalStateException si la clôture a commencé.
+     */
+    int entrer() {
+        int position = ((int) Thread.currentThread().getId() & masque) * ESPACEMENT;
+        while (true) {
+            bandes.getAndIncrement(position);
+            int e = etat;
+            if (e == OUVERTE) {
+                return position;
+            }
+            bandes.getAndDecrement(position);
+            if (e == FERMEE) {
+                throw new IllegalStateException("L'élection est terminée. Impossible d'ajouter des voix.");
+            }
+            attendreReprise();
+        }
+    }
+
+    private synchronized void attendreReprise() {
+        boolean interrompu = false;
+        while (etat == SUSPENDUE) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrompu = true; // L'écriture est reprise puis effectuée, l'interruption rétablie
+            }
+        }
+        if (interrompu) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void sortir(int position) {
+        bandes.getAndDecrement(position);
+    }
+
+    /**
+     * Refuse les nouvelles écritures, y compris celles qui attendent la fin d'une suspension,
+     * et attend la fin de celles en cours. Les lectures ne sont jamais bloquées.
+     * Peut être appelée pendant une suspension, par le thread qui l'a commencée.
+     */
+    void fermer() {
+        verrouSuspension.lock();
+        try {
+            changerEtat(FERMEE);
+            attendreEcritures();
+        } finally {
+            verrouSuspension.unlock();
+        }
+    }
+
+    /**
+     * Suspend les nouvelles écritures et attend la fin de celles en cours : jusqu'à {@link #reprendre()},
+     * aucune voix ne change. Sans effet sur une barrière fermée, qui refuse déjà les écritures.
+     * Ne doit pas être appelée pendant une écriture inscrite par le même thread.
+     */
+    void suspendre() {
+        verrouSuspension.lock();
+        if (etat == OUVERTE) {
+            changerEtat(SUSPENDUE);
+            attendreEcritures();
+        }
+    }
+
+    /**
+     * Reprend les écritures suspendues par {@link #suspendre()}, appelée par le même thread.
+     */
+    void reprendre() {
+        try {
+            if (etat == SUSPENDUE) {
+                changerEtat(OUVERTE);
+            }
+        } finally {
+            verrouSuspension.unlock();
+        }
+    }
+
+    private synchronized void changerEtat(int nouvelEtat) {
+        etat = nouvelEtat;
+        notifyAll(); // Réveille les écritures en attente de reprise
+    }
+
+    private void attendreEcritures() {
+        int tours = 0;
+        long attente = ATTENTE_MIN_NANOS;
+        for (int position = 0; position < bandes.length(); position += ESPACEMENT) {
+            while (bandes.get(position) != 0) {
+                if (tours < TOURS_ACTIFS) {
+                    tours++;
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(attente);
+                    attente = Math.min(2 * attente, ATTENTE_MAX_NANOS);
+                }
+            }
+        }
+    }
+
+    boolean isFermee() {
+        return etat == FERMEE;
+    }
+}
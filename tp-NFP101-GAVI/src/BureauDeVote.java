@@ -0,0 +1,178 @@
+/**
+ * Classe représentant un bureau de vote d'une circonscription.
+ * Le bureau conserve ses propres résultats sous forme d'un vecteur de voix
+ * indexé par identifiant de candidat. Chaque déclaration ou correction n'est
+ * répercutée sur la circonscription (puis sur le scrutin) que par ses écarts
+ * avec les résultats précédents du bureau, sans recalcul des totaux.
+ * Le vecteur est tenu hors tas, dans les colonnes de la circonscription.
+ */
+public class BureauDeVote {
+    private final Circonscription circonscription; // Circonscription à laquelle appartient le bureau
+    private final int id; // Identifiant du bureau dans la circonscription
+    private final String nom; // Nom du bureau de vote
+    private final ColonnesVoix colonnes; // Compteurs hors tas de la circonscription
+    private int debutVoix; // Emplacement des voix du candidat 0 ; celles des suivants sont contiguës
+    private int nbVoix; // Longueur du vecteur de voix
+
+    BureauDeVote(Circonscription circonscription, int id, String nom) {
+        this(circonscription, id, nom, new int[circonscription.getNombreCandidats()]);
+    }
+
+    /**
+     * Constructeur d'un bureau de vote restauré, avec les voix déjà déclarées.
+     */
+    BureauDeVote(Circonscription circonscription, int id, String nom, int[] voix) {
+        this.circonscription = circonscription;
+        this.id = id;
+        this.nom = nom;
+        this.colonnes = circonscription.colonnes();
+        this.debutVoix = colonnes.allouer(Math.max(1, voix.length));
+        this.nbVoix = voix.length;
+        for (int idCandidat = 0; idCandidat < voix.length; idCandidat++) {
+            colonnes.ecrire(debutVoix + idCandidat, voix[idCandidat]);
+        }
+    }
+
+    /**
+     * Déclare (ou redéclare) les résultats complets du bureau.
+     * Seuls les candidats dont le nombre de voix a changé sont mis à jour.
+     *
+     * @param resultats Les voix de chaque candidat, indexées par identifiant ;
+     *                  les candidats absents du tableau sont comptés à 0 voix.
+     * @throws IllegalArgumentException si le tableau contient une valeur négative
+     *                                  ou plus de valeurs que de candidats.
+     */
+    public synchronized void declarer(int[] resultats) {
+        if (resultats.length > circonscription.getNombreCandidats()) {
+            throw new IllegalArgumentException("Les résultats comportent plus de valeurs que de candidats.");
+        }
+        for (int v : resultats) {
+            if (v < 0) {
+                throw new IllegalArgumentException("Le nombre de voix ne peut pas être négatif.");
+            }
+        }
+        int bande = circonscription.entrerEcriture(); // La déclaration est comptée en entier ou refusée
+        try {
+            int n = Math.max(resultats.length, nbVoix);
+            for (int idCandidat = 0; idCandidat < n; idCandidat++) {
+                int nouvelle = idCandidat < resultats.length ? resultats[idCandidat] : 0;
+                int ancienne = getVoix(idCandidat);
+                if (nouvelle != ancienne) {
+                    appliquerVariation(idCandidat, nouvelle - ancienne);
+                }
+            }
+        } finally {
+            circonscription.sortirEcriture(bande);
+        }
+    }
+
+    /**
+     * Corrige le nombre de voix d'un seul candidat dans ce bureau.
+     * Le coût ne dépend pas du nombre de candidats.
+     *
+     * @param idCandidat L'identifiant du candidat.
+     * @param nbVoix     Le nouveau nombre de voix du candidat dans ce bureau.
+     * @throws IllegalArgumentException si le candidat est inconnu ou le nombre de voix négatif.
+     */
+    public synchronized void corriger(int idCandidat, int nbVoix) {
+        circonscription.getCandidat(idCandidat); // Vérifie l'identifiant
+        if (nbVoix < 0) {
+            throw new IllegalArgumentException("Le nombre de voix ne peut pas être négatif.");
+        }
+        int variation = nbVoix - getVoix(idCandidat);
+        if (variation != 0) {
+            int bande = circonscription.entrerEcriture();
+            try {
+                appliquerVariation(idCandidat, variation);
+            } finally {
+                circonscription.sortirEcriture(bande);
+            }
+        }
+    }
+
+    /**
+     * Répercute une variation sur le vecteur du bureau puis sur la circonscription.
+     * Appelée sous le verrou du bureau, ou lors de la relecture du journal.
+     */
+    synchronized void appliquerVariation(int idCandidat, int variation) {
+        circonscription.enregistrerVariationBureau(this, idCandidat, variation);
+        if (idCandidat >= nbVoix) {
+            agrandir(circonscription.getNombreCandidats());
+        }
+        colonnes.ajouter(debutVoix + idCandidat, variation);
+    }
+
+    /**
+     * Récupère le nombre de voix déclarées par ce bureau pour un candidat.
+     *
+     * @param idCandidat L'identifiant du candidat.
+     * @return Le nombre de voix (0 si aucune n'a été déclarée).
+     */
+    public synchronized int getVoix(int idCandidat) {
+        return idCandidat >= 0 && idCandidat < nbVoix ? (int) colonnes.lire(debutVoix + idCandidat) : 0;
+    }
+
+    /**
+     * Déplace le vecteur de voix vers des emplacements plus nombreux, après l'ajout de candidats.
+     * Les anciens emplacements sont rendus aux colonnes, qui les réattribueront.
+     * Appelée sous le verrou du bureau, pendant une écriture : aucune lecture ne les vise plus ensuite.
+     */
+    private void agrandir(int longueur) {
+        int debut = colonnes.allouer(longueur);
+        for (int idCandidat = 0; idCandidat < nbVoix; idCandidat++) {
+            colonnes.ecrire(debut + idCandidat, colonnes.lire(debutVoix + idCandidat));
+        }
+        colonnes.liberer(debutVoix, Math.max(1, nbVoix)); // Taille attribuée par le constructeur
+        debutVoix = debut;
+        nbVoix = longueur;
+    }
+
+    /**
+     * Copie les voix des premiers candidats pendant une suspension des écritures
+     * (voir {@link Circonscription#copierEtat()}). Le verrou du bureau n'est pas pris :
+     * un écrivain qui le détient attend peut-être la reprise ; aucune voix ne change d'ici là.
+     */
+    int[] copierVoixSuspendues(int nbCandidats) {
+        int[] voix = new int[nbCandidats];
+        for (int idCandidat = 0; idCandidat < Math.min(nbVoix, nbCandidats); idCandidat++) {
+            voix[idCandidat] = (int) colonnes.lire(debutVoix + idCandidat);
+        }
+        return voix;
+    }
+
+    /**
+     * Récupère le total des voix déclarées par ce bureau.
+     *
+     * @return Le total des voix.
+     */
+    public synchronized long getTotalVoix() {
+        long total = 0;
+        for (int idCandidat = 0; idCandidat < nbVoix; idCandidat++) {
+            total += colonnes.lire(debutVoix + idCandidat);
+        }
+        return total;
+    }
+
+    /**
+     * Récupère l'identifiant du bureau dans sa circonscription.
+     *
+     * @return L'identifiant du bureau.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Récupère le nom du bureau de vote.
+     *
+     * @return Le nom du bureau.
+     */
+    public String getNom() {
+        return nom;
+    }
+
+    @Override
+    public String toString() {
+        return "Bureau " + nom + " : " + getTotalVoix() + " voix";
+    }
+}
@@ -1,19 +1,42 @@
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Iterator;
 import java.util.List;
 
 /**
  * Représente un candidat dans une élection.
  * Un candidat a un nom, un prénom, une affiliation politique (facultative),
  * un nombre de voix, et un historique des actions.
+ * Les voix peuvent être ajoutées depuis plusieurs threads simultanément.
+ * Une fois le candidat ajouté à une circonscription, son compteur de voix est tenu
+ * hors tas dans les colonnes de celle-ci (voir {@link ColonnesVoix}), et ses voix
+ * sont ajoutées par la circonscription, qui tient à jour son total et sa tête.
  */
 public class Candidat implements Historique {
+    private static final long TRANSFERT = Long.MIN_VALUE; // Voix locales en cours de transfert
+    private static final VarHandle VOIX_LOCALES;
+
+    static {
+        try {
+            VOIX_LOCALES = MethodHandles.lookup().findVarHandle(Candidat.class, "voixLocales", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private final String nom;             // Nom du candidat
     private final String prenom;          // Prénom du candidat
     private final String affiliation;     // Affiliation politique (par défaut : "Indépendant")
-    private Integer voix;                 // Nombre de voix obtenues
-    private final List<String> historiqueActions; // Historique des actions
+    private final String nomComplet;      // Prénom suivi du nom, calculé une seule fois
+    private volatile long voixLocales;    // Voix obtenues avant l'ajout à une circonscription
+    private volatile ColonnesVoix colonnes; // Colonnes de la circonscription (null avant l'ajout)
+    private int emplacement;              // Emplacement du compteur dans ces colonnes
+    private volatile boolean voixEnregistrees; // Faux tant qu'aucune voix n'a été enregistrée
+    private volatile Circonscription circonscription; // Circonscription du candidat (null avant l'ajout)
+    private int idCandidat; // Identifiant du candidat dans cette circonscription
+    private final HistoriqueCompact historique; // Historique des actions (texte produit à la lecture)
 
     /**
      * Constructeur de la classe Candidat.
@@ -23,46 +46,147 @@ public class Candidat implements Historique {
      * @param affiliation L'affiliation politique (peut être null ou vide pour "Indépendant").
      */
     public Candidat(String nom, String prenom, String affiliation) {
+        this(nom, prenom, affiliation, 0, false, null, 0);
+        historique.ajouterEvenement(HistoriqueCompact.CREATION, 0, 0);
+    }
+
+    /**
+     * Constructeur d'un candidat restauré d'une sauvegarde (voir {@link SauvegardeElection}).
+     *
+     * @param voix             Le nombre de voix sauvegardé.
+     * @param voixEnregistrees Indique si des voix avaient été enregistrées.
+     * @param historique       Les événements sauvegardés de l'historique, décodés au premier besoin.
+     * @param nbEvenements     Le nombre de ces événements.
+     */
+    Candidat(String nom, String prenom, String affiliation, long voix, boolean voixEnregistrees,
+             ByteBuffer historique, int nbEvenements) {
         if (nom == null || prenom == null || nom.isEmpty() || prenom.isEmpty()) {
             throw new IllegalArgumentException("Le nom et le prénom du candidat sont obligatoires.");
         }
         this.nom = nom;
         this.prenom = prenom;
         this.affiliation = (affiliation == null || affiliation.isEmpty()) ? "Indépendant" : affiliation;
-        this.voix = null; // Pas encore de voix enregistrées
-        this.historiqueActions = new ArrayList<>();
-        ajouterAction("Création du candidat : " + getNomComplet() + " (Affiliation : " + this.affiliation + ")");
+        this.nomComplet = prenom + " " + nom;
+        this.voixLocales = voix;
+        this.voixEnregistrees = voixEnregistrees; // Faux pour un nouveau candidat
+        this.historique = new HistoriqueCompact(this::rendreEvenement, historique, nbEvenements);
     }
 
     @Override
     public void ajouterAction(String action) {
-        if (action == null || action.isEmpty()) {
-            throw new IllegalArgumentException("L'action ne peut pas être vide.");
+        Circonscription c = circonscription;
+        if (c != null) {
+            c.verifierActionCandidat(action);
+        }
+        historique.ajouterAction(action);
+        if (c != null) {
+            c.journaliserActionCandidat(idCandidat, action);
         }
-        String horodatage = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"));
-        historiqueActions.add(horodatage + " - " + action);
     }
 
     @Override
     public List<String> getHistoriqueActions() {
-        return new ArrayList<>(historiqueActions); // Retourne une copie pour protéger l'original
+        return historique.getHistoriqueActions(); // Nouvelle liste à chaque appel
+    }
+
+    @Override
+    public List<String> getActions(int debut, int fin) {
+        return historique.getActions(debut, fin);
+    }
+
+    @Override
+    public List<String> getActionsEntre(Instant debut, Instant fin) {
+        return historique.getActionsEntre(debut, fin);
+    }
+
+    @Override
+    public List<String> getDernieresActions(int nombre) {
+        return historique.getDernieresActions(nombre);
+    }
+
+    @Override
+    public Iterator<List<String>> parcourirActions(int taillePage) {
+        return historique.parcourirActions(taillePage);
+    }
+
+    /**
+     * Accès à l'historique compact, pour les métriques (voir {@link MetriquesCirconscription}).
+     */
+    HistoriqueCompact historique() {
+        return historique;
+    }
+
+    private String rendreEvenement(byte type, int idCandidat, int voix, long cumulVoix) {
+        if (type == HistoriqueCompact.CREATION) {
+            return "Création du candidat : " + nomComplet + " (Affiliation : " + affiliation + ")";
+        }
+        if (type == HistoriqueCompact.CORRECTION_VOIX) {
+            return "Correction de " + voix + " voix. Total voix : " + cumulVoix;
+        }
+        return "Ajout de " + voix + " voix. Total voix : " + cumulVoix;
     }
 
     /**
      * Ajoute des voix au candidat.
+     * Si le candidat appartient à une circonscription, les voix lui sont ajoutées par
+     * celle-ci (voir {@link Circonscription#ajouterVoix(int, int)}) : elles sont comptées dans
+     * son total, tracées et journalisées, et refusées si l'élection y est terminée.
      *
      * @param nbVoix Le nombre de voix à ajouter (doit être positif).
      * @throws IllegalArgumentException si le nombre de voix est négatif.
+     * @throws IllegalStateException    si l'élection de la circonscription du candidat est terminée.
      */
     public void ajouterVoix(int nbVoix) {
         if (nbVoix < 0) {
             throw new IllegalArgumentException("Le nombre de voix ne peut pas être négatif.");
         }
-        if (voix == null) {
-            voix = 0; // Initialise les voix si elles ne sont pas encore enregistrées
+        while (true) {
+            Circonscription c = circonscription;
+            if (c != null) {
+                if (nbVoix > 0) {
+                    c.ajouterVoix(idCandidat, nbVoix);
+                } else if (c.isElectionTerminee()) {
+                    throw new IllegalStateException("L'élection est terminée. Impossible d'ajouter des voix.");
+                } else { // Rien à compter : seulement tracé, comme pour un candidat sans circonscription
+                    voixEnregistrees = true;
+                    historique.ajouterEvenement(HistoriqueCompact.AJOUT_VOIX, 0, 0);
+                }
+                return;
+            }
+            long v = voixLocales;
+            if (v != TRANSFERT && VOIX_LOCALES.compareAndSet(this, v, v + nbVoix)) {
+                voixEnregistrees = true; // Les voix sont désormais enregistrées, même à 0
+                historique.ajouterEvenement(HistoriqueCompact.AJOUT_VOIX, 0, nbVoix);
+                return;
+            }
+            Thread.onSpinWait(); // Ajout à une circonscription en cours
         }
-        voix += nbVoix;
-        ajouterAction("Ajout de " + nbVoix + " voix. Total voix : " + voix);
+    }
+
+    /**
+     * Compte des voix ajoutées par la circonscription du candidat.
+     *
+     * @param nbVoix Le nombre de voix à ajouter (positif).
+     */
+    void compterVoix(int nbVoix) {
+        if (!voixEnregistrees) {
+            voixEnregistrees = true;
+        }
+        ajouterAuCompteur(nbVoix);
+        historique.ajouterEvenement(HistoriqueCompact.AJOUT_VOIX, 0, nbVoix);
+    }
+
+    /**
+     * Retire des voix au candidat, suite à la correction d'un bureau de vote.
+     *
+     * @param variation La variation (négative) du nombre de voix.
+     */
+    void corrigerVoix(int variation) {
+        if (getVoix() + (long) variation < 0) {
+            throw new IllegalArgumentException("Le nombre de voix ne peut pas devenir négatif.");
+        }
+        ajouterAuCompteur(variation);
+        historique.ajouterEvenement(HistoriqueCompact.CORRECTION_VOIX, 0, variation);
     }
 
     /**
@@ -71,7 +195,91 @@ public class Candidat implements Historique {
      * @return Le nombre de voix (0 si non enregistré).
      */
     public int getVoix() {
-        return voix != null ? voix : 0;
+        while (true) {
+            ColonnesVoix c = colonnes;
+            if (c != null) {
+                return (int) c.lire(emplacement);
+            }
+            long v = voixLocales;
+            if (v != TRANSFERT) {
+                return (int) v;
+            }
+            Thread.onSpinWait(); // Rattachement en cours
+        }
+    }
+
+    private void ajouterAuCompteur(long variation) {
+        while (true) {
+            ColonnesVoix c = colonnes;
+            if (c != null) {
+                c.ajouter(emplacement, variation);
+                return;
+            }
+            long v = voixLocales;
+            if (v != TRANSFERT && VOIX_LOCALES.compareAndSet(this, v, v + variation)) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Transfère le compteur de voix du candidat dans les colonnes de sa circonscription.
+     * Les ajouts concurrents attendent la fin du transfert.
+     *
+     * @throws IllegalArgumentException si le candidat appartient déjà à une circonscription.
+     */
+    void rattacher(ColonnesVoix colonnes, int emplacement) {
+        long v = (long) VOIX_LOCALES.getAndSet(this, TRANSFERT);
+        if (v == TRANSFERT) {
+            throw new IllegalArgumentException("Le candidat " + nomComplet + " appartient déjà à une circonscription.");
+        }
+        this.emplacement = emplacement;
+        colonnes.ecrire(emplacement, v);
+        this.colonnes = colonnes; // Écriture volatile : publie aussi l'emplacement
+    }
+
+    /**
+     * Confie les ajouts de voix suivants à la circonscription du candidat, une fois
+     * celui-ci visible et ses voix antérieures comptées par elle.
+     */
+    void lier(Circonscription circonscription, int idCandidat) {
+        this.idCandidat = idCandidat;
+        this.circonscription = circonscription; // Écriture volatile : publie aussi l'identifiant
+    }
+
+    /**
+     * Indique si des voix ont été enregistrées pour le candidat (même 0).
+     */
+    boolean isVoixEnregistrees() {
+        return voixEnregistrees;
+    }
+
+    /**
+     * Récupère le nom du candidat.
+     *
+     * @return Le nom.
+     */
+    public String getNom() {
+        return nom;
+    }
+
+    /**
+     * Récupère le prénom du candidat.
+     *
+     * @return Le prénom.
+     */
+    public String getPrenom() {
+        return prenom;
+    }
+
+    /**
+     * Récupère l'affiliation politique du candidat.
+     *
+     * @return L'affiliation ("Indépendant" si aucune n'a été fournie).
+     */
+    public String getAffiliation() {
+        return affiliation;
     }
 
     /**
@@ -80,7 +288,7 @@ public class Candidat implements Historique {
      * @return Le prénom suivi du nom.
      */
     public String getNomComplet() {
-        return prenom + " " + nom;
+        return nomComplet;
     }
 
     /**
@@ -90,6 +298,6 @@ public class Candidat implements Historique {
      */
     @Override
     public String toString() {
-        return getNomComplet() + " (" + affiliation + ") : " + (voix != null ? voix : "Non enregistré") + " voix";
+        return getNomComplet() + " (" + affiliation + ") : " + (voixEnregistrees ? getVoix() : "Non enregistré") + " voix";
     }
 }
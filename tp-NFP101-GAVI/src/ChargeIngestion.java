@@ -0,0 +1,208 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Test de charge du serveur d'ingestion (voir {@link ServeurIngestion}) en boucle locale.
+ * Le serveur est démarré dans le même processus ; chaque connexion cliente envoie des remontées
+ * en continu, avec un nombre borné de remontées en attente d'acquittement, et mesure la latence
+ * de chaque acquittement. Une remontée sur quatre est identifiée. À la fin, les voix de chaque
+ * circonscription doivent être égales à celles des remontées acquittées comme appliquées.
+ *
+ * Usage : {@code java ChargeIngestion [connexions] [durée en secondes] [remontées en vol par connexion]
+ * [boucles du serveur]}.
+ */
+public class ChargeIngestion {
+    private static final int NB_CIRCONSCRIPTIONS = 8;
+    private static final int NB_CANDIDATS = 8;
+    private static final int PAR_ENVOI = 32; // Remontées écrites au plus par appel système
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int nbConnexions = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        long dureeNanos = TimeUnit.SECONDS.toNanos(args.length > 1 ? Long.parseLong(args[1]) : 5);
+        int fenetre = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int nbBoucles = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        List<Circonscription> circonscriptions = new ArrayList<>(NB_CIRCONSCRIPTIONS);
+        for (int c = 0; c < NB_CIRCONSCRIPTIONS; c++) {
+            Circonscription circonscription = new Circonscription("Circonscription " + (c + 1), Integer.MAX_VALUE);
+            for (int i = 0; i < NB_CANDIDATS; i++) {
+                circonscription.ajouterCandidat(new Candidat("NOM" + i, "Prenom" + i, null));
+            }
+            circonscriptions.add(circonscription);
+        }
+
+        HistogrammeLatence latences = new HistogrammeLatence();
+        List<Client> clients = new ArrayList<>(nbConnexions);
+        try (ServeurIngestion serveur = ServeurIngestion.demarrer(circonscriptions,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), nbBoucles)) {
+            for (int n = 0; n < nbConnexions; n++) {
+                clients.add(new Client(n, serveur.getAdresse(), fenetre, latences));
+            }
+            long debut = System.nanoTime();
+            for (Client client : clients) {
+                client.demarrer(debut + dureeNanos);
+            }
+            for (Client client : clients) {
+                client.attendre();
+            }
+            long duree = System.nanoTime() - debut;
+
+            long acquittees = 0;
+            long[][] attendues = new long[NB_CIRCONSCRIPTIONS][NB_CANDIDATS];
+            for (Client client : clients) {
+                acquittees += client.acquittees;
+                for (int i = 0; i < NB_CANDIDATS; i++) {
+                    attendues[client.idCirconscription][i] += client.appliquees[i];
+                }
+            }
+            boolean correct = serveur.getRefusees() == 0 && serveur.getDoublons() == 0;
+            for (int c = 0; c < NB_CIRCONSCRIPTIONS; c++) {
+                for (int i = 0; i < NB_CANDIDATS; i++) {
+                    long voix = circonscriptions.get(c).getCandidat(i).getVoix();
+                    if (voix != attendues[c][i]) {
+                        System.err.println(circonscriptions.get(c).getNom() + ", candidat " + i + " : " + voix
+                                + " voix au lieu de " + attendues[c][i]);
+                        correct = false;
+                    }
+                }
+            }
+
+            System.out.printf("%d connexions, %d boucles, %d remontées en vol par connexion%n",
+                    nbConnexions, nbBoucles, fenetre);
+            System.out.printf("%d remontées acquittées en %d ms (%.0f remontées/s)%n", acquittees,
+                    TimeUnit.NANOSECONDS.toMillis(duree), acquittees * 1e9 / duree);
+            System.out.printf("Latence d'acquittement : p50 %d ns, p99 %d ns, p99,9 %d ns, max %d ns%n",
+                    latences.getPercentile(50), latences.getPercentile(99), latences.getPercentile(99.9),
+                    latences.getMax());
+            if (!correct) {
+                System.err.println(serveur);
+                System.exit(1);
+            }
+            System.out.println("Totaux exacts.");
+        }
+    }
+
+    /**
+     * Connexion cliente : un thread écrit les remontées tant que la fenêtre le permet,
+     * un autre lit les acquittements.
+     */
+    private static final class Client {
+        final int idCirconscription;
+        final long[] appliquees = new long[NB_CANDIDATS]; // Voix des remontées appliquées (thread lecteur)
+        long acquittees;
+        private final SocketChannel canal;
+        private final int numero;
+        private final int fenetre;
+        private final Semaphore places;
+        private final AtomicLongArray envois; // Instant d'envoi, par rang dans la fenêtre
+        private final HistogrammeLatence latences;
+        private final Thread ecrivain;
+        private final Thread lecteur;
+        private volatile long envoyees = -1; // Nombre total de remontées envoyées, connu à la fin de l'écriture
+        private long echeance;
+
+        Client(int numero, InetSocketAddress adresse, int fenetre, HistogrammeLatence latences) throws IOException {
+            this.numero = numero;
+            this.idCirconscription = numero % NB_CIRCONSCRIPTIONS;
+            this.fenetre = fenetre;
+            this.places = new Semaphore(fenetre);
+            this.envois = new AtomicLongArray(fenetre);
+            this.latences = latences;
+            this.canal = SocketChannel.open(adresse);
+            canal.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            this.ecrivain = new Thread(this::ecrire, "client-" + numero + "-ecriture");
+            this.lecteur = new Thread(this::lire, "client-" + numero + "-lecture");
+        }
+
+        void demarrer(long echeance) {
+            this.echeance = echeance;
+            lecteur.start();
+            ecrivain.start();
+        }
+
+        void attendre() throws InterruptedException, IOException {
+            ecrivain.join();
+            lecteur.join();
+            canal.close();
+        }
+
+        /**
+         * Voix d'un candidat dans une remontée (entre 1 et 3, selon son rang).
+         */
+        static int voix(long rang, int idCandidat) {
+            return 1 + (int) ((rang + idCandidat) % 3);
+        }
+
+        private void ecrire() {
+            int taille = ServeurIngestion.TAILLE_ENTETE + NB_CANDIDATS * ServeurIngestion.TAILLE_PAIRE;
+            ByteBuffer tampon = ByteBuffer.allocateDirect(PAR_ENVOI * taille);
+            long rang = 0;
+            try {
+                while (System.nanoTime() - echeance < 0) {
+                    places.acquire();
+                    int nombre = 1;
+                    while (nombre < PAR_ENVOI && places.tryAcquire()) {
+                        nombre++;
+                    }
+                    tampon.clear();
+                    long maintenant = System.nanoTime();
+                    for (int k = 0; k < nombre; k++, rang++) {
+                        envois.set((int) (rang % fenetre), maintenant);
+                        tampon.putInt(taille - 4).putLong(((long) numero << 40) | rang)
+                                .put(rang % 4 == 0 ? ServeurIngestion.IDENTIFIEE : 0)
+                                .putInt(idCirconscription).putShort((short) NB_CANDIDATS);
+                        for (int i = 0; i < NB_CANDIDATS; i++) {
+                            tampon.putShort((short) i).putInt(voix(rang, i));
+                        }
+                    }
+                    tampon.flip();
+                    while (tampon.hasRemaining()) {
+                        canal.write(tampon);
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                System.err.println(ecrivain.getName() + " : " + e);
+            } finally {
+                envoyees = rang;
+            }
+        }
+
+        private void lire() {
+            ByteBuffer tampon = ByteBuffer.allocateDirect(64 * 1024);
+            long masque = (1L << 40) - 1;
+            try {
+                while (envoyees < 0 || acquittees < envoyees) {
+                    if (canal.read(tampon) < 0) {
+                        throw new IOException("Connexion fermée par le serveur.");
+                    }
+                    long maintenant = System.nanoTime();
+                    tampon.flip();
+                    while (tampon.remaining() >= ServeurIngestion.TAILLE_ACQUITTEMENT) {
+                        long rang = tampon.getLong() & masque;
+                        byte statut = tampon.get();
+                        latences.enregistrer(maintenant - envois.get((int) (rang % fenetre)));
+                        if (statut == ServeurIngestion.APPLIQUEE) {
+                            for (int i = 0; i < NB_CANDIDATS; i++) {
+                                appliquees[i] += voix(rang, i);
+                            }
+                        }
+                        acquittees++;
+                        places.release();
+                    }
+                    tampon.compact();
+                }
+            } catch (IOException e) {
+                System.err.println(lecteur.getName() + " : " + e);
+            }
+        }
+    }
+}
@@ -1,19 +1,105 @@
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Classe représentant une circonscription électorale.
  * Implémente l'interface Historique pour gérer les actions.
+ * Les voix peuvent être ajoutées depuis plusieurs threads simultanément
+ * (par exemple un thread par bureau de vote).
+ * Le total des voix et le(s) candidat(s) en tête sont tenus à jour à chaque ajout,
+ * si bien que le taux de participation, la clôture et la recherche du vainqueur
+ * ne parcourent pas les candidats.
+ * Les compteurs de voix des candidats et des bureaux de vote sont tenus hors tas,
+ * en colonnes (voir {@link ColonnesVoix}).
+ * Les remontées identifiées (voir {@link #soumettreRemontee(long, int[])}) ne sont
+ * appliquées qu'une fois, même si elles sont renvoyées.
+ * La clôture arrête les écritures sans verrou global (voir {@link BarriereCloture}) :
+ * toute écriture commencée avant elle est comptée, toute écriture qui la suit est refusée.
  */
 public class Circonscription implements Historique {
     private final String nom; // Nom de la circonscription
     private final int inscrits; // Nombre d'inscrits sur les listes électorales
-    private final List<Candidat> candidats; // Liste des candidats dans la circonscription
-    private final List<String> historiqueActions; // Historique des actions
-    private boolean electionTerminee; // Indique si l'élection est terminée
+    private final List<Candidat> candidats; // Liste des candidats, indexée par identifiant
+    private final Map<String, Integer> indexCandidats; // Index nom complet -> identifiant du candidat
+    private final HistoriqueCompact historique; // Historique des actions (texte produit à la lecture)
+    private final LongAdder totalVoix; // Total des voix exprimées, tenu à jour à chaque ajout
+    private final ColonnesVoix colonnes; // Compteurs hors tas des candidats et des bureaux de vote
+    private final ReentrantLock verrouTete; // Protège la mise à jour du classement de tête
+    private volatile Tete tete; // Candidat(s) en tête et leur nombre de voix
+    private int[] generationsTete; // Par identifiant : génération de la tête où le candidat figure (+1)
+    private volatile boolean electionTerminee; // Indique si l'élection est terminée
+    private final BarriereCloture barriere; // Admission des écritures de voix, fermée à la clôture
+    private volatile long[] voixCloture; // Voix des candidats figées à la clôture (null avant)
+    private final List<BureauDeVote> bureaux; // Bureaux de vote, indexés par identifiant
+    private final Map<String, BureauDeVote> indexBureaux; // Index nom -> bureau de vote
+    private volatile ObservateurVoix[] observateurs; // Notifiés de chaque variation de voix
+    private final EnsembleRemontees remontees; // Identifiants des remontées déjà appliquées
+    private final LongAdder doublons; // Remontées reçues en double et ignorées
+    private volatile ArchiveHistorique archive; // Archive des historiques (null s'ils restent en mémoire)
+    private int evenementsEnMemoire; // Événements gardés en mémoire par historique archivé
+    private volatile JournalElection journal; // Journal durable des opérations (null si non journalisée)
+    private int idJournal; // Identifiant de la circonscription dans le journal
+
+    /**
+     * Candidat(s) en tête à un instant donné : vue non modifiable sur les premiers
+     * éléments d'un tableau partagé. Un candidat rejoignant la tête à égalité est
+     * ajouté à la suite dans le même tableau, sans copie ; la vue précédente reste
+     * inchangée puisqu'elle ne voit pas au-delà de sa propre taille.
+     */
+    private static final class Tete extends AbstractList<Candidat> implements RandomAccess {
+        final long voix;
+        final int generation; // Change à chaque nouveau tableau (nouvelle tête seule)
+        final Candidat[] tableau;
+        final int taille;
+
+        Tete(long voix, int generation, Candidat[] tableau, int taille) {
+            this.voix = voix;
+            this.generation = generation;
+            this.tableau = tableau;
+            this.taille = taille;
+        }
+
+        @Override
+        public Candidat get(int index) {
+            Objects.checkIndex(index, taille);
+            return tableau[index];
+        }
+
+        @Override
+        public int size() {
+            return taille;
+        }
+    }
+
+    /**
+     * Voix et remontées copiées au même instant par {@link #copierEtat()}.
+     */
+    static final class Etat {
+        final boolean cloturee;
+        final long[] voixCandidats; // Indexées par identifiant de candidat
+        final int[][] voixBureaux; // Indexées par identifiant de bureau, puis de candidat
+        final long[] idsRemontees; // Dans un ordre quelconque
+
+        Etat(boolean cloturee, long[] voixCandidats, int[][] voixBureaux, long[] idsRemontees) {
+            this.cloturee = cloturee;
+            this.voixCandidats = voixCandidats;
+            this.voixBureaux = voixBureaux;
+            this.idsRemontees = idsRemontees;
+        }
+    }
 
     /**
      * Constructeur de la classe Circonscription.
@@ -23,79 +109,902 @@ public class Circonscription implements Historique {
      *                 positif).
      */
     public Circonscription(String nom, int inscrits) {
+        this(nom, inscrits, null, 0);
+        historique.ajouterEvenement(HistoriqueCompact.CREATION, 0, 0);
+    }
+
+    /**
+     * Constructeur d'une circonscription restaurée d'une sauvegarde (voir {@link SauvegardeElection}),
+     * sans candidat ni bureau : ils sont ajoutés ensuite par {@link #restaurerCandidat(Candidat)}
+     * et {@link #restaurerBureau(String, int[])}.
+     *
+     * @param historique   Les événements sauvegardés de l'historique, décodés au premier besoin.
+     * @param nbEvenements Le nombre de ces événements.
+     */
+    Circonscription(String nom, int inscrits, ByteBuffer historique, int nbEvenements) {
         if (nom == null || nom.isEmpty() || inscrits <= 0) {
             throw new IllegalArgumentException(
                     "Le nom de la circonscription est obligatoire et le nombre d'inscrits doit être positif.");
         }
         this.nom = nom;
         this.inscrits = inscrits;
-        this.candidats = new ArrayList<>();
-        this.historiqueActions = new ArrayList<>();
+        this.candidats = new CopyOnWriteArrayList<>();
+        this.indexCandidats = new ConcurrentHashMap<>();
+        this.historique = new HistoriqueCompact(this::rendreEvenement, historique, nbEvenements);
+        this.totalVoix = new LongAdder();
+        this.colonnes = new ColonnesVoix();
+        this.verrouTete = new ReentrantLock();
+        this.tete = new Tete(0, 0, new Candidat[4], 0);
+        this.generationsTete = new int[4];
+        this.bureaux = new CopyOnWriteArrayList<>();
+        this.indexBureaux = new ConcurrentHashMap<>();
+        this.observateurs = new ObservateurVoix[0];
+        this.remontees = new EnsembleRemontees();
+        this.doublons = new LongAdder();
+        this.barriere = new BarriereCloture();
         this.electionTerminee = false;
-
-        ajouterAction("Création de la circonscription : " + this.nom);
     }
 
     @Override
     public void ajouterAction(String action) {
-        if (action == null || action.isEmpty()) {
-            throw new IllegalArgumentException("L'action ne peut pas être vide.");
+        JournalElection j = journal;
+        if (j != null) {
+            JournalElection.verifierTexte(action); // Avant l'historique : un refus ne laisse aucune trace
+        }
+        historique.ajouterAction(action);
+        if (j != null) {
+            j.action(idJournal, action);
         }
-        String horodatage = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"));
-        historiqueActions.add(horodatage + " - " + action);
     }
 
     @Override
     public List<String> getHistoriqueActions() {
-        return new ArrayList<>(historiqueActions); // Retourne une copie pour protéger l'original
+        return historique.getHistoriqueActions(); // Nouvelle liste à chaque appel
+    }
+
+    @Override
+    public List<String> getActions(int debut, int fin) {
+        return historique.getActions(debut, fin);
+    }
+
+    @Override
+    public List<String> getActionsEntre(Instant debut, Instant fin) {
+        return historique.getActionsEntre(debut, fin);
     }
 
-    public void ajouterCandidat(Candidat candidat) {
+    @Override
+    public List<String> getDernieresActions(int nombre) {
+        return historique.getDernieresActions(nombre);
+    }
+
+    @Override
+    public Iterator<List<String>> parcourirActions(int taillePage) {
+        return historique.parcourirActions(taillePage);
+    }
+
+    /**
+     * Accès à l'historique compact, pour les métriques (voir {@link MetriquesCirconscription}).
+     */
+    HistoriqueCompact historique() {
+        return historique;
+    }
+
+    /**
+     * Limite la mémoire occupée par l'historique de la circonscription et ceux de ses candidats,
+     * présents et à venir : au-delà de {@code evenementsEnMemoire} événements par historique,
+     * les plus anciens sont déchargés dans l'archive (voir {@link HistoriqueCompact#archiver}).
+     *
+     * @param archive             L'archive recevant les événements déchargés.
+     * @param evenementsEnMemoire Le nombre d'événements récents gardés en mémoire par historique.
+     */
+    public synchronized void archiverHistoriques(ArchiveHistorique archive, int evenementsEnMemoire) {
+        historique.archiver(archive, evenementsEnMemoire);
+        for (Candidat candidat : candidats) {
+            candidat.historique().archiver(archive, evenementsEnMemoire);
+        }
+        this.evenementsEnMemoire = evenementsEnMemoire;
+        this.archive = archive;
+    }
+
+    private String rendreEvenement(byte type, int idCandidat, int voix, long cumulVoix) {
+        switch (type) {
+            case HistoriqueCompact.CREATION:
+                return "Création de la circonscription : " + nom;
+            case HistoriqueCompact.AJOUT_CANDIDAT:
+                return "Ajout du candidat : " + candidats.get(idCandidat).getNomComplet();
+            case HistoriqueCompact.AJOUT_VOIX:
+                return "Ajout de " + voix + " voix pour " + candidats.get(idCandidat).getNomComplet();
+            case HistoriqueCompact.CORRECTION_VOIX:
+                return "Correction de " + voix + " voix pour " + candidats.get(idCandidat).getNomComplet();
+            case HistoriqueCompact.AJOUT_BUREAU:
+                return "Ajout du bureau de vote : " + bureaux.get(idCandidat).getNom();
+            case HistoriqueCompact.IMPORT_LOT:
+                return "Import d'un lot de " + idCandidat + " ligne(s) : " + voix + " voix";
+            case HistoriqueCompact.LOT_RESEAU:
+                return "Réception d'un lot de " + idCandidat + " remontée(s) : " + voix + " voix";
+            default:
+                return "Élection clôturée.";
+        }
+    }
+
+    /**
+     * Ajoute un candidat à la circonscription et lui attribue un identifiant.
+     * Les identifiants sont attribués dans l'ordre d'ajout, à partir de 0.
+     * Les voix que le candidat avait déjà sont comptées dans le total de la circonscription ;
+     * ses voix suivantes lui sont ajoutées par la circonscription, même par {@link Candidat#ajouterVoix(int)}.
+     *
+     * @param candidat Le candidat à ajouter.
+     * @return L'identifiant du candidat dans la circonscription.
+     * @throws IllegalArgumentException si un candidat de même nom complet existe déjà dans la circonscription,
+     *                                  ou si le candidat appartient déjà à une circonscription.
+     */
+    public synchronized int ajouterCandidat(Candidat candidat) {
         if (electionTerminee) {
             throw new IllegalStateException("L'élection est terminée. Impossible d'ajouter des candidats.");
         }
-        if (candidats.stream().anyMatch(c -> c.getNomComplet().equals(candidat.getNomComplet()))) {
+        if (indexCandidats.containsKey(candidat.getNomComplet())) {
             throw new IllegalArgumentException(
                     "Un candidat portant ce nom complet existe déjà dans la circonscription.");
         }
+        JournalElection j = journal;
+        if (j != null) {
+            JournalElection.verifierCandidat(candidat); // Avant le rattachement, qui ne se défait pas
+        }
+        int id = candidats.size();
+        int emplacement = colonnes.allouer(1);
+        try {
+            candidat.rattacher(colonnes, emplacement); // Bloque les ajouts directs au candidat
+        } catch (IllegalArgumentException e) {
+            colonnes.liberer(emplacement, 1);
+            throw e;
+        }
+        int voix = candidat.getVoix();
+        if (j != null) {
+            j.candidat(idJournal, candidat); // Journalisé avant d'être visible des autres threads
+            if (voix > 0) {
+                j.voix(idJournal, id, voix);
+            }
+        }
         candidats.add(candidat);
-        ajouterAction("Ajout du candidat : " + candidat.getNomComplet());
+        indexCandidats.put(candidat.getNomComplet(), id);
+        totalVoix.add(voix);
+        mettreAJourTete(candidat, id, voix);
+        historique.ajouterEvenement(HistoriqueCompact.AJOUT_CANDIDAT, id, 0);
+        if (voix > 0) {
+            historique.ajouterEvenement(HistoriqueCompact.AJOUT_VOIX, id, voix);
+        }
+        if (archive != null) {
+            candidat.historique().archiver(archive, evenementsEnMemoire);
+        }
+        for (ObservateurVoix observateur : observateurs) {
+            observateur.candidatAjoute(this, id);
+            if (voix > 0) {
+                observateur.voixModifiees(this, id, voix);
+            }
+        }
+        candidat.lier(this, id);
+        return id;
+    }
+
+    /**
+     * Ajoute un candidat restauré d'une sauvegarde, avec ses voix, sans le tracer ni le journaliser.
+     */
+    synchronized void restaurerCandidat(Candidat candidat) {
+        int id = candidats.size();
+        candidat.rattacher(colonnes, colonnes.allouer(1));
+        candidats.add(candidat);
+        indexCandidats.put(candidat.getNomComplet(), id);
+        totalVoix.add(candidat.getVoix());
+        mettreAJourTete(candidat, id, candidat.getVoix());
+        for (ObservateurVoix observateur : observateurs) {
+            observateur.candidatAjoute(this, id);
+        }
+        candidat.lier(this, id);
+    }
+
+    /**
+     * Récupère l'identifiant d'un candidat à partir de son nom complet.
+     *
+     * @param nomComplet Le nom complet du candidat.
+     * @return L'identifiant du candidat.
+     * @throws IllegalArgumentException si le candidat n'existe pas.
+     */
+    public int getIdCandidat(String nomComplet) {
+        Integer id = indexCandidats.get(nomComplet);
+        if (id == null) {
+            throw new IllegalArgumentException("Candidat " + nomComplet + " non trouvé.");
+        }
+        return id;
+    }
+
+    /**
+     * Récupère un candidat à partir de son identifiant.
+     *
+     * @param idCandidat L'identifiant du candidat.
+     * @return Le candidat correspondant.
+     * @throws IllegalArgumentException si l'identifiant est inconnu.
+     */
+    public Candidat getCandidat(int idCandidat) {
+        if (idCandidat < 0 || idCandidat >= candidats.size()) {
+            throw new IllegalArgumentException("Candidat d'identifiant " + idCandidat + " non trouvé.");
+        }
+        return candidats.get(idCandidat);
+    }
+
+    /**
+     * Récupère le nombre de candidats de la circonscription.
+     *
+     * @return Le nombre de candidats.
+     */
+    public int getNombreCandidats() {
+        return candidats.size();
     }
 
     public void ajouterVoix(String nomComplet, int voix) {
+        long debut = Metriques.actif ? System.nanoTime() : 0;
+        int bande = barriere.entrer();
+        try {
+            if (voix <= 0) {
+                throw new IllegalArgumentException("Le nombre de voix doit être positif.");
+            }
+            int idCandidat = getIdCandidat(nomComplet);
+            enregistrerVoix(candidats.get(idCandidat), idCandidat, voix);
+        } finally {
+            barriere.sortir(bande);
+        }
+        if (debut != 0) {
+            Metriques.ajoutVoix(debut, voix);
+        }
+    }
+
+    /**
+     * Ajoute des voix à un candidat désigné par son identifiant.
+     * Chemin rapide : ni recherche par nom, ni construction du nom complet.
+     *
+     * @param idCandidat L'identifiant du candidat (voir {@link #ajouterCandidat(Candidat)}).
+     * @param voix       Le nombre de voix à ajouter (doit être positif).
+     */
+    public void ajouterVoix(int idCandidat, int voix) {
+        long debut = Metriques.actif ? System.nanoTime() : 0;
+        int bande = barriere.entrer();
+        try {
+            if (voix <= 0) {
+                throw new IllegalArgumentException("Le nombre de voix doit être positif.");
+            }
+            enregistrerVoix(getCandidat(idCandidat), idCandidat, voix);
+        } finally {
+            barriere.sortir(bande);
+        }
+        if (debut != 0) {
+            Metriques.ajoutVoix(debut, voix);
+        }
+    }
+
+    private void enregistrerVoix(Candidat candidat, int idCandidat, int voix) {
+        appliquerVoix(candidat, idCandidat, voix);
+        historique.ajouterEvenement(HistoriqueCompact.AJOUT_VOIX, idCandidat, voix);
+        JournalElection j = journal;
+        if (j != null) {
+            j.voix(idJournal, idCandidat, voix);
+        }
+    }
+
+    /**
+     * Soumet la remontée d'un bureau de vote, identifiée par un numéro unique choisi par l'émetteur.
+     * Une remontée renvoyée (nouvel essai après une perte d'accusé de réception, par exemple)
+     * n'est appliquée qu'une fois : les envois suivants du même identifiant sont ignorés.
+     * Les identifiants reçus sont conservés par le journal et par les sauvegardes.
+     *
+     * @param idRemontee L'identifiant de la remontée.
+     * @param voix       Les voix de chaque candidat, indexées par identifiant ;
+     *                   les candidats absents du tableau ne reçoivent pas de voix.
+     * @return true si la remontée a été appliquée, false si elle avait déjà été reçue.
+     * @throws IllegalArgumentException si le tableau contient une valeur négative
+     *                                  ou plus de valeurs que de candidats.
+     */
+    public boolean soumettreRemontee(long idRemontee, int[] voix) {
+        if (voix.length > candidats.size()) {
+            throw new IllegalArgumentException("La remontée comporte plus de valeurs que de candidats.");
+        }
+        long total = 0;
+        for (int v : voix) {
+            if (v < 0) {
+                throw new IllegalArgumentException("Le nombre de voix ne peut pas être négatif.");
+            }
+            total += v;
+        }
+        JournalElection j = journal;
+        if (j != null) {
+            JournalElection.verifierRemontee(voix);
+        }
+        int bande = barriere.entrer();
+        try {
+            if (!remontees.ajouter(idRemontee)) {
+                doublons.increment();
+                return false;
+            }
+            for (int idCandidat = 0; idCandidat < voix.length; idCandidat++) {
+                if (voix[idCandidat] > 0) {
+                    appliquerVoix(candidats.get(idCandidat), idCandidat, voix[idCandidat]);
+                    historique.ajouterEvenement(HistoriqueCompact.AJOUT_VOIX, idCandidat, voix[idCandidat]);
+                }
+            }
+            j = journal;
+            if (j != null) {
+                j.remontee(idJournal, idRemontee, voix);
+            }
+        } finally {
+            barriere.sortir(bande);
+        }
+        if (Metriques.actif) {
+            Metriques.voixIngerees(total);
+        }
+        return true;
+    }
+
+    /**
+     * Récupère le nombre de remontées identifiées appliquées.
+     *
+     * @return Le nombre d'identifiants de remontées reçus.
+     */
+    public long getNombreRemontees() {
+        return remontees.taille();
+    }
+
+    /**
+     * Récupère la mémoire occupée par les identifiants des remontées appliquées.
+     *
+     * @return Le nombre d'octets des tables d'identifiants.
+     */
+    public long getOctetsRemontees() {
+        return remontees.octets();
+    }
+
+    /**
+     * Récupère le nombre de remontées reçues en double et ignorées depuis la création
+     * (ou la restauration) de la circonscription.
+     *
+     * @return Le nombre de doublons.
+     */
+    public long getNombreDoublons() {
+        return doublons.sum();
+    }
+
+    /**
+     * Copie au même instant les voix des candidats, celles déclarées par chaque bureau de vote
+     * et les identifiants des remontées reçues : les écritures de voix sont suspendues le temps
+     * de la copie (elles attendent, sans être refusées). Une remontée figure donc dans la copie
+     * si et seulement si ses voix y sont comptées, et les voix de chaque candidat sont la somme
+     * de celles de ses bureaux et de ses voix hors bureaux.
+     * Les candidats et bureaux ajoutés pendant la copie peuvent en être absents.
+     *
+     * @return L'état copié.
+     */
+    Etat copierEtat() {
+        int nbCandidats = candidats.size();
+        int nbBureaux = bureaux.size();
+        barriere.suspendre();
+        try {
+            long[] voixCandidats = new long[nbCandidats];
+            for (int idCandidat = 0; idCandidat < nbCandidats; idCandidat++) {
+                voixCandidats[idCandidat] = candidats.get(idCandidat).getVoix();
+            }
+            int[][] voixBureaux = new int[nbBureaux][];
+            for (int idBureau = 0; idBureau < nbBureaux; idBureau++) {
+                voixBureaux[idBureau] = bureaux.get(idBureau).copierVoixSuspendues(nbCandidats);
+            }
+            long[] ids = new long[(int) remontees.taille()];
+            int[] n = new int[1];
+            remontees.pourChaque(id -> ids[n[0]++] = id);
+            return new Etat(electionTerminee, voixCandidats, voixBureaux, ids);
+        } finally {
+            barriere.reprendre();
+        }
+    }
+
+    /**
+     * Marque comme reçue une remontée restaurée d'une sauvegarde (ses voix sont déjà comptées).
+     */
+    void restaurerRemontee(long idRemontee) {
+        remontees.ajouter(idRemontee);
+    }
+
+    /**
+     * Inscrit une écriture de bureau de vote (déclaration ou correction), qui peut comporter
+     * plusieurs variations : elle est comptée en entier ou refusée en entier par la clôture.
+     *
+     * @return La bande à rendre à {@link #sortirEcriture(int)}.
+     * @throws IllegalStateException si la clôture a commencé.
+     */
+    int entrerEcriture() {
+        return barriere.entrer();
+    }
+
+    void sortirEcriture(int bande) {
+        barriere.sortir(bande);
+    }
+
+    /**
+     * Applique la variation de voix d'un candidat provenant d'un bureau de vote
+     * (déclaration ou correction). Une variation négative retire des voix au candidat.
+     * Appelée entre {@link #entrerEcriture()} et {@link #sortirEcriture(int)}, ou lors de la relecture du journal.
+     */
+    void enregistrerVariationBureau(BureauDeVote bureau, int idCandidat, int variation) {
+        if (electionTerminee) {
+            throw new IllegalStateException("L'élection est terminée. Impossible d'ajouter des voix.");
+        }
+        appliquerVoix(candidats.get(idCandidat), idCandidat, variation);
+        historique.ajouterEvenement(variation > 0 ? HistoriqueCompact.AJOUT_VOIX : HistoriqueCompact.CORRECTION_VOIX,
+                idCandidat, variation);
+        JournalElection j = journal;
+        if (j != null) {
+            j.voixBureau(idJournal, bureau.getId(), idCandidat, variation);
+        }
+        if (Metriques.actif && variation > 0) {
+            Metriques.voixIngerees(variation);
+        }
+    }
+
+    /**
+     * Applique la variation de voix d'un candidat reçue d'une autre réplique (voir {@link RepliqueVoix}).
+     * Elle est tracée mais pas journalisée : l'état d'une réplique se reconstitue auprès des autres nœuds.
+     * Appelée entre {@link #entrerEcriture()} et {@link #sortirEcriture(int)}.
+     */
+    void enregistrerVariationReplique(int idCandidat, int variation) {
+        if (electionTerminee) {
+            throw new IllegalStateException("L'élection est terminée. Impossible d'ajouter des voix.");
+        }
+        appliquerVoix(candidats.get(idCandidat), idCandidat, variation);
+        historique.ajouterEvenement(variation > 0 ? HistoriqueCompact.AJOUT_VOIX : HistoriqueCompact.CORRECTION_VOIX,
+                idCandidat, variation);
+        if (Metriques.actif && variation > 0) {
+            Metriques.voixIngerees(variation);
+        }
+    }
+
+    /**
+     * Importe en masse les voix d'un fichier de résultats (texte ou binaire, voir {@link ImportVoix}).
+     * Les voix sont appliquées par lots : chaque lot n'ajoute qu'une action à l'historique
+     * de la circonscription, et une seule par candidat concerné.
+     *
+     * @param fichier Le chemin du fichier de résultats.
+     * @return Le nombre de lignes (ou d'enregistrements) importées.
+     * @throws IOException              en cas d'erreur de lecture.
+     * @throws IllegalArgumentException si le fichier est mal formé ; les lots précédant
+     *                                  l'erreur restent appliqués.
+     */
+    public long importerVoix(Path fichier) throws IOException {
         if (electionTerminee) {
             throw new IllegalStateException("L'élection est terminée. Impossible d'ajouter des voix.");
         }
-        if (voix <= 0) {
-            throw new IllegalArgumentException("Le nombre de voix doit être positif.");
+        return ImportVoix.importer(this, fichier);
+    }
+
+    /**
+     * Applique un lot de voix importées d'un fichier, agrégées par candidat, et le trace en une seule action.
+     *
+     * @param voixParCandidat Les voix du lot, indexées par identifiant (remises à zéro après application).
+     * @param nbLignes        Le nombre de lignes du fichier couvertes par le lot.
+     * @param totalLot        Le total des voix du lot.
+     */
+    void appliquerLot(long[] voixParCandidat, int nbLignes, int totalLot) {
+        appliquerLot(voixParCandidat, HistoriqueCompact.IMPORT_LOT, nbLignes, totalLot);
+    }
+
+    /**
+     * Applique un lot de voix agrégées par candidat, journalisé en un seul enregistrement,
+     * et le trace par l'événement donné.
+     *
+     * @param evenement Le type d'événement ajouté à l'historique ({@link HistoriqueCompact#IMPORT_LOT}
+     *                  ou {@link HistoriqueCompact#LOT_RESEAU}), ou 0 pour n'en ajouter aucun
+     *                  (partie d'un lot journalisé en plusieurs enregistrements).
+     * @param nbLignes  Le nombre de lignes (ou de remontées) couvertes par le lot.
+     */
+    void appliquerLot(long[] voixParCandidat, byte evenement, int nbLignes, int totalLot) {
+        int bande = barriere.entrer();
+        try {
+            JournalElection j = journal;
+            if (j != null) {
+                j.lot(idJournal, voixParCandidat, evenement, nbLignes, totalLot);
+            }
+            for (int idCandidat = 0; idCandidat < voixParCandidat.length; idCandidat++) {
+                int voix = (int) voixParCandidat[idCandidat]; // Borné par le total du lot
+                if (voix > 0) {
+                    voixParCandidat[idCandidat] = 0;
+                    appliquerVoix(candidats.get(idCandidat), idCandidat, voix);
+                }
+            }
+            if (evenement != 0) {
+                historique.ajouterEvenement(evenement, nbLignes, totalLot);
+            }
+        } finally {
+            barriere.sortir(bande);
+        }
+        if (Metriques.actif) {
+            Metriques.voixIngerees(totalLot);
         }
-        Candidat candidat = candidats.stream()
-                .filter(c -> c.getNomComplet().equals(nomComplet))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Candidat " + nomComplet + " non trouvé."));
-        candidat.ajouterVoix(voix);
-        ajouterAction("Ajout de " + voix + " voix pour " + nomComplet);
     }
 
-    public void cloreElection() {
-        int totalVoix = candidats.stream().mapToInt(Candidat::getVoix).sum();
-        if (totalVoix > inscrits) {
-            throw new IllegalStateException("Le total des voix dépasse le nombre d'inscrits. Vérifiez les données.");
+    private void appliquerVoix(Candidat candidat, int idCandidat, int variation) {
+        if (variation > 0) {
+            candidat.compterVoix(variation);
+            totalVoix.add(variation);
+            int total = candidat.getVoix();
+            if (total >= tete.voix) { // Seul un candidat qui rejoint ou dépasse la tête la modifie
+                mettreAJourTete(candidat, idCandidat, total);
+            }
+        } else {
+            candidat.corrigerVoix(variation);
+            totalVoix.add(variation);
+            recalculerTeteSiMembre(idCandidat);
         }
+        for (ObservateurVoix observateur : observateurs) {
+            observateur.voixModifiees(this, idCandidat, variation);
+        }
+    }
+
+    /**
+     * Met à jour le classement de tête après qu'un candidat a gagné des voix :
+     * seul ce candidat peut alors entrer en tête ou la prendre.
+     */
+    private void mettreAJourTete(Candidat candidat, int idCandidat, long total) {
+        verrouillerTete();
+        try {
+            Tete courante = tete;
+            if (idCandidat >= generationsTete.length) {
+                generationsTete = Arrays.copyOf(generationsTete, Math.max(idCandidat + 1, generationsTete.length * 2));
+            }
+            total = Math.max(total, candidat.getVoix()); // Voix ajoutées entre-temps par d'autres threads
+            if (total > courante.voix) {
+                Candidat[] tableau = new Candidat[4];
+                tableau[0] = candidat;
+                tete = new Tete(total, courante.generation + 1, tableau, 1);
+                generationsTete[idCandidat] = courante.generation + 2;
+            } else if (total == courante.voix && generationsTete[idCandidat] != courante.generation + 1) {
+                Candidat[] tableau = courante.tableau;
+                if (courante.taille == tableau.length) {
+                    tableau = Arrays.copyOf(tableau, tableau.length * 2);
+                }
+                tableau[courante.taille] = candidat; // Hors de la vue courante : invisible pour ses lecteurs
+                tete = new Tete(total, courante.generation, tableau, courante.taille + 1);
+                generationsTete[idCandidat] = courante.generation + 1;
+            }
+        } finally {
+            verrouTete.unlock();
+        }
+    }
+
+    /**
+     * Recalcule entièrement le classement de tête si le candidat, qui vient de perdre
+     * des voix, en faisait partie. Le calcul est repris tant que des voix arrivées
+     * pendant le parcours le rendent obsolète.
+     */
+    private void recalculerTeteSiMembre(int idCandidat) {
+        verrouillerTete();
+        try {
+            Tete courante = tete;
+            if (idCandidat >= generationsTete.length || generationsTete[idCandidat] != courante.generation + 1) {
+                return; // Le candidat n'était pas en tête : le classement est inchangé
+            }
+            int generation = courante.generation;
+            int n;
+            long[] totaux;
+            boolean stable;
+            do {
+                generation++;
+                n = candidats.size();
+                totaux = new long[n];
+                long max = 0;
+                for (int i = 0; i < n; i++) {
+                    totaux[i] = candidats.get(i).getVoix();
+                    max = Math.max(max, totaux[i]);
+                }
+                Candidat[] tableau = new Candidat[4];
+                int taille = 0;
+                if (generationsTete.length < n) {
+                    generationsTete = Arrays.copyOf(generationsTete, n);
+                }
+                for (int i = 0; i < n; i++) {
+                    if (totaux[i] == max) {
+                        if (taille == tableau.length) {
+                            tableau = Arrays.copyOf(tableau, taille * 2);
+                        }
+                        tableau[taille++] = candidats.get(i);
+                        generationsTete[i] = generation + 1;
+                    }
+                }
+                tete = new Tete(max, generation, tableau, taille);
+                stable = true;
+                for (int i = 0; i < n && stable; i++) {
+                    stable = candidats.get(i).getVoix() == totaux[i];
+                }
+            } while (!stable);
+        } finally {
+            verrouTete.unlock();
+        }
+    }
+
+    /**
+     * Acquiert le verrou du classement de tête, en comptant les attentes si les métriques sont actives.
+     */
+    private void verrouillerTete() {
+        if (!verrouTete.tryLock()) {
+            if (Metriques.actif) {
+                Metriques.contentionTete();
+            }
+            verrouTete.lock();
+        }
+    }
+
+    /**
+     * Ajoute un bureau de vote à la circonscription et lui attribue un identifiant.
+     *
+     * @param nomBureau Le nom du bureau de vote.
+     * @return Le bureau de vote créé.
+     * @throws IllegalArgumentException si un bureau de même nom existe déjà.
+     */
+    public synchronized BureauDeVote ajouterBureau(String nomBureau) {
+        if (electionTerminee) {
+            throw new IllegalStateException("L'élection est terminée. Impossible d'ajouter des bureaux de vote.");
+        }
+        if (nomBureau == null || nomBureau.isEmpty()) {
+            throw new IllegalArgumentException("Le nom du bureau de vote est obligatoire.");
+        }
+        if (indexBureaux.containsKey(nomBureau)) {
+            throw new IllegalArgumentException("Un bureau de vote portant ce nom existe déjà dans la circonscription.");
+        }
+        int id = bureaux.size();
+        BureauDeVote bureau = new BureauDeVote(this, id, nomBureau);
+        JournalElection j = journal;
+        if (j != null) {
+            j.bureau(idJournal, nomBureau);
+        }
+        bureaux.add(bureau);
+        indexBureaux.put(nomBureau, bureau);
+        historique.ajouterEvenement(HistoriqueCompact.AJOUT_BUREAU, id, 0);
+        return bureau;
+    }
+
+    /**
+     * Ajoute un bureau de vote restauré d'une sauvegarde, avec ses voix (déjà comptées
+     * dans celles des candidats), sans le tracer ni le journaliser.
+     */
+    synchronized void restaurerBureau(String nomBureau, int[] voix) {
+        BureauDeVote bureau = new BureauDeVote(this, bureaux.size(), nomBureau, voix);
+        bureaux.add(bureau);
+        indexBureaux.put(nomBureau, bureau);
+    }
+
+    /**
+     * Accès aux compteurs hors tas, pour les bureaux de vote.
+     */
+    ColonnesVoix colonnes() {
+        return colonnes;
+    }
+
+    /**
+     * Récupère la mémoire hors tas réservée aux compteurs de voix de la circonscription.
+     *
+     * @return Le nombre d'octets réservés.
+     */
+    public long getOctetsHorsTas() {
+        return colonnes.octets();
+    }
+
+    /**
+     * Marque comme terminée une circonscription restaurée d'une sauvegarde.
+     */
+    void restaurerCloture() {
+        barriere.fermer();
+        voixCloture = figerVoix();
         electionTerminee = true;
-        ajouterAction("Élection clôturée.");
+    }
+
+    /**
+     * Récupère un bureau de vote à partir de son nom.
+     *
+     * @param nomBureau Le nom du bureau de vote.
+     * @return Le bureau de vote correspondant.
+     * @throws IllegalArgumentException si le bureau n'existe pas.
+     */
+    public BureauDeVote getBureau(String nomBureau) {
+        BureauDeVote bureau = indexBureaux.get(nomBureau);
+        if (bureau == null) {
+            throw new IllegalArgumentException("Bureau de vote " + nomBureau + " non trouvé.");
+        }
+        return bureau;
+    }
+
+    /**
+     * Récupère un bureau de vote à partir de son identifiant.
+     *
+     * @param idBureau L'identifiant du bureau de vote.
+     * @return Le bureau de vote correspondant.
+     * @throws IllegalArgumentException si l'identifiant est inconnu.
+     */
+    public BureauDeVote getBureau(int idBureau) {
+        if (idBureau < 0 || idBureau >= bureaux.size()) {
+            throw new IllegalArgumentException("Bureau de vote d'identifiant " + idBureau + " non trouvé.");
+        }
+        return bureaux.get(idBureau);
+    }
+
+    /**
+     * Récupère le nombre de bureaux de vote de la circonscription.
+     *
+     * @return Le nombre de bureaux de vote.
+     */
+    public int getNombreBureaux() {
+        return bureaux.size();
+    }
+
+    /**
+     * Ajoute un observateur notifié de chaque variation de voix de la circonscription.
+     *
+     * @param observateur L'observateur à ajouter.
+     */
+    public synchronized void ajouterObservateur(ObservateurVoix observateur) {
+        ObservateurVoix[] nouveaux = Arrays.copyOf(observateurs, observateurs.length + 1);
+        nouveaux[observateurs.length] = observateur;
+        observateurs = nouveaux;
+    }
+
+    /**
+     * Retire un observateur ajouté par {@link #ajouterObservateur(ObservateurVoix)}.
+     * Une notification déjà en cours dans un autre thread peut encore lui parvenir.
+     *
+     * @param observateur L'observateur à retirer.
+     * @return true si l'observateur était présent.
+     */
+    public synchronized boolean retirerObservateur(ObservateurVoix observateur) {
+        for (int i = 0; i < observateurs.length; i++) {
+            if (observateurs[i] == observateur) {
+                ObservateurVoix[] nouveaux = new ObservateurVoix[observateurs.length - 1];
+                System.arraycopy(observateurs, 0, nouveaux, 0, i);
+                System.arraycopy(observateurs, i + 1, nouveaux, i, nouveaux.length - i);
+                observateurs = nouveaux;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Récupère le total des voix exprimées dans la circonscription.
+     *
+     * @return Le total des voix.
+     */
+    public long getTotalVoix() {
+        return totalVoix.sum();
+    }
+
+    /**
+     * Clôt l'élection. Les écritures de voix commencées avant l'appel sont attendues et comptées ;
+     * celles qui commencent pendant la tentative attendent son issue : refusées si l'élection
+     * est clôturée, admises sinon. Les lectures ne sont jamais bloquées.
+     * Les voix des candidats sont alors figées (voir {@link #getVoixCloture()}).
+     * Sans effet si l'élection est déjà clôturée.
+     *
+     * @throws IllegalStateException si le total des voix dépasse le nombre d'inscrits ;
+     *                               l'élection reste ouverte.
+     */
+    public synchronized void cloreElection() {
+        if (electionTerminee) {
+            return;
+        }
+        long debut = Metriques.actif ? System.nanoTime() : 0;
+        barriere.suspendre(); // Les écritures suivantes attendent l'issue de la tentative
+        try {
+            if (totalVoix.sum() > inscrits) {
+                throw new IllegalStateException("Le total des voix dépasse le nombre d'inscrits. Vérifiez les données.");
+            }
+            voixCloture = figerVoix();
+            electionTerminee = true;
+            barriere.fermer(); // Refuse les écritures en attente et les suivantes
+        } finally {
+            barriere.reprendre();
+        }
+        historique.ajouterEvenement(HistoriqueCompact.CLOTURE, 0, 0);
+        JournalElection j = journal;
+        if (j != null) {
+            j.cloture(idJournal);
+        }
+        if (debut != 0) {
+            Metriques.cloture(debut);
+        }
+    }
+
+    private long[] figerVoix() {
+        long[] voix = new long[candidats.size()];
+        for (int idCandidat = 0; idCandidat < voix.length; idCandidat++) {
+            voix[idCandidat] = candidats.get(idCandidat).getVoix();
+        }
+        return voix;
+    }
+
+    /**
+     * Récupère les voix des candidats figées à la clôture. Leur somme est égale au total
+     * des voix, et aucune voix n'a pu être ajoutée depuis.
+     *
+     * @return Une copie des voix, indexées par identifiant de candidat, ou null si l'élection n'est pas clôturée.
+     */
+    public long[] getVoixCloture() {
+        long[] voix = voixCloture;
+        return voix == null ? null : voix.clone();
+    }
+
+    /**
+     * Indique si l'élection est terminée dans la circonscription.
+     *
+     * @return true si l'élection a été clôturée.
+     */
+    public boolean isElectionTerminee() {
+        return electionTerminee;
+    }
+
+    /**
+     * Récupère le nom de la circonscription.
+     *
+     * @return Le nom de la circonscription.
+     */
+    public String getNom() {
+        return nom;
+    }
+
+    /**
+     * Récupère le nombre d'inscrits sur les listes électorales.
+     *
+     * @return Le nombre d'inscrits.
+     */
+    public int getInscrits() {
+        return inscrits;
+    }
+
+    /**
+     * Vérifie qu'une action libre d'un de ses candidats pourra être journalisée, avant de l'ajouter.
+     */
+    void verifierActionCandidat(String action) {
+        if (journal != null) {
+            JournalElection.verifierTexte(action);
+        }
+    }
+
+    /**
+     * Journalise une action libre ajoutée à l'historique d'un de ses candidats.
+     */
+    void journaliserActionCandidat(int idCandidat, String action) {
+        JournalElection j = journal;
+        if (j != null) {
+            j.actionCandidat(idJournal, idCandidat, action);
+        }
+    }
+
+    /**
+     * Indique si la circonscription est rattachée à un journal.
+     */
+    boolean estJournalisee() {
+        return journal != null;
+    }
+
+    /**
+     * Rattache la circonscription à un journal (voir {@link JournalElection#enregistrer(Circonscription)}).
+     */
+    void attacherJournal(JournalElection journal, int idJournal) {
+        this.idJournal = idJournal;
+        this.journal = journal; // Écriture volatile : publie aussi l'identifiant
     }
 
     public double tauxParticipation() {
-        int totalVoix = candidats.stream().mapToInt(Candidat::getVoix).sum();
-        return (double) totalVoix / inscrits * 100;
+        return (double) totalVoix.sum() / inscrits * 100;
     }
 
+    /**
+     * Récupère le(s) candidat(s) ayant obtenu le plus de voix (plusieurs en cas d'égalité).
+     *
+     * @return Une liste non modifiable des vainqueurs, tenue à jour sans recalcul.
+     */
     public List<Candidat> trouverVainqueur() {
-        int maxVoix = candidats.stream().mapToInt(Candidat::getVoix).max().orElse(0);
-        return candidats.stream()
-                .filter(c -> c.getVoix() == maxVoix)
-                .collect(Collectors.toList()); // Utilisation de Collectors.toList()
+        return tete;
     }
 
     @Override
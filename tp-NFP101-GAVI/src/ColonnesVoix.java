@@ -0,0 +1,153 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stockage hors tas des compteurs de voix d'une circonscription : voix de chaque candidat
+ * et vecteur de voix de chaque bureau de vote, rangés côte à côte dans des tranches de
+ * mémoire directe. Chaque compteur occupe un emplacement de 8 octets ; les emplacements
+ * d'un même vecteur sont contigus.
+ *
+ * Les tranches doublent de taille à chaque ajout (64, 128, 256... emplacements) et ne sont
+ * jamais déplacées : un emplacement attribué reste valide sans verrou. Les emplacements rendus
+ * (ancien vecteur d'un bureau agrandi, fin d'une tranche trop courte pour un vecteur) sont
+ * réutilisés par les attributions suivantes ; les emplacements libres voisins d'une même tranche
+ * sont fusionnés. La mémoire est libérée avec la circonscription, lorsque ses tranches
+ * ne sont plus référencées.
+ */
+final class ColonnesVoix {
+    private static final int TAILLE_PREMIERE_TRANCHE = 64; // En emplacements
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private volatile ByteBuffer[] tranches; // Tranche k : 64 << k emplacements
+    private int prochain; // Premier emplacement jamais attribué (protégé par le verrou de l'instance)
+    private final TreeMap<Integer, Integer> libres; // Emplacements rendus : début -> nombre (même verrou)
+
+    ColonnesVoix() {
+        this.tranches = new ByteBuffer[0];
+        this.libres = new TreeMap<>();
+    }
+
+    private static int tranche(int emplacement) {
+        return 31 - Integer.numberOfLeadingZeros(emplacement / TAILLE_PREMIERE_TRANCHE + 1);
+    }
+
+    private static int debutTranche(int tranche) {
+        return TAILLE_PREMIERE_TRANCHE * ((1 << tranche) - 1);
+    }
+
+    /**
+     * Attribue des emplacements contigus, initialisés à 0.
+     *
+     * @param nombre Le nombre d'emplacements.
+     * @return Le premier emplacement attribué.
+     */
+    synchronized int allouer(int nombre) {
+        for (Map.Entry<Integer, Integer> libre : libres.entrySet()) { // Premier emplacement rendu assez long
+            if (libre.getValue() >= nombre) {
+                int debut = libre.getKey();
+                int longueur = libre.getValue(); // Lue avant remove(), qui peut réutiliser l'entrée
+                libres.remove(debut);
+                if (longueur > nombre) {
+                    libres.put(debut + nombre, longueur - nombre);
+                }
+                return debut; // Remis à 0 par liberer()
+            }
+        }
+        int k = tranche(prochain);
+        while (prochain + nombre > debutTranche(k + 1)) { // Le vecteur ne tient pas dans la tranche
+            if (prochain < debutTranche(k + 1)) {
+                rendre(prochain, debutTranche(k + 1) - prochain); // Fin de tranche jamais écrite
+            }
+            k++;
+            prochain = debutTranche(k);
+        }
+        if (k >= tranches.length) {
+            ByteBuffer[] nouvelles = Arrays.copyOf(tranches, k + 1);
+            for (int t = tranches.length; t <= k; t++) {
+                nouvelles[t] = ByteBuffer.allocateDirect((TAILLE_PREMIERE_TRANCHE << t) * Long.BYTES);
+            }
+            tranches = nouvelles; // Publiée avant la remise de l'emplacement
+        }
+        int debut = prochain;
+        prochain += nombre;
+        return debut;
+    }
+
+    /**
+     * Rend des emplacements contigus attribués par {@link #allouer(int)}, pour qu'ils soient réutilisés.
+     * Ils ne doivent plus être lus ni écrits par leur ancien propriétaire.
+     *
+     * @param debut  Le premier emplacement rendu.
+     * @param nombre Le nombre d'emplacements rendus.
+     */
+    synchronized void liberer(int debut, int nombre) {
+        for (int emplacement = debut; emplacement < debut + nombre; emplacement++) {
+            ecrire(emplacement, 0);
+        }
+        rendre(debut, nombre);
+    }
+
+    /**
+     * Ajoute des emplacements à 0 aux emplacements libres, fusionnés avec leurs voisins de la même tranche.
+     */
+    private void rendre(int debut, int nombre) {
+        int fin = debut + nombre;
+        Integer suivant = libres.get(fin);
+        if (suivant != null && tranche(fin) == tranche(debut)) {
+            libres.remove(fin);
+            nombre += suivant;
+        }
+        Map.Entry<Integer, Integer> precedent = libres.lowerEntry(debut);
+        if (precedent != null && precedent.getKey() + precedent.getValue() == debut
+                && tranche(precedent.getKey()) == tranche(debut)) {
+            debut = precedent.getKey();
+            nombre += precedent.getValue();
+        }
+        libres.put(debut, nombre);
+    }
+
+    /**
+     * Ajoute une variation à un compteur, de façon atomique.
+     *
+     * @return La nouvelle valeur du compteur.
+     */
+    long ajouter(int emplacement, long variation) {
+        int k = tranche(emplacement);
+        return (long) LONGS.getAndAdd(tranches[k], (emplacement - debutTranche(k)) * Long.BYTES, variation)
+                + variation;
+    }
+
+    long lire(int emplacement) {
+        int k = tranche(emplacement);
+        return (long) LONGS.getVolatile(tranches[k], (emplacement - debutTranche(k)) * Long.BYTES);
+    }
+
+    void ecrire(int emplacement, long valeur) {
+        int k = tranche(emplacement);
+        LONGS.setVolatile(tranches[k], (emplacement - debutTranche(k)) * Long.BYTES, valeur);
+    }
+
+    /**
+     * @return La mémoire hors tas réservée, en octets.
+     */
+    long octets() {
+        return (long) debutTranche(tranches.length) * Long.BYTES;
+    }
+
+    /**
+     * @return La mémoire hors tas réservée mais libre (emplacements rendus), en octets.
+     */
+    synchronized long octetsLibres() {
+        long nombre = 0;
+        for (int n : libres.values()) {
+            nombre += n;
+        }
+        return nombre * Long.BYTES;
+    }
+}
@@ -0,0 +1,183 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Test de convergence de répliques en mémoire (voir {@link RepliqueVoix}).
+ * Chaque nœud possède sa propre circonscription, où plusieurs threads ajoutent des voix et où un
+ * bureau de vote déclare puis corrige ses résultats. Pendant l'ingestion, un thread d'échange
+ * transmet les deltas de chaque nœud aux autres, dans le désordre et parfois en double.
+ * Après un dernier échange, toutes les circonscriptions doivent avoir les mêmes voix,
+ * égales aux voix ingérées sur l'ensemble des nœuds, et les mêmes vainqueurs. Un nœud redémarré
+ * à vide doit enfin retrouver ces voix à partir de l'état complet d'un autre nœud.
+ *
+ * Usage : {@code java ConvergenceRepliques [nœuds] [ajouts par thread] [graine]}.
+ */
+public class ConvergenceRepliques {
+    private static final int THREADS_PAR_NOEUD = 4;
+    private static final int NB_CANDIDATS = 8;
+    private static final int PROBA_DOUBLON = 10; // Pourcentage des deltas remis deux fois
+
+    public static void main(String[] args) throws InterruptedException {
+        int nbNoeuds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int ajoutsParThread = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        long graine = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+        List<RepliqueVoix> repliques = new ArrayList<>(nbNoeuds);
+        List<BureauDeVote> bureaux = new ArrayList<>(nbNoeuds);
+        for (int n = 0; n < nbNoeuds; n++) {
+            Circonscription circonscription = new Circonscription("Réplication", Integer.MAX_VALUE);
+            for (int i = 0; i < NB_CANDIDATS; i++) {
+                circonscription.ajouterCandidat(new Candidat("NOM" + i, "Prenom" + i, null));
+            }
+            bureaux.add(circonscription.ajouterBureau("Bureau du nœud " + n));
+            repliques.add(new RepliqueVoix(circonscription, "nœud-" + n));
+        }
+
+        // Ingestion locale sur chaque nœud ; voix attendues cumulées par thread
+        long[][] attendues = new long[nbNoeuds * THREADS_PAR_NOEUD][NB_CANDIDATS];
+        SplittableRandom racine = new SplittableRandom(graine);
+        CountDownLatch depart = new CountDownLatch(1);
+        ExecutorService executeur = Executors.newFixedThreadPool(nbNoeuds * THREADS_PAR_NOEUD);
+        for (int t = 0; t < nbNoeuds * THREADS_PAR_NOEUD; t++) {
+            Circonscription circonscription = repliques.get(t / THREADS_PAR_NOEUD).getCirconscription();
+            BureauDeVote bureau = t % THREADS_PAR_NOEUD == 0 ? bureaux.get(t / THREADS_PAR_NOEUD) : null;
+            long[] attenduesThread = attendues[t];
+            SplittableRandom aleatoire = racine.split();
+            executeur.execute(() -> {
+                try {
+                    depart.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < ajoutsParThread; i++) {
+                    int idCandidat = aleatoire.nextInt(NB_CANDIDATS);
+                    if (bureau != null && i % 100 == 0) {
+                        // Le bureau du nœud corrige un candidat : variation négative une fois sur deux
+                        bureau.corriger(idCandidat, aleatoire.nextInt(1_000));
+                    } else {
+                        int voix = 1 + aleatoire.nextInt(5);
+                        circonscription.ajouterVoix(idCandidat, voix);
+                        attenduesThread[idCandidat] += voix;
+                    }
+                }
+            });
+        }
+
+        // Échanges pendant l'ingestion : chaque delta est remis à tous les autres nœuds, dans le désordre
+        AtomicBoolean fini = new AtomicBoolean();
+        long[] echanges = new long[2]; // Deltas remis, octets transmis
+        Thread echangeur = new Thread(() -> {
+            SplittableRandom aleatoire = new SplittableRandom(graine + 1);
+            List<int[]> enTransit = new ArrayList<>(); // (delta, destinataire) en attente de remise
+            List<byte[]> deltas = new ArrayList<>();
+            while (!fini.get() || !enTransit.isEmpty()) {
+                if (!fini.get()) {
+                    int source = aleatoire.nextInt(nbNoeuds);
+                    deltas.add(repliques.get(source).extraireDelta());
+                    for (int cible = 0; cible < nbNoeuds; cible++) {
+                        if (cible != source) {
+                            enTransit.add(new int[]{deltas.size() - 1, cible});
+                        }
+                    }
+                }
+                // Remise d'une partie des messages en attente, dans un ordre quelconque
+                for (int k = fini.get() ? enTransit.size() : aleatoire.nextInt(2 * nbNoeuds); k > 0; k--) {
+                    int[] message = enTransit.remove(aleatoire.nextInt(enTransit.size()));
+                    byte[] delta = deltas.get(message[0]);
+                    for (int remises = aleatoire.nextInt(100) < PROBA_DOUBLON ? 2 : 1; remises > 0; remises--) {
+                        repliques.get(message[1]).fusionner(delta);
+                        echanges[0]++;
+                        echanges[1] += delta.length;
+                    }
+                    if (enTransit.isEmpty()) {
+                        break;
+                    }
+                }
+            }
+        }, "echanges");
+
+        long debut = System.nanoTime();
+        echangeur.start();
+        depart.countDown();
+        executeur.shutdown();
+        if (!executeur.awaitTermination(5, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Le test de convergence n'a pas terminé à temps.");
+        }
+        fini.set(true);
+        echangeur.join();
+
+        // Dernier échange : chaque delta restant est remis à tous les autres nœuds, jusqu'à stabilité
+        long debutFusion = System.nanoTime();
+        long fusionsFinales = 0;
+        boolean stable;
+        do {
+            stable = true;
+            for (RepliqueVoix source : repliques) {
+                byte[] delta = source.extraireDelta();
+                for (RepliqueVoix cible : repliques) {
+                    if (cible != source && cible.fusionner(delta) > 0) {
+                        stable = false;
+                    }
+                    fusionsFinales++;
+                }
+            }
+        } while (!stable);
+        long dureeFusion = System.nanoTime() - debutFusion;
+        long duree = System.nanoTime() - debut;
+
+        // Redémarrage à vide d'un nœud, qui retrouve toutes les voix, les siennes comprises
+        Circonscription vierge = new Circonscription("Réplication", Integer.MAX_VALUE);
+        for (int i = 0; i < NB_CANDIDATS; i++) {
+            vierge.ajouterCandidat(new Candidat("NOM" + i, "Prenom" + i, null));
+        }
+        byte[] etat = repliques.get(nbNoeuds - 1).exporterEtat();
+        RepliqueVoix redemarree = new RepliqueVoix(vierge, repliques.get(0).getIdNoeud());
+        redemarree.fusionner(etat);
+        repliques.add(redemarree);
+
+        // Vérification : mêmes voix partout, égales aux voix ingérées, et mêmes vainqueurs
+        boolean correct = true;
+        Circonscription reference = repliques.get(0).getCirconscription();
+        for (int c = 0; c < NB_CANDIDATS; c++) {
+            long attendu = 0;
+            for (long[] attenduesThread : attendues) {
+                attendu += attenduesThread[c];
+            }
+            for (BureauDeVote bureau : bureaux) {
+                attendu += bureau.getVoix(c);
+            }
+            for (RepliqueVoix replique : repliques) {
+                long voix = replique.getCirconscription().getCandidat(c).getVoix();
+                if (voix != attendu || replique.getValeur(c) != attendu) {
+                    System.err.println(replique.getIdNoeud() + ", candidat " + c + " : " + voix
+                            + " voix (valeur répliquée " + replique.getValeur(c) + ") au lieu de " + attendu);
+                    correct = false;
+                }
+            }
+        }
+        for (RepliqueVoix replique : repliques) {
+            if (!replique.getCirconscription().trouverVainqueur().toString()
+                    .equals(reference.trouverVainqueur().toString())) {
+                System.err.println(replique.getIdNoeud() + " : vainqueur(s) différent(s) "
+                        + replique.getCirconscription().trouverVainqueur());
+                correct = false;
+            }
+        }
+
+        System.out.printf("%d nœuds, %d deltas remis pendant l'ingestion (%d octets), %d fusions finales en %d µs,"
+                        + " %d ms au total, état complet de %d octets%n", nbNoeuds, echanges[0], echanges[1],
+                fusionsFinales, TimeUnit.NANOSECONDS.toMicros(dureeFusion), TimeUnit.NANOSECONDS.toMillis(duree),
+                etat.length);
+        if (!correct) {
+            System.exit(1);
+        }
+        System.out.println("Répliques convergentes.");
+    }
+}
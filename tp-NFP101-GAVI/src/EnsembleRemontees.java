@@ -0,0 +1,153 @@
+import java.util.function.LongConsumer;
+
+/**
+ * Ensemble des identifiants de remontées déjà appliquées dans une circonscription.
+ * Les identifiants sont rangés dans des tables de {@code long} à adressage ouvert
+ * (sondage linéaire), sans objet par élément : entre 11 et 21 octets par identifiant,
+ * les tables étant remplies de 37,5 à 75 % (voir {@link Circonscription#getOctetsRemontees()}).
+ * L'ensemble est découpé en segments verrouillés séparément, si bien que des bureaux
+ * de vote différents ne se bloquent pratiquement jamais.
+ */
+final class EnsembleRemontees {
+    private static final int NB_SEGMENTS = 16; // Puissance de deux
+    private static final int CAPACITE_INITIALE = 64; // Par segment, puissance de deux
+    private static final long VIDE = 0; // Case libre ; l'identifiant 0 est compté à part
+
+    private final Segment[] segments;
+
+    /**
+     * Table à adressage ouvert d'un segment, agrandie au-delà de 75 % de remplissage.
+     */
+    private static final class Segment {
+        private long[] table;
+        private int taille; // Identifiants présents dans la table
+        private boolean contientZero;
+
+        Segment() {
+            this.table = new long[CAPACITE_INITIALE];
+        }
+
+        synchronized boolean ajouter(long id, long hachage) {
+            if (id == VIDE) {
+                boolean nouveau = !contientZero;
+                contientZero = true;
+                return nouveau;
+            }
+            if (!inserer(table, id, hachage)) {
+                return false;
+            }
+            taille++;
+            if (taille * 4L > table.length * 3L) {
+                agrandir();
+            }
+            return true;
+        }
+
+        private static boolean inserer(long[] table, long id, long hachage) {
+            int masque = table.length - 1;
+            int i = (int) hachage & masque;
+            while (table[i] != VIDE) {
+                if (table[i] == id) {
+                    return false;
+                }
+                i = (i + 1) & masque;
+            }
+            table[i] = id;
+            return true;
+        }
+
+        private void agrandir() {
+            long[] nouvelle = new long[table.length * 2];
+            for (long id : table) {
+                if (id != VIDE) {
+                    inserer(nouvelle, id, hacher(id));
+                }
+            }
+            table = nouvelle;
+        }
+
+        synchronized int taille() {
+            return taille + (contientZero ? 1 : 0);
+        }
+
+        synchronized long octets() {
+            return (long) table.length * Long.BYTES;
+        }
+
+        synchronized void pourChaque(LongConsumer action) {
+            if (contientZero) {
+                action.accept(VIDE);
+            }
+            for (long id : table) {
+                if (id != VIDE) {
+                    action.accept(id);
+                }
+            }
+        }
+    }
+
+    EnsembleRemontees() {
+        this.segments = new Segment[NB_SEGMENTS];
+        for (int i = 0; i < NB_SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Brassage des bits de l'identifiant (finaliseur de MurmurHash3), pour que des
+     * identifiants consécutifs se répartissent entre segments et cases.
+     */
+    private static long hacher(long id) {
+        id ^= id >>> 33;
+        id *= 0xff51afd7ed558ccdL;
+        id ^= id >>> 33;
+        id *= 0xc4ceb9fe1a85ec53L;
+        return id ^ (id >>> 33);
+    }
+
+    private Segment segment(long hachage) {
+        return segments[(int) (hachage >>> 60) & (NB_SEGMENTS - 1)];
+    }
+
+    /**
+     * Ajoute un identifiant s'il est absent.
+     *
+     * @param id L'identifiant de la remontée.
+     * @return true si l'identifiant était absent, false s'il avait déjà été ajouté.
+     */
+    boolean ajouter(long id) {
+        long hachage = hacher(id);
+        return segment(hachage).ajouter(id, hachage);
+    }
+
+    /**
+     * @return Le nombre d'identifiants présents.
+     */
+    long taille() {
+        long taille = 0;
+        for (Segment segment : segments) {
+            taille += segment.taille();
+        }
+        return taille;
+    }
+
+    /**
+     * @return La mémoire occupée par les tables, en octets.
+     */
+    long octets() {
+        long octets = 0;
+        for (Segment segment : segments) {
+            octets += segment.octets();
+        }
+        return octets;
+    }
+
+    /**
+     * Parcourt les identifiants présents, segment par segment, dans un ordre quelconque.
+     */
+    void pourChaque(LongConsumer action) {
+        for (Segment segment : segments) {
+            segment.pourChaque(action);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test de l'export en flux (voir {@link ExportResultats}) sur un grand nombre de circonscriptions,
+ * dont les historiques sont en partie archivés et dont la moitié est clôturée.
+ * Chaque format est exporté vers un canal qui compte les octets et les lignes, puis les exports
+ * binaires sont relus depuis un fichier : voix, totaux et nombres d'événements doivent correspondre
+ * à l'état des circonscriptions.
+ *
+ * Usage : {@code java ExportMassif [circonscriptions] [voix par circonscription] [threads]}.
+ */
+public class ExportMassif {
+    private static final int NB_CANDIDATS = 10;
+    private static final int EVENEMENTS_EN_MEMOIRE = 1_000; // Au-delà, l'historique est archivé
+    private static final String[] AFFILIATIONS = {"Parti A", "Parti \"B\"", "Parti C; D", null};
+
+    public static void main(String[] args) throws IOException {
+        int nbCirconscriptions = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int voixParCirconscription = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        int nbThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        Path repertoire = Files.createTempDirectory("export-massif");
+        try (ArchiveHistorique archive = ArchiveHistorique.ouvrir(repertoire)) {
+            List<Circonscription> circonscriptions = new ArrayList<>(nbCirconscriptions);
+            SplittableRandom aleatoire = new SplittableRandom(42);
+            long evenements = 0;
+            for (int c = 0; c < nbCirconscriptions; c++) {
+                Circonscription circonscription = new Circonscription("Circonscription n°" + (c + 1), 1_000_000);
+                circonscription.archiverHistoriques(archive, EVENEMENTS_EN_MEMOIRE);
+                for (int i = 0; i < NB_CANDIDATS; i++) {
+                    circonscription.ajouterCandidat(new Candidat("NOM" + i, "Prénom" + i, AFFILIATIONS[i % AFFILIATIONS.length]));
+                }
+                circonscription.ajouterAction("Ouverture; observateur \"indépendant\" présent");
+                for (int v = 0; v < voixParCirconscription; v++) {
+                    circonscription.ajouterVoix(aleatoire.nextInt(NB_CANDIDATS), 1 + aleatoire.nextInt(3));
+                }
+                if (c % 2 == 0) {
+                    circonscription.cloreElection();
+                }
+                evenements += circonscription.historique().taille();
+                circonscriptions.add(circonscription);
+            }
+            long candidats = (long) nbCirconscriptions * NB_CANDIDATS;
+            System.out.printf("%d circonscriptions, %d événements, %d threads d'export%n",
+                    nbCirconscriptions, evenements, nbThreads);
+
+            boolean correct = true;
+            for (ExportResultats.Format format : ExportResultats.Format.values()) {
+                ExportResultats export = new ExportResultats(format, nbThreads);
+                long lignesResultats = format == ExportResultats.Format.CSV ? candidats + 1 : nbCirconscriptions;
+                long lignesHistoriques = format == ExportResultats.Format.CSV ? evenements + 1 : evenements;
+                for (boolean historiques : new boolean[]{false, true}) {
+                    Comptage comptage = new Comptage();
+                    long debut = System.nanoTime();
+                    if (historiques) {
+                        export.exporterHistoriques(circonscriptions, comptage);
+                    } else {
+                        export.exporterResultats(circonscriptions, comptage);
+                    }
+                    long duree = System.nanoTime() - debut;
+                    System.out.printf("%-12s %-12s %,14d octets en %5d ms (%,.0f Mo/s)%n", format,
+                            historiques ? "historiques" : "résultats", comptage.octets,
+                            TimeUnit.NANOSECONDS.toMillis(duree), comptage.octets * 1e3 / duree);
+                    if (format != ExportResultats.Format.BINAIRE) {
+                        long attendues = historiques ? lignesHistoriques : lignesResultats;
+                        if (comptage.lignes != attendues) {
+                            System.err.println(format + " : " + comptage.lignes + " lignes au lieu de " + attendues);
+                            correct = false;
+                        }
+                        // Même nombre de lignes vers un Writer
+                        Comptage caracteres = new Comptage();
+                        if (historiques) {
+                            export.exporterHistoriques(circonscriptions, caracteres.writer());
+                        } else {
+                            export.exporterResultats(circonscriptions, caracteres.writer());
+                        }
+                        if (caracteres.lignes != attendues) {
+                            System.err.println(format + " (Writer) : " + caracteres.lignes + " lignes au lieu de " + attendues);
+                            correct = false;
+                        }
+                    }
+                }
+            }
+
+            // Relecture des exports binaires
+            ExportResultats binaire = new ExportResultats(ExportResultats.Format.BINAIRE, nbThreads);
+            Path fichier = repertoire.resolve("export.bin");
+            try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                binaire.exporterResultats(circonscriptions, canal);
+            }
+            correct &= verifierResultats(lire(fichier), circonscriptions);
+            try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                binaire.exporterHistoriques(circonscriptions, canal);
+            }
+            correct &= verifierHistoriques(lire(fichier), circonscriptions);
+            Files.delete(fichier);
+
+            if (!correct) {
+                System.exit(1);
+            }
+            System.out.println("Exports cohérents.");
+        } finally {
+            Files.deleteIfExists(repertoire);
+        }
+    }
+
+    private static ByteBuffer lire(Path fichier) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            MappedByteBuffer tampon = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            if (tampon.getInt() != 0x4558504F || tampon.get() != 1) {
+                throw new IllegalStateException("Export binaire mal formé : en-tête inattendu.");
+            }
+            return tampon;
+        }
+    }
+
+    private static boolean verifierResultats(ByteBuffer tampon, List<Circonscription> circonscriptions) {
+        boolean correct = tampon.get() == 1 && entier(tampon) == circonscriptions.size();
+        for (Circonscription circonscription : circonscriptions) {
+            correct &= circonscription.getNom().equals(chaine(tampon));
+            correct &= entier(tampon) == circonscription.getInscrits();
+            correct &= (tampon.get() == 1) == circonscription.isElectionTerminee();
+            long nbCandidats = entier(tampon);
+            correct &= nbCandidats == circonscription.getNombreCandidats();
+            long total = 0;
+            for (int i = 0; i < nbCandidats; i++) {
+                Candidat candidat = circonscription.getCandidat(i);
+                correct &= candidat.getNom().equals(chaine(tampon)) && candidat.getPrenom().equals(chaine(tampon));
+                String affiliation = chaine(tampon);
+                correct &= affiliation == null ? candidat.getAffiliation() == null : affiliation.equals(candidat.getAffiliation());
+                long voix = entier(tampon);
+                correct &= voix == candidat.getVoix();
+                total += voix;
+            }
+            correct &= total == circonscription.getTotalVoix();
+            if (!correct) {
+                System.err.println("Résultats binaires incohérents pour " + circonscription.getNom());
+                return false;
+            }
+        }
+        return !tampon.hasRemaining();
+    }
+
+    private static boolean verifierHistoriques(ByteBuffer tampon, List<Circonscription> circonscriptions) {
+        boolean correct = tampon.get() == 2 && entier(tampon) == circonscriptions.size();
+        for (Circonscription circonscription : circonscriptions) {
+            correct &= circonscription.getNom().equals(chaine(tampon));
+            long nbEvenements = entier(tampon);
+            correct &= nbEvenements == circonscription.historique().taille();
+            long horodatage = 0;
+            long total = 0;
+            for (long e = 0; e < nbEvenements; e++) {
+                long suivant = horodatage + dezigzag(entier(tampon));
+                correct &= suivant >= horodatage;
+                horodatage = suivant;
+                byte type = tampon.get();
+                entier(tampon); // Candidat
+                total += dezigzag(entier(tampon));
+                if (type == HistoriqueCompact.LIBRE) {
+                    chaine(tampon);
+                }
+            }
+            correct &= total == circonscription.getTotalVoix();
+            if (!correct) {
+                System.err.println("Historique binaire incohérent pour " + circonscription.getNom());
+                return false;
+            }
+        }
+        return !tampon.hasRemaining();
+    }
+
+    private static long entier(ByteBuffer tampon) {
+        long valeur = 0;
+        for (int decalage = 0; ; decalage += 7) {
+            byte octet = tampon.get();
+            valeur |= (long) (octet & 0x7F) << decalage;
+            if (octet >= 0) {
+                return valeur;
+            }
+        }
+    }
+
+    private static long dezigzag(long valeur) {
+        return (valeur >>> 1) ^ -(valeur & 1);
+    }
+
+    private static String chaine(ByteBuffer tampon) {
+        int longueur = (int) entier(tampon) - 1;
+        if (longueur < 0) {
+            return null;
+        }
+        byte[] octets = new byte[longueur];
+        tampon.get(octets);
+        return new String(octets, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Destination qui compte les octets (ou caractères) et les fins de ligne sans rien conserver.
+     */
+    private static final class Comptage implements WritableByteChannel {
+        long octets;
+        long lignes;
+
+        @Override
+        public int write(ByteBuffer source) {
+            int n = source.remaining();
+            for (int i = source.position(); i < source.limit(); i++) {
+                if (source.get(i) == '\n') {
+                    lignes++;
+                }
+            }
+            source.position(source.limit());
+            octets += n;
+            return n;
+        }
+
+        Writer writer() {
+            return new Writer() {
+                @Override
+                public void write(char[] caracteres, int debut, int longueur) {
+                    for (int i = debut; i < debut + longueur; i++) {
+                        if (caracteres[i] == '\n') {
+                            lignes++;
+                        }
+                    }
+                    octets += longueur;
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,618 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Export en flux des résultats et des historiques de circonscriptions, en CSV, en lignes JSON
+ * ou dans un format binaire compact, vers un {@link WritableByteChannel} ou un {@link Writer}.
+ *
+ * Les circonscriptions sont rédigées en parallèle par les threads de l'export, en tranches
+ * de taille fixe que le thread appelant écrit dans la destination au fur et à mesure, dans l'ordre
+ * de la liste. Au plus {@code 2 × threads} circonscriptions sont en cours à la fois, chacune avec
+ * au plus {@value #TRANCHES_EN_ATTENTE} tranches en attente d'écriture, et les tranches écrites
+ * sont réutilisées : la mémoire occupée ne dépend ni du nombre de circonscriptions, ni de la
+ * longueur de leurs historiques. Un historique est lu par un curseur sur ses événements, qui ne
+ * charge qu'un segment archivé à la fois, sans copier la liste de ses actions.
+ *
+ * Comme la sauvegarde ({@link SauvegardeElection}), l'export lit l'état courant sans bloquer
+ * l'ingestion : les voix d'une circonscription clôturée sont celles figées à la clôture, celles
+ * d'une circonscription ouverte sont lues candidat par candidat et le total exporté est leur somme ;
+ * les événements ajoutés pendant l'export d'un historique n'y figurent pas.
+ *
+ * Formats (texte en UTF-8 vers un canal) :
+ * <ul>
+ *     <li>CSV, séparateur {@code ;} comme à l'import ({@link Circonscription#importerVoix}) : une ligne
+ *     d'en-tête, puis une ligne par candidat ({@code circonscription;inscrits;total;participation;
+ *     cloturee;id;nom;prenom;affiliation;voix;vainqueur}) ou par événement ({@code circonscription;
+ *     position;horodatage;type;id;voix;cumul;action}) ;</li>
+ *     <li>lignes JSON : un objet par circonscription, avec le tableau de ses candidats, ou par événement ;</li>
+ *     <li>binaire, vers un canal seulement : [signature "EXPO"][version][contenu][nombre de
+ *     circonscriptions], puis pour chaque circonscription [nom][inscrits][clôturée][nombre de candidats]
+ *     {[nom][prénom][affiliation][voix]}, ou [nom][nombre d'événements]{[écart d'horodatage][type]
+ *     [candidat][voix][texte des actions libres]}. Les entiers sont de taille variable (7 bits par octet,
+ *     en zigzag pour les écarts d'horodatage et les voix des événements), une chaîne est écrite
+ *     [longueur + 1, ou 0 si absente][UTF-8].</li>
+ * </ul>
+ */
+public final class ExportResultats {
+    /** Format d'export. */
+    public enum Format {
+        CSV,
+        JSON_LIGNES,
+        BINAIRE
+    }
+
+    private static final int TAILLE_TRANCHE = 64 * 1024; // Octets (vers un canal) ou caractères (vers un Writer)
+    private static final int TRANCHES_EN_ATTENTE = 4; // Tranches rédigées et non écrites, par circonscription
+    private static final int SEUIL_TEXTE = 8 * 1024; // Caractères accumulés avant d'être versés dans la tranche
+    private static final int SIGNATURE = 0x4558504F; // "EXPO"
+    private static final byte VERSION = 1;
+    private static final byte RESULTATS = 1;
+    private static final byte HISTORIQUES = 2;
+    private static final Tranche FIN = new Tranche(null, null); // Fin de la rédaction d'une circonscription
+
+    private final Format format;
+    private final int nbThreads;
+    private final AtomicInteger numeroThread = new AtomicInteger();
+
+    /**
+     * @param format    Le format d'export.
+     * @param nbThreads Le nombre de threads qui rédigent les circonscriptions.
+     */
+    public ExportResultats(Format format, int nbThreads) {
+        if (nbThreads <= 0) {
+            throw new IllegalArgumentException("Le nombre de threads doit être positif.");
+        }
+        this.format = Objects.requireNonNull(format);
+        this.nbThreads = nbThreads;
+    }
+
+    /**
+     * Exporte les résultats des circonscriptions vers un canal.
+     *
+     * @param circonscriptions Les circonscriptions, dans l'ordre d'export.
+     * @param canal            Le canal de destination, bloquant ; il n'est pas fermé.
+     * @throws IOException en cas d'erreur d'écriture.
+     */
+    public void exporterResultats(List<Circonscription> circonscriptions, WritableByteChannel canal) throws IOException {
+        new Export(circonscriptions, false, Objects.requireNonNull(canal), null).executer();
+    }
+
+    /**
+     * Exporte les résultats des circonscriptions vers un flux de caractères (formats texte seulement).
+     *
+     * @param circonscriptions Les circonscriptions, dans l'ordre d'export.
+     * @param sortie           Le flux de destination ; il est vidé à la fin, mais pas fermé.
+     * @throws IOException en cas d'erreur d'écriture.
+     */
+    public void exporterResultats(List<Circonscription> circonscriptions, Writer sortie) throws IOException {
+        new Export(circonscriptions, false, null, verifierTexte(sortie)).executer();
+    }
+
+    /**
+     * Exporte les historiques des circonscriptions vers un canal.
+     *
+     * @param circonscriptions Les circonscriptions, dans l'ordre d'export.
+     * @param canal            Le canal de destination, bloquant ; il n'est pas fermé.
+     * @throws IOException en cas d'erreur d'écriture.
+     */
+    public void exporterHistoriques(List<Circonscription> circonscriptions, WritableByteChannel canal) throws IOException {
+        new Export(circonscriptions, true, Objects.requireNonNull(canal), null).executer();
+    }
+
+    /**
+     * Exporte les historiques des circonscriptions vers un flux de caractères (formats texte seulement).
+     *
+     * @param circonscriptions Les circonscriptions, dans l'ordre d'export.
+     * @param sortie           Le flux de destination ; il est vidé à la fin, mais pas fermé.
+     * @throws IOException en cas d'erreur d'écriture.
+     */
+    public void exporterHistoriques(List<Circonscription> circonscriptions, Writer sortie) throws IOException {
+        new Export(circonscriptions, true, null, verifierTexte(sortie)).executer();
+    }
+
+    private Writer verifierTexte(Writer sortie) {
+        if (format == Format.BINAIRE) {
+            throw new IllegalArgumentException("Le format binaire ne peut être écrit que dans un canal.");
+        }
+        return Objects.requireNonNull(sortie);
+    }
+
+    /**
+     * Tranche de l'export : des octets vers un canal, ou des caractères vers un Writer.
+     */
+    private static final class Tranche {
+        final ByteBuffer octets;
+        final char[] caracteres;
+        int longueur; // Caractères utiles
+
+        Tranche(ByteBuffer octets, char[] caracteres) {
+            this.octets = octets;
+            this.caracteres = caracteres;
+        }
+
+        boolean estVide() {
+            return octets != null ? octets.position() == 0 : longueur == 0;
+        }
+    }
+
+    /**
+     * Un appel d'export : distribue les circonscriptions aux threads et écrit leurs tranches dans l'ordre.
+     */
+    private final class Export {
+        private final List<Circonscription> circonscriptions;
+        private final boolean historiques;
+        private final WritableByteChannel canal;
+        private final Writer sortie;
+        private final ConcurrentLinkedQueue<Tranche> libres = new ConcurrentLinkedQueue<>(); // Tranches réutilisables
+
+        Export(List<Circonscription> circonscriptions, boolean historiques, WritableByteChannel canal, Writer sortie) {
+            this.circonscriptions = List.copyOf(circonscriptions);
+            this.historiques = historiques;
+            this.canal = canal;
+            this.sortie = sortie;
+        }
+
+        void executer() throws IOException {
+            int n = circonscriptions.size();
+            int fenetre = 2 * nbThreads; // Circonscriptions en cours de rédaction ou d'écriture
+            ExecutorService executeur = Executors.newFixedThreadPool(nbThreads, tache -> {
+                Thread thread = new Thread(tache, "export-" + numeroThread.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            ArrayDeque<Redaction> enCours = new ArrayDeque<>(fenetre);
+            try {
+                Redaction entete = new Redaction(null); // Rédigée ici : tient dans une tranche
+                entete.run();
+                ecrire(entete);
+                int suivante = 0;
+                for (int i = 0; i < n; i++) {
+                    // Les rédactions démarrent dans l'ordre : celle à écrire ne peut pas attendre les suivantes
+                    while (suivante < n && suivante < i + fenetre) {
+                        Redaction redaction = new Redaction(circonscriptions.get(suivante++));
+                        enCours.add(redaction);
+                        executeur.execute(redaction);
+                    }
+                    ecrire(enCours.remove());
+                }
+                if (sortie != null) {
+                    sortie.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Export interrompu.");
+            } finally {
+                executeur.shutdownNow(); // Débloque les rédactions en attente si l'export a échoué
+            }
+        }
+
+        /**
+         * Écrit les tranches d'une circonscription à mesure qu'elles sont rédigées.
+         */
+        private void ecrire(Redaction redaction) throws IOException, InterruptedException {
+            for (Tranche tranche = redaction.tranches.take(); tranche != FIN; tranche = redaction.tranches.take()) {
+                if (tranche.octets != null) {
+                    tranche.octets.flip();
+                    while (tranche.octets.hasRemaining()) {
+                        canal.write(tranche.octets);
+                    }
+                    tranche.octets.clear();
+                } else {
+                    sortie.write(tranche.caracteres, 0, tranche.longueur);
+                    tranche.longueur = 0;
+                }
+                libres.add(tranche);
+            }
+            if (redaction.echec instanceof Error) {
+                throw (Error) redaction.echec;
+            } else if (redaction.echec != null) {
+                throw (RuntimeException) redaction.echec;
+            }
+        }
+
+        /**
+         * Rédaction d'une circonscription (ou de l'en-tête si elle est null) en tranches.
+         */
+        private final class Redaction implements Runnable {
+            final ArrayBlockingQueue<Tranche> tranches = new ArrayBlockingQueue<>(TRANCHES_EN_ATTENTE);
+            volatile Throwable echec;
+            private final Circonscription circonscription;
+            private final StringBuilder texte = new StringBuilder(); // Texte pas encore versé dans la tranche
+            private CharsetEncoder encodeur; // Vers un canal seulement
+            private Tranche tranche; // Tranche en cours de remplissage
+            private long secondeCourante = Long.MIN_VALUE;
+            private String prefixe; // Date et heure de la seconde courante, au format ISO-8601
+
+            Redaction(Circonscription circonscription) {
+                this.circonscription = circonscription;
+            }
+
+            @Override
+            public void run() {
+                try {
+                    if (circonscription == null) {
+                        rendreEntete();
+                    } else if (historiques) {
+                        rendreHistorique(circonscription.historique());
+                    } else {
+                        rendreResultats();
+                    }
+                    verser();
+                    if (tranche != null && !tranche.estVide()) {
+                        emettre();
+                    }
+                } catch (InterruptedException e) {
+                    return; // Export abandonné : plus personne ne lit les tranches
+                } catch (RuntimeException | Error e) {
+                    echec = e;
+                }
+                try {
+                    tranches.put(FIN);
+                } catch (InterruptedException e) {
+                    // Export abandonné
+                }
+            }
+
+            private void rendreEntete() throws InterruptedException {
+                switch (format) {
+                    case CSV:
+                        texte.append(historiques ? "circonscription;position;horodatage;type;id;voix;cumul;action\n"
+                                : "circonscription;inscrits;total;participation;cloturee;id;nom;prenom;affiliation;voix;vainqueur\n");
+                        break;
+                    case BINAIRE:
+                        reserver(6);
+                        tranche.octets.putInt(SIGNATURE).put(VERSION).put(historiques ? HISTORIQUES : RESULTATS);
+                        entier(circonscriptions.size());
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            private void rendreResultats() throws InterruptedException {
+                long[] voix = circonscription.getVoixCloture();
+                boolean cloturee = voix != null;
+                if (voix == null) {
+                    voix = new long[circonscription.getNombreCandidats()];
+                    for (int i = 0; i < voix.length; i++) {
+                        voix[i] = circonscription.getCandidat(i).getVoix();
+                    }
+                }
+                long total = 0;
+                long max = 0;
+                for (long v : voix) {
+                    total += v;
+                    max = Math.max(max, v);
+                }
+                int inscrits = circonscription.getInscrits();
+                String nom = circonscription.getNom();
+                if (format == Format.BINAIRE) {
+                    chaine(nom);
+                    entier(inscrits);
+                    reserver(1);
+                    tranche.octets.put((byte) (cloturee ? 1 : 0));
+                    entier(voix.length);
+                }
+                if (format == Format.JSON_LIGNES) {
+                    texte.append("{\"circonscription\":");
+                    json(nom);
+                    texte.append(",\"inscrits\":").append(inscrits).append(",\"total\":").append(total)
+                            .append(",\"participation\":");
+                    participation(total, inscrits);
+                    texte.append(",\"cloturee\":").append(cloturee).append(",\"candidats\":[");
+                }
+                for (int i = 0; i < voix.length; i++) {
+                    Candidat candidat = circonscription.getCandidat(i);
+                    boolean vainqueur = voix[i] == max; // Comme trouverVainqueur(), égalités comprises (même à 0)
+                    switch (format) {
+                        case CSV:
+                            csv(nom);
+                            texte.append(';').append(inscrits).append(';').append(total).append(';');
+                            participation(total, inscrits);
+                            texte.append(';').append(cloturee).append(';').append(i).append(';');
+                            csv(candidat.getNom());
+                            texte.append(';');
+                            csv(candidat.getPrenom());
+                            texte.append(';');
+                            csv(candidat.getAffiliation());
+                            texte.append(';').append(voix[i]).append(';').append(vainqueur).append('\n');
+                            break;
+                        case JSON_LIGNES:
+                            texte.append(i == 0 ? "{\"id\":" : ",{\"id\":").append(i).append(",\"nom\":");
+                            json(candidat.getNom());
+                            texte.append(",\"prenom\":");
+                            json(candidat.getPrenom());
+                            texte.append(",\"affiliation\":");
+                            json(candidat.getAffiliation());
+                            texte.append(",\"voix\":").append(voix[i]).append(",\"vainqueur\":").append(vainqueur)
+                                    .append('}');
+                            break;
+                        default:
+                            chaine(candidat.getNom());
+                            chaine(candidat.getPrenom());
+                            chaine(candidat.getAffiliation());
+                            entier(voix[i]);
+                            break;
+                    }
+                    verserSiNecessaire();
+                }
+                if (format == Format.JSON_LIGNES) {
+                    texte.append("]}\n");
+                }
+            }
+
+            private void rendreHistorique(HistoriqueCompact historique) throws InterruptedException {
+                int fin = historique.taille(); // Les événements ajoutés pendant l'export n'y figurent pas
+                HistoriqueCompact.Lecteur lecteur = historique.lecteur(0);
+                String nom = circonscription.getNom();
+                if (format == Format.BINAIRE) {
+                    chaine(nom);
+                    entier(fin);
+                }
+                long horodatagePrecedent = 0;
+                while (lecteur.position < fin) {
+                    lecteur.suivant();
+                    switch (format) {
+                        case CSV:
+                            csv(nom);
+                            texte.append(';').append(lecteur.position - 1).append(';');
+                            horodatage(lecteur.horodatage);
+                            texte.append(';').append(nomType(lecteur.type)).append(';').append(lecteur.idCandidat)
+                                    .append(';').append(lecteur.voix).append(';').append(lecteur.cumulVoix).append(';');
+                            csv(lecteur.decrire());
+                            texte.append('\n');
+                            break;
+                        case JSON_LIGNES:
+                            texte.append("{\"circonscription\":");
+                            json(nom);
+                            texte.append(",\"position\":").append(lecteur.position - 1).append(",\"horodatage\":\"");
+                            horodatage(lecteur.horodatage);
+                            texte.append("\",\"type\":\"").append(nomType(lecteur.type)).append("\",\"id\":")
+                                    .append(lecteur.idCandidat).append(",\"voix\":").append(lecteur.voix)
+                                    .append(",\"cumul\":").append(lecteur.cumulVoix).append(",\"action\":");
+                            json(lecteur.decrire());
+                            texte.append("}\n");
+                            break;
+                        default:
+                            entier(zigzag(lecteur.horodatage - horodatagePrecedent));
+                            reserver(1);
+                            tranche.octets.put(lecteur.type);
+                            entier(lecteur.idCandidat);
+                            entier(zigzag(lecteur.voix));
+                            if (lecteur.type == HistoriqueCompact.LIBRE) {
+                                chaine(lecteur.texte);
+                            }
+                            horodatagePrecedent = lecteur.horodatage;
+                            break;
+                    }
+                    verserSiNecessaire();
+                }
+            }
+
+            private void participation(long total, int inscrits) {
+                long centiemes = inscrits > 0 ? total * 10_000 / inscrits : 0; // Pourcentage à 0,01 près
+                texte.append(centiemes / 100).append('.');
+                if (centiemes % 100 < 10) {
+                    texte.append('0');
+                }
+                texte.append(centiemes % 100);
+            }
+
+            private void horodatage(long nanos) {
+                long seconde = Math.floorDiv(nanos, 1_000_000_000L);
+                if (seconde != secondeCourante) { // Un seul formatage par seconde écoulée
+                    secondeCourante = seconde;
+                    String instant = Instant.ofEpochSecond(seconde).toString();
+                    prefixe = instant.substring(0, instant.length() - 1); // Sans le "Z" final
+                }
+                String fraction = Long.toString(Math.floorMod(nanos, 1_000_000_000L) + 1_000_000_000L);
+                texte.append(prefixe).append('.').append(fraction, 1, fraction.length()).append('Z');
+            }
+
+            private void csv(String valeur) {
+                if (valeur == null) {
+                    return;
+                }
+                boolean guillemets = false;
+                for (int i = 0; i < valeur.length() && !guillemets; i++) {
+                    char c = valeur.charAt(i);
+                    guillemets = c == ';' || c == '"' || c == '\n' || c == '\r';
+                }
+                if (!guillemets) {
+                    texte.append(valeur);
+                    return;
+                }
+                texte.append('"');
+                for (int i = 0; i < valeur.length(); i++) {
+                    char c = valeur.charAt(i);
+                    texte.append(c == '"' ? "\"\"" : c);
+                }
+                texte.append('"');
+            }
+
+            private void json(String valeur) {
+                if (valeur == null) {
+                    texte.append("null");
+                    return;
+                }
+                texte.append('"');
+                for (int i = 0; i < valeur.length(); i++) {
+                    char c = valeur.charAt(i);
+                    switch (c) {
+                        case '"':
+                            texte.append("\\\"");
+                            break;
+                        case '\\':
+                            texte.append("\\\\");
+                            break;
+                        case '\n':
+                            texte.append("\\n");
+                            break;
+                        case '\r':
+                            texte.append("\\r");
+                            break;
+                        case '\t':
+                            texte.append("\\t");
+                            break;
+                        default:
+                            if (c < 0x20) {
+                                texte.append("\\u00").append(Character.forDigit(c >> 4, 16))
+                                        .append(Character.forDigit(c & 0xF, 16));
+                            } else {
+                                texte.append(c);
+                            }
+                    }
+                }
+                texte.append('"');
+            }
+
+            private void entier(long valeur) throws InterruptedException {
+                reserver(10);
+                while ((valeur & ~0x7FL) != 0) {
+                    tranche.octets.put((byte) ((valeur & 0x7F) | 0x80));
+                    valeur >>>= 7;
+                }
+                tranche.octets.put((byte) valeur);
+            }
+
+            private void chaine(String valeur) throws InterruptedException {
+                if (valeur == null) {
+                    entier(0);
+                    return;
+                }
+                byte[] octets = valeur.getBytes(StandardCharsets.UTF_8);
+                entier(octets.length + 1L);
+                for (int debut = 0; debut < octets.length; ) { // Une chaîne peut déborder sur plusieurs tranches
+                    if (!tranche.octets.hasRemaining()) {
+                        emettre();
+                        tranche = obtenir();
+                    }
+                    int nombre = Math.min(octets.length - debut, tranche.octets.remaining());
+                    tranche.octets.put(octets, debut, nombre);
+                    debut += nombre;
+                }
+            }
+
+            /**
+             * Garantit la place de {@code nombre} octets dans la tranche en cours.
+             */
+            private void reserver(int nombre) throws InterruptedException {
+                if (tranche != null && tranche.octets.remaining() < nombre) {
+                    emettre();
+                }
+                if (tranche == null) {
+                    tranche = obtenir();
+                }
+            }
+
+            private void verserSiNecessaire() throws InterruptedException {
+                if (texte.length() >= SEUIL_TEXTE) {
+                    verser();
+                }
+            }
+
+            /**
+             * Verse le texte accumulé dans les tranches, encodé en UTF-8 vers un canal.
+             * Le texte ne contient que des enregistrements complets : aucun caractère n'est coupé.
+             */
+            private void verser() throws InterruptedException {
+                if (texte.length() == 0) {
+                    return;
+                }
+                if (tranche == null) {
+                    tranche = obtenir();
+                }
+                if (canal != null) {
+                    if (encodeur == null) {
+                        encodeur = StandardCharsets.UTF_8.newEncoder()
+                                .onMalformedInput(CodingErrorAction.REPLACE)
+                                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                    }
+                    CharBuffer source = CharBuffer.wrap(texte);
+                    encodeur.reset();
+                    while (encodeur.encode(source, tranche.octets, true).isOverflow()) {
+                        emettre();
+                        tranche = obtenir();
+                    }
+                } else {
+                    for (int debut = 0; debut < texte.length(); ) {
+                        if (tranche.longueur == TAILLE_TRANCHE) {
+                            emettre();
+                            tranche = obtenir();
+                        }
+                        int nombre = Math.min(texte.length() - debut, TAILLE_TRANCHE - tranche.longueur);
+                        texte.getChars(debut, debut + nombre, tranche.caracteres, tranche.longueur);
+                        tranche.longueur += nombre;
+                        debut += nombre;
+                    }
+                }
+                texte.setLength(0);
+            }
+
+            /**
+             * Transmet la tranche en cours au thread d'écriture ; attend s'il a déjà assez de tranches en attente.
+             */
+            private void emettre() throws InterruptedException {
+                tranches.put(tranche);
+                tranche = null;
+            }
+
+            private Tranche obtenir() {
+                Tranche libre = libres.poll();
+                if (libre != null) {
+                    return libre;
+                }
+                return canal != null ? new Tranche(ByteBuffer.allocateDirect(TAILLE_TRANCHE), null)
+                        : new Tranche(null, new char[TAILLE_TRANCHE]);
+            }
+        }
+    }
+
+    /**
+     * @return Le nom d'un type d'événement de {@link HistoriqueCompact} dans les exports texte.
+     */
+    private static String nomType(byte type) {
+        switch (type) {
+            case HistoriqueCompact.LIBRE:
+                return "libre";
+            case HistoriqueCompact.CREATION:
+                return "creation";
+            case HistoriqueCompact.AJOUT_CANDIDAT:
+                return "ajout_candidat";
+            case HistoriqueCompact.AJOUT_VOIX:
+                return "ajout_voix";
+            case HistoriqueCompact.CLOTURE:
+                return "cloture";
+            case HistoriqueCompact.CORRECTION_VOIX:
+                return "correction_voix";
+            case HistoriqueCompact.AJOUT_BUREAU:
+                return "ajout_bureau";
+            case HistoriqueCompact.IMPORT_LOT:
+                return "import_lot";
+            case HistoriqueCompact.LOT_RESEAU:
+                return "lot_reseau";
+            default:
+                return "type_" + type; // Type ajouté sans nom d'export : exporté quand même
+        }
+    }
+
+    private static long zigzag(long valeur) {
+        return (valeur << 1) ^ (valeur >> 63);
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogramme de latences en nanosecondes, alimenté sans verrou depuis plusieurs threads.
+ * Les valeurs sont rangées dans des classes logarithmiques (8 sous-classes par puissance
+ * de deux), soit une précision relative d'environ 12 % sur les percentiles.
+ */
+public class HistogrammeLatence {
+    private static final int SOUS_CLASSES = 8; // Sous-classes par puissance de deux
+    private static final int NB_CLASSES = 62 * SOUS_CLASSES;
+
+    private final LongAdder[] classes; // Nombre de mesures par classe
+    private final LongAdder somme; // Somme des mesures, pour la moyenne
+    private final LongAccumulator max; // Plus grande mesure
+
+    /**
+     * Constructeur de la classe HistogrammeLatence.
+     */
+    public HistogrammeLatence() {
+        this.classes = new LongAdder[NB_CLASSES];
+        for (int i = 0; i < NB_CLASSES; i++) {
+            classes[i] = new LongAdder();
+        }
+        this.somme = new LongAdder();
+        this.max = new LongAccumulator(Math::max, 0);
+    }
+
+    /**
+     * Enregistre une mesure.
+     *
+     * @param nanos La latence mesurée, en nanosecondes.
+     */
+    public void enregistrer(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        classes[classe(nanos)].increment();
+        somme.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    private static int classe(long valeur) {
+        if (valeur < SOUS_CLASSES) {
+            return (int) valeur;
+        }
+        int exposant = 63 - Long.numberOfLeadingZeros(valeur); // Au moins 3
+        int sousClasse = (int) (valeur >>> (exposant - 3)) & (SOUS_CLASSES - 1);
+        return (exposant - 2) * SOUS_CLASSES + sousClasse;
+    }
+
+    private static long borneSuperieure(int classe) {
+        if (classe < SOUS_CLASSES) {
+            return classe;
+        }
+        int exposant = classe / SOUS_CLASSES + 2;
+        int sousClasse = classe % SOUS_CLASSES;
+        return ((long) (SOUS_CLASSES + sousClasse + 1) << (exposant - 3)) - 1;
+    }
+
+    /**
+     * Récupère le nombre de mesures enregistrées.
+     *
+     * @return Le nombre de mesures.
+     */
+    public long getNombre() {
+        long nombre = 0;
+        for (LongAdder c : classes) {
+            nombre += c.sum();
+        }
+        return nombre;
+    }
+
+    /**
+     * Calcule la latence moyenne.
+     *
+     * @return La moyenne en nanosecondes (0 sans mesure).
+     */
+    public double getMoyenne() {
+        long nombre = getNombre();
+        return nombre == 0 ? 0 : (double) somme.sum() / nombre;
+    }
+
+    /**
+     * Récupère la plus grande latence mesurée.
+     *
+     * @return Le maximum en nanosecondes.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Estime un percentile des latences.
+     *
+     * @param percentile Le percentile recherché, entre 0 et 100.
+     * @return La borne supérieure de la classe contenant le percentile, en nanosecondes.
+     */
+    public long getPercentile(double percentile) {
+        long[] compte = new long[NB_CLASSES];
+        long nombre = 0;
+        for (int i = 0; i < NB_CLASSES; i++) {
+            compte[i] = classes[i].sum();
+            nombre += compte[i];
+        }
+        if (nombre == 0) {
+            return 0;
+        }
+        long rang = (long) Math.ceil(percentile / 100 * nombre);
+        long cumul = 0;
+        for (int i = 0; i < NB_CLASSES; i++) {
+            cumul += compte[i];
+            if (cumul >= Math.max(1, rang)) {
+                return Math.min(borneSuperieure(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Remet l'histogramme à zéro. Les mesures enregistrées pendant l'appel peuvent être perdues.
+     */
+    public void reinitialiser() {
+        for (LongAdder c : classes) {
+            c.reset();
+        }
+        somme.reset();
+        max.reset();
+    }
+}
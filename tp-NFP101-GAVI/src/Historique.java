@@ -1,3 +1,5 @@
+import java.time.Instant;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -17,4 +19,38 @@ public interface Historique {
      * @return Une liste immuable des actions.
      */
     List<String> getHistoriqueActions();
+
+    /**
+     * Récupère les actions comprises entre deux positions de l'historique.
+     *
+     * @param debut La position de la première action (incluse).
+     * @param fin   La position de fin (exclue).
+     * @return Une vue en lecture seule des actions, sans copie de l'historique.
+     */
+    List<String> getActions(int debut, int fin);
+
+    /**
+     * Récupère les actions datées d'un intervalle de temps.
+     *
+     * @param debut Le début de l'intervalle (inclus).
+     * @param fin   La fin de l'intervalle (exclue).
+     * @return Une vue en lecture seule des actions, sans copie de l'historique.
+     */
+    List<String> getActionsEntre(Instant debut, Instant fin);
+
+    /**
+     * Récupère les actions les plus récentes.
+     *
+     * @param nombre Le nombre d'actions souhaité.
+     * @return Une vue en lecture seule des dernières actions (moins s'il y en a moins).
+     */
+    List<String> getDernieresActions(int nombre);
+
+    /**
+     * Parcourt l'historique page par page, jusqu'à l'action la plus récente au moment de l'appel.
+     *
+     * @param taillePage Le nombre d'actions par page.
+     * @return Un itérateur de vues en lecture seule.
+     */
+    Iterator<List<String>> parcourirActions(int taillePage);
 }
@@ -0,0 +1,1001 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Implémentation compacte de l'interface Historique.
+ * Chaque action est stockée sous forme d'un événement primitif (horodatage en
+ * nanosecondes depuis l'époque, type, identifiant de candidat, nombre de voix)
+ * dans des blocs de tableaux. Le texte lisible n'est produit qu'à la lecture,
+ * ce qui évite tout formatage pendant le dépouillement.
+ * L'ajout d'un événement se fait sans verrou et peut être appelé depuis plusieurs threads.
+ *
+ * Un historique restauré d'une sauvegarde ({@link SauvegardeElection}) commence par les
+ * événements sauvegardés, laissés sous forme binaire dans le fichier projeté en mémoire
+ * et décodés seulement à leur première lecture.
+ *
+ * Lorsqu'une archive est attachée ({@link #archiver(ArchiveHistorique, int)}), seuls les
+ * événements les plus récents restent en mémoire : les plus anciens sont déchargés par
+ * segments compressés dans l'archive, dont l'index (positions, horodatages, cumul des voix)
+ * reste en mémoire. Les blocs complets restés en mémoire sont indexés de même par leur horodatage
+ * maximal : une recherche par date procède par dichotomie à tous les niveaux. Les lectures ({@link #getActions(int, int)}, {@link #getActionsEntre(Instant, Instant)},
+ * {@link #getDernieresActions(int)}, {@link #parcourirActions(int)}) renvoient des vues
+ * qui produisent le texte des événements au fil du parcours, sans copier l'historique.
+ */
+public class HistoriqueCompact implements Historique {
+    /** Action libre, ajoutée par {@link #ajouterAction(String)}. */
+    public static final byte LIBRE = 1;
+    /** Création de l'entité propriétaire de l'historique. */
+    public static final byte CREATION = 2;
+    /** Ajout d'un candidat (identifiant du candidat renseigné). */
+    public static final byte AJOUT_CANDIDAT = 3;
+    /** Ajout de voix (identifiant du candidat et nombre de voix renseignés). */
+    public static final byte AJOUT_VOIX = 4;
+    /** Clôture de l'élection. */
+    public static final byte CLOTURE = 5;
+    /** Correction à la baisse des voix d'un candidat (nombre de voix négatif). */
+    public static final byte CORRECTION_VOIX = 6;
+    /** Ajout d'un bureau de vote (identifiant du bureau dans le champ du candidat). */
+    public static final byte AJOUT_BUREAU = 7;
+    /** Import d'un lot de voix (nombre de lignes dans le champ du candidat, total des voix du lot). */
+    public static final byte IMPORT_LOT = 8;
+    /** Lot de remontées reçues par le réseau (nombre de remontées dans le champ du candidat, total des voix du lot). */
+    public static final byte LOT_RESEAU = 9;
+
+    private static final int TAILLE_BLOC = 64; // Nombre d'événements par bloc
+    private static final int TAILLE_SEGMENT = 64 * TAILLE_BLOC; // Événements par segment archivé
+    private static final DateTimeFormatter FORMAT_HORODATAGE =
+            DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss").withZone(ZoneId.systemDefault());
+    // Origine permettant de dater un événement avec System.nanoTime(), sans allocation ; prise à la
+    // précision de Instant.now() pour ne pas dater les événements jusqu'à une milliseconde trop tôt
+    private static final long ORIGINE_NANOS = origine();
+    private static final VarHandle TYPES = MethodHandles.arrayElementVarHandle(byte[].class);
+    // Relectures de journal en cours, tous threads confondus, et horodatage imposé par le thread qui rejoue
+    private static final AtomicInteger RELECTURES = new AtomicInteger();
+    private static final ThreadLocal<long[]> HORODATAGE_RELECTURE = new ThreadLocal<>();
+    // Estimations de l'empreinte mémoire (JVM 64 bits, références compressées)
+    private static final long OCTETS_BLOC = 56 + 4 + (16 + 8L * TAILLE_BLOC) + (16 + TAILLE_BLOC)
+            + 2 * (16 + 4L * TAILLE_BLOC);
+    private static final long OCTETS_TABLEAU_TEXTES = 16 + 4L * TAILLE_BLOC;
+    private static final long OCTETS_CHAINE = 40; // Objet String et en-tête de son tableau d'octets
+    private static final long OCTETS_SEGMENT = 64; // Entrée de l'index des segments archivés
+    private static final int TAILLE_EVENEMENT_SAUVEGARDE = 17; // Horodatage, type, candidat, voix
+
+    /**
+     * Produit le texte d'un événement à partir de ses champs.
+     * Implémentée par le propriétaire de l'historique, qui seul sait nommer ses candidats.
+     */
+    @FunctionalInterface
+    public interface RenduEvenement {
+        /**
+         * @param type       Le type de l'événement.
+         * @param idCandidat L'identifiant du candidat concerné (0 si non applicable).
+         * @param voix       Le nombre de voix de l'événement (0 si non applicable).
+         * @param cumulVoix  Le cumul des voix de tous les événements jusqu'à celui-ci inclus.
+         * @return Le texte de l'action, sans horodatage.
+         */
+        String rendre(byte type, int idCandidat, int voix, long cumulVoix);
+    }
+
+    /**
+     * Bloc d'événements. Le type est écrit en dernier et sert de marqueur de publication.
+     */
+    private static final class Bloc {
+        private static final AtomicReferenceFieldUpdater<Bloc, Bloc> SUIVANT =
+                AtomicReferenceFieldUpdater.newUpdater(Bloc.class, Bloc.class, "suivant");
+        private static final AtomicReferenceFieldUpdater<Bloc, String[]> TEXTES =
+                AtomicReferenceFieldUpdater.newUpdater(Bloc.class, String[].class, "textes");
+
+        final int debut; // Position du premier événement du bloc
+        final long[] horodatages = new long[TAILLE_BLOC];
+        final byte[] types = new byte[TAILLE_BLOC]; // 0 tant que l'événement n'est pas publié
+        final int[] idCandidats = new int[TAILLE_BLOC];
+        final int[] voix = new int[TAILLE_BLOC];
+        volatile String[] textes; // Alloué seulement si le bloc contient une action libre
+        volatile Bloc suivant;
+        volatile long cumulFin = Long.MIN_VALUE; // Cumul des voix à la fin du bloc, une fois calculé
+        volatile long horodatageMax = Long.MIN_VALUE; // Horodatage le plus récent du bloc, une fois calculé
+
+        Bloc(int debut) {
+            this.debut = debut;
+        }
+
+        Bloc suivantOuCree() {
+            Bloc s = suivant;
+            if (s == null) {
+                SUIVANT.compareAndSet(this, null, new Bloc(debut + TAILLE_BLOC));
+                s = suivant;
+            }
+            return s;
+        }
+
+        /**
+         * @return true si le tableau des textes a été alloué par cet appel.
+         */
+        boolean creerTextes() {
+            return textes == null && TEXTES.compareAndSet(this, null, new String[TAILLE_BLOC]);
+        }
+
+        /**
+         * Calcule (une fois pour toutes) le cumul des voix à la fin du bloc, qui doit être complet.
+         *
+         * @param cumulDebut Le cumul des voix avant le bloc (hors événements restaurés).
+         */
+        long cumulFin(long cumulDebut) {
+            long c = cumulFin;
+            if (c == Long.MIN_VALUE) {
+                c = cumulDebut;
+                for (int i = 0; i < TAILLE_BLOC; i++) {
+                    typePublie(i);
+                    c += voix[i];
+                }
+                cumulFin = c;
+            }
+            return c;
+        }
+
+        /**
+         * Calcule (une fois pour toutes) l'horodatage le plus récent du bloc, qui doit être complet.
+         */
+        long horodatageMax() {
+            long h = horodatageMax;
+            if (h == Long.MIN_VALUE) {
+                for (int i = 0; i < TAILLE_BLOC; i++) {
+                    typePublie(i);
+                    h = Math.max(h, horodatages[i]);
+                }
+                horodatageMax = h;
+            }
+            return h;
+        }
+
+        /**
+         * Attend la publication d'un événement réservé par un écrivain.
+         *
+         * @return Le type de l'événement.
+         */
+        byte typePublie(int i) {
+            byte type;
+            while ((type = (byte) TYPES.getAcquire(types, i)) == 0) {
+                Thread.onSpinWait(); // Position réservée, écriture en cours
+            }
+            return type;
+        }
+    }
+
+    /**
+     * Événements décodés d'une sauvegarde ou d'un segment archivé.
+     */
+    private static final class Evenements {
+        final long[] horodatages;
+        final byte[] types;
+        final int[] idCandidats;
+        final int[] voix;
+        final String[] textes; // Null sauf pour les actions libres
+        final long[] cumuls; // Cumul des voix avant chaque groupe de TAILLE_BLOC événements
+
+        Evenements(int n) {
+            horodatages = new long[n];
+            types = new byte[n];
+            idCandidats = new int[n];
+            voix = new int[n];
+            textes = new String[n];
+            cumuls = new long[n / TAILLE_BLOC + 1];
+        }
+
+        /**
+         * Décode des événements écrits par {@link #ecrireEvenement}.
+         */
+        static Evenements decoder(ByteBuffer tampon, int n) {
+            Evenements e = new Evenements(n);
+            long cumul = 0;
+            for (int i = 0; i < n; i++) {
+                if (i % TAILLE_BLOC == 0) {
+                    e.cumuls[i / TAILLE_BLOC] = cumul;
+                }
+                e.horodatages[i] = tampon.getLong();
+                e.types[i] = tampon.get();
+                e.idCandidats[i] = tampon.getInt();
+                e.voix[i] = tampon.getInt();
+                if (e.types[i] == LIBRE) {
+                    byte[] octets = new byte[e.idCandidats[i]]; // Longueur du texte
+                    tampon.get(octets);
+                    e.textes[i] = new String(octets, StandardCharsets.UTF_8);
+                    e.idCandidats[i] = 0;
+                }
+                cumul += e.voix[i];
+            }
+            if (n % TAILLE_BLOC == 0) {
+                e.cumuls[n / TAILLE_BLOC] = cumul;
+            }
+            return e;
+        }
+
+        /**
+         * @return Le cumul des voix des événements qui précèdent la position {@code i}.
+         */
+        long cumulAvant(int i) {
+            long cumul = cumuls[i / TAILLE_BLOC];
+            for (int j = i / TAILLE_BLOC * TAILLE_BLOC; j < i; j++) {
+                cumul += voix[j];
+            }
+            return cumul;
+        }
+    }
+
+    /**
+     * Entrée de l'index d'un segment archivé.
+     */
+    private static final class Segment {
+        final int debut; // Position du premier événement
+        final int nombre; // Nombre d'événements
+        final long cumulDebut; // Cumul des voix avant le segment (hors événements restaurés)
+        final long horodatageMax;
+        final long positionArchive;
+
+        Segment(int debut, int nombre, long cumulDebut, long horodatageMax, long positionArchive) {
+            this.debut = debut;
+            this.nombre = nombre;
+            this.cumulDebut = cumulDebut;
+            this.horodatageMax = horodatageMax;
+            this.positionArchive = positionArchive;
+        }
+    }
+
+    /**
+     * Partage entre archive et mémoire, remplacé d'un bloc à chaque déchargement.
+     */
+    private static final class Niveaux {
+        final Segment[] segments; // Segments archivés, dans l'ordre des positions
+        final Bloc premier; // Premier bloc resté en mémoire
+        final long cumulPremier; // Cumul des voix avant ce bloc (hors événements restaurés)
+
+        Niveaux(Segment[] segments, Bloc premier, long cumulPremier) {
+            this.segments = segments;
+            this.premier = premier;
+            this.cumulPremier = cumulPremier;
+        }
+    }
+
+    private final RenduEvenement rendu;
+    private final int nbSauvegardes; // Nombre d'événements restaurés d'une sauvegarde
+    private volatile ByteBuffer section; // Leur forme binaire, tant qu'ils ne sont pas décodés
+    private volatile Evenements sauvegardes; // Leur forme décodée
+    private volatile Niveaux niveaux;
+    private volatile Bloc dernier; // Indication : bloc dont le début est inférieur à toute position à venir
+    private final AtomicInteger taille;
+    private final LongAdder octetsTextes; // Mémoire retenue par les actions libres
+    private volatile ArchiveHistorique archive; // Null tant que l'historique reste entièrement en mémoire
+    private volatile int evenementsEnMemoire; // Nombre d'événements récents gardés en mémoire
+    private final AtomicBoolean dechargementPlanifie;
+    private volatile Object[] segmentCharge; // Dernier segment relu : {Segment, Evenements}
+    // Blocs complets en mémoire, dans l'ordre : complétés par les recherches par date, purgés au déchargement
+    private final Object verrouIndex;
+    private Bloc[] blocsIndexes; // Protégé par verrouIndex
+    private int nbBlocsIndexes;
+
+    /**
+     * Constructeur de la classe HistoriqueCompact.
+     *
+     * @param rendu La fonction produisant le texte des événements typés.
+     */
+    public HistoriqueCompact(RenduEvenement rendu) {
+        this(rendu, null, 0);
+    }
+
+    /**
+     * Constructeur d'un historique restauré d'une sauvegarde.
+     *
+     * @param rendu         La fonction produisant le texte des événements typés.
+     * @param section       Les événements sauvegardés (voir {@link #sauvegarder(SauvegardeElection.Sortie)}).
+     * @param nbEvenements  Le nombre d'événements de la section.
+     */
+    HistoriqueCompact(RenduEvenement rendu, ByteBuffer section, int nbEvenements) {
+        this.rendu = rendu;
+        this.nbSauvegardes = nbEvenements;
+        this.section = nbEvenements > 0 ? section : null;
+        Bloc premier = new Bloc(nbEvenements);
+        this.niveaux = new Niveaux(new Segment[0], premier, 0);
+        this.dernier = premier;
+        this.taille = new AtomicInteger(nbEvenements);
+        this.octetsTextes = new LongAdder();
+        this.dechargementPlanifie = new AtomicBoolean();
+        this.verrouIndex = new Object();
+        this.blocsIndexes = new Bloc[16];
+    }
+
+    /**
+     * Attache une archive à l'historique : au-delà de {@code evenementsEnMemoire} événements,
+     * les plus anciens sont déchargés dans l'archive par segments, en arrière-plan.
+     *
+     * @param archive             L'archive recevant les segments.
+     * @param evenementsEnMemoire Le nombre d'événements récents à garder en mémoire (au moins un segment
+     *                            de plus est gardé le temps du déchargement).
+     */
+    public void archiver(ArchiveHistorique archive, int evenementsEnMemoire) {
+        if (evenementsEnMemoire < 0) {
+            throw new IllegalArgumentException("Le nombre d'événements gardés en mémoire ne peut pas être négatif.");
+        }
+        this.evenementsEnMemoire = evenementsEnMemoire;
+        this.archive = archive;
+        planifierDechargement();
+    }
+
+    @Override
+    public void ajouterAction(String action) {
+        if (action == null || action.isEmpty()) {
+            throw new IllegalArgumentException("L'action ne peut pas être vide.");
+        }
+        ecrire(LIBRE, 0, 0, action);
+    }
+
+    /**
+     * Ajoute un événement typé à l'historique, sans construire de texte.
+     *
+     * @param type       Le type de l'événement (autre que {@link #LIBRE}).
+     * @param idCandidat L'identifiant du candidat concerné.
+     * @param voix       Le nombre de voix de l'événement.
+     */
+    public void ajouterEvenement(byte type, int idCandidat, int voix) {
+        if (type <= LIBRE) {
+            throw new IllegalArgumentException("Type d'événement invalide : " + type);
+        }
+        ecrire(type, idCandidat, voix, null);
+    }
+
+    private void ecrire(byte type, int idCandidat, int voix, String texte) {
+        Bloc bloc = dernier; // Lu avant la réservation : son début ne dépasse pas la position obtenue
+        int position = taille.getAndIncrement();
+        while (position >= bloc.debut + TAILLE_BLOC) {
+            bloc = bloc.suivantOuCree();
+        }
+        if (bloc.debut > dernier.debut) {
+            dernier = bloc;
+        }
+        int i = position - bloc.debut;
+        bloc.horodatages[i] = horodatage();
+        bloc.idCandidats[i] = idCandidat;
+        bloc.voix[i] = voix;
+        if (texte != null) {
+            long octets = OCTETS_CHAINE + texte.length() * (long) Character.BYTES;
+            if (bloc.creerTextes()) {
+                octets += OCTETS_TABLEAU_TEXTES;
+            }
+            bloc.textes[i] = texte;
+            octetsTextes.add(octets);
+        }
+        TYPES.setRelease(bloc.types, i, type); // Publication de l'événement
+        if (i == 0 && archive != null) { // Une fois par bloc : un segment est-il à décharger ?
+            planifierDechargement();
+        }
+    }
+
+    private static long origine() {
+        Instant maintenant = Instant.now();
+        return maintenant.getEpochSecond() * 1_000_000_000L + maintenant.getNano() - System.nanoTime();
+    }
+
+    /**
+     * Date un événement, en nanosecondes depuis l'époque. Pendant une relecture de journal
+     * (voir {@link #debuterRelecture()}), les événements ajoutés par le thread qui rejoue portent
+     * l'horodatage de l'enregistrement rejoué ; les autres threads n'en paient qu'une lecture volatile.
+     *
+     * @return L'horodatage courant, ou celui imposé par la relecture en cours dans ce thread.
+     */
+    static long horodatage() {
+        if (RELECTURES.get() != 0) {
+            long[] impose = HORODATAGE_RELECTURE.get();
+            if (impose != null) {
+                return impose[0];
+            }
+        }
+        return ORIGINE_NANOS + System.nanoTime();
+    }
+
+    /**
+     * Commence une relecture de journal dans le thread appelant : jusqu'à {@link #terminerRelecture()},
+     * ses événements sont datés par {@link #dater(long)}.
+     */
+    static void debuterRelecture() {
+        HORODATAGE_RELECTURE.set(new long[]{ORIGINE_NANOS + System.nanoTime()});
+        RELECTURES.incrementAndGet();
+    }
+
+    /**
+     * Impose l'horodatage des événements suivants du thread qui rejoue.
+     */
+    static void dater(long horodatage) {
+        HORODATAGE_RELECTURE.get()[0] = horodatage;
+    }
+
+    static void terminerRelecture() {
+        HORODATAGE_RELECTURE.remove();
+        RELECTURES.decrementAndGet();
+    }
+
+    private void planifierDechargement() {
+        ArchiveHistorique a = archive;
+        if (a != null && aDecharger() && dechargementPlanifie.compareAndSet(false, true)) {
+            try {
+                a.planifier(this::decharger);
+            } catch (RejectedExecutionException e) {
+                dechargementPlanifie.set(false); // Archive fermée
+            }
+        }
+    }
+
+    private boolean aDecharger() {
+        return taille.get() - niveaux.premier.debut >= (long) evenementsEnMemoire + TAILLE_SEGMENT;
+    }
+
+    /**
+     * Décharge dans l'archive les segments les plus anciens encore en mémoire.
+     * Exécuté sur le thread de l'archive, un seul à la fois par historique.
+     */
+    private void decharger() {
+        try {
+            ByteArrayOutputStream octets = new ByteArrayOutputStream(TAILLE_SEGMENT * TAILLE_EVENEMENT_SAUVEGARDE);
+            DataOutputStream sortie = new DataOutputStream(octets);
+            while (aDecharger()) {
+                Niveaux n = niveaux;
+                Bloc bloc = n.premier;
+                long cumul = n.cumulPremier;
+                long horodatageMax = Long.MIN_VALUE;
+                octets.reset();
+                for (int b = 0; b < TAILLE_SEGMENT / TAILLE_BLOC; b++) {
+                    for (int i = 0; i < TAILLE_BLOC; i++) {
+                        byte type = bloc.typePublie(i);
+                        long horodatage = bloc.horodatages[i];
+                        horodatageMax = Math.max(horodatageMax, horodatage);
+                        cumul += bloc.voix[i];
+                        ecrireEvenement(sortie, horodatage, type, bloc.idCandidats[i], bloc.voix[i],
+                                type == LIBRE ? bloc.textes[i] : null);
+                    }
+                    bloc = bloc.suivantOuCree();
+                }
+                sortie.flush();
+                long position = archive.ecrire(octets.toByteArray(), octets.size());
+                Segment[] segments = Arrays.copyOf(n.segments, n.segments.length + 1);
+                segments[n.segments.length] = new Segment(n.premier.debut, TAILLE_SEGMENT, n.cumulPremier,
+                        horodatageMax, position);
+                niveaux = new Niveaux(segments, bloc, cumul);
+                synchronized (verrouIndex) {
+                    purgerIndex(bloc.debut); // Les blocs déchargés ne sont plus référencés
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            dechargementPlanifie.set(false);
+        }
+        planifierDechargement(); // Événements ajoutés pendant le déchargement
+    }
+
+    /**
+     * Récupère le nombre d'événements de l'historique.
+     *
+     * @return Le nombre d'événements.
+     */
+    public int taille() {
+        return taille.get();
+    }
+
+    /**
+     * Estime la mémoire retenue par l'historique : blocs d'événements et textes des
+     * actions libres (en comptant deux octets par caractère, borne haute), index
+     * des segments archivés.
+     *
+     * @return Le nombre approximatif d'octets retenus.
+     */
+    public long octetsRetenus() {
+        Niveaux n = niveaux;
+        long blocs = Math.max(1, (taille.get() - n.premier.debut + TAILLE_BLOC - 1) / TAILLE_BLOC);
+        long octets = blocs * OCTETS_BLOC + octetsTextes.sum() + n.segments.length * OCTETS_SEGMENT;
+        if (sauvegardes != null) {
+            octets += 6 * 16 + (long) nbSauvegardes * (TAILLE_EVENEMENT_SAUVEGARDE + 4);
+        }
+        return octets;
+    }
+
+    /**
+     * Décode les événements restaurés d'une sauvegarde, au premier besoin.
+     *
+     * @return Les événements décodés, ou null si l'historique n'a pas été restauré.
+     */
+    private Evenements sauvegardes() {
+        Evenements s = sauvegardes;
+        if (s != null || nbSauvegardes == 0) {
+            return s;
+        }
+        synchronized (this) {
+            if (sauvegardes == null) {
+                s = Evenements.decoder(section.duplicate(), nbSauvegardes);
+                for (String texte : s.textes) {
+                    if (texte != null) {
+                        octetsTextes.add(OCTETS_CHAINE + texte.length() * (long) Character.BYTES);
+                    }
+                }
+                sauvegardes = s;
+                section = null; // Le fichier projeté n'est plus référencé
+            }
+            return sauvegardes;
+        }
+    }
+
+    private long cumulSauvegardes() {
+        return nbSauvegardes == 0 ? 0 : sauvegardes().cumulAvant(nbSauvegardes);
+    }
+
+    /**
+     * Relit un segment archivé, en gardant le dernier relu pour les lectures suivantes.
+     */
+    private Evenements charger(Segment segment) {
+        Object[] charge = segmentCharge;
+        if (charge != null && charge[0] == segment) {
+            return (Evenements) charge[1];
+        }
+        Evenements e = Evenements.decoder(archive.lire(segment.positionArchive), segment.nombre);
+        segmentCharge = new Object[]{segment, e};
+        return e;
+    }
+
+    private static Segment segmentContenant(Segment[] segments, int position) {
+        int bas = 0;
+        int haut = segments.length - 1;
+        while (bas < haut) {
+            int milieu = (bas + haut + 1) >>> 1;
+            if (segments[milieu].debut <= position) {
+                bas = milieu;
+            } else {
+                haut = milieu - 1;
+            }
+        }
+        return segments[bas];
+    }
+
+    /**
+     * Écrit les événements de l'historique dans une sauvegarde : nombre d'événements,
+     * taille de la section en octets, puis les événements. Les ajouts concurrents
+     * postérieurs au début de l'écriture ne sont pas sauvegardés.
+     * Des événements restaurés et jamais décodés sont recopiés tels quels.
+     *
+     * @param sortie La sauvegarde en cours d'écriture.
+     * @throws IOException en cas d'erreur d'écriture.
+     */
+    void sauvegarder(SauvegardeElection.Sortie sortie) throws IOException {
+        int n = taille.get();
+        sortie.putInt(n);
+        long positionLongueur = sortie.position();
+        sortie.putInt(0); // Taille de la section, corrigée à la fin
+        long debut = sortie.position();
+        ByteBuffer brute = section;
+        Evenements s = brute == null ? sauvegardes() : null;
+        if (brute != null) {
+            sortie.put(brute.duplicate());
+        } else if (s != null) {
+            for (int i = 0; i < nbSauvegardes; i++) {
+                ecrireEvenement(sortie, s.horodatages[i], s.types[i], s.idCandidats[i], s.voix[i], s.textes[i]);
+            }
+        }
+        if (nbSauvegardes < n) {
+            Lecteur lecteur = new Lecteur(nbSauvegardes, false);
+            while (lecteur.position < n) {
+                lecteur.suivant();
+                ecrireEvenement(sortie, lecteur.horodatage, lecteur.type, lecteur.idCandidat, lecteur.voix,
+                        lecteur.texte);
+            }
+        }
+        long longueur = sortie.position() - debut;
+        if (longueur > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Historique trop volumineux pour la sauvegarde.");
+        }
+        sortie.corrigerInt(positionLongueur, (int) longueur);
+    }
+
+    private static void ecrireEvenement(SauvegardeElection.Sortie sortie, long horodatage, byte type,
+                                        int idCandidat, int voix, String texte) throws IOException {
+        if (type == LIBRE) {
+            byte[] octets = texte.getBytes(StandardCharsets.UTF_8);
+            sortie.putLong(horodatage).put(type).putInt(octets.length).putInt(0).put(octets);
+        } else {
+            sortie.putLong(horodatage).put(type).putInt(idCandidat).putInt(voix);
+        }
+    }
+
+    private static void ecrireEvenement(DataOutputStream sortie, long horodatage, byte type,
+                                        int idCandidat, int voix, String texte) throws IOException {
+        sortie.writeLong(horodatage);
+        sortie.writeByte(type);
+        if (type == LIBRE) {
+            byte[] octets = texte.getBytes(StandardCharsets.UTF_8);
+            sortie.writeInt(octets.length);
+            sortie.writeInt(0);
+            sortie.write(octets);
+        } else {
+            sortie.writeInt(idCandidat);
+            sortie.writeInt(voix);
+        }
+    }
+
+    /**
+     * Curseur de lecture séquentielle des événements, à travers les trois niveaux :
+     * événements restaurés, segments archivés, blocs en mémoire.
+     * Utilisé aussi par les exports (voir {@link ExportResultats}), qui lisent les champs bruts.
+     */
+    final class Lecteur {
+        int position; // Position du prochain événement à lire
+        // Champs de l'événement lu par le dernier appel de suivant()
+        long horodatage;
+        byte type;
+        int idCandidat;
+        int voix;
+        String texte; // Texte des actions libres, null sinon
+        long cumulVoix; // Cumul des voix jusqu'à cet événement inclus (si demandé)
+
+        private final boolean cumul; // Faux si le cumul n'est pas nécessaire
+        private Evenements evenements; // Événements restaurés ou segment archivé en cours de lecture
+        private int debutEvenements;
+        private int finEvenements;
+        private Bloc bloc; // Bloc en mémoire en cours de lecture (si evenements est null)
+        private long secondeCourante = Long.MIN_VALUE;
+        private String prefixe;
+
+        Lecteur(int position, boolean cumul) {
+            this.position = position;
+            this.cumul = cumul;
+            localiser(cumul);
+        }
+
+        /**
+         * Trouve le niveau qui contient la position courante et, si demandé,
+         * le cumul des voix qui la précèdent.
+         */
+        private void localiser(boolean avecCumul) {
+            evenements = null;
+            bloc = null;
+            if (position < nbSauvegardes) {
+                evenements = sauvegardes();
+                debutEvenements = 0;
+                finEvenements = nbSauvegardes;
+                if (avecCumul) {
+                    cumulVoix = evenements.cumulAvant(position);
+                }
+                return;
+            }
+            Niveaux n = niveaux; // Lu une fois : segments, premier bloc et cumul cohérents
+            if (position < n.premier.debut) {
+                Segment segment = segmentContenant(n.segments, position);
+                evenements = charger(segment);
+                debutEvenements = segment.debut;
+                finEvenements = segment.debut + segment.nombre;
+                if (avecCumul) {
+                    cumulVoix = cumulSauvegardes() + segment.cumulDebut + evenements.cumulAvant(position - segment.debut);
+                }
+                return;
+            }
+            long c = n.cumulPremier;
+            Bloc b = n.premier; // Reste chaîné à la suite même s'il est déchargé entre-temps
+            while (position >= b.debut + TAILLE_BLOC) {
+                if (avecCumul) {
+                    c = b.cumulFin(c);
+                }
+                b = b.suivantOuCree();
+            }
+            bloc = b;
+            if (avecCumul) {
+                for (int i = 0; i < position - b.debut; i++) {
+                    b.typePublie(i);
+                    c += b.voix[i];
+                }
+                cumulVoix = cumulSauvegardes() + c;
+            }
+        }
+
+        /**
+         * Lit l'événement à la position courante et avance.
+         */
+        void suivant() {
+            if (bloc != null && position >= bloc.debut + TAILLE_BLOC) {
+                bloc = bloc.suivantOuCree(); // Les blocs restent chaînés même après déchargement
+            } else if (evenements != null && position >= finEvenements) {
+                localiser(false); // Niveau suivant ; le cumul courant reste valable
+            }
+            if (evenements != null) {
+                int i = position - debutEvenements;
+                horodatage = evenements.horodatages[i];
+                type = evenements.types[i];
+                idCandidat = evenements.idCandidats[i];
+                voix = evenements.voix[i];
+                texte = evenements.textes[i];
+            } else {
+                int i = position - bloc.debut;
+                type = bloc.typePublie(i);
+                horodatage = bloc.horodatages[i];
+                idCandidat = bloc.idCandidats[i];
+                voix = bloc.voix[i];
+                texte = type == LIBRE ? bloc.textes[i] : null;
+            }
+            cumulVoix += voix;
+            position++;
+        }
+
+        /**
+         * @return Le texte horodaté de l'événement lu.
+         */
+        String rendre() {
+            long seconde = Math.floorDiv(horodatage, 1_000_000_000L);
+            if (seconde != secondeCourante) { // Un seul formatage par seconde écoulée
+                secondeCourante = seconde;
+                prefixe = FORMAT_HORODATAGE.format(Instant.ofEpochSecond(seconde)) + " - ";
+            }
+            return prefixe + decrire();
+        }
+
+        /**
+         * @return Le texte de l'événement lu, sans horodatage.
+         */
+        String decrire() {
+            return texte != null ? texte : rendu.rendre(type, idCandidat, voix, cumulVoix);
+        }
+    }
+
+    /**
+     * Ouvre un curseur sur les événements bruts, avec le cumul des voix.
+     * Un parcours dans l'ordre ne charge qu'un segment archivé à la fois.
+     *
+     * @param position La position du premier événement à lire, au plus {@link #taille()}.
+     * @return Un curseur, à avancer avec {@code suivant()} tant que sa position est inférieure à la fin voulue.
+     */
+    Lecteur lecteur(int position) {
+        int n = taille.get();
+        if (position < 0 || position > n) {
+            throw new IndexOutOfBoundsException("Position " + position + " hors de l'historique de taille " + n);
+        }
+        return new Lecteur(position, true);
+    }
+
+    /**
+     * Vue en lecture seule sur une plage de positions. Le texte d'un événement est produit
+     * à chaque accès ; un parcours dans l'ordre ne relit chaque segment archivé qu'une fois.
+     */
+    private final class Vue extends AbstractList<String> {
+        private final int debut;
+        private final int fin;
+        private Lecteur lecteur; // Curseur du dernier accès (protégé par le verrou de la vue)
+
+        Vue(int debut, int fin) {
+            this.debut = debut;
+            this.fin = fin;
+        }
+
+        @Override
+        public synchronized String get(int index) {
+            if (index < 0 || index >= fin - debut) {
+                throw new IndexOutOfBoundsException("Index " + index + " hors de la vue de taille " + size());
+            }
+            int position = debut + index;
+            if (lecteur == null || lecteur.position != position) {
+                lecteur = new Lecteur(position, true);
+            }
+            lecteur.suivant();
+            return lecteur.rendre();
+        }
+
+        @Override
+        public int size() {
+            return fin - debut;
+        }
+    }
+
+    @Override
+    public List<String> getHistoriqueActions() {
+        int n = taille.get();
+        List<String> actions = new ArrayList<>(n);
+        Lecteur lecteur = new Lecteur(0, true);
+        while (lecteur.position < n) {
+            lecteur.suivant();
+            actions.add(lecteur.rendre());
+        }
+        return actions;
+    }
+
+    /**
+     * Vue sur les événements dont la position est comprise entre deux bornes.
+     *
+     * @param debut La position du premier événement (incluse).
+     * @param fin   La position de fin (exclue), au plus {@link #taille()}.
+     * @return Une vue en lecture seule, produite à la lecture.
+     */
+    @Override
+    public List<String> getActions(int debut, int fin) {
+        int n = taille.get();
+        if (debut < 0 || fin > n || debut > fin) {
+            throw new IndexOutOfBoundsException("Plage [" + debut + ", " + fin + ") hors de l'historique de taille " + n);
+        }
+        return new Vue(debut, fin);
+    }
+
+    @Override
+    public List<String> getActionsEntre(Instant debut, Instant fin) {
+        int n = taille.get();
+        int p = positionA(nanos(debut), 0, n);
+        return new Vue(p, positionA(nanos(fin), p, n));
+    }
+
+    @Override
+    public List<String> getDernieresActions(int nombre) {
+        if (nombre < 0) {
+            throw new IllegalArgumentException("Le nombre d'actions ne peut pas être négatif.");
+        }
+        int n = taille.get();
+        return new Vue(Math.max(0, n - nombre), n);
+    }
+
+    @Override
+    public Iterator<List<String>> parcourirActions(int taillePage) {
+        if (taillePage <= 0) {
+            throw new IllegalArgumentException("La taille de page doit être positive.");
+        }
+        int n = taille.get();
+        return new Iterator<>() {
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return position < n;
+            }
+
+            @Override
+            public List<String> next() {
+                if (position >= n) {
+                    throw new NoSuchElementException();
+                }
+                int debut = position;
+                position = (int) Math.min(n, (long) position + taillePage);
+                return new Vue(debut, position);
+            }
+        };
+    }
+
+    private static long nanos(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L), instant.getNano());
+    }
+
+    /**
+     * Trouve la première position, dans [debut, fin), dont l'horodatage atteint une date.
+     * Les événements sont datés dans l'ordre de leur ajout : les niveaux et leurs index
+     * sont parcourus par dichotomie, puis les événements du bloc ou du segment trouvé.
+     *
+     * @return La position trouvée, ou {@code fin} si aucun événement n'est aussi récent.
+     */
+    private int positionA(long horodatage, int debut, int fin) {
+        if (debut >= fin) {
+            return fin;
+        }
+        if (debut < nbSauvegardes) {
+            Evenements s = sauvegardes();
+            int finSauvegardes = Math.min(fin, nbSauvegardes);
+            if (s.horodatages[finSauvegardes - 1] >= horodatage) {
+                return premierAtteignant(s.horodatages, debut, finSauvegardes, horodatage, 0);
+            }
+            debut = finSauvegardes;
+        }
+        Niveaux n = niveaux;
+        Segment[] segments = n.segments;
+        int bas = 0;
+        int haut = segments.length;
+        while (bas < haut) { // Premier segment dont le dernier événement atteint la date
+            int milieu = (bas + haut) >>> 1;
+            if (segments[milieu].horodatageMax < horodatage) {
+                bas = milieu + 1;
+            } else {
+                haut = milieu;
+            }
+        }
+        while (bas < segments.length && segments[bas].debut + segments[bas].nombre <= debut) {
+            bas++; // Segment antérieur à la position de départ
+        }
+        if (bas < segments.length) {
+            Segment segment = segments[bas];
+            int p = Math.max(debut, segment.debut);
+            if (p < fin) {
+                return premierAtteignant(charger(segment).horodatages, p - segment.debut,
+                        Math.min(fin - segment.debut, segment.nombre), horodatage, segment.debut);
+            }
+        }
+        for (Bloc b = blocAtteignant(n, horodatage, debut, fin); b.debut < fin; b = b.suivantOuCree()) {
+            for (int i = Math.max(0, debut - b.debut); i < TAILLE_BLOC && b.debut + i < fin; i++) {
+                b.typePublie(i);
+                if (b.horodatages[i] >= horodatage) {
+                    return b.debut + i;
+                }
+            }
+        }
+        return fin;
+    }
+
+    /**
+     * Trouve, par dichotomie sur l'index des blocs complets, le premier bloc en mémoire qui contient
+     * une position d'au moins {@code debut} et dont un événement atteint une date. L'index est
+     * d'abord complété des blocs devenus complets avant la position {@code fin}.
+     *
+     * @return Le bloc trouvé, ou le premier bloc incomplet si aucun bloc complet ne convient.
+     */
+    private Bloc blocAtteignant(Niveaux n, long horodatage, int debut, int fin) {
+        synchronized (verrouIndex) {
+            purgerIndex(n.premier.debut);
+            if (nbBlocsIndexes > 0 && blocsIndexes[0].debut > n.premier.debut) {
+                return n.premier; // Niveaux lus avant un déchargement : l'index ne couvre plus ce premier bloc
+            }
+            Bloc suivant = nbBlocsIndexes == 0 ? n.premier : blocsIndexes[nbBlocsIndexes - 1].suivantOuCree();
+            while (suivant.debut + TAILLE_BLOC <= fin) {
+                if (nbBlocsIndexes == blocsIndexes.length) {
+                    blocsIndexes = Arrays.copyOf(blocsIndexes, 2 * nbBlocsIndexes);
+                }
+                blocsIndexes[nbBlocsIndexes++] = suivant;
+                suivant = suivant.suivantOuCree();
+            }
+            int bas = 0;
+            int haut = nbBlocsIndexes;
+            while (bas < haut) { // Les deux critères sont croissants avec la position du bloc
+                int milieu = (bas + haut) >>> 1;
+                Bloc b = blocsIndexes[milieu];
+                if (b.debut + TAILLE_BLOC <= debut || b.horodatageMax() < horodatage) {
+                    bas = milieu + 1;
+                } else {
+                    haut = milieu;
+                }
+            }
+            return bas < nbBlocsIndexes ? blocsIndexes[bas] : suivant;
+        }
+    }
+
+    /**
+     * Retire de l'index les blocs qui précèdent une position (déchargés dans l'archive).
+     * Appelée sous verrouIndex.
+     */
+    private void purgerIndex(int debutMemoire) {
+        int purges = 0;
+        while (purges < nbBlocsIndexes && blocsIndexes[purges].debut < debutMemoire) {
+            purges++;
+        }
+        if (purges > 0) {
+            System.arraycopy(blocsIndexes, purges, blocsIndexes, 0, nbBlocsIndexes - purges);
+            Arrays.fill(blocsIndexes, nbBlocsIndexes - purges, nbBlocsIndexes, null);
+            nbBlocsIndexes -= purges;
+        }
+    }
+
+    private static int premierAtteignant(long[] horodatages, int debut, int fin, long horodatage, int decalage) {
+        int bas = debut;
+        int haut = fin;
+        while (bas < haut) {
+            int milieu = (bas + haut) >>> 1;
+            if (horodatages[milieu] < horodatage) {
+                bas = milieu + 1;
+            } else {
+                haut = milieu;
+            }
+        }
+        return decalage + bas;
+    }
+}
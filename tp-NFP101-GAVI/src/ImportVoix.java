@@ -0,0 +1,274 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Import en masse des voix d'une circonscription à partir d'un fichier de résultats.
+ * Le fichier est projeté en mémoire par fenêtres et analysé octet par octet, sans
+ * créer de chaîne par ligne ; les voix sont cumulées par candidat puis appliquées par lots.
+ *
+ * Deux formats sont reconnus :
+ * <ul>
+ *     <li>texte (UTF-8) : une ligne {@code candidat;voix} (ou {@code candidat,voix}) par résultat,
+ *     où le candidat est désigné par son nom complet ou par son identifiant ; une première ligne
+ *     d'en-tête non numérique est ignorée, ainsi que les lignes vides ;</li>
+ *     <li>binaire : la signature {@code VOIX} suivie d'enregistrements de deux entiers
+ *     (identifiant du candidat, voix) en ordre big-endian.</li>
+ * </ul>
+ */
+final class ImportVoix {
+    private static final int SIGNATURE_BINAIRE = 0x564F4958; // "VOIX"
+    private static final long TAILLE_FENETRE = 256L * 1024 * 1024; // Taille d'une fenêtre projetée
+    private static final int LIGNES_PAR_LOT = 65_536;
+
+    private final Circonscription circonscription;
+    private final long tailleFenetre;
+    private final IndexNoms index;
+    private final long[] voixLot; // Voix du lot en cours, par identifiant de candidat
+    private int lignesLot;
+    private long totalLot;
+    private long nbLignes; // Lignes déjà appliquées
+    private long numeroLigne; // Numéro de la ligne de texte en cours d'analyse
+
+    private ImportVoix(Circonscription circonscription, long tailleFenetre) {
+        this.circonscription = circonscription;
+        this.tailleFenetre = tailleFenetre;
+        this.index = new IndexNoms(circonscription);
+        this.voixLot = new long[circonscription.getNombreCandidats()];
+    }
+
+    static long importer(Circonscription circonscription, Path fichier) throws IOException {
+        return importer(circonscription, fichier, TAILLE_FENETRE);
+    }
+
+    /**
+     * Importe le fichier en le projetant par fenêtres de la taille donnée
+     * (arrondie au multiple de 8 inférieur pour le format binaire).
+     */
+    static long importer(Circonscription circonscription, Path fichier, long tailleFenetre) throws IOException {
+        ImportVoix importVoix = new ImportVoix(circonscription, tailleFenetre);
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            long taille = canal.size();
+            if (taille >= 4 && lireSignature(canal) == SIGNATURE_BINAIRE) {
+                importVoix.importerBinaire(canal, taille);
+            } else {
+                importVoix.importerTexte(canal, taille);
+            }
+        }
+        importVoix.appliquerLot();
+        return importVoix.nbLignes;
+    }
+
+    private static int lireSignature(FileChannel canal) throws IOException {
+        ByteBuffer signature = ByteBuffer.allocate(4);
+        while (signature.hasRemaining() && canal.read(signature, signature.position()) > 0) {
+            // Lecture des quatre premiers octets
+        }
+        return signature.getInt(0);
+    }
+
+    private void importerBinaire(FileChannel canal, long taille) throws IOException {
+        if ((taille - 4) % 8 != 0) {
+            throw new IllegalArgumentException("Fichier binaire tronqué : taille " + taille + " octets.");
+        }
+        long fenetreBinaire = Math.max(8, tailleFenetre & ~7L);
+        long position = 4;
+        while (position < taille) {
+            long longueur = Math.min(fenetreBinaire, taille - position); // Multiple de 8
+            MappedByteBuffer fenetre = canal.map(FileChannel.MapMode.READ_ONLY, position, longueur);
+            for (int i = 0; i < longueur; i += 8) {
+                ajouter(fenetre.getInt(i), fenetre.getInt(i + 4));
+            }
+            position += longueur;
+        }
+    }
+
+    private void importerTexte(FileChannel canal, long taille) throws IOException {
+        long position = 0;
+        while (position < taille) {
+            long longueur = Math.min(tailleFenetre, taille - position);
+            boolean derniere = position + longueur == taille;
+            MappedByteBuffer fenetre = canal.map(FileChannel.MapMode.READ_ONLY, position, longueur);
+            int debutLigne = 0;
+            for (int i = 0; i < longueur; i++) {
+                if (fenetre.get(i) == '\n') {
+                    analyserLigne(fenetre, debutLigne, i);
+                    debutLigne = i + 1;
+                }
+            }
+            if (derniere) {
+                if (debutLigne < longueur) {
+                    analyserLigne(fenetre, debutLigne, (int) longueur);
+                }
+                debutLigne = (int) longueur;
+            } else if (debutLigne == 0) {
+                throw new IllegalArgumentException("Ligne trop longue à la position " + position + ".");
+            }
+            position += debutLigne; // La ligne incomplète est reprise au début de la fenêtre suivante
+        }
+    }
+
+    private void analyserLigne(ByteBuffer tampon, int debut, int fin) {
+        if (fin > debut && tampon.get(fin - 1) == '\r') {
+            fin--;
+        }
+        int separateur = -1;
+        for (int i = fin - 1; i >= debut; i--) {
+            byte b = tampon.get(i);
+            if (b == ';' || b == ',') {
+                separateur = i;
+                break;
+            }
+        }
+        numeroLigne++;
+        if (separateur < 0) {
+            if (estVide(tampon, debut, fin)) {
+                return;
+            }
+            throw new IllegalArgumentException("Ligne " + numeroLigne + " : séparateur absent.");
+        }
+        long voix = lireEntier(tampon, separateur + 1, fin);
+        if (voix < 0 || voix > Integer.MAX_VALUE) {
+            if (numeroLigne == 1 && voix < 0) {
+                return; // En-tête
+            }
+            throw new IllegalArgumentException("Ligne " + numeroLigne + " : nombre de voix invalide.");
+        }
+        int debutNom = debut;
+        int finNom = separateur;
+        while (debutNom < finNom && tampon.get(debutNom) == ' ') {
+            debutNom++;
+        }
+        while (finNom > debutNom && tampon.get(finNom - 1) == ' ') {
+            finNom--;
+        }
+        long identifiant = lireEntier(tampon, debutNom, finNom);
+        int idCandidat = identifiant >= 0 ? (int) Math.min(identifiant, Integer.MAX_VALUE)
+                : index.chercher(tampon, debutNom, finNom);
+        if (idCandidat < 0) {
+            throw new IllegalArgumentException("Ligne " + numeroLigne + " : candidat "
+                    + StandardCharsets.UTF_8.decode(tampon.slice(debutNom, finNom - debutNom)) + " non trouvé.");
+        }
+        ajouter(idCandidat, (int) voix);
+    }
+
+    private static boolean estVide(ByteBuffer tampon, int debut, int fin) {
+        for (int i = debut; i < fin; i++) {
+            if (tampon.get(i) != ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lit un entier positif en base 10, entouré d'espaces éventuels.
+     *
+     * @return L'entier lu, ou -1 si la zone n'est pas un entier.
+     */
+    private static long lireEntier(ByteBuffer tampon, int debut, int fin) {
+        while (debut < fin && tampon.get(debut) == ' ') {
+            debut++;
+        }
+        while (fin > debut && tampon.get(fin - 1) == ' ') {
+            fin--;
+        }
+        if (debut == fin || fin - debut > 10) {
+            return -1;
+        }
+        long valeur = 0;
+        for (int i = debut; i < fin; i++) {
+            byte b = tampon.get(i);
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            valeur = valeur * 10 + (b - '0');
+        }
+        return valeur;
+    }
+
+    private void ajouter(int idCandidat, int voix) {
+        if (idCandidat < 0 || idCandidat >= voixLot.length) {
+            throw new IllegalArgumentException("Candidat d'identifiant " + idCandidat + " non trouvé.");
+        }
+        if (voix < 0) {
+            throw new IllegalArgumentException("Le nombre de voix ne peut pas être négatif.");
+        }
+        if (lignesLot == LIGNES_PAR_LOT || totalLot + voix > Integer.MAX_VALUE) {
+            appliquerLot();
+        }
+        voixLot[idCandidat] += voix;
+        totalLot += voix;
+        lignesLot++;
+    }
+
+    private void appliquerLot() {
+        if (lignesLot > 0) {
+            circonscription.appliquerLot(voixLot, lignesLot, (int) totalLot);
+            nbLignes += lignesLot;
+            lignesLot = 0;
+            totalLot = 0;
+        }
+    }
+
+    /**
+     * Table de hachage des noms complets des candidats, encodés en UTF-8,
+     * interrogée directement sur les octets du fichier.
+     */
+    private static final class IndexNoms {
+        private final byte[][] noms; // Nom complet de chaque candidat, par identifiant
+        private final int[] table; // Identifiant + 1 de chaque case (0 si vide)
+        private final int masque;
+
+        IndexNoms(Circonscription circonscription) {
+            int n = circonscription.getNombreCandidats();
+            noms = new byte[n][];
+            table = new int[Integer.highestOneBit(Math.max(1, n) * 2) * 2];
+            masque = table.length - 1;
+            for (int id = 0; id < n; id++) {
+                noms[id] = circonscription.getCandidat(id).getNomComplet().getBytes(StandardCharsets.UTF_8);
+                int i = hacher(ByteBuffer.wrap(noms[id]), 0, noms[id].length) & masque;
+                while (table[i] != 0) {
+                    i = (i + 1) & masque;
+                }
+                table[i] = id + 1;
+            }
+        }
+
+        private static int hacher(ByteBuffer tampon, int debut, int fin) {
+            int h = 0;
+            for (int i = debut; i < fin; i++) {
+                h = 31 * h + tampon.get(i);
+            }
+            return h ^ (h >>> 16);
+        }
+
+        int chercher(ByteBuffer tampon, int debut, int fin) {
+            int i = hacher(tampon, debut, fin) & masque;
+            while (table[i] != 0) {
+                byte[] nom = noms[table[i] - 1];
+                if (egal(nom, tampon, debut, fin)) {
+                    return table[i] - 1;
+                }
+                i = (i + 1) & masque;
+            }
+            return -1;
+        }
+
+        private static boolean egal(byte[] nom, ByteBuffer tampon, int debut, int fin) {
+            if (nom.length != fin - debut) {
+                return false;
+            }
+            for (int i = 0; i < nom.length; i++) {
+                if (nom[i] != tampon.get(debut + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
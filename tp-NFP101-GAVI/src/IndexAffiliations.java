@@ -0,0 +1,254 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Index des résultats par affiliation politique, sur l'ensemble des circonscriptions d'un scrutin.
+ * Il est tenu à jour au fil des variations de voix et des inscriptions de candidats
+ * (voir {@link ObservateurVoix}) : les totaux, les sièges et les classements par affiliation
+ * se lisent sans parcourir les candidats.
+ *
+ * Un siège est attribué à l'affiliation du vainqueur unique de chaque circonscription
+ * (voir {@link Circonscription#trouverVainqueur()}) ; les circonscriptions à égalité ne sont pas attribuées.
+ * Pendant l'ingestion concurrente, les lectures reflètent les variations déjà notifiées.
+ */
+public final class IndexAffiliations {
+    private final ConcurrentHashMap<String, Affiliation> affiliations; // Index nom -> affiliation
+    private final LongAdder totalVoix; // Total des voix indexées, toutes affiliations confondues
+
+    /**
+     * Compteurs d'une affiliation.
+     */
+    private static final class Affiliation {
+        final String nom;
+        final LongAdder voix = new LongAdder();
+        final AtomicInteger sieges = new AtomicInteger();
+        final AtomicInteger candidats = new AtomicInteger();
+
+        Affiliation(String nom) {
+            this.nom = nom;
+        }
+    }
+
+    /**
+     * Suivi d'une circonscription : affiliation de chacun de ses candidats déjà indexés,
+     * et candidat dont l'affiliation détient actuellement le siège.
+     */
+    private final class Suivi implements ObservateurVoix {
+        private final Circonscription circonscription;
+        private volatile Affiliation[] parCandidat = new Affiliation[0]; // Par identifiant de candidat
+        private final AtomicReference<Candidat> titulaire = new AtomicReference<>(); // Vainqueur unique (null sinon)
+
+        Suivi(Circonscription circonscription) {
+            this.circonscription = circonscription;
+        }
+
+        @Override
+        public void voixModifiees(Circonscription c, int idCandidat, int variation) {
+            Affiliation[] connus = parCandidat;
+            if (idCandidat >= connus.length) {
+                connus = indexer(false); // Voix arrivées avant la notification de l'inscription
+            }
+            connus[idCandidat].voix.add(variation);
+            totalVoix.add(variation);
+            actualiserSiege();
+        }
+
+        @Override
+        public void candidatAjoute(Circonscription c, int idCandidat) {
+            indexer(false);
+            actualiserSiege();
+        }
+
+        /**
+         * Indexe les candidats inscrits depuis le dernier appel.
+         *
+         * @param avecVoix true pour reprendre aussi leurs voix actuelles (rattachement de la circonscription).
+         */
+        synchronized Affiliation[] indexer(boolean avecVoix) {
+            Affiliation[] connus = parCandidat;
+            int n = circonscription.getNombreCandidats();
+            if (n <= connus.length) {
+                return connus;
+            }
+            Affiliation[] nouveaux = Arrays.copyOf(connus, n);
+            for (int idCandidat = connus.length; idCandidat < n; idCandidat++) {
+                Candidat candidat = circonscription.getCandidat(idCandidat);
+                Affiliation affiliation = affiliation(candidat.getAffiliation());
+                affiliation.candidats.incrementAndGet();
+                if (avecVoix) {
+                    affiliation.voix.add(candidat.getVoix());
+                    totalVoix.add(candidat.getVoix());
+                }
+                nouveaux[idCandidat] = affiliation;
+            }
+            parCandidat = nouveaux;
+            return nouveaux;
+        }
+
+        /**
+         * Reporte le siège sur l'affiliation du vainqueur actuel. Sans verrou : le titulaire est
+         * remplacé par échange atomique, puis le vainqueur est relu ; le dernier thread à changer
+         * le titulaire le compare donc toujours à la tête la plus récente.
+         */
+        void actualiserSiege() {
+            while (true) {
+                List<Candidat> tete = circonscription.trouverVainqueur();
+                Candidat nouveau = tete.size() == 1 ? tete.get(0) : null;
+                Candidat ancien = titulaire.get();
+                if (ancien == nouveau) {
+                    return;
+                }
+                if (titulaire.compareAndSet(ancien, nouveau)) {
+                    if (ancien != null) {
+                        affiliation(ancien.getAffiliation()).sieges.decrementAndGet();
+                    }
+                    if (nouveau != null) {
+                        affiliation(nouveau.getAffiliation()).sieges.incrementAndGet();
+                    }
+                }
+            }
+        }
+    }
+
+    IndexAffiliations() {
+        this.affiliations = new ConcurrentHashMap<>();
+        this.totalVoix = new LongAdder();
+    }
+
+    /**
+     * Indexe une circonscription : ses candidats et leurs voix actuelles sont repris, puis ses
+     * variations et ses nouveaux candidats sont suivis. Comme pour le total national du scrutin,
+     * elle doit être rattachée avant que l'ingestion concurrente de ses voix ne commence.
+     */
+    void rattacher(Circonscription circonscription) {
+        Suivi suivi = new Suivi(circonscription);
+        suivi.indexer(true);
+        circonscription.ajouterObservateur(suivi);
+        suivi.indexer(false); // Candidats inscrits pendant le rattachement
+        suivi.actualiserSiege();
+    }
+
+    private Affiliation affiliation(String nom) {
+        return affiliations.computeIfAbsent(nom, Affiliation::new);
+    }
+
+    /**
+     * Récupère le total des voix d'une affiliation.
+     *
+     * @param affiliation Le nom de l'affiliation.
+     * @return Le total de ses voix (0 si elle n'a aucun candidat).
+     */
+    public long getVoix(String affiliation) {
+        Affiliation a = affiliations.get(affiliation);
+        return a == null ? 0 : a.voix.sum();
+    }
+
+    /**
+     * Calcule la part des voix d'une affiliation dans le total des voix indexées.
+     *
+     * @param affiliation Le nom de l'affiliation.
+     * @return Sa part des voix, en pourcentage.
+     */
+    public double partVoix(String affiliation) {
+        long total = totalVoix.sum();
+        return total == 0 ? 0 : (double) getVoix(affiliation) / total * 100;
+    }
+
+    /**
+     * Récupère le nombre de sièges d'une affiliation.
+     *
+     * @param affiliation Le nom de l'affiliation.
+     * @return Le nombre de circonscriptions dont elle a le vainqueur unique.
+     */
+    public int getSieges(String affiliation) {
+        Affiliation a = affiliations.get(affiliation);
+        return a == null ? 0 : a.sieges.get();
+    }
+
+    /**
+     * Récupère le nombre de candidats d'une affiliation.
+     *
+     * @param affiliation Le nom de l'affiliation.
+     * @return Le nombre de ses candidats, toutes circonscriptions confondues.
+     */
+    public int getCandidats(String affiliation) {
+        Affiliation a = affiliations.get(affiliation);
+        return a == null ? 0 : a.candidats.get();
+    }
+
+    /**
+     * Récupère le total des voix de chaque affiliation.
+     *
+     * @return Les voix par affiliation, triées par nom d'affiliation.
+     */
+    public Map<String, Long> voixParAffiliation() {
+        Map<String, Long> voix = new TreeMap<>();
+        for (Affiliation a : affiliations.values()) {
+            voix.put(a.nom, a.voix.sum());
+        }
+        return voix;
+    }
+
+    /**
+     * Récupère le nombre de sièges de chaque affiliation qui en a au moins un.
+     *
+     * @return Les sièges par affiliation, triés par nom d'affiliation.
+     */
+    public Map<String, Long> siegesParAffiliation() {
+        Map<String, Long> sieges = new TreeMap<>();
+        for (Affiliation a : affiliations.values()) {
+            int n = a.sieges.get();
+            if (n > 0) {
+                sieges.put(a.nom, (long) n);
+            }
+        }
+        return sieges;
+    }
+
+    /**
+     * Classe les affiliations par nombre de voix décroissant (par nom en cas d'égalité).
+     *
+     * @param nombre Le nombre d'affiliations à garder en tête du classement.
+     * @return Les premières affiliations et leurs voix, dans l'ordre du classement.
+     */
+    public List<Map.Entry<String, Long>> classementVoix(int nombre) {
+        return classement(nombre, a -> a.voix.sum());
+    }
+
+    /**
+     * Classe les affiliations par nombre de sièges décroissant (par nom en cas d'égalité).
+     *
+     * @param nombre Le nombre d'affiliations à garder en tête du classement.
+     * @return Les premières affiliations et leurs sièges, dans l'ordre du classement.
+     */
+    public List<Map.Entry<String, Long>> classementSieges(int nombre) {
+        return classement(nombre, a -> a.sieges.get());
+    }
+
+    private List<Map.Entry<String, Long>> classement(int nombre, ToLongFunction<Affiliation> critere) {
+        if (nombre < 0) {
+            throw new IllegalArgumentException("Le nombre d'affiliations à classer doit être positif.");
+        }
+        List<Map.Entry<String, Long>> lignes = new ArrayList<>(affiliations.size());
+        for (Affiliation a : affiliations.values()) {
+            lignes.add(Map.entry(a.nom, critere.applyAsLong(a))); // Valeur lue une seule fois par affiliation
+        }
+        lignes.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder())
+                .thenComparing(Map.Entry.comparingByKey()));
+        return lignes.size() > nombre ? new ArrayList<>(lignes.subList(0, nombre)) : lignes;
+    }
+
+    @Override
+    public String toString() {
+        return "Index de " + affiliations.size() + " affiliation(s) : " + totalVoix.sum() + " voix";
+    }
+}
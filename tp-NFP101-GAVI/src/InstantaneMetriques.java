@@ -0,0 +1,91 @@
+/**
+ * Relevé des métriques globales à un instant donné (voir {@link Metriques#instantane()}).
+ * Instance immuable.
+ */
+public class InstantaneMetriques {
+    private final long horodatageNanos; // Instant du relevé (System.nanoTime)
+    private final long voixIngerees; // Voix ingérées depuis la dernière remise à zéro
+    private final long ajoutsVoix; // Appels à ajouterVoix depuis la dernière remise à zéro
+    private final double voixParSeconde; // Débit depuis le relevé précédent
+    private final long latenceAjouterVoixP50; // Latences de ajouterVoix, en nanosecondes
+    private final long latenceAjouterVoixP99;
+    private final long latenceAjouterVoixP999;
+    private final long latenceAjouterVoixMax;
+    private final long latenceCloreElectionP50; // Latences de cloreElection, en nanosecondes
+    private final long latenceCloreElectionP99;
+    private final long latenceCloreElectionMax;
+    private final long contentionsTete; // Attentes sur le verrou de classement de tête
+
+    InstantaneMetriques(long horodatageNanos, long voixIngerees, long ajoutsVoix, double voixParSeconde,
+                        HistogrammeLatence ajouterVoix, HistogrammeLatence cloreElection, long contentionsTete) {
+        this.horodatageNanos = horodatageNanos;
+        this.voixIngerees = voixIngerees;
+        this.ajoutsVoix = ajoutsVoix;
+        this.voixParSeconde = voixParSeconde;
+        this.latenceAjouterVoixP50 = ajouterVoix.getPercentile(50);
+        this.latenceAjouterVoixP99 = ajouterVoix.getPercentile(99);
+        this.latenceAjouterVoixP999 = ajouterVoix.getPercentile(99.9);
+        this.latenceAjouterVoixMax = ajouterVoix.getMax();
+        this.latenceCloreElectionP50 = cloreElection.getPercentile(50);
+        this.latenceCloreElectionP99 = cloreElection.getPercentile(99);
+        this.latenceCloreElectionMax = cloreElection.getMax();
+        this.contentionsTete = contentionsTete;
+    }
+
+    public long getHorodatageNanos() {
+        return horodatageNanos;
+    }
+
+    public long getVoixIngerees() {
+        return voixIngerees;
+    }
+
+    public long getAjoutsVoix() {
+        return ajoutsVoix;
+    }
+
+    public double getVoixParSeconde() {
+        return voixParSeconde;
+    }
+
+    public long getLatenceAjouterVoixP50() {
+        return latenceAjouterVoixP50;
+    }
+
+    public long getLatenceAjouterVoixP99() {
+        return latenceAjouterVoixP99;
+    }
+
+    public long getLatenceAjouterVoixP999() {
+        return latenceAjouterVoixP999;
+    }
+
+    public long getLatenceAjouterVoixMax() {
+        return latenceAjouterVoixMax;
+    }
+
+    public long getLatenceCloreElectionP50() {
+        return latenceCloreElectionP50;
+    }
+
+    public long getLatenceCloreElectionP99() {
+        return latenceCloreElectionP99;
+    }
+
+    public long getLatenceCloreElectionMax() {
+        return latenceCloreElectionMax;
+    }
+
+    public long getContentionsTete() {
+        return contentionsTete;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d voix ingérées (%d ajouts, %.0f voix/s) ; ajouterVoix p50=%d ns p99=%d ns "
+                        + "p99.9=%d ns max=%d ns ; cloreElection p50=%d ns p99=%d ns max=%d ns ; %d contention(s)",
+                voixIngerees, ajoutsVoix, voixParSeconde, latenceAjouterVoixP50, latenceAjouterVoixP99,
+                latenceAjouterVoixP999, latenceAjouterVoixMax, latenceCloreElectionP50, latenceCloreElectionP99,
+                latenceCloreElectionMax, contentionsTete);
+    }
+}
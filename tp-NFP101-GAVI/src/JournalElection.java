@@ -0,0 +1,545 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32C;
+
+/**
+ * Journal binaire durable des opérations d'une ou plusieurs circonscriptions.
+ * Les enregistrements sont ajoutés à la fin d'un fichier projeté en mémoire
+ * et rendus durables par lots (« group commit ») : un thread dédié force
+ * l'écriture sur disque à intervalle régulier, ce qui répartit le coût de fsync
+ * sur tous les enregistrements du lot.
+ * Au démarrage, {@link #rejouer()} reconstruit les circonscriptions et leurs
+ * candidats à partir du journal, avec leurs historiques datés d'origine.
+ *
+ * Format : un en-tête (signature, version) puis une suite d'enregistrements
+ * [longueur][CRC32C][type][horodatage][données]. La relecture s'arrête au premier
+ * enregistrement incomplet ou corrompu (écriture interrompue par un arrêt brutal).
+ * Depuis la version 2, l'horodatage est en nanosecondes depuis l'époque, comme dans les historiques
+ * (en millisecondes dans la version 1, qui reste lisible et à laquelle un journal existant continue
+ * d'être complété).
+ */
+public class JournalElection implements Closeable {
+    private static final int SIGNATURE = 0x454C4543; // "ELEC"
+    private static final short VERSION = 2;
+    private static final int TAILLE_ENTETE = 8;
+    private static final int TAILLE_REGION = 16 * 1024 * 1024; // Taille d'une région projetée
+    private static final int TAILLE_MAX_ENREGISTREMENT = 4096;
+    private static final int TAILLE_MAX_TEXTE = TAILLE_MAX_ENREGISTREMENT / 2; // En octets UTF-8
+    private static final int TAILLE_DEBUT = 13; // Type, horodatage et identifiant de circonscription
+    private static final int SUITE_REGION_SUIVANTE = -1; // Marqueur de fin de région
+    private static final long DELAI_GROUPE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static final byte CIRCONSCRIPTION = 1;
+    private static final byte CANDIDAT = 2;
+    private static final byte VOIX = 3;
+    private static final byte CLOTURE = 4;
+    private static final byte ACTION = 5;
+    private static final byte BUREAU = 6;
+    private static final byte VOIX_BUREAU = 7;
+    private static final byte REMONTEE = 8;
+    private static final byte LOT = 9;
+    private static final byte ACTION_CANDIDAT = 10;
+    private static final int DEBUT_LOT = 13; // Position de l'événement tracé dans un enregistrement de lot
+
+    private final FileChannel canal;
+    private final ByteBuffer tampon; // Données d'un enregistrement, avant copie dans la région
+    private final CRC32C crc;
+    private final List<Circonscription> circonscriptions; // Indexées par identifiant de journal
+    private final short version; // Version du fichier, conservée pour les enregistrements ajoutés
+    private MappedByteBuffer region; // Région en cours d'écriture
+    private long debutRegion; // Position de la région dans le fichier
+    private volatile long positionEcrite; // Fin du dernier enregistrement écrit
+    private long positionDurable; // Fin du dernier enregistrement forcé sur disque (protégée par verrouDurabilite)
+    private final Object verrouDurabilite;
+    private final Thread synchronisation;
+    private volatile boolean ferme;
+    private boolean rejoue;
+
+    private JournalElection(FileChannel canal) throws IOException {
+        this.canal = canal;
+        this.tampon = ByteBuffer.allocate(TAILLE_MAX_ENREGISTREMENT);
+        this.crc = new CRC32C();
+        this.circonscriptions = new ArrayList<>();
+        this.verrouDurabilite = new Object();
+        if (canal.size() == 0) {
+            projeter(0);
+            region.putInt(SIGNATURE).putShort(VERSION).putShort((short) 0);
+            version = VERSION;
+            positionEcrite = TAILLE_ENTETE;
+        } else {
+            projeter(0);
+            version = region.getShort(4);
+            if (region.getInt(0) != SIGNATURE || version < 1 || version > VERSION) {
+                throw new IOException("Le fichier n'est pas un journal d'élection valide.");
+            }
+            positionEcrite = -1; // Inconnue tant que le journal n'a pas été rejoué
+        }
+        this.synchronisation = new Thread(this::synchroniserEnContinu, "journal-election-sync");
+        synchronisation.setDaemon(true);
+        synchronisation.start();
+    }
+
+    /**
+     * Ouvre (ou crée) un journal.
+     * Si le fichier existe déjà, {@link #rejouer()} doit être appelé avant tout nouvel enregistrement.
+     *
+     * @param fichier Le chemin du fichier journal.
+     * @return Le journal ouvert.
+     * @throws IOException si le fichier ne peut pas être ouvert ou n'est pas un journal.
+     */
+    public static JournalElection ouvrir(Path fichier) throws IOException {
+        FileChannel canal = FileChannel.open(fichier,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new JournalElection(canal);
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    private void projeter(long debut) throws IOException {
+        region = canal.map(FileChannel.MapMode.READ_WRITE, debut, TAILLE_REGION);
+        debutRegion = debut;
+    }
+
+    /**
+     * Reconstruit les circonscriptions enregistrées dans le journal, dans l'état
+     * où elles se trouvaient au dernier enregistrement valide, puis les rattache
+     * au journal pour que les opérations suivantes y soient ajoutées.
+     * Chaque événement rejoué est ajouté aux historiques avec l'horodatage et le type d'origine
+     * (voir {@link HistoriqueCompact#debuterRelecture()}). Seuls les événements antérieurs
+     * à la journalisation d'une entité (voir {@link #enregistrer(Circonscription)}) en sont absents.
+     *
+     * @return Les circonscriptions reconstruites, dans l'ordre de leur enregistrement.
+     * @throws IOException en cas d'erreur de lecture.
+     */
+    public synchronized List<Circonscription> rejouer() throws IOException {
+        if (rejoue || !circonscriptions.isEmpty()) {
+            throw new IllegalStateException("Le journal a déjà été rejoué ou utilisé.");
+        }
+        rejoue = true;
+        long position = TAILLE_ENTETE;
+        long nbEvenements = 0;
+        byte[] donnees = new byte[TAILLE_MAX_ENREGISTREMENT];
+        HistoriqueCompact.debuterRelecture(); // Événements datés de leur horodatage journalisé
+        try {
+            while (true) {
+                int decalage = (int) (position - debutRegion);
+                if (decalage + 8 > TAILLE_REGION) {
+                    break;
+                }
+                int longueur = region.getInt(decalage);
+                if (longueur == SUITE_REGION_SUIVANTE) {
+                    position = debutRegion + TAILLE_REGION;
+                    if (position >= canal.size()) {
+                        break;
+                    }
+                    projeter(position);
+                    continue;
+                }
+                if (longueur <= 0 || longueur > TAILLE_MAX_ENREGISTREMENT || decalage + 8 + longueur > TAILLE_REGION) {
+                    break;
+                }
+                region.get(decalage + 8, donnees, 0, longueur);
+                crc.reset();
+                crc.update(donnees, 0, longueur);
+                if ((int) crc.getValue() != region.getInt(decalage + 4)) {
+                    break; // Enregistrement interrompu : fin du journal exploitable
+                }
+                appliquer(ByteBuffer.wrap(donnees, 0, longueur));
+                nbEvenements++;
+                position += 8 + longueur;
+            }
+        } finally {
+            HistoriqueCompact.terminerRelecture();
+        }
+        positionEcrite = position;
+        synchronized (verrouDurabilite) {
+            positionDurable = position;
+        }
+        for (int id = 0; id < circonscriptions.size(); id++) {
+            Circonscription circonscription = circonscriptions.get(id);
+            circonscription.ajouterAction("Reprise depuis le journal : " + nbEvenements + " événements rejoués.");
+            circonscription.attacherJournal(this, id);
+        }
+        return new ArrayList<>(circonscriptions);
+    }
+
+    private void appliquer(ByteBuffer donnees) {
+        byte type = donnees.get();
+        long horodatage = donnees.getLong();
+        HistoriqueCompact.dater(version == 1 ? TimeUnit.MILLISECONDS.toNanos(horodatage) : horodatage);
+        if (type == CIRCONSCRIPTION) {
+            int inscrits = donnees.getInt();
+            circonscriptions.add(new Circonscription(lireTexte(donnees), inscrits));
+            return;
+        }
+        Circonscription circonscription = circonscriptions.get(donnees.getInt());
+        switch (type) {
+            case CANDIDAT:
+                String nom = lireTexte(donnees);
+                String prenom = lireTexte(donnees);
+                circonscription.ajouterCandidat(new Candidat(nom, prenom, lireTexte(donnees)));
+                break;
+            case VOIX:
+                circonscription.ajouterVoix(donnees.getInt(), donnees.getInt());
+                break;
+            case CLOTURE:
+                circonscription.cloreElection();
+                break;
+            case ACTION:
+                circonscription.ajouterAction(lireTexte(donnees));
+                break;
+            case BUREAU:
+                circonscription.ajouterBureau(lireTexte(donnees));
+                break;
+            case VOIX_BUREAU:
+                BureauDeVote bureau = circonscription.getBureau(donnees.getInt());
+                bureau.appliquerVariation(donnees.getInt(), donnees.getInt());
+                break;
+            case REMONTEE:
+                long idRemontee = donnees.getLong();
+                int[] voix = new int[donnees.getInt()];
+                while (donnees.hasRemaining()) {
+                    int idCandidat = donnees.getInt();
+                    voix[idCandidat] = donnees.getInt();
+                }
+                circonscription.soumettreRemontee(idRemontee, voix);
+                break;
+            case LOT:
+                byte evenement = donnees.get();
+                int nbLignes = donnees.getInt();
+                int totalLot = donnees.getInt();
+                long[] voixLot = new long[circonscription.getNombreCandidats()];
+                while (donnees.hasRemaining()) {
+                    int idCandidat = donnees.getInt();
+                    voixLot[idCandidat] += donnees.getInt();
+                }
+                circonscription.appliquerLot(voixLot, evenement, nbLignes, totalLot);
+                break;
+            case ACTION_CANDIDAT:
+                Candidat candidat = circonscription.getCandidat(donnees.getInt());
+                candidat.ajouterAction(lireTexte(donnees));
+                break;
+            default:
+                throw new IllegalStateException("Type d'enregistrement inconnu : " + type);
+        }
+    }
+
+    /**
+     * Enregistre une circonscription dans le journal, avec ses candidats, ses bureaux de vote
+     * et leurs voix actuelles, puis l'y rattache : ses opérations suivantes seront journalisées.
+     * La circonscription ne doit pas être modifiée pendant son enregistrement.
+     *
+     * @param circonscription La circonscription à journaliser.
+     * @throws IllegalArgumentException si la circonscription est déjà rattachée à un journal.
+     */
+    public synchronized void enregistrer(Circonscription circonscription) {
+        verifierOuvert();
+        if (circonscription.estJournalisee()) {
+            // Ses écritures en cours attendraient ce verrou, et la copie de son état ces écritures
+            throw new IllegalArgumentException("La circonscription est déjà rattachée à un journal.");
+        }
+        verifierTexte(circonscription.getNom());
+        for (int idCandidat = 0; idCandidat < circonscription.getNombreCandidats(); idCandidat++) {
+            verifierCandidat(circonscription.getCandidat(idCandidat));
+        }
+        for (int idBureau = 0; idBureau < circonscription.getNombreBureaux(); idBureau++) {
+            verifierTexte(circonscription.getBureau(idBureau).getNom());
+        }
+        int id = circonscriptions.size();
+        debut(CIRCONSCRIPTION).putInt(circonscription.getInscrits());
+        ecrireTexte(circonscription.getNom());
+        terminer();
+        Circonscription.Etat etat = circonscription.copierEtat();
+        long[] voixHorsBureaux = etat.voixCandidats;
+        int nbCandidats = voixHorsBureaux.length;
+        for (int idCandidat = 0; idCandidat < nbCandidats; idCandidat++) {
+            candidat(id, circonscription.getCandidat(idCandidat));
+        }
+        for (int idBureau = 0; idBureau < etat.voixBureaux.length; idBureau++) {
+            bureau(id, circonscription.getBureau(idBureau).getNom());
+            int[] voixBureau = etat.voixBureaux[idBureau];
+            for (int idCandidat = 0; idCandidat < nbCandidats; idCandidat++) {
+                if (voixBureau[idCandidat] > 0) {
+                    voixBureau(id, idBureau, idCandidat, voixBureau[idCandidat]);
+                    voixHorsBureaux[idCandidat] -= voixBureau[idCandidat];
+                }
+            }
+        }
+        for (int idCandidat = 0; idCandidat < nbCandidats; idCandidat++) {
+            if (voixHorsBureaux[idCandidat] > 0) {
+                voix(id, idCandidat, (int) voixHorsBureaux[idCandidat]);
+            }
+        }
+        for (long idRemontee : etat.idsRemontees) {
+            remontee(id, idRemontee, new int[0]); // Voix déjà comptées ci-dessus
+        }
+        if (etat.cloturee) {
+            cloture(id);
+        }
+        circonscriptions.add(circonscription);
+        circonscription.attacherJournal(this, id);
+    }
+
+    synchronized void candidat(int idCirconscription, Candidat candidat) {
+        debut(CANDIDAT).putInt(idCirconscription);
+        ecrireTexte(candidat.getNom());
+        ecrireTexte(candidat.getPrenom());
+        ecrireTexte(candidat.getAffiliation());
+        terminer();
+    }
+
+    synchronized void voix(int idCirconscription, int idCandidat, int voix) {
+        debut(VOIX).putInt(idCirconscription).putInt(idCandidat).putInt(voix);
+        terminer();
+    }
+
+    synchronized void bureau(int idCirconscription, String nomBureau) {
+        debut(BUREAU).putInt(idCirconscription);
+        ecrireTexte(nomBureau);
+        terminer();
+    }
+
+    synchronized void voixBureau(int idCirconscription, int idBureau, int idCandidat, int variation) {
+        debut(VOIX_BUREAU).putInt(idCirconscription).putInt(idBureau).putInt(idCandidat).putInt(variation);
+        terminer();
+    }
+
+    /**
+     * Journalise une remontée identifiée ; seules les voix non nulles sont écrites,
+     * sous forme de couples (candidat, voix).
+     */
+    synchronized void remontee(int idCirconscription, long idRemontee, int[] voix) {
+        ByteBuffer donnees = debut(REMONTEE).putInt(idCirconscription).putLong(idRemontee).putInt(voix.length);
+        for (int idCandidat = 0; idCandidat < voix.length; idCandidat++) {
+            if (voix[idCandidat] > 0) {
+                donnees.putInt(idCandidat).putInt(voix[idCandidat]);
+            }
+        }
+        terminer();
+    }
+
+    /**
+     * Vérifie qu'une remontée tient dans un enregistrement, avant toute modification de la circonscription.
+     *
+     * @throws IllegalArgumentException si elle comporte trop de voix non nulles.
+     */
+    static void verifierRemontee(int[] voix) {
+        int taille = TAILLE_DEBUT + 12; // Identifiant de la remontée et nombre de valeurs
+        for (int v : voix) {
+            if (v > 0) {
+                taille += 8;
+            }
+        }
+        if (taille > TAILLE_MAX_ENREGISTREMENT) {
+            throw new IllegalArgumentException("Remontée trop longue pour le journal.");
+        }
+    }
+
+    /**
+     * Vérifie qu'un candidat tient dans un enregistrement, avant son ajout à la circonscription.
+     *
+     * @throws IllegalArgumentException si son nom, son prénom ou son affiliation sont trop longs.
+     */
+    static void verifierCandidat(Candidat candidat) {
+        int taille = TAILLE_DEBUT;
+        for (String texte : new String[]{candidat.getNom(), candidat.getPrenom(), candidat.getAffiliation()}) {
+            taille += 2 + verifierTexte(texte);
+        }
+        if (taille > TAILLE_MAX_ENREGISTREMENT) {
+            throw new IllegalArgumentException("Candidat trop long pour le journal.");
+        }
+    }
+
+    /**
+     * Vérifie qu'un texte tient dans un enregistrement, avant toute modification de l'état qu'il décrit.
+     *
+     * @return La longueur du texte en octets UTF-8.
+     * @throws IllegalArgumentException si le texte est trop long.
+     */
+    static int verifierTexte(String texte) {
+        int longueur = texte.length() * 3 <= TAILLE_MAX_TEXTE ? texte.length() * 3 // Majorant, sans encodage
+                : texte.getBytes(StandardCharsets.UTF_8).length;
+        if (longueur > TAILLE_MAX_TEXTE) {
+            throw new IllegalArgumentException("Texte trop long pour le journal.");
+        }
+        return longueur;
+    }
+
+    synchronized void cloture(int idCirconscription) {
+        debut(CLOTURE).putInt(idCirconscription);
+        terminer();
+    }
+
+    synchronized void action(int idCirconscription, String action) {
+        debut(ACTION).putInt(idCirconscription);
+        ecrireTexte(action);
+        terminer();
+    }
+
+    /**
+     * Journalise un lot de voix importé (voir {@link Circonscription#appliquerLot}) : l'événement
+     * tracé dans l'historique, puis les couples (candidat, voix) non nuls. Un lot trop long pour
+     * un seul enregistrement est réparti sur plusieurs : seul le dernier porte l'événement,
+     * les précédents ne font qu'ajouter leurs voix à la relecture.
+     */
+    synchronized void lot(int idCirconscription, long[] voix, byte evenement, int nbLignes, int totalLot) {
+        ByteBuffer donnees = debutLot(idCirconscription);
+        for (int idCandidat = 0; idCandidat < voix.length; idCandidat++) {
+            if (voix[idCandidat] != 0) {
+                if (donnees.remaining() < 8) {
+                    terminer();
+                    donnees = debutLot(idCirconscription);
+                }
+                donnees.putInt(idCandidat).putInt((int) voix[idCandidat]);
+            }
+        }
+        donnees.put(DEBUT_LOT, evenement).putInt(DEBUT_LOT + 1, nbLignes).putInt(DEBUT_LOT + 5, totalLot);
+        terminer();
+    }
+
+    private ByteBuffer debutLot(int idCirconscription) {
+        return debut(LOT).putInt(idCirconscription).put((byte) 0).putInt(0).putInt(0);
+    }
+
+    synchronized void actionCandidat(int idCirconscription, int idCandidat, String action) {
+        debut(ACTION_CANDIDAT).putInt(idCirconscription).putInt(idCandidat);
+        ecrireTexte(action);
+        terminer();
+    }
+
+    private ByteBuffer debut(byte type) {
+        verifierOuvert();
+        if (positionEcrite < 0) {
+            throw new IllegalStateException("Le journal existant doit être rejoué avant tout nouvel enregistrement.");
+        }
+        tampon.clear();
+        long horodatage = version == 1 ? System.currentTimeMillis() : HistoriqueCompact.horodatage();
+        return tampon.put(type).putLong(horodatage);
+    }
+
+    private void ecrireTexte(String texte) {
+        byte[] octets = texte.getBytes(StandardCharsets.UTF_8);
+        if (octets.length > TAILLE_MAX_TEXTE) {
+            throw new IllegalArgumentException("Texte trop long pour le journal.");
+        }
+        tampon.putShort((short) octets.length).put(octets);
+    }
+
+    private static String lireTexte(ByteBuffer donnees) {
+        int longueur = Short.toUnsignedInt(donnees.getShort());
+        String texte = new String(donnees.array(), donnees.position(), longueur, StandardCharsets.UTF_8);
+        donnees.position(donnees.position() + longueur);
+        return texte;
+    }
+
+    private void terminer() {
+        int longueur = tampon.position();
+        crc.reset();
+        crc.update(tampon.array(), 0, longueur);
+        try {
+            int decalage = (int) (positionEcrite - debutRegion);
+            if (decalage + 8 + longueur + 4 > TAILLE_REGION) {
+                region.putInt(decalage, SUITE_REGION_SUIVANTE);
+                region.force(); // L'ancienne région est rendue durable avant d'être abandonnée
+                projeter(debutRegion + TAILLE_REGION);
+                positionEcrite = debutRegion;
+                decalage = 0;
+            }
+            region.putInt(decalage + 4, (int) crc.getValue());
+            region.put(decalage + 8, tampon.array(), 0, longueur);
+            region.putInt(decalage, longueur); // Écrite en dernier : l'enregistrement devient lisible
+            positionEcrite += 8 + longueur;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Écriture du journal impossible.", e);
+        }
+    }
+
+    private void verifierOuvert() {
+        if (ferme) {
+            throw new IllegalStateException("Le journal est fermé.");
+        }
+    }
+
+    /**
+     * Attend que tous les enregistrements écrits jusqu'ici soient durables sur disque.
+     *
+     * @throws InterruptedException si le thread est interrompu pendant l'attente.
+     */
+    public void synchroniser() throws InterruptedException {
+        long cible = positionEcrite;
+        LockSupport.unpark(synchronisation);
+        synchronized (verrouDurabilite) {
+            while (positionDurable < cible && !ferme) {
+                verrouDurabilite.wait();
+            }
+        }
+    }
+
+    private void synchroniserEnContinu() {
+        while (!ferme) {
+            LockSupport.parkNanos(DELAI_GROUPE_NANOS);
+            forcer();
+        }
+    }
+
+    private void forcer() {
+        MappedByteBuffer aForcer;
+        long position;
+        synchronized (this) {
+            aForcer = region;
+            position = positionEcrite;
+        }
+        if (position <= positionDurableCourante()) {
+            return;
+        }
+        aForcer.force(); // Un seul fsync pour tous les enregistrements du lot
+        synchronized (verrouDurabilite) {
+            positionDurable = Math.max(positionDurable, position);
+            verrouDurabilite.notifyAll();
+        }
+    }
+
+    private long positionDurableCourante() {
+        synchronized (verrouDurabilite) {
+            return positionDurable;
+        }
+    }
+
+    /**
+     * Rend le journal durable puis le ferme.
+     *
+     * @throws IOException en cas d'erreur d'écriture.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (ferme) {
+                return;
+            }
+            if (positionEcrite >= 0) {
+                region.force();
+            }
+            ferme = true;
+        }
+        LockSupport.unpark(synchronisation);
+        synchronized (verrouDurabilite) {
+            positionDurable = Math.max(positionDurable, positionEcrite);
+            verrouDurabilite.notifyAll();
+        }
+        canal.close();
+    }
+}
@@ -0,0 +1,222 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Métriques d'exécution du modèle électoral : débit de voix ingérées, latences de
+ * {@code ajouterVoix} et {@code cloreElection}, contention sur le classement de tête.
+ * Les compteurs sont des {@link LongAdder} et les latences des {@link HistogrammeLatence},
+ * alimentés sans verrou. La collecte est désactivée par défaut : chaque point de mesure
+ * se réduit alors à la lecture d'un booléen.
+ *
+ * Les métriques sont consultables par relevé ({@link #instantane()}) ou par JMX,
+ * sous le nom {@code election:type=Metriques} (et {@code election:type=Circonscription,nom=...}
+ * pour les circonscriptions surveillées).
+ */
+public final class Metriques implements MetriquesMBean {
+    static volatile boolean actif; // Lu à chaque point de mesure
+
+    private static final LongAdder VOIX_INGEREES = new LongAdder();
+    private static final LongAdder AJOUTS_VOIX = new LongAdder();
+    private static final LongAdder CONTENTIONS_TETE = new LongAdder();
+    private static final HistogrammeLatence LATENCE_AJOUTER_VOIX = new HistogrammeLatence();
+    private static final HistogrammeLatence LATENCE_CLORE_ELECTION = new HistogrammeLatence();
+    private static final Metriques INSTANCE = new Metriques();
+
+    private static long dernierReleveNanos = System.nanoTime(); // Protégés par le verrou de la classe
+    private static long dernierReleveVoix;
+    private static double dernierDebit;
+
+    private Metriques() {
+    }
+
+    /**
+     * Active la collecte des métriques.
+     */
+    public static void activer() {
+        actif = true;
+    }
+
+    /**
+     * Désactive la collecte des métriques. Les valeurs déjà collectées sont conservées.
+     */
+    public static void desactiver() {
+        actif = false;
+    }
+
+    /**
+     * Indique si la collecte des métriques est active.
+     *
+     * @return true si la collecte est active.
+     */
+    public static boolean estActif() {
+        return actif;
+    }
+
+    /**
+     * Enregistre l'ingestion de voix par un appel à ajouterVoix.
+     *
+     * @param debut L'instant de début de l'appel (System.nanoTime).
+     * @param voix  Le nombre de voix ajoutées.
+     */
+    static void ajoutVoix(long debut, int voix) {
+        LATENCE_AJOUTER_VOIX.enregistrer(System.nanoTime() - debut);
+        AJOUTS_VOIX.increment();
+        VOIX_INGEREES.add(voix);
+    }
+
+    /**
+     * Enregistre l'ingestion de voix hors ajouterVoix (bureaux de vote, import en masse).
+     *
+     * @param voix Le nombre de voix ingérées.
+     */
+    static void voixIngerees(long voix) {
+        VOIX_INGEREES.add(voix);
+    }
+
+    /**
+     * Enregistre la durée d'une clôture.
+     *
+     * @param debut L'instant de début de l'appel (System.nanoTime).
+     */
+    static void cloture(long debut) {
+        LATENCE_CLORE_ELECTION.enregistrer(System.nanoTime() - debut);
+    }
+
+    /**
+     * Enregistre une attente sur le verrou du classement de tête.
+     */
+    static void contentionTete() {
+        CONTENTIONS_TETE.increment();
+    }
+
+    /**
+     * Relève les métriques globales. Le débit est calculé depuis le relevé précédent
+     * (relevé JMX compris).
+     *
+     * @return Le relevé des métriques.
+     */
+    public static InstantaneMetriques instantane() {
+        long maintenant;
+        long voix = VOIX_INGEREES.sum();
+        double debit;
+        synchronized (Metriques.class) {
+            maintenant = System.nanoTime();
+            long duree = maintenant - dernierReleveNanos;
+            if (duree >= 1_000_000L) { // Relevés trop rapprochés : débit précédent conservé
+                dernierDebit = (voix - dernierReleveVoix) * 1e9 / duree;
+                dernierReleveNanos = maintenant;
+                dernierReleveVoix = voix;
+            }
+            debit = dernierDebit;
+        }
+        return new InstantaneMetriques(maintenant, voix, AJOUTS_VOIX.sum(), debit,
+                LATENCE_AJOUTER_VOIX, LATENCE_CLORE_ELECTION, CONTENTIONS_TETE.sum());
+    }
+
+    /**
+     * Remet toutes les métriques à zéro.
+     */
+    public static void remettreAZero() {
+        synchronized (Metriques.class) {
+            VOIX_INGEREES.reset();
+            AJOUTS_VOIX.reset();
+            CONTENTIONS_TETE.reset();
+            LATENCE_AJOUTER_VOIX.reinitialiser();
+            LATENCE_CLORE_ELECTION.reinitialiser();
+            dernierReleveNanos = System.nanoTime();
+            dernierReleveVoix = 0;
+            dernierDebit = 0;
+        }
+    }
+
+    /**
+     * Publie les métriques globales par JMX (sans effet si elles le sont déjà).
+     */
+    public static void publierJmx() {
+        enregistrerMBean(INSTANCE, "election:type=Metriques");
+    }
+
+    /**
+     * Publie par JMX les métriques d'une circonscription : total des voix, participation,
+     * taille et mémoire retenue par les historiques. Publie aussi les métriques globales.
+     *
+     * @param circonscription La circonscription à surveiller.
+     */
+    public static void surveiller(Circonscription circonscription) {
+        publierJmx();
+        enregistrerMBean(new MetriquesCirconscription(circonscription),
+                "election:type=Circonscription,nom=" + ObjectName.quote(circonscription.getNom()));
+    }
+
+    private static void enregistrerMBean(Object mbean, String nom) {
+        MBeanServer serveur = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(nom);
+            synchronized (Metriques.class) {
+                if (!serveur.isRegistered(objectName)) {
+                    serveur.registerMBean(mbean, objectName);
+                }
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Publication JMX impossible : " + nom, e);
+        }
+    }
+
+    @Override
+    public boolean isActif() {
+        return actif;
+    }
+
+    @Override
+    public void setActif(boolean actif) {
+        Metriques.actif = actif;
+    }
+
+    @Override
+    public long getVoixIngerees() {
+        return VOIX_INGEREES.sum();
+    }
+
+    @Override
+    public long getAjoutsVoix() {
+        return AJOUTS_VOIX.sum();
+    }
+
+    @Override
+    public double getVoixParSeconde() {
+        return instantane().getVoixParSeconde();
+    }
+
+    @Override
+    public long getLatenceAjouterVoixP50() {
+        return LATENCE_AJOUTER_VOIX.getPercentile(50);
+    }
+
+    @Override
+    public long getLatenceAjouterVoixP99() {
+        return LATENCE_AJOUTER_VOIX.getPercentile(99);
+    }
+
+    @Override
+    public long getLatenceAjouterVoixMax() {
+        return LATENCE_AJOUTER_VOIX.getMax();
+    }
+
+    @Override
+    public long getLatenceCloreElectionP99() {
+        return LATENCE_CLORE_ELECTION.getPercentile(99);
+    }
+
+    @Override
+    public long getContentionsTete() {
+        return CONTENTIONS_TETE.sum();
+    }
+
+    @Override
+    public void reinitialiser() {
+        remettreAZero();
+    }
+}
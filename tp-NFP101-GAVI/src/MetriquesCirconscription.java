@@ -0,0 +1,64 @@
+/**
+ * Métriques d'une circonscription, exposées par JMX.
+ * Les valeurs sont calculées à la lecture : la surveillance ne coûte rien à l'ingestion.
+ */
+public class MetriquesCirconscription implements MetriquesCirconscriptionMBean {
+    private final Circonscription circonscription; // Circonscription surveillée
+
+    MetriquesCirconscription(Circonscription circonscription) {
+        this.circonscription = circonscription;
+    }
+
+    @Override
+    public long getTotalVoix() {
+        return circonscription.getTotalVoix();
+    }
+
+    @Override
+    public double getTauxParticipation() {
+        return circonscription.tauxParticipation();
+    }
+
+    @Override
+    public int getNombreCandidats() {
+        return circonscription.getNombreCandidats();
+    }
+
+    @Override
+    public int getTailleHistorique() {
+        return circonscription.historique().taille();
+    }
+
+    @Override
+    public long getTailleHistoriquesCandidats() {
+        long taille = 0;
+        for (int id = 0; id < circonscription.getNombreCandidats(); id++) {
+            taille += circonscription.getCandidat(id).historique().taille();
+        }
+        return taille;
+    }
+
+    @Override
+    public long getOctetsHistoriques() {
+        long octets = circonscription.historique().octetsRetenus();
+        for (int id = 0; id < circonscription.getNombreCandidats(); id++) {
+            octets += circonscription.getCandidat(id).historique().octetsRetenus();
+        }
+        return octets;
+    }
+
+    @Override
+    public long getOctetsHorsTas() {
+        return circonscription.getOctetsHorsTas();
+    }
+
+    @Override
+    public long getNombreRemontees() {
+        return circonscription.getNombreRemontees();
+    }
+
+    @Override
+    public long getNombreDoublons() {
+        return circonscription.getNombreDoublons();
+    }
+}
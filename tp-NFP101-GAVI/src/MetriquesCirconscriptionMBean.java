@@ -0,0 +1,50 @@
+/**
+ * Interface JMX des métriques d'une circonscription surveillée
+ * (voir {@link Metriques#surveiller(Circonscription)}).
+ */
+public interface MetriquesCirconscriptionMBean {
+    /**
+     * @return Le total des voix de la circonscription.
+     */
+    long getTotalVoix();
+
+    /**
+     * @return Le taux de participation, en pourcentage.
+     */
+    double getTauxParticipation();
+
+    /**
+     * @return Le nombre de candidats.
+     */
+    int getNombreCandidats();
+
+    /**
+     * @return Le nombre d'actions de l'historique de la circonscription.
+     */
+    int getTailleHistorique();
+
+    /**
+     * @return Le nombre d'actions des historiques de ses candidats.
+     */
+    long getTailleHistoriquesCandidats();
+
+    /**
+     * @return L'estimation de la mémoire retenue par les historiques (circonscription et candidats), en octets.
+     */
+    long getOctetsHistoriques();
+
+    /**
+     * @return La mémoire hors tas réservée aux compteurs de voix, en octets.
+     */
+    long getOctetsHorsTas();
+
+    /**
+     * @return Le nombre de remontées identifiées appliquées.
+     */
+    long getNombreRemontees();
+
+    /**
+     * @return Le nombre de remontées reçues en double et ignorées.
+     */
+    long getNombreDoublons();
+}
@@ -0,0 +1,61 @@
+/**
+ * Interface JMX des métriques globales du modèle électoral (voir {@link Metriques}).
+ */
+public interface MetriquesMBean {
+    /**
+     * @return true si la collecte des métriques est active.
+     */
+    boolean isActif();
+
+    /**
+     * Active ou désactive la collecte des métriques.
+     *
+     * @param actif true pour activer la collecte.
+     */
+    void setActif(boolean actif);
+
+    /**
+     * @return Le nombre total de voix ingérées depuis la dernière remise à zéro.
+     */
+    long getVoixIngerees();
+
+    /**
+     * @return Le nombre d'appels à ajouterVoix depuis la dernière remise à zéro.
+     */
+    long getAjoutsVoix();
+
+    /**
+     * @return Le débit de voix ingérées par seconde depuis le précédent relevé.
+     */
+    double getVoixParSeconde();
+
+    /**
+     * @return La latence médiane de ajouterVoix, en nanosecondes.
+     */
+    long getLatenceAjouterVoixP50();
+
+    /**
+     * @return Le 99e percentile de latence de ajouterVoix, en nanosecondes.
+     */
+    long getLatenceAjouterVoixP99();
+
+    /**
+     * @return La latence maximale de ajouterVoix, en nanosecondes.
+     */
+    long getLatenceAjouterVoixMax();
+
+    /**
+     * @return Le 99e percentile de latence de cloreElection, en nanosecondes.
+     */
+    long getLatenceCloreElectionP99();
+
+    /**
+     * @return Le nombre d'acquisitions du verrou de classement de tête ayant dû attendre.
+     */
+    long getContentionsTete();
+
+    /**
+     * Remet toutes les métriques à zéro.
+     */
+    void reinitialiser();
+}
@@ -0,0 +1,27 @@
+/**
+ * Interface pour suivre les variations de voix d'une circonscription.
+ * L'observateur est appelé de façon synchrone, dans le thread qui ajoute les voix :
+ * son traitement doit donc être court et supporter les appels concurrents.
+ * Il peut aussi suivre les inscriptions de candidats.
+ */
+@FunctionalInterface
+public interface ObservateurVoix {
+    /**
+     * Signale une variation des voix d'un candidat.
+     *
+     * @param circonscription La circonscription concernée.
+     * @param idCandidat      L'identifiant du candidat dans la circonscription.
+     * @param variation       La variation du nombre de voix (négative en cas de correction).
+     */
+    void voixModifiees(Circonscription circonscription, int idCandidat, int variation);
+
+    /**
+     * Signale l'inscription d'un candidat, une fois celui-ci visible dans la circonscription.
+     * Ne fait rien par défaut.
+     *
+     * @param circonscription La circonscription concernée.
+     * @param idCandidat      L'identifiant du nouveau candidat.
+     */
+    default void candidatAjoute(Circonscription circonscription, int idCandidat) {
+    }
+}
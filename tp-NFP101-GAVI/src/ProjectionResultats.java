@@ -0,0 +1,486 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Projection des résultats définitifs à partir des résultats partiels, par simulation de Monte-Carlo.
+ *
+ * Pour chaque circonscription, les voix restant à dépouiller sont estimées d'après le nombre
+ * d'inscrits et une participation finale attendue ; chaque tirage les répartit entre les candidats
+ * selon des parts aléatoires (loi de Dirichlet centrée sur les parts déjà observées), puis désigne
+ * le vainqueur. Les tirages sont répartis sur tous les cœurs (pool fork-join commun), chaque tâche
+ * disposant de son propre générateur issu de {@link SplittableRandom#split()}.
+ *
+ * La projection est incrémentale : les tirages d'une circonscription dont les voix n'ont pas changé
+ * depuis la projection précédente sont conservés et complétés, seules les circonscriptions modifiées
+ * (voir {@link ObservateurVoix}) repartent de zéro. Chaque projection respecte un budget de temps :
+ * elle s'arrête au plus tard peu après son échéance, avec les tirages déjà effectués.
+ * {@link #close()} cesse le suivi des circonscriptions.
+ */
+public final class ProjectionResultats implements AutoCloseable {
+    private static final int TIRAGES_PAR_TACHE = 4_096; // Tirages d'une tâche élémentaire par circonscription
+    private static final int TIRAGES_ENTRE_CONTROLES = 256; // Tirages entre deux lectures de l'horloge
+    private static final double CONCENTRATION = 1_000; // Poids, en voix, des parts observées dans les tirages
+    private static final int NB_CLASSES = 1_000; // Classes de l'histogramme des parts (0,1 % chacune)
+    private static final double Z_95 = 1.959964; // Quantile de la loi normale pour un intervalle à 95 %
+
+    private final List<Suivi> suivis; // Circonscriptions projetées, dans l'ordre fourni
+    private final double participationFinale;
+    private final long tiragesMax;
+    private final SplittableRandom aleatoire; // Racine des générateurs des tâches
+    private boolean ferme; // Protégé par le verrou de l'instance
+
+    /**
+     * Suivi d'une circonscription : indicateur de modification et tirages accumulés
+     * depuis la dernière modification.
+     */
+    private static final class Suivi implements ObservateurVoix {
+        final Circonscription circonscription;
+        volatile boolean modifiee = true;
+        Cumul cumul; // Accès réservé au thread qui projette (projeter est synchronisée)
+
+        Suivi(Circonscription circonscription) {
+            this.circonscription = circonscription;
+        }
+
+        @Override
+        public void voixModifiees(Circonscription c, int idCandidat, int variation) {
+            if (!modifiee) { // Évite d'écrire la variable partagée à chaque variation
+                modifiee = true;
+            }
+        }
+
+        @Override
+        public void candidatAjoute(Circonscription c, int idCandidat) {
+            modifiee = true;
+        }
+    }
+
+    /**
+     * Voix observées d'une circonscription et résultats cumulés des tirages effectués à partir d'elles.
+     */
+    private static final class Cumul {
+        final List<Candidat> candidats;
+        final long[] voix;
+        final long total;
+        final long restantes; // Voix restant à dépouiller
+        final double[] alpha; // Paramètres de la loi de Dirichlet des parts des voix restantes
+        long tirages;
+        final double[] victoires; // Victoires par candidat (partagées en cas d'égalité)
+        final double[] sommeParts; // Somme des parts projetées, par candidat
+        final long[][] histogrammes; // Répartition des parts projetées, par candidat
+
+        Cumul(List<Candidat> candidats, long[] voix, long restantes) {
+            int n = voix.length;
+            this.candidats = candidats;
+            this.voix = voix;
+            long t = 0;
+            for (long v : voix) {
+                t += v;
+            }
+            this.total = t;
+            this.restantes = restantes;
+            this.alpha = new double[n];
+            double poids = t == 0 ? 0 : Math.min(1, CONCENTRATION / t);
+            for (int i = 0; i < n; i++) {
+                alpha[i] = 1 + voix[i] * poids;
+            }
+            this.victoires = new double[n];
+            this.sommeParts = new double[n];
+            this.histogrammes = new long[n][NB_CLASSES];
+        }
+
+        /**
+         * Résultats des tirages d'une tâche.
+         */
+        Cumul partiel() {
+            return new Cumul(candidats, voix, restantes);
+        }
+
+        void fusionner(Cumul partiel) {
+            tirages += partiel.tirages;
+            for (int i = 0; i < voix.length; i++) {
+                victoires[i] += partiel.victoires[i];
+                sommeParts[i] += partiel.sommeParts[i];
+                long[] h = histogrammes[i];
+                long[] hp = partiel.histogrammes[i];
+                for (int k = 0; k < NB_CLASSES; k++) {
+                    h[k] += hp[k];
+                }
+            }
+        }
+
+        /**
+         * Effectue des tirages jusqu'à en avoir fait {@code nombre} ou jusqu'à l'échéance.
+         */
+        void tirer(SplittableRandom aleatoire, int nombre, long echeance) {
+            int n = voix.length;
+            double[] parts = new double[n];
+            double[] finales = new double[n];
+            double totalFinal = total + restantes;
+            for (int fait = 0; fait < nombre; fait++) {
+                if (fait % TIRAGES_ENTRE_CONTROLES == 0 && System.nanoTime() - echeance >= 0) {
+                    return;
+                }
+                double somme = 0;
+                for (int i = 0; i < n; i++) {
+                    parts[i] = gamma(aleatoire, alpha[i]);
+                    somme += parts[i];
+                }
+                double max = -1;
+                int nbEnTete = 0;
+                for (int i = 0; i < n; i++) {
+                    finales[i] = voix[i] + restantes * parts[i] / somme;
+                    if (finales[i] > max) {
+                        max = finales[i];
+                        nbEnTete = 1;
+                    } else if (finales[i] == max) {
+                        nbEnTete++;
+                    }
+                }
+                for (int i = 0; i < n; i++) {
+                    if (finales[i] == max) {
+                        victoires[i] += 1.0 / nbEnTete;
+                    }
+                    double part = finales[i] / totalFinal;
+                    sommeParts[i] += part;
+                    histogrammes[i][Math.min(NB_CLASSES - 1, (int) (part * NB_CLASSES))]++;
+                }
+                tirages++;
+            }
+        }
+    }
+
+    /**
+     * Tire une valeur de la loi Gamma de paramètre de forme {@code alpha} ≥ 1 et d'échelle 1
+     * (méthode de Marsaglia et Tsang).
+     */
+    private static double gamma(SplittableRandom aleatoire, double alpha) {
+        double d = alpha - 1.0 / 3;
+        double c = 1 / Math.sqrt(9 * d);
+        while (true) {
+            double x = aleatoire.nextGaussian();
+            double v = 1 + c * x;
+            if (v <= 0) {
+                continue;
+            }
+            v = v * v * v;
+            double u = aleatoire.nextDouble();
+            double x2 = x * x;
+            if (u < 1 - 0.0331 * x2 * x2 || Math.log(u) < 0.5 * x2 + d * (1 - v + Math.log(v))) {
+                return d * v;
+            }
+        }
+    }
+
+    /**
+     * Tâche fork-join : effectue un tour de tirages pour une plage de tâches élémentaires,
+     * en divisant la plage (et le générateur) jusqu'à une seule tâche. Chaque circonscription
+     * à projeter compte {@code tranches} tâches élémentaires consécutives.
+     */
+    private static final class Lot extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Suivi[] suivis;
+        private final int tranches;
+        private final int debut;
+        private final int fin;
+        private final SplittableRandom aleatoire;
+        private final long echeance;
+
+        Lot(Suivi[] suivis, int tranches, int debut, int fin, SplittableRandom aleatoire, long echeance) {
+            this.suivis = suivis;
+            this.tranches = tranches;
+            this.debut = debut;
+            this.fin = fin;
+            this.aleatoire = aleatoire;
+            this.echeance = echeance;
+        }
+
+        @Override
+        protected void compute() {
+            if (System.nanoTime() - echeance >= 0) {
+                return; // Budget épuisé : les tâches restantes sont abandonnées
+            }
+            if (fin - debut == 1) {
+                Cumul cumul = suivis[debut / tranches].cumul;
+                Cumul partiel = cumul.partiel();
+                partiel.tirer(aleatoire, TIRAGES_PAR_TACHE, echeance);
+                synchronized (cumul) {
+                    cumul.fusionner(partiel);
+                }
+                return;
+            }
+            int milieu = (debut + fin) >>> 1;
+            Lot gauche = new Lot(suivis, tranches, debut, milieu, aleatoire.split(), echeance);
+            Lot droite = new Lot(suivis, tranches, milieu, fin, aleatoire.split(), echeance);
+            invokeAll(gauche, droite);
+        }
+    }
+
+    /**
+     * Constructeur de la classe ProjectionResultats. Les circonscriptions sont suivies dès la création :
+     * elles doivent donc être créées avant la projection, leurs candidats pouvant être ajoutés ensuite.
+     *
+     * @param circonscriptions    Les circonscriptions à projeter.
+     * @param participationFinale La participation finale attendue, entre 0 et 1.
+     * @param tiragesMax          Le nombre de tirages au-delà duquel une circonscription n'est plus projetée.
+     * @param graine              La graine des générateurs aléatoires.
+     */
+    public ProjectionResultats(List<Circonscription> circonscriptions, double participationFinale, long tiragesMax,
+                               long graine) {
+        if (participationFinale < 0 || participationFinale > 1 || tiragesMax <= 0) {
+            throw new IllegalArgumentException(
+                    "La participation doit être comprise entre 0 et 1 et le nombre de tirages positif.");
+        }
+        this.participationFinale = participationFinale;
+        this.tiragesMax = tiragesMax;
+        this.aleatoire = new SplittableRandom(graine);
+        this.suivis = new ArrayList<>(circonscriptions.size());
+        for (Circonscription circonscription : circonscriptions) {
+            Suivi suivi = new Suivi(circonscription);
+            circonscription.ajouterObservateur(suivi);
+            suivis.add(suivi);
+        }
+    }
+
+    /**
+     * Projette les résultats définitifs de chaque circonscription dans le budget de temps donné.
+     * Les circonscriptions dont les voix ont changé depuis la projection précédente repartent de
+     * zéro ; les autres complètent leurs tirages, jusqu'à {@code tiragesMax}.
+     *
+     * @param budget Le temps maximal consacré aux tirages.
+     * @return Les projections indexées par nom de circonscription, dans l'ordre fourni à la création.
+     * @throws IllegalStateException si la projection est fermée.
+     */
+    public synchronized Map<String, Projection> projeter(Duration budget) {
+        if (ferme) {
+            throw new IllegalStateException("La projection est fermée.");
+        }
+        long echeance = System.nanoTime() + budget.toNanos();
+        for (Suivi suivi : suivis) {
+            if (suivi.modifiee || suivi.cumul == null
+                    || (suivi.cumul.restantes > 0 && suivi.circonscription.isElectionTerminee())) {
+                suivi.modifiee = false; // Avant la lecture : une variation ultérieure sera vue au prochain appel
+                suivi.cumul = observer(suivi.circonscription);
+            }
+        }
+        List<Suivi> aTirer = new ArrayList<>(suivis.size());
+        do {
+            aTirer.clear();
+            for (Suivi suivi : suivis) {
+                if (suivi.cumul.restantes > 0 && suivi.cumul.tirages < tiragesMax) {
+                    aTirer.add(suivi);
+                }
+            }
+            if (!aTirer.isEmpty()) {
+                // Assez de tâches pour occuper tous les cœurs, même avec peu de circonscriptions
+                ForkJoinPool pool = ForkJoinPool.commonPool();
+                int tranches = Math.max(1, (2 * pool.getParallelism() + aTirer.size() - 1) / aTirer.size());
+                pool.invoke(new Lot(aTirer.toArray(new Suivi[0]), tranches, 0, aTirer.size() * tranches,
+                        aleatoire.split(), echeance));
+            }
+        } while (!aTirer.isEmpty() && System.nanoTime() - echeance < 0);
+
+        Map<String, Projection> projections = new LinkedHashMap<>();
+        for (Suivi suivi : suivis) {
+            projections.put(suivi.circonscription.getNom(), new Projection(suivi.circonscription, suivi.cumul));
+        }
+        return projections;
+    }
+
+    /**
+     * Cesse de suivre les circonscriptions : leurs variations de voix ne sont plus observées.
+     * Attend la fin d'une projection en cours.
+     */
+    @Override
+    public synchronized void close() {
+        if (!ferme) {
+            ferme = true;
+            for (Suivi suivi : suivis) {
+                suivi.circonscription.retirerObservateur(suivi);
+            }
+        }
+    }
+
+    private Cumul observer(Circonscription circonscription) {
+        long[] voix = circonscription.getVoixCloture();
+        int n = voix != null ? voix.length : circonscription.getNombreCandidats();
+        List<Candidat> candidats = new ArrayList<>(n);
+        if (voix == null) {
+            voix = new long[n];
+            for (int i = 0; i < n; i++) {
+                voix[i] = circonscription.getCandidat(i).getVoix();
+            }
+        }
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            candidats.add(circonscription.getCandidat(i));
+            total += voix[i];
+        }
+        long restantes = voix.length == 0 || circonscription.isElectionTerminee() ? 0
+                : Math.max(0, Math.round(circonscription.getInscrits() * participationFinale) - total);
+        return new Cumul(candidats, voix, restantes);
+    }
+
+    /**
+     * Projection d'une circonscription : probabilité de victoire et part finale projetée de chaque
+     * candidat, avec leurs intervalles de confiance à 95 %. Immuable.
+     */
+    public static final class Projection {
+        private final Circonscription circonscription;
+        private final List<Candidat> candidats;
+        private final long tirages;
+        private final boolean definitive; // Plus aucune voix à dépouiller
+        private final double[] probabilites;
+        private final double[] parts; // Part finale moyenne, en pourcentage
+        private final double[] partsMin; // Borne basse de l'intervalle à 95 %, en pourcentage
+        private final double[] partsMax; // Borne haute de l'intervalle à 95 %, en pourcentage
+
+        Projection(Circonscription circonscription, Cumul cumul) {
+            int n = cumul.voix.length;
+            this.circonscription = circonscription;
+            this.candidats = cumul.candidats;
+            this.tirages = cumul.tirages;
+            this.definitive = cumul.restantes == 0;
+            this.probabilites = new double[n];
+            this.parts = new double[n];
+            this.partsMin = new double[n];
+            this.partsMax = new double[n];
+            if (definitive) { // Rien à tirer
+                long max = -1;
+                int nbEnTete = 0;
+                for (long v : cumul.voix) {
+                    if (v > max) {
+                        max = v;
+                        nbEnTete = 1;
+                    } else if (v == max) {
+                        nbEnTete++;
+                    }
+                }
+                for (int i = 0; i < n; i++) {
+                    probabilites[i] = cumul.voix[i] == max ? 1.0 / nbEnTete : 0;
+                    parts[i] = cumul.total == 0 ? 0 : cumul.voix[i] * 100.0 / (cumul.total + cumul.restantes);
+                    partsMin[i] = parts[i];
+                    partsMax[i] = parts[i];
+                }
+                return;
+            }
+            for (int i = 0; i < n; i++) { // NaN si l'échéance est survenue avant le premier tirage
+                probabilites[i] = cumul.victoires[i] / cumul.tirages;
+                parts[i] = cumul.sommeParts[i] / cumul.tirages * 100;
+                partsMin[i] = quantile(cumul.histogrammes[i], cumul.tirages, 0.025) * 100.0 / NB_CLASSES;
+                partsMax[i] = (quantile(cumul.histogrammes[i], cumul.tirages, 0.975) + 1) * 100.0 / NB_CLASSES;
+            }
+        }
+
+        private static int quantile(long[] histogramme, long tirages, double niveau) {
+            long rang = (long) Math.ceil(niveau * tirages);
+            long cumule = 0;
+            for (int k = 0; k < histogramme.length; k++) {
+                cumule += histogramme[k];
+                if (cumule >= rang) {
+                    return k;
+                }
+            }
+            return histogramme.length - 1;
+        }
+
+        public Circonscription getCirconscription() {
+            return circonscription;
+        }
+
+        /**
+         * @return Le nombre de tirages de la projection (0 si les résultats sont définitifs).
+         */
+        public long getTirages() {
+            return tirages;
+        }
+
+        /**
+         * @return true si toutes les voix attendues sont dépouillées : la projection est alors le résultat observé.
+         */
+        public boolean isDefinitive() {
+            return definitive;
+        }
+
+        /**
+         * @return Le nombre de candidats projetés.
+         */
+        public int getNombreCandidats() {
+            return candidats.size();
+        }
+
+        public Candidat getCandidat(int idCandidat) {
+            return candidats.get(idCandidat);
+        }
+
+        /**
+         * @return La probabilité de victoire du candidat, entre 0 et 1
+         * (NaN si aucun tirage n'a pu être fait dans le budget).
+         */
+        public double getProbabiliteVictoire(int idCandidat) {
+            return probabilites[idCandidat];
+        }
+
+        /**
+         * @return La demi-largeur de l'intervalle de confiance à 95 % de la probabilité de victoire,
+         * due au nombre fini de tirages.
+         */
+        public double getMargeProbabilite(int idCandidat) {
+            double p = probabilites[idCandidat];
+            return definitive ? 0 : Z_95 * Math.sqrt(p * (1 - p) / tirages);
+        }
+
+        /**
+         * @return La part finale moyenne projetée des voix du candidat, en pourcentage.
+         */
+        public double getPartProjetee(int idCandidat) {
+            return parts[idCandidat];
+        }
+
+        /**
+         * @return La borne basse de l'intervalle à 95 % de la part finale du candidat, en pourcentage.
+         */
+        public double getPartMin(int idCandidat) {
+            return partsMin[idCandidat];
+        }
+
+        /**
+         * @return La borne haute de l'intervalle à 95 % de la part finale du candidat, en pourcentage.
+         */
+        public double getPartMax(int idCandidat) {
+            return partsMax[idCandidat];
+        }
+
+        /**
+         * @return L'identifiant du candidat le plus probablement vainqueur (-1 sans candidat).
+         */
+        public int getFavori() {
+            int favori = -1;
+            for (int i = 0; i < probabilites.length; i++) {
+                if (favori < 0 || probabilites[i] > probabilites[favori]) { // Toujours faux pour NaN
+                    favori = i;
+                }
+            }
+            return favori;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder("Projection dans la circonscription "
+                    + circonscription.getNom() + " (" + tirages + " tirages) :\n");
+            for (int i = 0; i < candidats.size(); i++) {
+                result.append(String.format("- %s : victoire %.1f %% (± %.1f), part %.1f %% [%.1f ; %.1f]%n",
+                        candidats.get(i).getNomComplet(), probabilites[i] * 100, getMargeProbabilite(i) * 100,
+                        parts[i], partsMin[i], partsMax[i]));
+            }
+            return result.toString();
+        }
+    }
+}
@@ -0,0 +1,359 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Diffusion en direct des résultats d'une circonscription (éditeur {@link Flow.Publisher}).
+ * Les abonnés reçoivent d'abord l'état complet, puis des {@link ResultatsPartiels} ne
+ * décrivant que ce qui a changé : voix des candidats, tête, palier de participation.
+ *
+ * Le fil d'ingestion se contente de signaler qu'une variation a eu lieu (une lecture
+ * volatile, au plus une tâche soumise) ; les variations sont regroupées et versionnées
+ * par une tâche de l'exécuteur. Chaque abonné ne retient que le numéro de la dernière
+ * version reçue : s'il est lent, il reçoit à sa prochaine demande une seule variation
+ * fusionnant toutes les versions manquées. La mémoire est donc bornée quel que soit
+ * le nombre d'abonnés, et les abonnés à jour partagent la même instance de variation.
+ */
+public class PublicationResultats implements Flow.Publisher<ResultatsPartiels>, AutoCloseable {
+    private static final double[] SEUILS_PAR_DEFAUT = {10, 25, 50, 75};
+
+    private final Circonscription circonscription; // Circonscription publiée
+    private final Executor executeur; // Exécute la fusion des variations et les livraisons
+    private final double[] seuils; // Seuils de participation signalés, en pourcentage, croissants
+    private final List<Abonnement> abonnements; // Abonnements actifs
+    private final ObservateurVoix observateur; // Abonné aux variations de la circonscription jusqu'à la fermeture
+    private final AtomicInteger etat; // 0 : au repos, 1 : fusion planifiée, 2 : variation survenue pendant la fusion
+    private volatile boolean ferme; // Indique si la publication est terminée
+
+    // État publié, protégé par le verrou de l'instance
+    private long version; // Version courante des résultats
+    private long[] voixPubliees; // Par identifiant : total de voix publié
+    private long[] versionsCandidats; // Par identifiant : version de la dernière modification
+    private int nbCandidats; // Nombre de candidats publiés
+    private List<Candidat> vainqueurs; // Tête publiée
+    private long versionVainqueurs; // Version du dernier changement de tête
+    private int palier; // Nombre de seuils de participation atteints
+    private long versionPalier; // Version du dernier changement de palier
+    private long totalVoix; // Total des voix publié
+    private ResultatsPartiels derniere; // Variation de la version précédente à la version courante
+    private ResultatsPartiels fusionnee; // Dernière variation fusionnée pour un abonné en retard
+    private long baseFusionnee; // Version de départ de cette variation
+
+    /**
+     * Constructeur de la classe PublicationResultats, avec les seuils de participation
+     * 10, 25, 50 et 75 % et le pool fork-join commun.
+     *
+     * @param circonscription La circonscription à publier.
+     */
+    public PublicationResultats(Circonscription circonscription) {
+        this(circonscription, ForkJoinPool.commonPool(), SEUILS_PAR_DEFAUT);
+    }
+
+    /**
+     * Constructeur de la classe PublicationResultats.
+     *
+     * @param circonscription La circonscription à publier.
+     * @param executeur       L'exécuteur des tâches de fusion et de livraison.
+     * @param seuils          Les seuils de participation à signaler, en pourcentage.
+     */
+    public PublicationResultats(Circonscription circonscription, Executor executeur, double... seuils) {
+        if (circonscription == null || executeur == null) {
+            throw new IllegalArgumentException("La circonscription et l'exécuteur sont obligatoires.");
+        }
+        this.circonscription = circonscription;
+        this.executeur = executeur;
+        this.seuils = seuils.clone();
+        Arrays.sort(this.seuils);
+        this.abonnements = new CopyOnWriteArrayList<>();
+        this.etat = new AtomicInteger();
+        this.version = -1;
+        this.voixPubliees = new long[4];
+        this.versionsCandidats = new long[4];
+        this.palier = -1;
+        actualiser(); // Version 0 : état initial
+        this.observateur = new ObservateurVoix() {
+            @Override
+            public void voixModifiees(Circonscription c, int idCandidat, int variation) {
+                signalerVariation();
+            }
+
+            @Override
+            public void candidatAjoute(Circonscription c, int idCandidat) {
+                signalerVariation(); // Le nouveau candidat est publié même sans voix
+            }
+        };
+        circonscription.ajouterObservateur(observateur);
+    }
+
+    /**
+     * Appelée dans le fil d'ingestion : planifie une fusion si aucune n'est en attente.
+     */
+    private void signalerVariation() {
+        if (ferme) {
+            return;
+        }
+        for (;;) {
+            int e = etat.get();
+            if (e == 2) {
+                return; // Cas courant sous forte charge : la variation sera prise par la fusion en cours
+            }
+            if (e == 0 && etat.compareAndSet(0, 1)) {
+                executeur.execute(this::fusionner);
+                return;
+            }
+            if (e == 1 && etat.compareAndSet(1, 2)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Fusionne les variations survenues depuis la version précédente et prévient les abonnés.
+     * Reprise tant que des variations arrivent pendant le calcul.
+     */
+    private void fusionner() {
+        do {
+            etat.set(1); // Les variations survenues à partir d'ici repasseront l'état à 2
+            if (actualiser()) {
+                for (Abonnement abonnement : abonnements) {
+                    abonnement.signaler();
+                }
+            }
+        } while (!etat.compareAndSet(1, 0));
+    }
+
+    /**
+     * Compare l'état de la circonscription à l'état publié et crée une nouvelle version s'ils diffèrent.
+     *
+     * @return true si une nouvelle version a été créée.
+     */
+    private synchronized boolean actualiser() {
+        long nouvelle = version + 1;
+        boolean modifie = false;
+        int n = circonscription.getNombreCandidats();
+        if (n > voixPubliees.length) {
+            int capacite = Math.max(n, voixPubliees.length * 2);
+            voixPubliees = Arrays.copyOf(voixPubliees, capacite);
+            versionsCandidats = Arrays.copyOf(versionsCandidats, capacite);
+        }
+        for (int id = 0; id < n; id++) {
+            long voix = circonscription.getCandidat(id).getVoix();
+            if (voix != voixPubliees[id] || id >= nbCandidats) {
+                voixPubliees[id] = voix;
+                versionsCandidats[id] = nouvelle;
+                modifie = true;
+            }
+        }
+        nbCandidats = n;
+        List<Candidat> tete = circonscription.trouverVainqueur();
+        if (!tete.equals(vainqueurs)) { // Comparaison des membres : un gain de voix du meneur n'est pas un changement
+            vainqueurs = tete;
+            versionVainqueurs = nouvelle;
+            modifie = true;
+        }
+        totalVoix = circonscription.getTotalVoix();
+        double taux = circonscription.tauxParticipation();
+        int p = 0;
+        while (p < seuils.length && taux >= seuils[p]) {
+            p++;
+        }
+        if (p != palier) {
+            palier = p;
+            versionPalier = nouvelle;
+            modifie = true;
+        }
+        if (modifie) {
+            version = nouvelle;
+            derniere = construire(nouvelle - 1);
+        }
+        return modifie;
+    }
+
+    /**
+     * Construit la variation fusionnée depuis une version donnée jusqu'à la version courante.
+     *
+     * @param depuis La dernière version reçue par l'abonné (-1 pour l'état complet).
+     */
+    private ResultatsPartiels construire(long depuis) {
+        int nbModifies = 0;
+        for (int id = 0; id < nbCandidats; id++) {
+            if (versionsCandidats[id] > depuis) {
+                nbModifies++;
+            }
+        }
+        int[] ids = new int[nbModifies];
+        long[] voix = new long[nbModifies];
+        for (int id = 0, i = 0; i < nbModifies; id++) {
+            if (versionsCandidats[id] > depuis) {
+                ids[i] = id;
+                voix[i++] = voixPubliees[id];
+            }
+        }
+        return new ResultatsPartiels(circonscription, version, depuis < 0, ids, voix,
+                versionVainqueurs > depuis ? vainqueurs : null, totalVoix,
+                (double) totalVoix / circonscription.getInscrits() * 100,
+                palier == 0 ? 0 : seuils[palier - 1], versionPalier > depuis);
+    }
+
+    /**
+     * Récupère la variation à livrer à un abonné ayant reçu une version donnée.
+     *
+     * @return La variation, ou null si l'abonné est à jour.
+     */
+    private synchronized ResultatsPartiels variationDepuis(long depuis) {
+        if (depuis == version) {
+            return null;
+        }
+        if (depuis == version - 1) {
+            return derniere; // Cas courant, partagé par tous les abonnés à jour
+        }
+        if (fusionnee == null || fusionnee.getVersion() != version || baseFusionnee != depuis) {
+            fusionnee = construire(depuis);
+            baseFusionnee = depuis;
+        }
+        return fusionnee;
+    }
+
+    private synchronized long versionCourante() {
+        return version;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ResultatsPartiels> abonne) {
+        if (abonne == null) {
+            throw new NullPointerException("L'abonné est obligatoire.");
+        }
+        Abonnement abonnement = new Abonnement(abonne);
+        abonne.onSubscribe(abonnement);
+        abonnements.add(abonnement);
+        abonnement.signaler();
+    }
+
+    /**
+     * Récupère le nombre d'abonnés actifs.
+     *
+     * @return Le nombre d'abonnés.
+     */
+    public int getNombreAbonnes() {
+        return abonnements.size();
+    }
+
+    /**
+     * Termine la publication : les abonnés reçoivent les derniers résultats, puis onComplete.
+     */
+    @Override
+    public void close() {
+        if (!ferme) {
+            ferme = true;
+            circonscription.retirerObservateur(observateur);
+            executeur.execute(() -> {
+                actualiser();
+                for (Abonnement abonnement : abonnements) {
+                    abonnement.signaler();
+                }
+            });
+        }
+    }
+
+    /**
+     * Abonnement d'un abonné. Les livraisons sont exécutées par une seule tâche à la fois,
+     * planifiée selon le même protocole que la fusion des variations.
+     */
+    private final class Abonnement implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super ResultatsPartiels> abonne;
+        private final AtomicLong demande; // Nombre de variations demandées et non livrées
+        private final AtomicInteger etat; // Même protocole que PublicationResultats.etat
+        private long versionLivree; // Dernière version livrée (-1 : aucune), lue par la tâche de livraison
+        private volatile boolean annule;
+        private volatile Throwable erreur; // Demande invalide, signalée par onError
+
+        Abonnement(Flow.Subscriber<? super ResultatsPartiels> abonne) {
+            this.abonne = abonne;
+            this.demande = new AtomicLong();
+            this.etat = new AtomicInteger();
+            this.versionLivree = -1;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                erreur = new IllegalArgumentException("La demande doit être positive : " + n);
+            } else {
+                demande.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+            }
+            signaler();
+        }
+
+        @Override
+        public void cancel() {
+            annule = true;
+            abonnements.remove(this);
+        }
+
+        void signaler() {
+            while (!annule) {
+                int e = etat.get();
+                if (e == 2) {
+                    return;
+                }
+                if (e == 0 && etat.compareAndSet(0, 1)) {
+                    executeur.execute(this);
+                    return;
+                }
+                if (e == 1 && etat.compareAndSet(1, 2)) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            do {
+                etat.set(1);
+                livrer();
+            } while (!etat.compareAndSet(1, 0));
+        }
+
+        private void livrer() {
+            if (annule) {
+                return;
+            }
+            Throwable e = erreur;
+            if (e != null) {
+                cancel();
+                abonne.onError(e);
+                return;
+            }
+            long d;
+            while ((d = demande.get()) > 0) {
+                ResultatsPartiels variation = variationDepuis(versionLivree);
+                if (variation == null) {
+                    break;
+                }
+                versionLivree = variation.getVersion();
+                if (d != Long.MAX_VALUE) {
+                    demande.decrementAndGet();
+                }
+                try {
+                    abonne.onNext(variation);
+                } catch (Throwable ex) {
+                    cancel();
+                    abonne.onError(ex);
+                    return;
+                }
+                if (annule) {
+                    return;
+                }
+            }
+            if (ferme && versionLivree == versionCourante()) {
+                cancel();
+                abonne.onComplete();
+            }
+        }
+    }
+}
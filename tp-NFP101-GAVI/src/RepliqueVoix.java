@@ -0,0 +1,471 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Réplique des voix d'une circonscription, pour une ingestion répartie sur plusieurs nœuds
+ * (processus) qui acceptent chacun des voix puis convergent.
+ *
+ * Les voix de chaque candidat sont représentées par un compteur répliqué (CRDT) : pour chaque
+ * nœud, un compteur croissant des voix ajoutées et un compteur croissant des voix retirées par
+ * correction. Chaque nœud n'incrémente que ses propres compteurs ; la fusion garde, nœud par
+ * nœud, le maximum des deux côtés. La fusion est donc commutative, associative et idempotente :
+ * les états s'échangent dans n'importe quel ordre, en double au besoin, et les répliques ayant
+ * reçu les mêmes états ont les mêmes voix et les mêmes vainqueurs.
+ *
+ * Les échanges se font par deltas : {@link #extraireDelta()} ne renvoie que les compteurs modifiés
+ * depuis l'extraction précédente (y compris ceux appris d'autres nœuds, pour qu'ils se propagent),
+ * et {@link #fusionner(byte[])} prend un temps proportionnel au delta reçu (plus le nombre, en général
+ * nul, de candidats dont un retrait attend des voix), quel que soit le nombre de candidats. {@link #exporterEtat()}
+ * renvoie l'état complet, pour un nœud qui rejoint les autres ou redémarre : l'état d'une réplique
+ * n'est pas journalisé, un nœud redémarré repart d'une circonscription vierge et retrouve ses voix,
+ * y compris les siennes, auprès des autres nœuds.
+ *
+ * Les candidats doivent être inscrits dans le même ordre sur tous les nœuds : ils sont désignés
+ * par leur identifiant. Si des corrections concurrentes retirent plus de voix qu'un candidat n'en
+ * a reçu, ses voix restent à zéro et l'excédent est gardé en attente des voix qui le compensent :
+ * il leur est retiré dès leur arrivée, qu'elles soient reçues d'un autre nœud ou ajoutées localement.
+ *
+ * Format d'un delta : [version][nombre de nœuds] puis, par nœud, [identifiant][nombre d'entrées]
+ * et, par entrée, [candidat][voix ajoutées][voix retirées] ; les entiers sont codés en longueur
+ * variable (7 bits par octet) et l'identifiant en UTF-8 précédé de sa longueur.
+ */
+public final class RepliqueVoix {
+    private static final byte VERSION = 1;
+
+    private final Circonscription circonscription;
+    private final Noeud local; // Compteurs du nœud de cette réplique
+    private final Map<String, Noeud> noeuds; // Index identifiant -> nœud (protégé par le verrou de l'instance)
+    private final ConcurrentLinkedQueue<Compteur> modifies; // Compteurs à inclure dans le prochain delta
+    private volatile Thread fusion; // Thread qui applique une fusion (ses variations ne sont pas locales)
+    private final ThreadLocal<Boolean> compensation; // Posé pendant le retrait de voix en attente
+    // État de fusion, protégé par le verrou de l'instance et indexé par identifiant de candidat :
+    // réutilisé d'une fusion à l'autre et remis à zéro pour les seuls candidats touchés
+    private int[] enAttente; // Candidats dont un retrait était en attente à la fin d'une fusion
+    private int nbEnAttente;
+    private long[] variations; // Variation nette de la fusion en cours
+    private boolean[] touches; // Candidat déjà noté dans la fusion en cours
+
+    /**
+     * Compteurs d'un nœud, indexés par identifiant de candidat.
+     */
+    private static final class Noeud {
+        final String id;
+        private volatile Compteur[] compteurs = new Compteur[0];
+
+        Noeud(String id) {
+            this.id = id;
+        }
+
+        Compteur compteur(int idCandidat) {
+            Compteur[] t = compteurs;
+            return idCandidat < t.length ? t[idCandidat] : etendre(idCandidat);
+        }
+
+        /**
+         * Crée les compteurs manquants. Seules les références sont copiées : un incrément
+         * concurrent porte toujours sur le même compteur.
+         */
+        private synchronized Compteur etendre(int idCandidat) {
+            Compteur[] t = compteurs;
+            if (idCandidat < t.length) {
+                return t[idCandidat];
+            }
+            Compteur[] nouveaux = Arrays.copyOf(t, idCandidat + 1);
+            for (int i = t.length; i <= idCandidat; i++) {
+                nouveaux[i] = new Compteur(this, i);
+            }
+            compteurs = nouveaux;
+            return nouveaux[idCandidat];
+        }
+    }
+
+    /**
+     * Voix ajoutées et retirées par un nœud pour un candidat. Les deux valeurs ne font que croître.
+     */
+    private static final class Compteur {
+        final Noeud noeud;
+        final int idCandidat;
+        final AtomicLong ajoutees = new AtomicLong();
+        final AtomicLong retirees = new AtomicLong();
+        final AtomicBoolean modifie = new AtomicBoolean(); // Déjà dans la file des compteurs modifiés
+        final AtomicLong attente = new AtomicLong(); // Nœud local : voix retirées, pas encore appliquées faute de voix
+
+        Compteur(Noeud noeud, int idCandidat) {
+            this.noeud = noeud;
+            this.idCandidat = idCandidat;
+        }
+    }
+
+    /**
+     * Observateur des variations locales : chacune est portée au compteur du nœud local.
+     * Des voix ajoutées localement compensent aussitôt un retrait en attente.
+     */
+    private final class Suivi implements ObservateurVoix {
+        @Override
+        public void voixModifiees(Circonscription c, int idCandidat, int variation) {
+            if (Thread.currentThread() == fusion || (variation < 0 && compensation.get() != null)) {
+                return; // Variation reçue d'un autre nœud, déjà comptée dans ses compteurs
+            }
+            Compteur compteur = local.compteur(idCandidat);
+            if (variation > 0) {
+                compteur.ajoutees.addAndGet(variation);
+            } else {
+                compteur.retirees.addAndGet(-variation);
+            }
+            marquer(compteur);
+            if (variation > 0 && compteur.attente.get() != 0) { // Appelé dans l'écriture en cours
+                compenser(compteur);
+            }
+        }
+    }
+
+    /**
+     * Constructeur de la classe RepliqueVoix. Les voix déjà présentes dans la circonscription
+     * sont attribuées au nœud local ; comme pour un scrutin, la réplique doit être créée avant
+     * que l'ingestion concurrente des voix ne commence.
+     *
+     * @param circonscription La circonscription répliquée.
+     * @param idNoeud         L'identifiant de ce nœud, unique parmi les nœuds qui échangent leurs états.
+     */
+    public RepliqueVoix(Circonscription circonscription, String idNoeud) {
+        if (idNoeud == null || idNoeud.isEmpty()) {
+            throw new IllegalArgumentException("L'identifiant du nœud est obligatoire.");
+        }
+        this.circonscription = circonscription;
+        this.local = new Noeud(idNoeud);
+        this.noeuds = new HashMap<>();
+        this.noeuds.put(idNoeud, local);
+        this.modifies = new ConcurrentLinkedQueue<>();
+        this.compensation = new ThreadLocal<>();
+        this.enAttente = new int[0];
+        this.variations = new long[0];
+        this.touches = new boolean[0];
+        for (int idCandidat = 0; idCandidat < circonscription.getNombreCandidats(); idCandidat++) {
+            int voix = circonscription.getCandidat(idCandidat).getVoix();
+            if (voix > 0) {
+                Compteur compteur = local.compteur(idCandidat);
+                compteur.ajoutees.addAndGet(voix);
+                marquer(compteur);
+            }
+        }
+        circonscription.ajouterObservateur(new Suivi());
+    }
+
+    private void marquer(Compteur compteur) {
+        if (!compteur.modifie.get() && compteur.modifie.compareAndSet(false, true)) {
+            modifies.add(compteur);
+        }
+    }
+
+    /**
+     * Extrait les compteurs modifiés depuis l'extraction précédente, localement ou par fusion.
+     * Le delta est à transmettre à tous les autres nœuds.
+     *
+     * @return Le delta encodé (vide de toute entrée si rien n'a changé).
+     */
+    public synchronized byte[] extraireDelta() {
+        Map<Noeud, List<Compteur>> parNoeud = new LinkedHashMap<>();
+        Compteur compteur;
+        while ((compteur = modifies.poll()) != null) {
+            compteur.modifie.set(false); // Avant la lecture : un incrément ultérieur sera dans le delta suivant
+            parNoeud.computeIfAbsent(compteur.noeud, n -> new ArrayList<>()).add(compteur);
+        }
+        return encoder(parNoeud);
+    }
+
+    /**
+     * Exporte l'état complet de la réplique, dans le format des deltas.
+     *
+     * @return L'état encodé.
+     */
+    public synchronized byte[] exporterEtat() {
+        Map<Noeud, List<Compteur>> parNoeud = new LinkedHashMap<>();
+        for (Noeud noeud : noeuds.values()) {
+            List<Compteur> compteurs = new ArrayList<>(Arrays.asList(noeud.compteurs));
+            compteurs.removeIf(c -> c.ajoutees.get() == 0 && c.retirees.get() == 0);
+            if (!compteurs.isEmpty()) {
+                parNoeud.put(noeud, compteurs);
+            }
+        }
+        return encoder(parNoeud);
+    }
+
+    private static byte[] encoder(Map<Noeud, List<Compteur>> parNoeud) {
+        int taille = 1 + 5;
+        for (Map.Entry<Noeud, List<Compteur>> e : parNoeud.entrySet()) {
+            taille += 5 + e.getKey().id.length() * 3 + 5 + e.getValue().size() * (5 + 10 + 10);
+        }
+        ByteBuffer tampon = ByteBuffer.allocate(taille).put(VERSION);
+        ecrireEntier(tampon, parNoeud.size());
+        for (Map.Entry<Noeud, List<Compteur>> e : parNoeud.entrySet()) {
+            byte[] id = e.getKey().id.getBytes(StandardCharsets.UTF_8);
+            ecrireEntier(tampon, id.length);
+            tampon.put(id);
+            ecrireEntier(tampon, e.getValue().size());
+            for (Compteur compteur : e.getValue()) {
+                long retirees = compteur.retirees.get(); // Lu en premier : toute correction lue suit les ajouts lus
+                ecrireEntier(tampon, compteur.idCandidat);
+                ecrireEntier(tampon, compteur.ajoutees.get());
+                ecrireEntier(tampon, retirees);
+            }
+        }
+        return Arrays.copyOf(tampon.array(), tampon.position());
+    }
+
+    /**
+     * Fusionne un delta (ou un état complet) reçu d'un autre nœud. Les voix nouvelles qu'il apporte
+     * sont appliquées à la circonscription en une seule écriture, comptée en entier ou refusée en
+     * entier par la clôture. Recevoir plusieurs fois le même delta est sans effet.
+     *
+     * @param delta Le delta encodé par {@link #extraireDelta()} ou {@link #exporterEtat()}.
+     * @return Le nombre d'entrées du delta qui ont modifié la réplique.
+     * @throws IllegalArgumentException si le delta est mal formé ou désigne un candidat inconnu ;
+     *                                  la réplique est alors inchangée.
+     * @throws IllegalStateException    si l'élection est terminée.
+     */
+    public synchronized int fusionner(byte[] delta) {
+        // Décodage et vérification complets avant toute modification
+        String[] ids;
+        int[][] candidats;
+        long[][] ajoutees;
+        long[][] retirees;
+        int nbCandidats = circonscription.getNombreCandidats();
+        int nbEntreesTotal = 0;
+        try {
+            ByteBuffer tampon = ByteBuffer.wrap(delta);
+            if (tampon.get() != VERSION) {
+                throw new IllegalArgumentException("Version de delta non prise en charge.");
+            }
+            int nbNoeuds = lireTaille(tampon);
+            ids = new String[nbNoeuds];
+            candidats = new int[nbNoeuds][];
+            ajoutees = new long[nbNoeuds][];
+            retirees = new long[nbNoeuds][];
+            for (int n = 0; n < nbNoeuds; n++) {
+                byte[] id = new byte[lireTaille(tampon)];
+                tampon.get(id);
+                ids[n] = new String(id, StandardCharsets.UTF_8);
+                int nbEntrees = lireTaille(tampon);
+                nbEntreesTotal += nbEntrees;
+                candidats[n] = new int[nbEntrees];
+                ajoutees[n] = new long[nbEntrees];
+                retirees[n] = new long[nbEntrees];
+                for (int e = 0; e < nbEntrees; e++) {
+                    long idCandidat = lireEntier(tampon);
+                    if (idCandidat >= nbCandidats) {
+                        throw new IllegalArgumentException("Candidat d'identifiant " + idCandidat
+                                + " inconnu : les nœuds doivent inscrire les mêmes candidats dans le même ordre.");
+                    }
+                    candidats[n][e] = (int) idCandidat;
+                    ajoutees[n][e] = lireEntier(tampon);
+                    retirees[n][e] = lireEntier(tampon);
+                }
+            }
+            if (tampon.hasRemaining()) {
+                throw new IllegalArgumentException("Delta mal formé : octets en trop.");
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Delta mal formé : données tronquées.", e);
+        }
+
+        int bande = circonscription.entrerEcriture();
+        fusion = Thread.currentThread();
+        try {
+            if (variations.length < nbCandidats) { // Seulement après l'inscription de candidats
+                enAttente = Arrays.copyOf(enAttente, nbCandidats);
+                variations = Arrays.copyOf(variations, nbCandidats);
+                touches = Arrays.copyOf(touches, nbCandidats);
+            }
+            int[] aAppliquer = new int[nbEntreesTotal + nbEnAttente]; // Candidats touchés, sans doublon
+            int nbAAppliquer = 0;
+            int nbModifiees = 0;
+            for (int n = 0; n < ids.length; n++) {
+                Noeud noeud = noeuds.computeIfAbsent(ids[n], Noeud::new);
+                for (int e = 0; e < candidats[n].length; e++) {
+                    Compteur compteur = noeud.compteur(candidats[n][e]);
+                    long gain = porterAuMaximum(compteur.ajoutees, ajoutees[n][e]);
+                    long perte = porterAuMaximum(compteur.retirees, retirees[n][e]);
+                    if (gain != 0 || perte != 0) {
+                        int idCandidat = compteur.idCandidat;
+                        variations[idCandidat] += gain - perte;
+                        if (!touches[idCandidat]) {
+                            touches[idCandidat] = true;
+                            aAppliquer[nbAAppliquer++] = idCandidat;
+                        }
+                        marquer(compteur);
+                        nbModifiees++;
+                    }
+                }
+            }
+            for (int i = 0; i < nbEnAttente; i++) { // Retraits en attente : de nouvelles voix les compensent peut-être
+                int idCandidat = enAttente[i];
+                if (!touches[idCandidat]) {
+                    touches[idCandidat] = true;
+                    aAppliquer[nbAAppliquer++] = idCandidat;
+                }
+            }
+            nbEnAttente = 0;
+            for (int i = 0; i < nbAAppliquer; i++) {
+                int idCandidat = aAppliquer[i];
+                Compteur compteur = local.compteur(idCandidat);
+                long variation = variations[idCandidat] - compteur.attente.getAndSet(0);
+                variations[idCandidat] = 0;
+                touches[idCandidat] = false;
+                appliquer(compteur, variation);
+                if (compteur.attente.get() != 0) {
+                    enAttente[nbEnAttente++] = idCandidat;
+                }
+            }
+            return nbModifiees;
+        } finally {
+            fusion = null;
+            circonscription.sortirEcriture(bande);
+        }
+    }
+
+    /**
+     * Porte un compteur à une valeur reçue si elle est plus grande.
+     *
+     * @return L'augmentation du compteur (0 s'il était déjà au moins à cette valeur).
+     */
+    private static long porterAuMaximum(AtomicLong compteur, long valeur) {
+        while (true) {
+            long courante = compteur.get();
+            if (valeur <= courante) {
+                return 0;
+            }
+            if (compteur.compareAndSet(courante, valeur)) {
+                return valeur - courante;
+            }
+        }
+    }
+
+    /**
+     * Applique une variation nette aux voix d'un candidat ; la part d'un retrait qui le rendrait
+     * négatif est mise en attente (voir {@link Compteur#attente} du nœud local).
+     */
+    private void appliquer(Compteur compteur, long variation) {
+        long applicable = variation;
+        if (variation < 0) {
+            applicable = -Math.min(-variation, circonscription.getCandidat(compteur.idCandidat).getVoix());
+        }
+        enregistrer(compteur.idCandidat, applicable);
+        if (applicable != variation) {
+            compteur.attente.addAndGet(applicable - variation);
+            compenser(compteur); // Voix locales ajoutées depuis la lecture ci-dessus
+        }
+    }
+
+    /**
+     * Retire d'un candidat tout ou partie de son retrait en attente, dans la limite de ses voix.
+     * Appelée dans une écriture admise par la clôture (fusion, ou ajout local de voix).
+     */
+    private void compenser(Compteur compteur) {
+        while (true) {
+            long enAttente = compteur.attente.get();
+            long retrait = Math.min(enAttente, circonscription.getCandidat(compteur.idCandidat).getVoix());
+            if (retrait <= 0) {
+                return;
+            }
+            if (compteur.attente.compareAndSet(enAttente, enAttente - retrait)) {
+                compensation.set(Boolean.TRUE);
+                try {
+                    enregistrer(compteur.idCandidat, -retrait);
+                } finally {
+                    compensation.remove();
+                }
+                return;
+            }
+        }
+    }
+
+    private void enregistrer(int idCandidat, long variation) {
+        while (variation != 0) {
+            int morceau = (int) Math.max(Integer.MIN_VALUE + 1, Math.min(Integer.MAX_VALUE, variation));
+            circonscription.enregistrerVariationReplique(idCandidat, morceau);
+            variation -= morceau;
+        }
+    }
+
+    /**
+     * Calcule la valeur répliquée des voix d'un candidat : somme, sur tous les nœuds connus,
+     * des voix ajoutées moins les voix retirées.
+     *
+     * @param idCandidat L'identifiant du candidat.
+     * @return La valeur du compteur répliqué (négative si des corrections concurrentes se chevauchent).
+     */
+    public synchronized long getValeur(int idCandidat) {
+        long valeur = 0;
+        for (Noeud noeud : noeuds.values()) {
+            Compteur[] compteurs = noeud.compteurs;
+            if (idCandidat < compteurs.length) {
+                valeur += compteurs[idCandidat].ajoutees.get() - compteurs[idCandidat].retirees.get();
+            }
+        }
+        return valeur;
+    }
+
+    /**
+     * @return L'identifiant du nœud de cette réplique.
+     */
+    public String getIdNoeud() {
+        return local.id;
+    }
+
+    /**
+     * @return Le nombre de nœuds connus, celui de cette réplique compris.
+     */
+    public synchronized int getNombreNoeuds() {
+        return noeuds.size();
+    }
+
+    public Circonscription getCirconscription() {
+        return circonscription;
+    }
+
+    private static void ecrireEntier(ByteBuffer tampon, long valeur) {
+        while ((valeur & ~0x7FL) != 0) {
+            tampon.put((byte) ((valeur & 0x7F) | 0x80));
+            valeur >>>= 7;
+        }
+        tampon.put((byte) valeur);
+    }
+
+    private static long lireEntier(ByteBuffer tampon) {
+        long valeur = 0;
+        for (int decalage = 0; decalage < 64; decalage += 7) {
+            byte octet = tampon.get();
+            valeur |= (long) (octet & 0x7F) << decalage;
+            if (octet >= 0) {
+                if (valeur < 0) {
+                    throw new IllegalArgumentException("Delta mal formé : valeur négative.");
+                }
+                return valeur;
+            }
+        }
+        throw new IllegalArgumentException("Delta mal formé : entier trop long.");
+    }
+
+    private static int lireTaille(ByteBuffer tampon) {
+        long taille = lireEntier(tampon);
+        if (taille > tampon.remaining()) { // Chaque élément occupe au moins un octet
+            throw new IllegalArgumentException("Delta mal formé : taille incohérente.");
+        }
+        return (int) taille;
+    }
+
+    @Override
+    public String toString() {
+        return "Réplique " + local.id + " de " + circonscription.getNom() + " (" + getNombreNoeuds() + " nœud(s))";
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.List;
+
+/**
+ * Variation des résultats d'une circonscription, diffusée par {@link PublicationResultats}.
+ * Une instance regroupe toutes les modifications intervenues depuis la version reçue
+ * précédemment par l'abonné : nouveaux totaux des candidats dont les voix ont changé,
+ * nouvelle tête si elle a changé et palier de participation s'il a été franchi.
+ * Les totaux sont absolus, si bien que des variations successives se fusionnent sans perte.
+ * La même instance peut être remise à plusieurs abonnés : elle est immuable.
+ */
+public class ResultatsPartiels {
+    private final Circonscription circonscription; // Circonscription concernée
+    private final long version; // Version des résultats après application de la variation
+    private final boolean complet; // true si la variation décrit l'état complet (premier envoi)
+    private final int[] idCandidats; // Candidats dont les voix ont changé
+    private final long[] voix; // Nouveau total de chacun de ces candidats
+    private final List<Candidat> vainqueurs; // Nouvelle tête (null si inchangée)
+    private final long totalVoix; // Total des voix de la circonscription
+    private final double tauxParticipation; // Taux de participation, en pourcentage
+    private final double seuilParticipation; // Plus haut seuil de participation atteint (0 si aucun)
+    private final boolean seuilModifie; // Indique si le palier de participation a changé
+
+    ResultatsPartiels(Circonscription circonscription, long version, boolean complet, int[] idCandidats,
+                      long[] voix, List<Candidat> vainqueurs, long totalVoix, double tauxParticipation,
+                      double seuilParticipation, boolean seuilModifie) {
+        this.circonscription = circonscription;
+        this.version = version;
+        this.complet = complet;
+        this.idCandidats = idCandidats;
+        this.voix = voix;
+        this.vainqueurs = vainqueurs;
+        this.totalVoix = totalVoix;
+        this.tauxParticipation = tauxParticipation;
+        this.seuilParticipation = seuilParticipation;
+        this.seuilModifie = seuilModifie;
+    }
+
+    public Circonscription getCirconscription() {
+        return circonscription;
+    }
+
+    /**
+     * @return La version des résultats, croissante au fil des variations.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return true si la variation décrit tous les candidats (premier envoi à un abonné).
+     */
+    public boolean isComplet() {
+        return complet;
+    }
+
+    /**
+     * @return Le nombre de candidats dont les voix ont changé.
+     */
+    public int getNombreCandidatsModifies() {
+        return idCandidats.length;
+    }
+
+    /**
+     * @param i L'indice de la modification, entre 0 et {@link #getNombreCandidatsModifies()} exclu.
+     * @return L'identifiant du candidat modifié.
+     */
+    public int getIdCandidat(int i) {
+        return idCandidats[i];
+    }
+
+    /**
+     * @param i L'indice de la modification, entre 0 et {@link #getNombreCandidatsModifies()} exclu.
+     * @return Le nouveau total de voix du candidat modifié.
+     */
+    public long getVoix(int i) {
+        return voix[i];
+    }
+
+    /**
+     * @return true si le(s) candidat(s) en tête ont changé.
+     */
+    public boolean isVainqueursModifies() {
+        return vainqueurs != null;
+    }
+
+    /**
+     * @return La nouvelle tête (liste non modifiable), ou null si elle est inchangée.
+     */
+    public List<Candidat> getVainqueurs() {
+        return vainqueurs;
+    }
+
+    public long getTotalVoix() {
+        return totalVoix;
+    }
+
+    public double getTauxParticipation() {
+        return tauxParticipation;
+    }
+
+    /**
+     * @return Le plus haut seuil de participation atteint, en pourcentage (0 si aucun).
+     */
+    public double getSeuilParticipation() {
+        return seuilParticipation;
+    }
+
+    /**
+     * @return true si un seuil de participation a été franchi (à la hausse ou, après correction, à la baisse).
+     */
+    public boolean isSeuilModifie() {
+        return seuilModifie;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("Résultats " + circonscription.getNom() + " v" + version + " :");
+        for (int i = 0; i < idCandidats.length; i++) {
+            result.append(' ').append(circonscription.getCandidat(idCandidats[i]).getNomComplet())
+                    .append('=').append(voix[i]);
+        }
+        if (vainqueurs != null) {
+            result.append(" ; en tête : ").append(vainqueurs.size()).append(" candidat(s)");
+        }
+        result.append(String.format(" ; participation %.2f %%", tauxParticipation));
+        if (seuilModifie) {
+            result.append(String.format(" (seuil de %.0f %% atteint)", seuilParticipation));
+        }
+        return result.toString();
+    }
+}
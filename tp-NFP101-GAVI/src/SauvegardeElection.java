@@ -0,0 +1,342 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Sauvegarde binaire de l'état d'une élection (circonscriptions, candidats, bureaux de vote,
+ * voix et historiques), et sa restauration rapide.
+ *
+ * Pour chaque circonscription, l'état de clôture, les voix des candidats, celles des bureaux
+ * de vote et les remontées reçues sont copiés au même instant (voir {@link Circonscription#copierEtat()}) :
+ * les écritures de voix n'attendent que le temps de cette copie en mémoire. Les historiques sont
+ * écrits ensuite sans bloquer l'ingestion : ils contiennent au moins tous les événements dont les voix
+ * sont sauvegardées, et éventuellement quelques événements postérieurs. Le fichier est écrit à côté
+ * de sa destination puis renommé, si bien qu'une sauvegarde interrompue ne remplace jamais la précédente.
+ *
+ * À la restauration, chaque circonscription est projetée en mémoire et décodée en parallèle ;
+ * les historiques restent sous forme binaire dans le fichier projeté et ne sont décodés
+ * qu'au premier appel de {@code getHistoriqueActions()}. Les horodatages d'origine sont conservés.
+ *
+ * Format (big-endian) : un en-tête [signature "SNAP"][version][réservé][horodatage][nom du scrutin]
+ * [nombre de circonscriptions], puis pour chaque circonscription [longueur du bloc][nom][inscrits]
+ * [clôturée][historique][candidats][bureaux de vote][remontées reçues]. Un historique est écrit sous la forme
+ * [nombre d'événements][longueur en octets][événements] (voir {@link HistoriqueCompact}).
+ * Les sauvegardes de la version 1, sans les remontées reçues, restent lisibles.
+ */
+public final class SauvegardeElection {
+    private static final int SIGNATURE = 0x534E4150; // "SNAP"
+    private static final short VERSION = 2;
+    private static final int TAILLE_TAMPON = 1024 * 1024;
+
+    private SauvegardeElection() {
+    }
+
+    /**
+     * Sauvegarde toutes les circonscriptions d'un scrutin.
+     *
+     * @param scrutin Le scrutin à sauvegarder.
+     * @param fichier Le chemin du fichier de sauvegarde (remplacé s'il existe).
+     * @throws IOException en cas d'erreur d'écriture.
+     */
+    public static void sauvegarder(Scrutin scrutin, Path fichier) throws IOException {
+        sauvegarder(scrutin.getNom(), scrutin.getCirconscriptions(), fichier);
+    }
+
+    /**
+     * Sauvegarde une circonscription.
+     *
+     * @param circonscription La circonscription à sauvegarder.
+     * @param fichier         Le chemin du fichier de sauvegarde (remplacé s'il existe).
+     * @throws IOException en cas d'erreur d'écriture.
+     */
+    public static void sauvegarder(Circonscription circonscription, Path fichier) throws IOException {
+        sauvegarder("", List.of(circonscription), fichier);
+    }
+
+    private static void sauvegarder(String nomScrutin, List<Circonscription> circonscriptions, Path fichier)
+            throws IOException {
+        Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporaire, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Sortie sortie = new Sortie(canal);
+            sortie.putInt(SIGNATURE).putShort(VERSION).putShort((short) 0).putLong(System.currentTimeMillis());
+            sortie.putTexte(nomScrutin);
+            sortie.putInt(circonscriptions.size());
+            for (Circonscription circonscription : circonscriptions) {
+                ecrireCirconscription(sortie, circonscription);
+            }
+            sortie.vider();
+            canal.force(true);
+        }
+        Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void ecrireCirconscription(Sortie sortie, Circonscription circonscription) throws IOException {
+        long positionLongueur = sortie.position();
+        sortie.putLong(0); // Longueur du bloc, corrigée à la fin
+        long debut = sortie.position();
+        Circonscription.Etat etat = circonscription.copierEtat(); // Avant les historiques, qui le couvrent
+        sortie.putTexte(circonscription.getNom()).putInt(circonscription.getInscrits())
+                .put((byte) (etat.cloturee ? 1 : 0));
+        circonscription.historique().sauvegarder(sortie);
+        int nbCandidats = etat.voixCandidats.length;
+        sortie.putInt(nbCandidats);
+        for (int id = 0; id < nbCandidats; id++) {
+            Candidat candidat = circonscription.getCandidat(id);
+            sortie.putTexte(candidat.getNom()).putTexte(candidat.getPrenom()).putTexte(candidat.getAffiliation());
+            sortie.putLong(etat.voixCandidats[id]).put((byte) (candidat.isVoixEnregistrees() ? 1 : 0));
+            candidat.historique().sauvegarder(sortie);
+        }
+        sortie.putInt(etat.voixBureaux.length);
+        for (int id = 0; id < etat.voixBureaux.length; id++) {
+            int[] voix = etat.voixBureaux[id];
+            sortie.putTexte(circonscription.getBureau(id).getNom()).putInt(voix.length);
+            for (int v : voix) {
+                sortie.putInt(v);
+            }
+        }
+        sortie.putInt(etat.idsRemontees.length);
+        for (long idRemontee : etat.idsRemontees) {
+            sortie.putLong(idRemontee);
+        }
+        sortie.corrigerLong(positionLongueur, sortie.position() - debut);
+    }
+
+    /**
+     * Restaure les circonscriptions d'une sauvegarde.
+     * Elles ne sont rattachées à aucun journal ni à aucun scrutin.
+     *
+     * @param fichier Le chemin du fichier de sauvegarde.
+     * @return Les circonscriptions restaurées, dans l'ordre de la sauvegarde.
+     * @throws IOException en cas d'erreur de lecture, ou si le fichier n'est pas une sauvegarde valide.
+     */
+    public static List<Circonscription> charger(Path fichier) throws IOException {
+        return lire(fichier, new String[1]);
+    }
+
+    /**
+     * Restaure un scrutin sauvegardé par {@link #sauvegarder(Scrutin, Path)}.
+     *
+     * @param fichier Le chemin du fichier de sauvegarde.
+     * @return Le scrutin restauré, avec ses circonscriptions.
+     * @throws IOException en cas d'erreur de lecture, ou si le fichier n'est pas une sauvegarde de scrutin.
+     */
+    public static Scrutin chargerScrutin(Path fichier) throws IOException {
+        String[] nomScrutin = new String[1];
+        List<Circonscription> circonscriptions = lire(fichier, nomScrutin);
+        if (nomScrutin[0].isEmpty()) {
+            throw new IOException("La sauvegarde ne contient pas de scrutin.");
+        }
+        Scrutin scrutin = new Scrutin(nomScrutin[0]);
+        for (Circonscription circonscription : circonscriptions) {
+            scrutin.ajouterCirconscription(circonscription);
+        }
+        return scrutin;
+    }
+
+    private static List<Circonscription> lire(Path fichier, String[] nomScrutin) throws IOException {
+        List<MappedByteBuffer> blocs = new ArrayList<>();
+        short version;
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            long taille = canal.size();
+            ByteBuffer entete = canal.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(taille, 16 + 2 + 65_535 + 4));
+            if (entete.remaining() < 16 || entete.getInt() != SIGNATURE) {
+                throw new IOException("Le fichier n'est pas une sauvegarde d'élection.");
+            }
+            version = entete.getShort();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Version de sauvegarde non prise en charge : " + version);
+            }
+            entete.getShort();
+            entete.getLong(); // Horodatage de la sauvegarde
+            nomScrutin[0] = lireTexte(entete);
+            int nbCirconscriptions = entete.getInt();
+            long position = entete.position();
+            ByteBuffer longueur = ByteBuffer.allocate(8);
+            for (int i = 0; i < nbCirconscriptions; i++) {
+                longueur.clear();
+                while (longueur.hasRemaining() && canal.read(longueur, position + longueur.position()) > 0) {
+                    // Lecture de la longueur du bloc
+                }
+                long tailleBloc = longueur.getLong(0);
+                if (longueur.hasRemaining() || tailleBloc < 0 || tailleBloc > Integer.MAX_VALUE
+                        || position + 8 + tailleBloc > taille) {
+                    throw new IOException("Sauvegarde tronquée ou corrompue (circonscription " + i + ").");
+                }
+                blocs.add(canal.map(FileChannel.MapMode.READ_ONLY, position + 8, tailleBloc));
+                position += 8 + tailleBloc;
+            }
+        }
+        short versionBlocs = version;
+        try {
+            return IntStream.range(0, blocs.size()).parallel()
+                    .mapToObj(i -> lireCirconscription(blocs.get(i), versionBlocs))
+                    .collect(Collectors.toList());
+        } catch (RuntimeException e) {
+            throw new IOException("Sauvegarde corrompue : " + e.getMessage(), e);
+        }
+    }
+
+    private static Circonscription lireCirconscription(ByteBuffer bloc, short version) {
+        String nom = lireTexte(bloc);
+        int inscrits = bloc.getInt();
+        boolean cloturee = bloc.get() != 0;
+        int nbEvenements = bloc.getInt();
+        Circonscription circonscription = new Circonscription(nom, inscrits, lireSection(bloc), nbEvenements);
+        int nbCandidats = bloc.getInt();
+        for (int id = 0; id < nbCandidats; id++) {
+            String nomCandidat = lireTexte(bloc);
+            String prenom = lireTexte(bloc);
+            String affiliation = lireTexte(bloc);
+            long voix = bloc.getLong();
+            boolean voixEnregistrees = bloc.get() != 0;
+            int nbEvenementsCandidat = bloc.getInt();
+            circonscription.restaurerCandidat(new Candidat(nomCandidat, prenom, affiliation, voix, voixEnregistrees,
+                    lireSection(bloc), nbEvenementsCandidat));
+        }
+        int nbBureaux = bloc.getInt();
+        for (int id = 0; id < nbBureaux; id++) {
+            String nomBureau = lireTexte(bloc);
+            int[] voix = new int[bloc.getInt()];
+            bloc.asIntBuffer().get(voix);
+            bloc.position(bloc.position() + voix.length * Integer.BYTES);
+            circonscription.restaurerBureau(nomBureau, voix);
+        }
+        int nbRemontees = version >= 2 ? bloc.getInt() : 0;
+        for (int i = 0; i < nbRemontees; i++) {
+            circonscription.restaurerRemontee(bloc.getLong());
+        }
+        if (cloturee) {
+            circonscription.restaurerCloture();
+        }
+        return circonscription;
+    }
+
+    /**
+     * Isole la section d'un historique, sans la décoder, et place le bloc juste après.
+     */
+    private static ByteBuffer lireSection(ByteBuffer bloc) {
+        int longueur = bloc.getInt();
+        ByteBuffer section = bloc.slice(bloc.position(), longueur);
+        bloc.position(bloc.position() + longueur);
+        return section;
+    }
+
+    private static String lireTexte(ByteBuffer tampon) {
+        byte[] octets = new byte[Short.toUnsignedInt(tampon.getShort())];
+        tampon.get(octets);
+        return new String(octets, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Écriture tamponnée d'une sauvegarde, avec correction a posteriori des longueurs.
+     */
+    static final class Sortie {
+        private final FileChannel canal;
+        private final ByteBuffer tampon;
+        private long debutTampon; // Position dans le fichier du début du tampon
+
+        Sortie(FileChannel canal) {
+            this.canal = canal;
+            this.tampon = ByteBuffer.allocateDirect(TAILLE_TAMPON);
+        }
+
+        long position() {
+            return debutTampon + tampon.position();
+        }
+
+        private void reserver(int octets) throws IOException {
+            if (tampon.remaining() < octets) {
+                vider();
+            }
+        }
+
+        Sortie put(byte valeur) throws IOException {
+            reserver(1);
+            tampon.put(valeur);
+            return this;
+        }
+
+        Sortie putShort(short valeur) throws IOException {
+            reserver(2);
+            tampon.putShort(valeur);
+            return this;
+        }
+
+        Sortie putInt(int valeur) throws IOException {
+            reserver(4);
+            tampon.putInt(valeur);
+            return this;
+        }
+
+        Sortie putLong(long valeur) throws IOException {
+            reserver(8);
+            tampon.putLong(valeur);
+            return this;
+        }
+
+        Sortie put(byte[] octets) throws IOException {
+            return put(ByteBuffer.wrap(octets));
+        }
+
+        Sortie put(ByteBuffer source) throws IOException {
+            while (source.hasRemaining()) {
+                reserver(1);
+                int n = Math.min(tampon.remaining(), source.remaining());
+                tampon.put(tampon.position(), source, source.position(), n);
+                tampon.position(tampon.position() + n);
+                source.position(source.position() + n);
+            }
+            return this;
+        }
+
+        Sortie putTexte(String texte) throws IOException {
+            byte[] octets = texte.getBytes(StandardCharsets.UTF_8);
+            if (octets.length > 65_535) {
+                throw new IllegalArgumentException("Texte trop long pour la sauvegarde.");
+            }
+            return putShort((short) octets.length).put(octets);
+        }
+
+        void corrigerInt(long position, int valeur) throws IOException {
+            if (position >= debutTampon) {
+                tampon.putInt((int) (position - debutTampon), valeur);
+            } else {
+                ecrireA(ByteBuffer.allocate(4).putInt(0, valeur), position);
+            }
+        }
+
+        void corrigerLong(long position, long valeur) throws IOException {
+            if (position >= debutTampon) {
+                tampon.putLong((int) (position - debutTampon), valeur);
+            } else {
+                ecrireA(ByteBuffer.allocate(8).putLong(0, valeur), position);
+            }
+        }
+
+        private void ecrireA(ByteBuffer donnees, long position) throws IOException {
+            while (donnees.hasRemaining()) {
+                canal.write(donnees, position + donnees.position());
+            }
+        }
+
+        void vider() throws IOException {
+            tampon.flip();
+            while (tampon.hasRemaining()) {
+                canal.write(tampon);
+            }
+            debutTampon += tampon.limit();
+            tampon.clear();
+        }
+    }
+}
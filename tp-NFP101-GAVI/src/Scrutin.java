@@ -0,0 +1,192 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Classe représentant un scrutin national regroupant plusieurs circonscriptions.
+ * Les traitements portant sur l'ensemble des circonscriptions (clôture, participation,
+ * sièges, vainqueurs) sont répartis sur tous les cœurs à l'aide de flux parallèles
+ * (pool fork-join commun), sauf si le scrutin est créé en mode séquentiel.
+ * Le total national des voix est tenu à jour au fil des ajouts et corrections
+ * de chaque circonscription (y compris ceux de leurs bureaux de vote), de même que
+ * les résultats par affiliation (voir {@link IndexAffiliations}).
+ */
+public class Scrutin {
+    private final String nom; // Nom du scrutin
+    private final boolean parallele; // Indique si les traitements sont parallélisés
+    private final List<Circonscription> circonscriptions; // Circonscriptions du scrutin
+    private final Map<String, Circonscription> indexCirconscriptions; // Index nom -> circonscription
+    private final LongAdder totalVoix; // Total national des voix, tenu à jour par variations
+    private volatile long totalInscrits; // Total national des inscrits
+    private final IndexAffiliations indexAffiliations; // Voix, sièges et candidats par affiliation
+
+    /**
+     * Constructeur de la classe Scrutin (traitements parallèles).
+     *
+     * @param nom Le nom du scrutin.
+     */
+    public Scrutin(String nom) {
+        this(nom, true);
+    }
+
+    /**
+     * Constructeur de la classe Scrutin.
+     *
+     * @param nom       Le nom du scrutin.
+     * @param parallele true pour paralléliser les traitements, false pour les exécuter séquentiellement.
+     */
+    public Scrutin(String nom, boolean parallele) {
+        if (nom == null || nom.isEmpty()) {
+            throw new IllegalArgumentException("Le nom du scrutin est obligatoire.");
+        }
+        this.nom = nom;
+        this.parallele = parallele;
+        this.circonscriptions = new ArrayList<>();
+        this.indexCirconscriptions = new LinkedHashMap<>();
+        this.totalVoix = new LongAdder();
+        this.indexAffiliations = new IndexAffiliations();
+    }
+
+    /**
+     * Ajoute une circonscription au scrutin.
+     * Ses voix actuelles sont reprises dans le total national, puis ses variations
+     * y sont répercutées : elle doit être ajoutée avant que l'ingestion concurrente
+     * de ses voix ne commence.
+     *
+     * @param circonscription La circonscription à ajouter.
+     * @throws IllegalArgumentException si une circonscription de même nom existe déjà.
+     */
+    public synchronized void ajouterCirconscription(Circonscription circonscription) {
+        if (indexCirconscriptions.containsKey(circonscription.getNom())) {
+            throw new IllegalArgumentException(
+                    "Une circonscription portant ce nom existe déjà dans le scrutin.");
+        }
+        circonscriptions.add(circonscription);
+        indexCirconscriptions.put(circonscription.getNom(), circonscription);
+        circonscription.ajouterObservateur((c, idCandidat, variation) -> totalVoix.add(variation));
+        totalVoix.add(circonscription.getTotalVoix());
+        totalInscrits += circonscription.getInscrits();
+        indexAffiliations.rattacher(circonscription);
+    }
+
+    /**
+     * Récupère une circonscription à partir de son nom.
+     *
+     * @param nomCirconscription Le nom de la circonscription.
+     * @return La circonscription correspondante.
+     * @throws IllegalArgumentException si la circonscription n'existe pas.
+     */
+    public synchronized Circonscription getCirconscription(String nomCirconscription) {
+        Circonscription circonscription = indexCirconscriptions.get(nomCirconscription);
+        if (circonscription == null) {
+            throw new IllegalArgumentException("Circonscription " + nomCirconscription + " non trouvée.");
+        }
+        return circonscription;
+    }
+
+    /**
+     * Récupère les circonscriptions du scrutin.
+     *
+     * @return Une copie de la liste des circonscriptions, dans l'ordre d'ajout.
+     */
+    public synchronized List<Circonscription> getCirconscriptions() {
+        return new ArrayList<>(circonscriptions);
+    }
+
+    private Stream<Circonscription> flux() {
+        List<Circonscription> instantane = getCirconscriptions();
+        return parallele ? instantane.parallelStream() : instantane.stream();
+    }
+
+    /**
+     * Clôt l'élection dans toutes les circonscriptions qui ne le sont pas encore.
+     * Toutes les clôtures sont tentées, même si certaines échouent.
+     *
+     * @throws IllegalStateException si au moins une circonscription n'a pas pu être clôturée.
+     */
+    public void cloreElection() {
+        List<String> echecs = flux()
+                .filter(c -> !c.isElectionTerminee())
+                .filter(c -> {
+                    try {
+                        c.cloreElection();
+                        return false;
+                    } catch (IllegalStateException e) {
+                        return true;
+                    }
+                })
+                .map(Circonscription::getNom)
+                .collect(Collectors.toList());
+        if (!echecs.isEmpty()) {
+            throw new IllegalStateException("Clôture impossible pour " + echecs.size()
+                    + " circonscription(s) : " + echecs);
+        }
+    }
+
+    /**
+     * Calcule le taux de participation national.
+     *
+     * @return Le total des voix rapporté au total des inscrits, en pourcentage.
+     */
+    public double tauxParticipation() {
+        long inscrits = totalInscrits;
+        return inscrits == 0 ? 0 : (double) totalVoix.sum() / inscrits * 100;
+    }
+
+    /**
+     * Récupère le total national des voix exprimées.
+     *
+     * @return Le total des voix.
+     */
+    public long getTotalVoix() {
+        return totalVoix.sum();
+    }
+
+    /**
+     * Compte les sièges obtenus par chaque affiliation.
+     * Un siège est attribué à l'affiliation du vainqueur de chaque circonscription ;
+     * les circonscriptions à égalité ne sont pas attribuées.
+     *
+     * @return Le nombre de sièges par affiliation, trié par nom d'affiliation.
+     */
+    public Map<String, Long> siegesParAffiliation() {
+        return indexAffiliations.siegesParAffiliation();
+    }
+
+    /**
+     * Récupère l'index des résultats par affiliation, tenu à jour au fil de l'ingestion.
+     *
+     * @return L'index des affiliations du scrutin.
+     */
+    public IndexAffiliations getIndexAffiliations() {
+        return indexAffiliations;
+    }
+
+    /**
+     * Récupère le(s) vainqueur(s) de chaque circonscription.
+     *
+     * @return Les vainqueurs indexés par nom de circonscription, dans l'ordre d'ajout.
+     */
+    public Map<String, List<Candidat>> vainqueursParCirconscription() {
+        return flux().collect(Collectors.toMap(Circonscription::getNom, Circonscription::trouverVainqueur,
+                (a, b) -> a, LinkedHashMap::new));
+    }
+
+    /**
+     * Récupère le nom du scrutin.
+     *
+     * @return Le nom du scrutin.
+     */
+    public String getNom() {
+        return nom;
+    }
+
+    @Override
+    public String toString() {
+        return "Scrutin " + nom + " : " + getCirconscriptions().size() + " circonscription(s)";
+    }
+}
@@ -0,0 +1,525 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serveur réseau d'ingestion des remontées des bureaux de vote, non bloquant (sélecteurs NIO).
+ *
+ * Plusieurs boucles d'événements, chacune sur son propre thread et son propre sélecteur, se
+ * partagent les connexions. À chaque tour, une boucle lit toutes les remontées disponibles sur ses
+ * connexions, les regroupe par circonscription et applique chaque groupe en une seule écriture
+ * (voir {@link Circonscription#appliquerLot(long[], byte, int, int)}), tracée dans l'historique
+ * comme un lot reçu par le réseau, puis acquitte chaque remontée.
+ * Les clients peuvent donc envoyer plusieurs remontées sans attendre leurs acquittements.
+ *
+ * Une remontée identifiée est appliquée au plus une fois (voir
+ * {@link Circonscription#soumettreRemontee(long, int[])}) : un client peut la renvoyer sans risque
+ * s'il n'a pas reçu son acquittement. Les autres sont regroupées sans contrôle des doublons.
+ * Une longueur de remontée hors bornes rend la suite du flux illisible : la connexion n'est plus lue
+ * et n'est fermée qu'après l'envoi des acquittements des remontées qui la précèdent, déjà appliquées.
+ *
+ * Si une boucle d'événements s'arrête sur une erreur, ses connexions sont fermées et l'erreur
+ * est relancée par {@link #close()}.
+ *
+ * Format d'une remontée (entiers gros-boutistes) : [longueur du reste, int][numéro, long]
+ * [options, octet][circonscription, int][nombre de candidats, short] puis, par candidat,
+ * [candidat, short][voix, int]. La circonscription est désignée par sa position dans la liste
+ * fournie au démarrage ; avec l'option {@link #IDENTIFIEE}, le numéro sert d'identifiant de remontée.
+ * Format d'un acquittement : [numéro, long][statut, octet], dans l'ordre des remontées de la connexion.
+ */
+public final class ServeurIngestion implements Closeable {
+    /** Option : la remontée est identifiée par son numéro et appliquée au plus une fois. */
+    public static final byte IDENTIFIEE = 1;
+    /** Statut : remontée appliquée. */
+    public static final byte APPLIQUEE = 0;
+    /** Statut : remontée identifiée déjà reçue, ignorée. */
+    public static final byte DOUBLON = 1;
+    /** Statut : remontée refusée (circonscription ou candidat inconnu, voix négatives, élection terminée). */
+    public static final byte REFUSEE = 2;
+
+    static final int TAILLE_ENTETE = 4 + 8 + 1 + 4 + 2;
+    static final int TAILLE_PAIRE = 2 + 4;
+    static final int TAILLE_ACQUITTEMENT = 8 + 1;
+    private static final int MAX_PAIRES = 4_096; // Borne la taille d'une remontée
+    private static final int TAILLE_TAMPON = 64 * 1024;
+    private static final int MAX_ACQUITTEMENTS_EN_ATTENTE = 256 * 1024; // Au-delà, la connexion n'est plus lue
+    private static final long MAX_TOTAL_LOT = 1L << 30; // Le total d'un lot doit tenir dans un int
+
+    private final List<Circonscription> circonscriptions;
+    private final ServerSocketChannel ecoute;
+    private final Boucle[] boucles;
+    private final LongAdder recues = new LongAdder();
+    private final LongAdder doublons = new LongAdder();
+    private final LongAdder refusees = new LongAdder();
+    private final AtomicReference<IOException> erreur = new AtomicReference<>(); // Arrêt d'une boucle
+    private volatile boolean ferme;
+
+    private ServeurIngestion(List<Circonscription> circonscriptions, ServerSocketChannel ecoute, int nbBoucles)
+            throws IOException {
+        this.circonscriptions = List.copyOf(circonscriptions);
+        this.ecoute = ecoute;
+        this.boucles = new Boucle[nbBoucles];
+        for (int i = 0; i < nbBoucles; i++) {
+            boucles[i] = new Boucle(i);
+        }
+    }
+
+    /**
+     * Démarre un serveur d'ingestion.
+     *
+     * @param circonscriptions Les circonscriptions alimentées, désignées par leur position dans la liste.
+     * @param adresse          L'adresse d'écoute (port 0 pour un port libre quelconque).
+     * @param nbBoucles        Le nombre de boucles d'événements (threads).
+     * @return Le serveur démarré.
+     * @throws IOException si l'adresse ne peut pas être ouverte.
+     */
+    public static ServeurIngestion demarrer(List<Circonscription> circonscriptions, InetSocketAddress adresse,
+                                            int nbBoucles) throws IOException {
+        if (nbBoucles <= 0) {
+            throw new IllegalArgumentException("Le nombre de boucles doit être positif.");
+        }
+        ServerSocketChannel ecoute = ServerSocketChannel.open();
+        try {
+            ecoute.bind(adresse, 1_024);
+            ecoute.configureBlocking(false);
+            ServeurIngestion serveur = new ServeurIngestion(circonscriptions, ecoute, nbBoucles);
+            ecoute.register(serveur.boucles[0].selecteur, SelectionKey.OP_ACCEPT);
+            for (Boucle boucle : serveur.boucles) {
+                boucle.thread.start();
+            }
+            return serveur;
+        } catch (IOException | RuntimeException e) {
+            ecoute.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return L'adresse d'écoute effective (avec le port attribué).
+     * @throws IOException si le serveur est fermé.
+     */
+    public InetSocketAddress getAdresse() throws IOException {
+        return (InetSocketAddress) ecoute.getLocalAddress();
+    }
+
+    /**
+     * @return Le nombre de remontées reçues.
+     */
+    public long getRemonteesRecues() {
+        return recues.sum();
+    }
+
+    /**
+     * @return Le nombre de remontées identifiées reçues en double et ignorées.
+     */
+    public long getDoublons() {
+        return doublons.sum();
+    }
+
+    /**
+     * @return Le nombre de remontées refusées.
+     */
+    public long getRefusees() {
+        return refusees.sum();
+    }
+
+    /**
+     * Arrête le serveur et ferme toutes ses connexions. Les remontées déjà appliquées le restent.
+     *
+     * @throws IOException en cas d'erreur de fermeture, ou si une boucle d'événements s'était
+     *                     arrêtée sur une erreur (la première est relancée, les suivantes lui sont jointes).
+     */
+    @Override
+    public void close() throws IOException {
+        ferme = true;
+        for (Boucle boucle : boucles) {
+            boucle.selecteur.wakeup();
+        }
+        for (Boucle boucle : boucles) {
+            try {
+                boucle.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        try {
+            ecoute.close();
+        } finally {
+            IOException e = erreur.get();
+            if (e != null) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Connexion d'un client : tampon de lecture (remontées incomplètes comprises)
+     * et tampon des acquittements à envoyer.
+     */
+    private static final class Connexion {
+        final SocketChannel canal;
+        final ByteBuffer entree = ByteBuffer.allocateDirect(TAILLE_TAMPON);
+        ByteBuffer sortie = ByteBuffer.allocateDirect(TAILLE_TAMPON);
+        SelectionKey cle;
+        boolean aFermer; // Flux illisible : plus lue, fermée une fois ses acquittements envoyés
+
+        Connexion(SocketChannel canal) {
+            this.canal = canal;
+        }
+    }
+
+    /**
+     * Boucle d'événements : un sélecteur, ses connexions et les lots en cours d'un tour.
+     */
+    private final class Boucle implements Runnable {
+        final Selector selecteur;
+        final Thread thread;
+        private final ConcurrentLinkedQueue<SocketChannel> nouvelles = new ConcurrentLinkedQueue<>();
+        private int suivante; // Boucle de la prochaine connexion acceptée (boucle 0 seulement)
+
+        // Lots du tour en cours, par position de circonscription
+        private final long[][] lots = new long[circonscriptions.size()][];
+        private final int[] remonteesLot = new int[circonscriptions.size()];
+        private final long[] totauxLot = new long[circonscriptions.size()];
+        private final int[] debutsLot = new int[circonscriptions.size()]; // Premier acquittement du lot
+        private final int[] circonscriptionsTouchees = new int[circonscriptions.size()];
+        private final boolean[] touchees = new boolean[circonscriptions.size()];
+        private int nbTouchees;
+
+        // Acquittements du tour, dans l'ordre de lecture : connexion, numéro, circonscription du lot (ou -1) et statut
+        private Connexion[] acqConnexions = new Connexion[1_024];
+        private long[] acqNumeros = new long[1_024];
+        private int[] acqCirconscriptions = new int[1_024];
+        private byte[] acqStatuts = new byte[1_024];
+        private int nbAcquittements;
+        private final List<Connexion> aFermer = new ArrayList<>(); // Connexions devenues illisibles pendant le tour
+
+        Boucle(int numero) throws IOException {
+            this.selecteur = Selector.open();
+            this.thread = new Thread(this, "ingestion-" + numero);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!ferme) {
+                    selecteur.select();
+                    SocketChannel canal;
+                    while ((canal = nouvelles.poll()) != null) {
+                        Connexion connexion = new Connexion(canal);
+                        connexion.cle = canal.register(selecteur, SelectionKey.OP_READ, connexion);
+                    }
+                    Iterator<SelectionKey> cles = selecteur.selectedKeys().iterator();
+                    while (cles.hasNext()) {
+                        SelectionKey cle = cles.next();
+                        cles.remove();
+                        if (!cle.isValid()) {
+                            continue;
+                        }
+                        if (cle.isAcceptable()) {
+                            accepter();
+                            continue;
+                        }
+                        Connexion connexion = (Connexion) cle.attachment();
+                        try {
+                            if (cle.isWritable()) {
+                                envoyer(connexion);
+                            }
+                            if (cle.isValid() && cle.isReadable()) {
+                                lire(connexion);
+                            }
+                        } catch (IOException e) {
+                            fermer(connexion);
+                        }
+                    }
+                    appliquerLots();
+                    acquitter();
+                    for (Connexion connexion : aFermer) {
+                        envoyerSansErreur(connexion); // Ferme la connexion si tout est parti
+                    }
+                    aFermer.clear();
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (!ferme) {
+                    IOException cause = e instanceof IOException ? (IOException) e
+                            : new IOException("Sélecteur fermé.", e);
+                    IOException echec = new IOException("Arrêt de la boucle " + thread.getName() + ".", cause);
+                    if (!erreur.compareAndSet(null, echec)) {
+                        erreur.get().addSuppressed(echec);
+                    }
+                }
+            } finally {
+                for (SelectionKey cle : selecteur.keys()) {
+                    if (cle.attachment() instanceof Connexion) {
+                        fermer((Connexion) cle.attachment());
+                    }
+                }
+                try {
+                    selecteur.close();
+                } catch (IOException e) {
+                    // Fermeture au mieux
+                }
+            }
+        }
+
+        private void accepter() throws IOException {
+            SocketChannel canal;
+            while ((canal = ecoute.accept()) != null) {
+                canal.configureBlocking(false);
+                canal.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Boucle boucle = boucles[suivante];
+                suivante = (suivante + 1) % boucles.length;
+                if (boucle == this) {
+                    Connexion connexion = new Connexion(canal);
+                    connexion.cle = canal.register(selecteur, SelectionKey.OP_READ, connexion);
+                } else {
+                    boucle.nouvelles.add(canal);
+                    boucle.selecteur.wakeup();
+                }
+            }
+        }
+
+        /**
+         * Lit les remontées disponibles : les remontées complètes sont ajoutées aux lots du tour
+         * (ou appliquées tout de suite si elles sont identifiées), la fin incomplète est gardée.
+         * Une longueur hors bornes arrête la lecture de la connexion, qui sera fermée
+         * après l'envoi des acquittements des remontées précédentes.
+         */
+        private void lire(Connexion connexion) throws IOException {
+            ByteBuffer entree = connexion.entree;
+            int lus = connexion.canal.read(entree);
+            if (lus < 0) {
+                fermer(connexion);
+                return;
+            }
+            entree.flip();
+            while (entree.remaining() >= 4) {
+                int longueur = entree.getInt(entree.position());
+                if (longueur < TAILLE_ENTETE - 4 || longueur > TAILLE_ENTETE - 4 + MAX_PAIRES * TAILLE_PAIRE) {
+                    entree.clear();
+                    connexion.aFermer = true;
+                    connexion.cle.interestOps(connexion.cle.interestOps() & ~SelectionKey.OP_READ);
+                    aFermer.add(connexion);
+                    return;
+                }
+                if (entree.remaining() < 4 + longueur) {
+                    break;
+                }
+                int fin = entree.position() + 4 + longueur;
+                entree.position(entree.position() + 4);
+                recevoir(connexion, entree, fin);
+                entree.position(fin);
+            }
+            entree.compact();
+        }
+
+        private void recevoir(Connexion connexion, ByteBuffer entree, int fin) {
+            recues.increment();
+            long numero = entree.getLong();
+            byte options = entree.get();
+            int idCirconscription = entree.getInt();
+            int nbPaires = entree.getShort() & 0xFFFF;
+            if (idCirconscription < 0 || idCirconscription >= circonscriptions.size()
+                    || entree.position() + nbPaires * TAILLE_PAIRE != fin) {
+                acquittement(connexion, numero, -1, REFUSEE);
+                return;
+            }
+            Circonscription circonscription = circonscriptions.get(idCirconscription);
+            int nbCandidats = circonscription.getNombreCandidats();
+            int[] voix = new int[nbCandidats]; // Une remontée ne cite en général chaque candidat qu'une fois
+            long total = 0;
+            for (int p = 0; p < nbPaires; p++) {
+                int idCandidat = entree.getShort() & 0xFFFF;
+                int v = entree.getInt();
+                if (idCandidat >= nbCandidats || v < 0 || (long) voix[idCandidat] + v > Integer.MAX_VALUE) {
+                    acquittement(connexion, numero, -1, REFUSEE);
+                    return;
+                }
+                voix[idCandidat] += v;
+                total += v;
+            }
+            if ((options & IDENTIFIEE) != 0) {
+                byte statut;
+                try {
+                    statut = circonscription.soumettreRemontee(numero, voix) ? APPLIQUEE : DOUBLON;
+                } catch (IllegalStateException | IllegalArgumentException e) {
+                    statut = REFUSEE;
+                }
+                acquittement(connexion, numero, -1, statut);
+                return;
+            }
+            if (totauxLot[idCirconscription] + total >= MAX_TOTAL_LOT) {
+                appliquerLot(idCirconscription);
+            }
+            long[] lot = lots[idCirconscription];
+            if (lot == null || lot.length < nbCandidats) {
+                lot = lot == null ? new long[nbCandidats] : Arrays.copyOf(lot, nbCandidats);
+                lots[idCirconscription] = lot;
+            }
+            if (remonteesLot[idCirconscription] == 0) {
+                debutsLot[idCirconscription] = nbAcquittements;
+                if (!touchees[idCirconscription]) {
+                    touchees[idCirconscription] = true;
+                    circonscriptionsTouchees[nbTouchees++] = idCirconscription;
+                }
+            }
+            for (int idCandidat = 0; idCandidat < nbCandidats; idCandidat++) {
+                lot[idCandidat] += voix[idCandidat];
+            }
+            remonteesLot[idCirconscription]++;
+            totauxLot[idCirconscription] += total;
+            acquittement(connexion, numero, idCirconscription, APPLIQUEE);
+        }
+
+        private void acquittement(Connexion connexion, long numero, int idCirconscription, byte statut) {
+            if (nbAcquittements == acqNumeros.length) {
+                int taille = nbAcquittements * 2;
+                acqConnexions = Arrays.copyOf(acqConnexions, taille);
+                acqNumeros = Arrays.copyOf(acqNumeros, taille);
+                acqCirconscriptions = Arrays.copyOf(acqCirconscriptions, taille);
+                acqStatuts = Arrays.copyOf(acqStatuts, taille);
+            }
+            acqConnexions[nbAcquittements] = connexion;
+            acqNumeros[nbAcquittements] = numero;
+            acqCirconscriptions[nbAcquittements] = idCirconscription;
+            acqStatuts[nbAcquittements] = statut;
+            nbAcquittements++;
+        }
+
+        private void appliquerLots() {
+            for (int i = 0; i < nbTouchees; i++) {
+                appliquerLot(circonscriptionsTouchees[i]);
+                touchees[circonscriptionsTouchees[i]] = false;
+            }
+            nbTouchees = 0;
+        }
+
+        /**
+         * Applique le lot d'une circonscription en une seule écriture. S'il est refusé (élection terminée),
+         * ses remontées sont acquittées comme refusées.
+         */
+        private void appliquerLot(int idCirconscription) {
+            int nbRemontees = remonteesLot[idCirconscription];
+            if (nbRemontees == 0) {
+                return;
+            }
+            long[] lot = lots[idCirconscription];
+            try {
+                circonscriptions.get(idCirconscription).appliquerLot(lot, HistoriqueCompact.LOT_RESEAU,
+                        nbRemontees, (int) totauxLot[idCirconscription]);
+            } catch (IllegalStateException e) {
+                Arrays.fill(lot, 0);
+                for (int a = debutsLot[idCirconscription]; a < nbAcquittements; a++) {
+                    if (acqCirconscriptions[a] == idCirconscription) {
+                        acqStatuts[a] = REFUSEE;
+                    }
+                }
+            }
+            remonteesLot[idCirconscription] = 0;
+            totauxLot[idCirconscription] = 0;
+        }
+
+        /**
+         * Écrit les acquittements du tour dans le tampon de chaque connexion, puis envoie ces tampons.
+         */
+        private void acquitter() {
+            Connexion precedente = null;
+            for (int a = 0; a < nbAcquittements; a++) {
+                Connexion connexion = acqConnexions[a];
+                acqConnexions[a] = null;
+                if (acqStatuts[a] == DOUBLON) {
+                    doublons.increment();
+                } else if (acqStatuts[a] == REFUSEE) {
+                    refusees.increment();
+                }
+                if (!connexion.canal.isOpen()) {
+                    continue;
+                }
+                if (connexion.sortie.remaining() < TAILLE_ACQUITTEMENT) {
+                    ByteBuffer agrandie = ByteBuffer.allocateDirect(connexion.sortie.capacity() * 2);
+                    connexion.sortie.flip();
+                    connexion.sortie = agrandie.put(connexion.sortie);
+                }
+                connexion.sortie.putLong(acqNumeros[a]).put(acqStatuts[a]);
+                if (connexion != precedente && precedente != null) {
+                    envoyerSansErreur(precedente);
+                }
+                precedente = connexion;
+            }
+            if (precedente != null) {
+                envoyerSansErreur(precedente);
+            }
+            nbAcquittements = 0;
+        }
+
+        private void envoyerSansErreur(Connexion connexion) {
+            try {
+                envoyer(connexion);
+            } catch (IOException e) {
+                fermer(connexion);
+            }
+        }
+
+        /**
+         * Envoie le tampon des acquittements d'une connexion. S'il ne part pas entièrement, la connexion
+         * attend de pouvoir écrire et, si trop d'acquittements s'accumulent, n'est plus lue.
+         * Une connexion devenue illisible est fermée dès que son tampon est vide.
+         */
+        private void envoyer(Connexion connexion) throws IOException {
+            ByteBuffer sortie = connexion.sortie;
+            if (!connexion.canal.isOpen() || (sortie.position() == 0 && !connexion.aFermer)) {
+                return;
+            }
+            if (sortie.position() > 0) {
+                sortie.flip();
+                connexion.canal.write(sortie);
+                sortie.compact();
+            }
+            int interets = SelectionKey.OP_READ;
+            if (connexion.aFermer) {
+                if (sortie.position() == 0) {
+                    fermer(connexion);
+                    return;
+                }
+                interets = SelectionKey.OP_WRITE;
+            } else if (sortie.position() > 0) {
+                interets = sortie.position() > MAX_ACQUITTEMENTS_EN_ATTENTE
+                        ? SelectionKey.OP_WRITE : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+            }
+            if (connexion.cle.interestOps() != interets) {
+                connexion.cle.interestOps(interets);
+            }
+        }
+
+        private void fermer(Connexion connexion) {
+            connexion.cle.cancel();
+            try {
+                connexion.canal.close();
+            } catch (IOException e) {
+                // Fermeture au mieux
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Serveur d'ingestion (" + boucles.length + " boucle(s), " + circonscriptions.size()
+                + " circonscription(s)) : " + recues.sum() + " remontée(s) reçue(s)";
+    }
+}
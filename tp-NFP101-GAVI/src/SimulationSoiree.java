@@ -0,0 +1,306 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simulateur de soirée électorale, outil de dimensionnement avant chaque scrutin.
+ * Chaque bureau de vote est joué par son propre thread (virtuel lorsque la JVM le permet),
+ * qui remonte ses résultats en plusieurs fois, à des instants tirés au hasard sur la durée
+ * de la soirée, avec un pic de remontées vers le milieu. Une partie des bureaux remonte
+ * d'un bloc (rafale d'ajouts sans pause), une autre déclare un chiffre erroné puis le corrige.
+ *
+ * Les voix passent par les API réelles : {@link Circonscription#ajouterVoix(int, int)} pour
+ * les remontées, {@link BureauDeVote#corriger(int, int)} pour les corrections, puis
+ * {@link Circonscription#cloreElection()}. Le simulateur affiche le débit, les percentiles
+ * de latence des appels et vérifie que les totaux et les vainqueurs sont exacts.
+ * Pendant la soirée, les vainqueurs sont projetés chaque seconde (voir {@link ProjectionResultats}) ;
+ * les dernières projections jugées sûres sont comparées aux vainqueurs réels.
+ *
+ * Usage : {@code java SimulationSoiree [circonscriptions] [bureaux par circonscription]
+ * [candidats] [durée en secondes] [graine]}.
+ */
+public class SimulationSoiree {
+    private static final int NB_REMONTEES = 4; // Remontées partielles par bureau
+    private static final double PART_PIC = 0.4; // Part des bureaux qui remontent pendant le pic
+    private static final double PROBA_RAFALE = 0.1; // Bureaux qui remontent tout d'un bloc
+    private static final double PROBA_CORRECTION = 0.05; // Bureaux qui corrigent une erreur de saisie
+    private static final int ELECTEURS_PAR_BUREAU = 1_000;
+    private static final double PARTICIPATION = 0.75; // Participation moyenne des bureaux simulés
+    private static final Duration BUDGET_PROJECTION = Duration.ofMillis(100);
+    private static final double SEUIL_PROJECTION = 0.95; // Probabilité à partir de laquelle un vainqueur est annoncé
+    private static final boolean VIRTUELS = Runtime.version().feature() >= 21; // Threads virtuels disponibles
+
+    public static void main(String[] args) throws InterruptedException {
+        int nbCirconscriptions = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int bureauxParCirconscription = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int nbCandidats = args.length > 2 ? Integer.parseInt(args[2]) : 12;
+        long dureeNanos = TimeUnit.SECONDS.toNanos(args.length > 3 ? Long.parseLong(args[3]) : 10);
+        long graine = args.length > 4 ? Long.parseLong(args[4]) : 42;
+        SplittableRandom aleatoire = new SplittableRandom(graine);
+
+        // Circonscriptions, candidats et bureaux de vote
+        List<Circonscription> circonscriptions = new ArrayList<>(nbCirconscriptions);
+        long[][] attendues = new long[nbCirconscriptions][nbCandidats];
+        for (int c = 0; c < nbCirconscriptions; c++) {
+            Circonscription circonscription = new Circonscription("Circonscription " + (c + 1),
+                    bureauxParCirconscription * ELECTEURS_PAR_BUREAU);
+            for (int i = 0; i < nbCandidats; i++) {
+                circonscription.ajouterCandidat(new Candidat("NOM" + i, "Prenom" + i, "Parti " + (char) ('A' + i % 8)));
+            }
+            circonscriptions.add(circonscription);
+        }
+
+        HistogrammeLatence latences = new HistogrammeLatence();
+        LongAdder nbAppels = new LongAdder();
+        AtomicLong nbRejets = new AtomicLong();
+        int nbBureaux = nbCirconscriptions * bureauxParCirconscription;
+        CountDownLatch depart = new CountDownLatch(1);
+        CountDownLatch fin = new CountDownLatch(nbBureaux);
+        long[] debutSoiree = new long[1];
+        ExecutorService executeur = executeurBureaux();
+
+        for (int c = 0; c < nbCirconscriptions; c++) {
+            Circonscription circonscription = circonscriptions.get(c);
+            for (int b = 0; b < bureauxParCirconscription; b++) {
+                BureauDeVote bureau = circonscription.ajouterBureau("Bureau " + (b + 1));
+                Bureau simule = new Bureau(circonscription, bureau, aleatoire.split(), nbCandidats, dureeNanos);
+                for (int i = 0; i < nbCandidats; i++) {
+                    attendues[c][i] += simule.voix[i];
+                }
+                executeur.execute(() -> {
+                    try {
+                        depart.await();
+                        simule.remonter(debutSoiree[0], latences, nbAppels);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (RuntimeException e) {
+                        nbRejets.incrementAndGet();
+                        System.err.println(bureau + " : " + e.getMessage());
+                    } finally {
+                        fin.countDown();
+                    }
+                });
+            }
+        }
+
+        System.out.printf("%d circonscriptions, %d bureaux de vote, %d candidats, %d s, threads %s%n",
+                nbCirconscriptions, nbBureaux, nbCandidats, TimeUnit.NANOSECONDS.toSeconds(dureeNanos),
+                VIRTUELS ? "virtuels" : "de plateforme");
+        ProjectionResultats projection = new ProjectionResultats(circonscriptions, PARTICIPATION, 1_000_000, graine);
+        Map<String, ProjectionResultats.Projection> projections = Map.of();
+        debutSoiree[0] = System.nanoTime();
+        depart.countDown();
+        try {
+            while (!fin.await(1, TimeUnit.SECONDS)) {
+                long ecoule = System.nanoTime() - debutSoiree[0];
+                if (ecoule > dureeNanos + TimeUnit.SECONDS.toNanos(300)) {
+                    throw new IllegalStateException("La simulation n'a pas terminé à temps.");
+                }
+                long debut = System.nanoTime();
+                projections = projection.projeter(BUDGET_PROJECTION);
+                long tirages = 0;
+                int acquises = 0;
+                for (ProjectionResultats.Projection p : projections.values()) {
+                    tirages += p.getTirages();
+                    int favori = p.getFavori();
+                    if (favori >= 0 && p.getProbabiliteVictoire(favori) >= SEUIL_PROJECTION) {
+                        acquises++;
+                    }
+                }
+                System.out.printf("Projection à %d s : %d tirages en %d ms, %d/%d vainqueur(s) annoncé(s)%n",
+                        TimeUnit.NANOSECONDS.toSeconds(ecoule), tirages,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - debut), acquises, nbCirconscriptions);
+            }
+        } finally {
+            projection.close();
+        }
+        long duree = System.nanoTime() - debutSoiree[0];
+        executeur.shutdown();
+
+        // Clôture et vérification des résultats
+        HistogrammeLatence latencesCloture = new HistogrammeLatence();
+        boolean correct = nbRejets.get() == 0;
+        for (int c = 0; c < nbCirconscriptions; c++) {
+            Circonscription circonscription = circonscriptions.get(c);
+            long debut = System.nanoTime();
+            circonscription.cloreElection();
+            latencesCloture.enregistrer(System.nanoTime() - debut);
+            correct &= verifier(circonscription, attendues[c]);
+        }
+        int annonces = 0;
+        int erreurs = 0;
+        for (ProjectionResultats.Projection p : projections.values()) {
+            int favori = p.getFavori();
+            if (favori >= 0 && !p.isDefinitive() && p.getProbabiliteVictoire(favori) >= SEUIL_PROJECTION) {
+                annonces++;
+                if (!p.getCirconscription().trouverVainqueur().contains(p.getCandidat(favori))) {
+                    erreurs++;
+                }
+            }
+        }
+
+        System.out.printf("%d appels en %d ms (%.0f appels/s)%n", nbAppels.sum(),
+                TimeUnit.NANOSECONDS.toMillis(duree), nbAppels.sum() * 1e9 / duree);
+        System.out.printf("Latence des appels : p50 %d ns, p99 %d ns, p99,9 %d ns, max %d ns%n",
+                latences.getPercentile(50), latences.getPercentile(99), latences.getPercentile(99.9),
+                latences.getMax());
+        System.out.printf("Latence de clôture : p50 %d ns, max %d ns%n",
+                latencesCloture.getPercentile(50), latencesCloture.getMax());
+        System.out.printf("Dernière projection : %d vainqueur(s) annoncé(s) avant la fin, %d erreur(s)%n",
+                annonces, erreurs);
+        if (!correct) {
+            System.exit(1);
+        }
+        System.out.println("Totaux exacts.");
+    }
+
+    /**
+     * Compare les voix, le total et le(s) vainqueur(s) d'une circonscription aux valeurs attendues.
+     */
+    private static boolean verifier(Circonscription circonscription, long[] attendues) {
+        boolean correct = true;
+        long total = 0;
+        long maxVoix = 0;
+        for (int i = 0; i < attendues.length; i++) {
+            Candidat candidat = circonscription.getCandidat(i);
+            if (candidat.getVoix() != attendues[i]) {
+                System.err.println(circonscription.getNom() + ", écart pour " + candidat.getNomComplet() + " : "
+                        + candidat.getVoix() + " voix au lieu de " + attendues[i]);
+                correct = false;
+            }
+            total += attendues[i];
+            maxVoix = Math.max(maxVoix, attendues[i]);
+        }
+        int nbEnTete = 0;
+        for (long v : attendues) {
+            if (v == maxVoix) {
+                nbEnTete++;
+            }
+        }
+        List<Candidat> vainqueurs = circonscription.trouverVainqueur();
+        boolean vainqueursExacts = vainqueurs.size() == nbEnTete;
+        for (Candidat vainqueur : vainqueurs) {
+            vainqueursExacts &= vainqueur.getVoix() == maxVoix;
+        }
+        if (circonscription.getTotalVoix() != total || !vainqueursExacts) {
+            System.err.println(circonscription.getNom() + ", total ou vainqueur(s) incohérents : "
+                    + circonscription.getTotalVoix() + " voix, vainqueur(s) " + vainqueurs);
+            correct = false;
+        }
+        return correct;
+    }
+
+    /**
+     * Crée l'exécuteur des bureaux : un thread virtuel par tâche à partir de Java 21,
+     * sinon un thread de plateforme par tâche. La méthode est recherchée à l'exécution,
+     * le projet étant compilé pour Java 17.
+     */
+    private static ExecutorService executeurBureaux() {
+        if (VIRTUELS) {
+            try {
+                return (ExecutorService) MethodHandles.publicLookup()
+                        .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                                MethodType.methodType(ExecutorService.class))
+                        .invokeExact();
+            } catch (Throwable e) {
+                throw new IllegalStateException("Threads virtuels indisponibles.", e);
+            }
+        }
+        return Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Bureau de vote simulé : ses résultats définitifs et le calendrier de ses remontées.
+     */
+    private static final class Bureau {
+        private final Circonscription circonscription;
+        private final BureauDeVote bureau;
+        private final int[] voix; // Résultats définitifs du bureau, par candidat
+        private final long[] instants; // Instants des remontées, depuis le début de la soirée
+        private final int[][] parts; // Voix de chaque remontée, par candidat
+        private final int idErreur; // Candidat touché par l'erreur de saisie (-1 sans erreur)
+        private final int erreur; // Voix saisies par erreur
+
+        Bureau(Circonscription circonscription, BureauDeVote bureau, SplittableRandom aleatoire,
+               int nbCandidats, long dureeNanos) {
+            this.circonscription = circonscription;
+            this.bureau = bureau;
+            this.voix = new int[nbCandidats];
+            int votants = ELECTEURS_PAR_BUREAU / 2 + aleatoire.nextInt(ELECTEURS_PAR_BUREAU / 2);
+            for (int v = 0; v < votants; v++) {
+                // Quelques candidats concentrent la plupart des voix
+                voix[Math.min(aleatoire.nextInt(nbCandidats), aleatoire.nextInt(nbCandidats))]++;
+            }
+
+            int nbRemontees = aleatoire.nextDouble() < PROBA_RAFALE ? 1 : NB_REMONTEES;
+            boolean pic = aleatoire.nextDouble() < PART_PIC;
+            this.instants = new long[nbRemontees];
+            for (int r = 0; r < nbRemontees; r++) {
+                double t = pic ? 0.5 + aleatoire.nextGaussian() * 0.05 : aleatoire.nextDouble();
+                instants[r] = (long) (Math.min(1, Math.max(0, t)) * dureeNanos);
+            }
+            Arrays.sort(instants);
+            this.parts = new int[nbRemontees][nbCandidats];
+            for (int i = 0; i < nbCandidats; i++) {
+                int reste = voix[i];
+                for (int r = 0; r < nbRemontees - 1; r++) {
+                    parts[r][i] = reste == 0 ? 0 : aleatoire.nextInt(reste + 1);
+                    reste -= parts[r][i];
+                }
+                parts[nbRemontees - 1][i] = reste;
+            }
+            boolean enErreur = aleatoire.nextDouble() < PROBA_CORRECTION;
+            this.idErreur = enErreur ? aleatoire.nextInt(nbCandidats) : -1;
+            this.erreur = 1 + aleatoire.nextInt(100);
+        }
+
+        /**
+         * Remonte les résultats du bureau au fil de la soirée, puis corrige l'erreur de saisie éventuelle.
+         */
+        void remonter(long debutSoiree, HistogrammeLatence latences, LongAdder nbAppels)
+                throws InterruptedException {
+            if (idErreur >= 0) {
+                attendre(debutSoiree + instants[0]);
+                long debut = System.nanoTime();
+                bureau.corriger(idErreur, erreur);
+                latences.enregistrer(System.nanoTime() - debut);
+                nbAppels.increment();
+            }
+            for (int r = 0; r < instants.length; r++) {
+                attendre(debutSoiree + instants[r]);
+                for (int i = 0; i < parts[r].length; i++) {
+                    if (parts[r][i] > 0) {
+                        long debut = System.nanoTime();
+                        circonscription.ajouterVoix(i, parts[r][i]);
+                        latences.enregistrer(System.nanoTime() - debut);
+                        nbAppels.increment();
+                    }
+                }
+            }
+            if (idErreur >= 0) {
+                long debut = System.nanoTime();
+                bureau.corriger(idErreur, 0);
+                latences.enregistrer(System.nanoTime() - debut);
+                nbAppels.increment();
+            }
+        }
+
+        private static void attendre(long instant) throws InterruptedException {
+            long attente = instant - System.nanoTime();
+            if (attente > 0) {
+                TimeUnit.NANOSECONDS.sleep(attente);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test de charge de l'ajout concurrent de voix.
+ * Plusieurs dizaines de threads ajoutent des voix dans une même circonscription,
+ * puis on vérifie que les totaux, le(s) vainqueur(s) et les historiques sont exacts.
+ */
+public class StressIngestion {
+    private static final int NB_THREADS = 48;
+    private static final int AJOUTS_PAR_THREAD = 20_000;
+    private static final int NB_CANDIDATS = 8;
+
+    public static void main(String[] args) throws InterruptedException {
+        Circonscription circonscription = new Circonscription("Stress", Integer.MAX_VALUE);
+        for (int i = 0; i < NB_CANDIDATS; i++) {
+            circonscription.ajouterCandidat(new Candidat("NOM" + i, "Prenom" + i, null));
+        }
+
+        // Voix attendues par candidat, calculées par chaque thread puis cumulées
+        long[][] attendues = new long[NB_THREADS][NB_CANDIDATS];
+        CountDownLatch depart = new CountDownLatch(1);
+        ExecutorService executeur = Executors.newFixedThreadPool(NB_THREADS);
+        for (int t = 0; t < NB_THREADS; t++) {
+            long[] attenduesThread = attendues[t];
+            executeur.execute(() -> {
+                ThreadLocalRandom aleatoire = ThreadLocalRandom.current();
+                try {
+                    depart.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < AJOUTS_PAR_THREAD; i++) {
+                    int idCandidat = aleatoire.nextInt(NB_CANDIDATS);
+                    int voix = 1 + aleatoire.nextInt(5);
+                    circonscription.ajouterVoix(idCandidat, voix);
+                    attenduesThread[idCandidat] += voix;
+                }
+            });
+        }
+
+        long debut = System.nanoTime();
+        depart.countDown();
+        executeur.shutdown();
+        if (!executeur.awaitTermination(5, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Le test de charge n'a pas terminé à temps.");
+        }
+        long duree = System.nanoTime() - debut;
+
+        boolean correct = true;
+        long totalAjouts = 0;
+        for (int c = 0; c < NB_CANDIDATS; c++) {
+            long attendu = 0;
+            for (long[] attenduesThread : attendues) {
+                attendu += attenduesThread[c];
+            }
+            Candidat candidat = circonscription.getCandidat(c);
+            int ajoutsCandidat = candidat.getHistoriqueActions().size() - 1; // Sans l'action de création
+            totalAjouts += ajoutsCandidat;
+            if (candidat.getVoix() != attendu) {
+                System.err.println("Écart pour " + candidat.getNomComplet() + " : " + candidat.getVoix()
+                        + " voix au lieu de " + attendu);
+                correct = false;
+            }
+        }
+        long ajoutsAttendus = (long) NB_THREADS * AJOUTS_PAR_THREAD;
+        int actionsCirconscription = circonscription.getHistoriqueActions().size();
+        if (totalAjouts != ajoutsAttendus || actionsCirconscription != 1 + NB_CANDIDATS + ajoutsAttendus) {
+            System.err.println("Historique incomplet : " + totalAjouts + " ajouts candidats, "
+                    + actionsCirconscription + " actions circonscription.");
+            correct = false;
+        }
+        long sommeVoix = 0;
+        int maxVoix = 0;
+        for (int c = 0; c < NB_CANDIDATS; c++) {
+            sommeVoix += circonscription.getCandidat(c).getVoix();
+            maxVoix = Math.max(maxVoix, circonscription.getCandidat(c).getVoix());
+        }
+        int nbEnTete = 0;
+        for (int c = 0; c < NB_CANDIDATS; c++) {
+            if (circonscription.getCandidat(c).getVoix() == maxVoix) {
+                nbEnTete++;
+            }
+        }
+        List<Candidat> vainqueurs = circonscription.trouverVainqueur();
+        boolean vainqueursExacts = vainqueurs.size() == nbEnTete;
+        for (Candidat vainqueur : vainqueurs) {
+            vainqueursExacts &= vainqueur.getVoix() == maxVoix;
+        }
+        if (circonscription.getTotalVoix() != sommeVoix || !vainqueursExacts) {
+            System.err.println("Total ou vainqueur(s) incohérents : " + circonscription.getTotalVoix()
+                    + " voix, vainqueur(s) " + vainqueurs);
+            correct = false;
+        }
+
+        System.out.printf("%d ajouts depuis %d threads en %d ms (%.0f ajouts/s)%n", ajoutsAttendus, NB_THREADS,
+                TimeUnit.NANOSECONDS.toMillis(duree), ajoutsAttendus * 1e9 / duree);
+        if (!correct) {
+            System.exit(1);
+        }
+        System.out.println("Totaux exacts.");
+    }
+}
@@ -0,0 +1,343 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de l'ingestion concurrente des voix d'une circonscription : totaux, tête du classement,
+ * remontées identifiées et clôture.
+ */
+class CirconscriptionTest {
+    private static final int NB_THREADS = 8;
+    private static final int NB_CANDIDATS = 10;
+
+    private final ExecutorService executeur = Executors.newFixedThreadPool(NB_THREADS);
+
+    @AfterEach
+    void arreter() throws InterruptedException {
+        executeur.shutdownNow();
+        assertTrue(executeur.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    private static Circonscription circonscription(int inscrits) {
+        Circonscription circonscription = new Circonscription("Test", inscrits);
+        for (int i = 0; i < NB_CANDIDATS; i++) {
+            circonscription.ajouterCandidat(new Candidat("NOM" + i, "Prenom" + i, null));
+        }
+        return circonscription;
+    }
+
+    /**
+     * Lance la même tâche sur tous les threads, au même instant, et attend leurs résultats.
+     */
+    private <T> List<T> enParallele(Callable<T> tache) throws Exception {
+        CountDownLatch depart = new CountDownLatch(1);
+        List<Future<T>> resultats = new ArrayList<>();
+        for (int t = 0; t < NB_THREADS; t++) {
+            resultats.add(executeur.submit(() -> {
+                depart.await();
+                return tache.call();
+            }));
+        }
+        depart.countDown();
+        List<T> valeurs = new ArrayList<>();
+        for (Future<T> resultat : resultats) {
+            valeurs.add(resultat.get(1, TimeUnit.MINUTES));
+        }
+        return valeurs;
+    }
+
+    private static void verifierTete(Circonscription circonscription) {
+        long max = 0;
+        for (int i = 0; i < circonscription.getNombreCandidats(); i++) {
+            max = Math.max(max, circonscription.getCandidat(i).getVoix());
+        }
+        List<Candidat> attendus = new ArrayList<>();
+        for (int i = 0; i < circonscription.getNombreCandidats(); i++) {
+            if (circonscription.getCandidat(i).getVoix() == max) {
+                attendus.add(circonscription.getCandidat(i));
+            }
+        }
+        List<Candidat> tete = circonscription.trouverVainqueur();
+        assertEquals(attendus.size(), tete.size(), "Nombre de candidats en tête");
+        assertTrue(tete.containsAll(attendus), "Candidats en tête");
+    }
+
+    @Test
+    void ajoutsConcurrentsComptesExactement() throws Exception {
+        Circonscription circonscription = circonscription(Integer.MAX_VALUE);
+        AtomicInteger graines = new AtomicInteger();
+        List<long[]> attendues = enParallele(() -> {
+            SplittableRandom aleatoire = new SplittableRandom(graines.incrementAndGet());
+            long[] voix = new long[NB_CANDIDATS];
+            for (int i = 0; i < 50_000; i++) {
+                int idCandidat = aleatoire.nextInt(NB_CANDIDATS);
+                int nb = 1 + aleatoire.nextInt(5);
+                if (i % 2 == 0) {
+                    circonscription.ajouterVoix(idCandidat, nb);
+                } else {
+                    circonscription.ajouterVoix(circonscription.getCandidat(idCandidat).getNomComplet(), nb);
+                }
+                voix[idCandidat] += nb;
+            }
+            return voix;
+        });
+
+        long total = 0;
+        for (int c = 0; c < NB_CANDIDATS; c++) {
+            long attendu = 0;
+            for (long[] voix : attendues) {
+                attendu += voix[c];
+            }
+            assertEquals(attendu, circonscription.getCandidat(c).getVoix(), "Voix du candidat " + c);
+            total += attendu;
+        }
+        assertEquals(total, circonscription.getTotalVoix());
+        verifierTete(circonscription);
+    }
+
+    @Test
+    void teteSuitEgalitesEtCorrections() throws Exception {
+        Circonscription circonscription = circonscription(Integer.MAX_VALUE);
+        circonscription.ajouterVoix(0, 10);
+        circonscription.ajouterVoix(1, 10);
+        circonscription.ajouterVoix(2, 5);
+        assertEquals(List.of(circonscription.getCandidat(0), circonscription.getCandidat(1)),
+                circonscription.trouverVainqueur());
+
+        // Correction à la baisse d'un candidat en tête : le classement est recalculé
+        BureauDeVote bureau = circonscription.ajouterBureau("Bureau 1");
+        bureau.declarer(new int[]{0, 0, 20});
+        assertEquals(List.of(circonscription.getCandidat(2)), circonscription.trouverVainqueur());
+        bureau.corriger(2, 0);
+        assertEquals(List.of(circonscription.getCandidat(0), circonscription.getCandidat(1)),
+                circonscription.trouverVainqueur());
+        assertEquals(25, circonscription.getTotalVoix());
+
+        // Bureaux déclarés et corrigés en parallèle des ajouts : la tête reste exacte
+        List<BureauDeVote> bureaux = new ArrayList<>();
+        for (int t = 0; t < NB_THREADS; t++) {
+            bureaux.add(circonscription.ajouterBureau("Bureau parallèle " + t));
+        }
+        AtomicInteger numero = new AtomicInteger();
+        enParallele(() -> {
+            int t = numero.getAndIncrement();
+            SplittableRandom aleatoire = new SplittableRandom(t);
+            for (int i = 0; i < 5_000; i++) {
+                if (t % 2 == 0) {
+                    bureaux.get(t).corriger(aleatoire.nextInt(NB_CANDIDATS), aleatoire.nextInt(100));
+                } else {
+                    circonscription.ajouterVoix(aleatoire.nextInt(NB_CANDIDATS), 1);
+                }
+            }
+            return null;
+        });
+        long total = 0;
+        for (int c = 0; c < NB_CANDIDATS; c++) {
+            total += circonscription.getCandidat(c).getVoix();
+        }
+        assertEquals(total, circonscription.getTotalVoix());
+        verifierTete(circonscription);
+    }
+
+    @Test
+    void remonteeRenvoyeeAppliqueeUneFois() throws Exception {
+        Circonscription circonscription = circonscription(Integer.MAX_VALUE);
+        int[] voix = new int[NB_CANDIDATS];
+        for (int c = 0; c < NB_CANDIDATS; c++) {
+            voix[c] = c + 1;
+        }
+        // Chaque remontée est envoyée par tous les threads à la fois
+        List<Integer> appliquees = enParallele(() -> {
+            int n = 0;
+            for (long id = 0; id < 2_000; id++) {
+                if (circonscription.soumettreRemontee(id, voix)) {
+                    n++;
+                }
+            }
+            return n;
+        });
+
+        assertEquals(2_000, appliquees.stream().mapToInt(Integer::intValue).sum());
+        assertEquals(2_000, circonscription.getNombreRemontees());
+        assertEquals(2_000L * (NB_THREADS - 1), circonscription.getNombreDoublons());
+        for (int c = 0; c < NB_CANDIDATS; c++) {
+            assertEquals(2_000L * voix[c], circonscription.getCandidat(c).getVoix());
+        }
+        assertFalse(circonscription.soumettreRemontee(0, voix));
+    }
+
+    @Test
+    void identifiantsDeRemonteesCompacts() {
+        Circonscription circonscription = circonscription(Integer.MAX_VALUE);
+        int[] voix = new int[NB_CANDIDATS];
+        int nbRemontees = 100_000;
+        for (long id = 0; id < nbRemontees; id++) {
+            circonscription.soumettreRemontee(id * 7_919, voix);
+        }
+        // Tables remplies entre 37,5 et 75 % : de 8 / 0,75 à 8 / 0,375 octets par identifiant
+        long octets = circonscription.getOctetsRemontees();
+        assertTrue(octets * 3 >= 32L * nbRemontees, octets + " octets");
+        assertTrue(octets * 3 <= 64L * nbRemontees, octets + " octets");
+    }
+
+    @Test
+    void clotureCompteLesEcrituresAdmises() throws Exception {
+        Circonscription circonscription = circonscription(Integer.MAX_VALUE);
+        AtomicBoolean cloturee = new AtomicBoolean();
+        AtomicLong acceptees = new AtomicLong();
+        List<Future<Long>> ecrivains = new ArrayList<>();
+        for (int t = 0; t < NB_THREADS - 1; t++) {
+            int idCandidat = t % NB_CANDIDATS;
+            ecrivains.add(executeur.submit(() -> {
+                long refusees = 0;
+                while (!cloturee.get() || refusees == 0) {
+                    try {
+                        circonscription.ajouterVoix(idCandidat, 1);
+                        acceptees.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        refusees++;
+                        assertTrue(circonscription.isElectionTerminee() || !cloturee.get());
+                    }
+                }
+                return refusees;
+            }));
+        }
+        Thread.sleep(50);
+        circonscription.cloreElection();
+        cloturee.set(true);
+        for (Future<Long> ecrivain : ecrivains) {
+            assertTrue(ecrivain.get(1, TimeUnit.MINUTES) > 0);
+        }
+
+        // Toute écriture admise est comptée, et rien ne change après la clôture
+        long[] voixCloture = circonscription.getVoixCloture();
+        long somme = 0;
+        for (int c = 0; c < NB_CANDIDATS; c++) {
+            assertEquals(voixCloture[c], circonscription.getCandidat(c).getVoix());
+            somme += voixCloture[c];
+        }
+        assertEquals(acceptees.get(), somme);
+        assertEquals(somme, circonscription.getTotalVoix());
+        assertThrows(IllegalStateException.class, () -> circonscription.ajouterVoix(0, 1));
+        assertThrows(IllegalStateException.class, () -> circonscription.soumettreRemontee(-1, new int[]{1}));
+    }
+
+    @Test
+    void clotureRefuseeAuDelaDesInscrits() {
+        Circonscription circonscription = circonscription(100);
+        circonscription.ajouterVoix(0, 101);
+        assertThrows(IllegalStateException.class, circonscription::cloreElection);
+        assertFalse(circonscription.isElectionTerminee());
+        assertNull(circonscription.getVoixCloture());
+        circonscription.ajouterVoix(1, 1); // Les écritures sont de nouveau admises
+        assertEquals(102, circonscription.getTotalVoix());
+    }
+
+    @Test
+    void ecrituresAdmisesPendantUneClotureRefusee() throws Exception {
+        Circonscription circonscription = circonscription(100);
+        circonscription.ajouterVoix(0, 101);
+        AtomicBoolean fin = new AtomicBoolean();
+        Future<Integer> tentatives = executeur.submit(() -> {
+            int n = 0;
+            while (!fin.get()) {
+                assertThrows(IllegalStateException.class, circonscription::cloreElection);
+                n++;
+            }
+            return n;
+        });
+        // Aucune écriture n'est refusée par une clôture qui échoue
+        List<Integer> ajoutees = enParallele(() -> {
+            int n = 0;
+            for (int i = 0; i < 20_000; i++) {
+                circonscription.ajouterVoix(1 + i % (NB_CANDIDATS - 1), 1);
+                n++;
+            }
+            return n;
+        });
+        fin.set(true);
+        assertTrue(tentatives.get(1, TimeUnit.MINUTES) > 0);
+        assertEquals(101 + ajoutees.stream().mapToLong(Integer::longValue).sum(), circonscription.getTotalVoix());
+        assertFalse(circonscription.isElectionTerminee());
+    }
+
+    @Test
+    void voixAnterieuresAuRattachementComptees() {
+        Candidat candidat = new Candidat("DEJA", "Vote", null);
+        candidat.ajouterVoix(30);
+        Circonscription circonscription = new Circonscription("Test", 100);
+        Candidat autre = new Candidat("AUTRE", "Candidat", null);
+        circonscription.ajouterCandidat(autre);
+        circonscription.ajouterCandidat(candidat);
+
+        assertEquals(30, circonscription.getTotalVoix());
+        assertEquals(30.0, circonscription.tauxParticipation());
+        assertEquals(List.of(candidat), circonscription.trouverVainqueur());
+        circonscription.ajouterVoix(0, 80);
+        assertThrows(IllegalStateException.class, circonscription::cloreElection); // 110 voix pour 100 inscrits
+    }
+
+    @Test
+    void ajoutDeZeroVoixTraceAvecOuSansCirconscription() {
+        Candidat seul = new Candidat("SEUL", "Candidat", null);
+        Candidat rattache = new Candidat("RATTACHE", "Candidat", null);
+        Circonscription circonscription = new Circonscription("Test", 100);
+        circonscription.ajouterCandidat(rattache);
+        seul.ajouterVoix(0);
+        rattache.ajouterVoix(0);
+
+        for (Candidat candidat : List.of(seul, rattache)) {
+            List<String> actions = candidat.getDernieresActions(1);
+            assertTrue(actions.get(0).endsWith("Ajout de 0 voix. Total voix : 0"), actions.toString());
+            assertTrue(candidat.toString().endsWith(": 0 voix"));
+        }
+        assertEquals(0, circonscription.getTotalVoix());
+        circonscription.cloreElection();
+        assertThrows(IllegalStateException.class, () -> rattache.ajouterVoix(0));
+    }
+
+    @Test
+    void ajoutParLeCandidatPasseParLaCirconscription() throws Exception {
+        Circonscription circonscription = circonscription(1_000_000);
+        Candidat candidat = circonscription.getCandidat(3);
+        enParallele(() -> {
+            for (int i = 0; i < 1_000; i++) {
+                candidat.ajouterVoix(1);
+                circonscription.ajouterVoix(0, 1);
+            }
+            return null;
+        });
+        assertEquals(NB_THREADS * 1_000, candidat.getVoix());
+        assertEquals(2L * NB_THREADS * 1_000, circonscription.getTotalVoix());
+        verifierTete(circonscription);
+
+        Circonscription petite = circonscription(100);
+        petite.getCandidat(0).ajouterVoix(140);
+        assertEquals(140, petite.getTotalVoix());
+        assertThrows(IllegalStateException.class, petite::cloreElection);
+        petite.getCandidat(1).ajouterVoix(0); // Sans effet sur les totaux
+        assertEquals(140, petite.getTotalVoix());
+
+        circonscription.cloreElection();
+        assertThrows(IllegalStateException.class, () -> candidat.ajouterVoix(1));
+        assertEquals(NB_THREADS * 1_000, candidat.getVoix());
+    }
+}
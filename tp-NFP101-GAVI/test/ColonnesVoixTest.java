@@ -0,0 +1,64 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la réutilisation des emplacements rendus aux colonnes hors tas.
+ */
+class ColonnesVoixTest {
+
+    @Test
+    void emplacementsRendusReutilisesEtRemisAZero() {
+        ColonnesVoix colonnes = new ColonnesVoix();
+        int a = colonnes.allouer(10);
+        int b = colonnes.allouer(10);
+        int c = colonnes.allouer(10);
+        for (int i = 0; i < 10; i++) {
+            colonnes.ecrire(a + i, 1);
+            colonnes.ecrire(b + i, 2);
+        }
+        long reserves = colonnes.octets();
+
+        // Deux vecteurs voisins rendus sont fusionnés et accueillent un vecteur plus long
+        colonnes.liberer(a, 10);
+        colonnes.liberer(b, 10);
+        assertEquals(20L * Long.BYTES, colonnes.octetsLibres());
+        int d = colonnes.allouer(15);
+        assertEquals(a, d);
+        for (int i = 0; i < 15; i++) {
+            assertEquals(0, colonnes.lire(d + i));
+        }
+        assertEquals(5L * Long.BYTES, colonnes.octetsLibres());
+        assertEquals(reserves, colonnes.octets());
+
+        // Un vecteur trop long pour la fin de la tranche en ouvre une autre ; la fin est réutilisée
+        int e = colonnes.allouer(60);
+        assertEquals(64, e);
+        assertEquals(c + 10, colonnes.allouer(64 - (c + 10)));
+        assertEquals(5L * Long.BYTES, colonnes.octetsLibres());
+    }
+
+    @Test
+    void emplacementsRendusNonVoisinsDecoupesSansChevauchement() {
+        ColonnesVoix colonnes = new ColonnesVoix();
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i, colonnes.allouer(1));
+        }
+        // Emplacements libres {0=1, 2=2, 5=3} ; 1 et 4 restent attribués
+        colonnes.liberer(0, 1);
+        colonnes.liberer(2, 1);
+        colonnes.liberer(3, 1);
+        colonnes.liberer(5, 1);
+        colonnes.liberer(6, 1);
+        colonnes.liberer(7, 1);
+        colonnes.ecrire(4, 42);
+
+        assertEquals(2, colonnes.allouer(2));
+        assertEquals(4L * Long.BYTES, colonnes.octetsLibres());
+        assertEquals(5, colonnes.allouer(3));
+        assertEquals(0, colonnes.allouer(1));
+        assertEquals(8, colonnes.allouer(1)); // L'emplacement 4 n'est jamais redonné
+        assertEquals(0, colonnes.octetsLibres());
+        assertEquals(42, colonnes.lire(4));
+    }
+}
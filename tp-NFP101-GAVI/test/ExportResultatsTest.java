@@ -0,0 +1,153 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de l'export en flux : ordre des circonscriptions, vainqueurs, échappements et formats.
+ */
+class ExportResultatsTest {
+    private static final int NB_CIRCONSCRIPTIONS = 20;
+
+    private static List<Circonscription> circonscriptions() {
+        List<Circonscription> circonscriptions = new ArrayList<>();
+        for (int c = 0; c < NB_CIRCONSCRIPTIONS; c++) {
+            Circonscription circonscription = new Circonscription("Circo " + c, 1_000);
+            circonscription.ajouterCandidat(new Candidat("DUPONT", "Jean", "Parti; \"A\""));
+            circonscription.ajouterCandidat(new Candidat("MARTIN", "Anne", null));
+            if (c > 0) { // La première circonscription n'a aucune voix : ses deux candidats sont à égalité
+                circonscription.ajouterVoix(c % 2, 10 + c);
+            }
+            circonscriptions.add(circonscription);
+        }
+        return circonscriptions;
+    }
+
+    private static String versCanal(ExportResultats export, List<Circonscription> circonscriptions,
+                                    boolean historiques) throws IOException {
+        ByteArrayOutputStream octets = new ByteArrayOutputStream();
+        if (historiques) {
+            export.exporterHistoriques(circonscriptions, Channels.newChannel(octets));
+        } else {
+            export.exporterResultats(circonscriptions, Channels.newChannel(octets));
+        }
+        return octets.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void resultatsCsvDansLOrdreAvecVainqueurs() throws IOException {
+        List<Circonscription> circonscriptions = circonscriptions();
+        StringWriter sortie = new StringWriter();
+        ExportResultats export = new ExportResultats(ExportResultats.Format.CSV, 3);
+        export.exporterResultats(circonscriptions, sortie);
+        assertEquals(sortie.toString(), versCanal(export, circonscriptions, false));
+
+        String[] lignes = sortie.toString().split("\n");
+        assertEquals(1 + 2 * NB_CIRCONSCRIPTIONS, lignes.length);
+        assertTrue(lignes[0].startsWith("circonscription;inscrits;total;"));
+        assertEquals("Circo 0;1000;0;0.00;false;0;DUPONT;Jean;\"Parti; \"\"A\"\"\";0;true", lignes[1]);
+        assertEquals("Circo 0;1000;0;0.00;false;1;MARTIN;Anne;Indépendant;0;true", lignes[2]);
+        for (int c = 1; c < NB_CIRCONSCRIPTIONS; c++) {
+            for (int i = 0; i < 2; i++) {
+                String ligne = lignes[1 + 2 * c + i];
+                assertTrue(ligne.startsWith("Circo " + c + ";"), ligne);
+                boolean vainqueur = circonscriptions.get(c).trouverVainqueur()
+                        .contains(circonscriptions.get(c).getCandidat(i));
+                assertTrue(ligne.endsWith(";" + vainqueur), ligne);
+            }
+        }
+    }
+
+    @Test
+    void resultatsJsonEtHistoriques() throws IOException {
+        List<Circonscription> circonscriptions = circonscriptions();
+        circonscriptions.get(1).cloreElection();
+        circonscriptions.get(2).ajouterAction("Ligne\nsur deux");
+        ExportResultats export = new ExportResultats(ExportResultats.Format.JSON_LIGNES, 2);
+
+        String[] resultats = versCanal(export, circonscriptions, false).split("\n");
+        assertEquals(NB_CIRCONSCRIPTIONS, resultats.length);
+        assertTrue(resultats[1].startsWith("{\"circonscription\":\"Circo 1\",\"inscrits\":1000,\"total\":11,"
+                + "\"participation\":1.10,\"cloturee\":true,\"candidats\":[{\"id\":0,"), resultats[1]);
+        assertTrue(resultats[0].contains("\"affiliation\":\"Parti; \\\"A\\\"\""), resultats[0]);
+
+        String[] evenements = versCanal(export, circonscriptions, true).split("\n");
+        long attendus = circonscriptions.stream().mapToLong(c -> c.historique().taille()).sum();
+        assertEquals(attendus, evenements.length);
+        assertTrue(evenements[0].contains("\"position\":0,"), evenements[0]);
+        String action = List.of(evenements).stream().filter(e -> e.contains("\"type\":\"libre\"")).findFirst()
+                .orElseThrow();
+        assertTrue(action.startsWith("{\"circonscription\":\"Circo 2\""), action);
+        assertTrue(action.endsWith("\"action\":\"Ligne\\nsur deux\"}"), action);
+        assertTrue(List.of(evenements).stream().anyMatch(e -> e.contains("\"type\":\"cloture\"")));
+    }
+
+    @Test
+    void resultatsBinairesVersUnCanalSeulement() throws IOException {
+        List<Circonscription> circonscriptions = circonscriptions();
+        ExportResultats export = new ExportResultats(ExportResultats.Format.BINAIRE, 2);
+        assertThrows(IllegalArgumentException.class,
+                () -> export.exporterResultats(circonscriptions, new StringWriter()));
+
+        ByteArrayOutputStream octets = new ByteArrayOutputStream();
+        export.exporterResultats(circonscriptions.subList(0, 2), Channels.newChannel(octets));
+        ByteBuffer tampon = ByteBuffer.wrap(octets.toByteArray());
+        assertEquals(0x4558504F, tampon.getInt()); // "EXPO"
+        assertEquals(1, tampon.get()); // Version
+        assertEquals(1, tampon.get()); // Résultats
+        assertEquals(2, tampon.get()); // Nombre de circonscriptions
+        assertEquals("Circo 0", chaine(tampon));
+        assertEquals(1_000, entier(tampon));
+        assertEquals(0, tampon.get()); // Non clôturée
+        assertEquals(2, entier(tampon));
+        assertEquals("DUPONT", chaine(tampon));
+        assertEquals("Jean", chaine(tampon));
+        assertEquals("Parti; \"A\"", chaine(tampon));
+        assertEquals(0, entier(tampon));
+        assertEquals("MARTIN", chaine(tampon));
+        chaine(tampon);
+        chaine(tampon);
+        assertEquals(0, entier(tampon));
+        assertEquals("Circo 1", chaine(tampon));
+        entier(tampon);
+        tampon.get();
+        entier(tampon);
+        for (int i = 0; i < 3; i++) {
+            chaine(tampon);
+        }
+        assertEquals(0, entier(tampon));
+        for (int i = 0; i < 3; i++) {
+            chaine(tampon);
+        }
+        assertEquals(11, entier(tampon));
+        assertEquals(0, tampon.remaining());
+    }
+
+    private static long entier(ByteBuffer tampon) {
+        long valeur = 0;
+        for (int decalage = 0; ; decalage += 7) {
+            byte octet = tampon.get();
+            valeur |= (long) (octet & 0x7F) << decalage;
+            if (octet >= 0) {
+                return valeur;
+            }
+        }
+    }
+
+    private static String chaine(ByteBuffer tampon) {
+        int longueur = (int) entier(tampon) - 1;
+        byte[] octets = new byte[longueur];
+        tampon.get(octets);
+        return new String(octets, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,106 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests des vues de l'historique compact : plages de positions et de dates, pages,
+ * et relecture des segments déchargés dans une archive.
+ */
+class HistoriqueCompactTest {
+    private static final long ORIGINE = 1_700_000_000_000_000_000L; // Nanosecondes depuis l'époque
+    private static final long PAS = 1_000_000; // Une milliseconde entre deux événements
+    private static final int NB_EVENEMENTS = 20_000;
+
+    @TempDir
+    Path repertoire;
+
+    private static HistoriqueCompact historique() {
+        return new HistoriqueCompact((type, idCandidat, voix, cumul) -> voix + " voix, cumul " + cumul);
+    }
+
+    /**
+     * Ajoute des événements datés de ORIGINE + i × PAS, dans un ou plusieurs historiques à la fois.
+     */
+    private static void remplir(int debut, int fin, HistoriqueCompact... historiques) {
+        HistoriqueCompact.debuterRelecture();
+        try {
+            for (int i = debut; i < fin; i++) {
+                HistoriqueCompact.dater(ORIGINE + i * PAS);
+                for (HistoriqueCompact historique : historiques) {
+                    if (i % 1_000 == 0) {
+                        historique.ajouterAction("Étape " + i);
+                    } else {
+                        historique.ajouterEvenement(HistoriqueCompact.AJOUT_VOIX, 0, i % 7);
+                    }
+                }
+            }
+        } finally {
+            HistoriqueCompact.terminerRelecture();
+        }
+    }
+
+    private static Instant instant(int position) {
+        return Instant.ofEpochSecond(0, ORIGINE + position * PAS);
+    }
+
+    @Test
+    void vuesParPositionsEtParDates() {
+        HistoriqueCompact historique = historique();
+        remplir(0, NB_EVENEMENTS, historique);
+        List<String> toutes = historique.getHistoriqueActions();
+        assertEquals(NB_EVENEMENTS, toutes.size());
+        assertTrue(toutes.get(2_000).endsWith(" - Étape 2000"));
+
+        assertEquals(toutes.subList(2_500, 7_000), historique.getActions(2_500, 7_000));
+        assertEquals(toutes.subList(2_500, 7_000), historique.getActionsEntre(instant(2_500), instant(7_000)));
+        assertEquals(toutes.subList(2_501, 2_502),
+                historique.getActionsEntre(instant(2_500).plusNanos(1), instant(2_501).plusNanos(1)));
+        assertEquals(toutes, historique.getActionsEntre(instant(-1), instant(NB_EVENEMENTS)));
+        assertTrue(historique.getActionsEntre(instant(NB_EVENEMENTS), instant(NB_EVENEMENTS + 10)).isEmpty());
+        assertEquals(toutes.subList(NB_EVENEMENTS - 3, NB_EVENEMENTS), historique.getDernieresActions(3));
+
+        // Recherches successives : l'index des blocs est complété par les événements ajoutés entre-temps
+        remplir(NB_EVENEMENTS, NB_EVENEMENTS + 100, historique);
+        assertEquals(historique.getActions(NB_EVENEMENTS + 10, NB_EVENEMENTS + 20),
+                historique.getActionsEntre(instant(NB_EVENEMENTS + 10), instant(NB_EVENEMENTS + 20)));
+
+        List<String> pages = new ArrayList<>();
+        int nbPages = 0;
+        for (Iterator<List<String>> it = historique.parcourirActions(3_000); it.hasNext(); nbPages++) {
+            pages.addAll(it.next());
+        }
+        assertEquals(7, nbPages);
+        assertEquals(historique.getHistoriqueActions(), pages);
+    }
+
+    @Test
+    void segmentsArchivesRelusCommeEnMemoire() throws Exception {
+        HistoriqueCompact enMemoire = historique();
+        HistoriqueCompact archive = historique();
+        try (ArchiveHistorique fichier = ArchiveHistorique.ouvrir(repertoire)) {
+            archive.archiver(fichier, 1_000);
+            remplir(0, NB_EVENEMENTS, enMemoire, archive);
+            long limite = System.nanoTime() + 30_000_000_000L;
+            while (archive.octetsRetenus() > enMemoire.octetsRetenus() / 2) { // Déchargement en arrière-plan
+                assertTrue(System.nanoTime() < limite, "Segments non déchargés");
+                Thread.sleep(10);
+            }
+            assertTrue(fichier.getOctets() > 0);
+
+            assertEquals(enMemoire.getHistoriqueActions(), archive.getHistoriqueActions());
+            for (int[] plage : new int[][]{{0, 10}, {4_090, 4_200}, {12_000, 19_500}, {19_990, NB_EVENEMENTS}}) {
+                assertEquals(enMemoire.getActions(plage[0], plage[1]), archive.getActions(plage[0], plage[1]));
+                assertEquals(enMemoire.getActions(plage[0], plage[1]),
+                        archive.getActionsEntre(instant(plage[0]), instant(plage[1])));
+            }
+        }
+    }
+}
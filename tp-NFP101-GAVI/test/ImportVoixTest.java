@@ -0,0 +1,125 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests de l'import en masse des voix : formats texte et binaire, lignes à cheval sur deux fenêtres.
+ */
+class ImportVoixTest {
+    @TempDir
+    Path dossier;
+
+    private static Circonscription circonscription() {
+        Circonscription circonscription = new Circonscription("Circo", 100_000);
+        circonscription.ajouterCandidat(new Candidat("DUPONT", "Jean", "Parti A"));
+        circonscription.ajouterCandidat(new Candidat("MARTIN", "Anne", "Parti B"));
+        circonscription.ajouterCandidat(new Candidat("DURAND", "Léa", "Parti C"));
+        return circonscription;
+    }
+
+    private Path ecrire(String nom, byte[] contenu) throws IOException {
+        return Files.write(dossier.resolve(nom), contenu);
+    }
+
+    private static int[] voix(Circonscription circonscription) {
+        int[] voix = new int[circonscription.getNombreCandidats()];
+        for (int id = 0; id < voix.length; id++) {
+            voix[id] = circonscription.getCandidat(id).getVoix();
+        }
+        return voix;
+    }
+
+    @Test
+    void texteAvecEnTeteCrlfEtLignesVides() throws IOException {
+        Path fichier = ecrire("voix.csv", ("candidat;voix\r\n"
+                + "Jean DUPONT;10\r\n"
+                + "1, 5\r\n"
+                + "\r\n"
+                + " Anne MARTIN ; 7\r\n"
+                + "Léa DURAND,3").getBytes(StandardCharsets.UTF_8));
+        Circonscription circonscription = circonscription();
+        assertEquals(4, circonscription.importerVoix(fichier));
+        assertEquals(10, voix(circonscription)[0]);
+        assertEquals(12, voix(circonscription)[1]);
+        assertEquals(3, voix(circonscription)[2]);
+        assertEquals(25, circonscription.getTotalVoix());
+    }
+
+    @Test
+    void lignesCoupeesEntreDeuxFenetres() throws IOException {
+        StringBuilder contenu = new StringBuilder("candidat;voix\n");
+        int[] attendues = new int[3];
+        String[] noms = {"Jean DUPONT", "Anne MARTIN", "Léa DURAND"};
+        for (int i = 0; i < 500; i++) {
+            int id = i % 3;
+            int v = i * 7 % 1_000;
+            contenu.append(i % 2 == 0 ? noms[id] : String.valueOf(id)).append(';').append(v)
+                    .append(i % 5 == 0 ? "\r\n" : "\n");
+            attendues[id] += v;
+        }
+        Path fichier = ecrire("voix.csv", contenu.toString().getBytes(StandardCharsets.UTF_8));
+        for (long fenetre : new long[] {19, 20, 23, 64, 1 << 20}) {
+            Circonscription circonscription = circonscription();
+            assertEquals(500, ImportVoix.importer(circonscription, fichier, fenetre), "fenêtre " + fenetre);
+            assertEquals(attendues[0], voix(circonscription)[0], "fenêtre " + fenetre);
+            assertEquals(attendues[1], voix(circonscription)[1], "fenêtre " + fenetre);
+            assertEquals(attendues[2], voix(circonscription)[2], "fenêtre " + fenetre);
+        }
+
+        Path longue = ecrire("longue.csv", "Jean DUPONT;1\nAnne MARTIN;2\n".getBytes(StandardCharsets.UTF_8));
+        IllegalArgumentException erreur = assertThrows(IllegalArgumentException.class,
+                () -> ImportVoix.importer(circonscription(), longue, 8));
+        assertTrue(erreur.getMessage().startsWith("Ligne trop longue"), erreur.getMessage());
+    }
+
+    @Test
+    void lignesMalFormees() throws IOException {
+        Path sansSeparateur = ecrire("a.csv", "Jean DUPONT;1\nAnne MARTIN 2\n".getBytes(StandardCharsets.UTF_8));
+        Circonscription circonscription = circonscription();
+        IllegalArgumentException erreur = assertThrows(IllegalArgumentException.class,
+                () -> circonscription.importerVoix(sansSeparateur));
+        assertEquals("Ligne 2 : séparateur absent.", erreur.getMessage());
+
+        Path inconnu = ecrire("b.csv", "Paul DUPONT;1\n".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> circonscription().importerVoix(inconnu));
+        Path negatif = ecrire("c.csv", "candidat;voix\n0;-3\n".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> circonscription().importerVoix(negatif));
+    }
+
+    @Test
+    void formatBinaire() throws IOException {
+        ByteBuffer contenu = ByteBuffer.allocate(4 + 8 * 7);
+        contenu.putInt(0x564F4958); // "VOIX"
+        int[] attendues = new int[3];
+        for (int i = 0; i < 7; i++) {
+            contenu.putInt(i % 3).putInt(100 + i);
+            attendues[i % 3] += 100 + i;
+        }
+        Path fichier = ecrire("voix.bin", contenu.array());
+        for (long fenetre : new long[] {8, 20, 1 << 20}) {
+            Circonscription circonscription = circonscription();
+            assertEquals(7, ImportVoix.importer(circonscription, fichier, fenetre), "fenêtre " + fenetre);
+            assertEquals(attendues[0], voix(circonscription)[0]);
+            assertEquals(attendues[1], voix(circonscription)[1]);
+            assertEquals(attendues[2], voix(circonscription)[2]);
+        }
+
+        byte[] tronque = new byte[contenu.capacity() - 3];
+        System.arraycopy(contenu.array(), 0, tronque, 0, tronque.length);
+        Path fichierTronque = ecrire("tronque.bin", tronque);
+        assertThrows(IllegalArgumentException.class, () -> circonscription().importerVoix(fichierTronque));
+
+        Path candidatInconnu = ecrire("inconnu.bin",
+                ByteBuffer.allocate(12).putInt(0x564F4958).putInt(3).putInt(1).array());
+        assertThrows(IllegalArgumentException.class, () -> circonscription().importerVoix(candidatInconnu));
+    }
+}
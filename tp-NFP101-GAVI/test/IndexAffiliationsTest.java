@@ -0,0 +1,110 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de l'index des résultats par affiliation : totaux, sièges et classements
+ * tenus à jour au fil des variations, y compris pendant une ingestion concurrente.
+ */
+class IndexAffiliationsTest {
+    private static final String[] AFFILIATIONS = {"Parti A", "Parti B", "Parti C"};
+
+    @Test
+    void totauxEtSiegesSuiventLesVariations() {
+        Scrutin scrutin = new Scrutin("Législatives");
+        Circonscription nord = new Circonscription("Nord", 1_000);
+        nord.ajouterCandidat(new Candidat("DUPONT", "Jean", "Parti A"));
+        nord.ajouterCandidat(new Candidat("MARTIN", "Anne", "Parti B"));
+        nord.ajouterVoix(0, 30); // Voix antérieures au rattachement
+        scrutin.ajouterCirconscription(nord);
+        Circonscription sud = new Circonscription("Sud", 1_000);
+        sud.ajouterCandidat(new Candidat("DURAND", "Léa", "Parti B"));
+        scrutin.ajouterCirconscription(sud);
+        IndexAffiliations index = scrutin.getIndexAffiliations();
+
+        assertEquals(30, index.getVoix("Parti A"));
+        assertEquals(1, index.getSieges("Parti A"));
+        assertEquals(2, index.getCandidats("Parti B"));
+        assertEquals(1, index.getSieges("Parti B")); // Sud : candidat seul, vainqueur unique même sans voix
+
+        nord.ajouterVoix(1, 30); // Égalité : siège non attribué
+        assertEquals(0, index.getSieges("Parti A"));
+        assertEquals(1, index.getSieges("Parti B"));
+        nord.ajouterVoix(1, 1);
+        assertEquals(2, index.getSieges("Parti B"));
+
+        sud.ajouterCandidat(new Candidat("PETIT", "Luc", "Parti C")); // Candidat inscrit après le rattachement
+        assertEquals(1, index.getSieges("Parti B")); // Égalité à 0 dans le Sud
+        sud.ajouterVoix(1, 5);
+        assertEquals(1, index.getCandidats("Parti C"));
+        assertEquals(5, index.getVoix("Parti C"));
+        assertEquals(Map.of("Parti B", 1L, "Parti C", 1L), index.siegesParAffiliation());
+        assertEquals(Map.of("Parti A", 30L, "Parti B", 31L, "Parti C", 5L), index.voixParAffiliation());
+        assertEquals(31.0 / 66 * 100, index.partVoix("Parti B"), 1e-9);
+        assertEquals(0, index.partVoix("Parti Z"));
+
+        assertEquals(List.of(Map.entry("Parti B", 31L), Map.entry("Parti A", 30L)), index.classementVoix(2));
+        assertEquals(List.of(Map.entry("Parti B", 1L), Map.entry("Parti C", 1L), Map.entry("Parti A", 0L)),
+                index.classementSieges(5));
+        assertThrows(IllegalArgumentException.class, () -> index.classementVoix(-1));
+        assertEquals(scrutin.siegesParAffiliation(), index.siegesParAffiliation());
+    }
+
+    @Test
+    void indexCoherentApresIngestionConcurrente() throws Exception {
+        Scrutin scrutin = new Scrutin("Législatives", true);
+        List<Circonscription> circonscriptions = new ArrayList<>();
+        for (int c = 0; c < 8; c++) {
+            Circonscription circonscription = new Circonscription("Circo " + c, 1_000_000);
+            for (int i = 0; i < 4; i++) {
+                circonscription.ajouterCandidat(new Candidat("NOM" + i, "Prénom", AFFILIATIONS[(c + i) % 3]));
+            }
+            scrutin.ajouterCirconscription(circonscription);
+            circonscriptions.add(circonscription);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> taches = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                taches.add(pool.submit(() -> {
+                    ThreadLocalRandom aleatoire = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20_000; i++) {
+                        Circonscription c = circonscriptions.get(aleatoire.nextInt(circonscriptions.size()));
+                        c.ajouterVoix(aleatoire.nextInt(4), 1 + aleatoire.nextInt(3));
+                    }
+                }));
+            }
+            for (Future<?> tache : taches) {
+                tache.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        Map<String, Long> voix = new HashMap<>();
+        Map<String, Long> sieges = new HashMap<>();
+        for (Circonscription c : circonscriptions) {
+            for (int id = 0; id < c.getNombreCandidats(); id++) {
+                voix.merge(c.getCandidat(id).getAffiliation(), (long) c.getCandidat(id).getVoix(), Long::sum);
+            }
+            List<Candidat> tete = c.trouverVainqueur();
+            if (tete.size() == 1) {
+                sieges.merge(tete.get(0).getAffiliation(), 1L, Long::sum);
+            }
+        }
+        IndexAffiliations index = scrutin.getIndexAffiliations();
+        assertEquals(voix, index.voixParAffiliation());
+        assertEquals(sieges, index.siegesParAffiliation());
+        assertEquals(scrutin.getTotalVoix(), voix.values().stream().mapToLong(Long::longValue).sum());
+    }
+}
@@ -0,0 +1,120 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests de la relecture du journal : état des circonscriptions et historiques datés d'origine.
+ */
+class JournalElectionTest {
+    private static final int NB_CANDIDATS = 600; // Lot trop long pour un seul enregistrement
+
+    @TempDir
+    Path repertoire;
+
+    /**
+     * Instant courant selon l'horloge des historiques, qui peut s'écarter légèrement de celle du système.
+     */
+    private static Instant maintenant() {
+        return Instant.ofEpochSecond(0, HistoriqueCompact.horodatage());
+    }
+
+    @Test
+    void relectureRestaureHistoriquesDOrigine() throws Exception {
+        Path fichier = repertoire.resolve("election.journal");
+        Circonscription originale = new Circonscription("Journalisée", 10_000_000);
+        Instant debut;
+        Instant fin;
+        try (JournalElection journal = JournalElection.ouvrir(fichier)) {
+            journal.enregistrer(originale);
+            Thread.sleep(20);
+            debut = maintenant();
+            for (int i = 0; i < NB_CANDIDATS; i++) {
+                originale.ajouterCandidat(new Candidat("NOM" + i, "Prenom" + i, null));
+            }
+            originale.ajouterVoix(0, 12);
+            originale.getCandidat(1).ajouterAction("Réunion publique");
+            Thread.sleep(20);
+            long[] lot = new long[NB_CANDIDATS];
+            int total = 0;
+            for (int i = 0; i < NB_CANDIDATS; i++) {
+                lot[i] = i + 1;
+                total += i + 1;
+            }
+            originale.appliquerLot(lot, 1_500, total);
+            originale.ajouterAction("Fin du dépouillement");
+            fin = maintenant();
+            Thread.sleep(20);
+            journal.synchroniser();
+        }
+
+        try (JournalElection journal = JournalElection.ouvrir(fichier)) {
+            List<Circonscription> rejouees = journal.rejouer();
+            assertEquals(1, rejouees.size());
+            Circonscription rejouee = rejouees.get(0);
+            assertEquals(originale.getTotalVoix(), rejouee.getTotalVoix());
+            for (int i = 0; i < NB_CANDIDATS; i++) {
+                assertEquals(originale.getCandidat(i).getVoix(), rejouee.getCandidat(i).getVoix());
+            }
+
+            // Mêmes événements aux mêmes dates : un seul import de lot, l'action du candidat comprise
+            List<String> actions = originale.getActionsEntre(debut, fin);
+            assertEquals(List.copyOf(actions), List.copyOf(rejouee.getActionsEntre(debut, fin)));
+            assertEquals(1, actions.stream().filter(a -> a.contains("Import d'un lot de 1500 ligne(s)")).count());
+            List<String> actionsCandidat = originale.getCandidat(1).getActionsEntre(debut, fin);
+            assertEquals(List.copyOf(actionsCandidat), List.copyOf(rejouee.getCandidat(1).getActionsEntre(debut, fin)));
+            assertTrue(actionsCandidat.stream().anyMatch(a -> a.endsWith("Réunion publique")));
+
+            // Seule la reprise est datée de la relecture
+            List<String> suivantes = rejouee.getActionsEntre(fin, maintenant());
+            assertEquals(1, suivantes.size());
+            assertTrue(suivantes.get(0).contains("Reprise depuis le journal"));
+        }
+    }
+
+    @Test
+    void operationsTropLonguesRefuseesSansModification() throws Exception {
+        Path fichier = repertoire.resolve("refus.journal");
+        Circonscription circonscription = new Circonscription("Refus", 10_000_000);
+        for (int i = 0; i < NB_CANDIDATS; i++) {
+            circonscription.ajouterCandidat(new Candidat("NOM" + i, "Prenom" + i, null));
+        }
+        try (JournalElection journal = JournalElection.ouvrir(fichier)) {
+            journal.enregistrer(circonscription);
+            assertThrows(IllegalArgumentException.class, () -> journal.enregistrer(circonscription)); // Sans blocage
+            int nbActions = circonscription.getHistoriqueActions().size();
+
+            int[] voix = new int[NB_CANDIDATS];
+            Arrays.fill(voix, 1);
+            assertThrows(IllegalArgumentException.class, () -> circonscription.soumettreRemontee(1, voix));
+            assertEquals(0, circonscription.getTotalVoix());
+            assertEquals(0, circonscription.getNombreRemontees());
+
+            String texte = "x".repeat(3_000);
+            assertThrows(IllegalArgumentException.class, () -> circonscription.ajouterAction(texte));
+            assertThrows(IllegalArgumentException.class, () -> circonscription.getCandidat(0).ajouterAction(texte));
+            assertEquals(nbActions, circonscription.getHistoriqueActions().size());
+
+            Candidat candidatLong = new Candidat("N".repeat(1_500), "P".repeat(1_500), "A".repeat(1_500));
+            assertThrows(IllegalArgumentException.class, () -> circonscription.ajouterCandidat(candidatLong));
+            assertEquals(NB_CANDIDATS, circonscription.getNombreCandidats());
+            Circonscription autre = new Circonscription("Autre", 1_000);
+            autre.ajouterCandidat(candidatLong); // Le candidat refusé n'appartient à aucune circonscription
+
+            circonscription.soumettreRemontee(2, new int[]{5});
+            journal.synchroniser();
+        }
+        try (JournalElection journal = JournalElection.ouvrir(fichier)) {
+            Circonscription rejouee = journal.rejouer().get(0);
+            assertEquals(5, rejouee.getTotalVoix());
+            assertEquals(1, rejouee.getNombreRemontees());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la projection des résultats : tirages, résultats définitifs et fin du suivi.
+ */
+class ProjectionResultatsTest {
+    private static final Duration BUDGET = Duration.ofSeconds(30); // Jamais atteint : tiragesMax l'est avant
+
+    private static Circonscription circonscription(String nom, int voixA, int voixB) {
+        Circonscription circonscription = new Circonscription(nom, 1_000);
+        circonscription.ajouterCandidat(new Candidat("A", "Prenom", null));
+        circonscription.ajouterCandidat(new Candidat("B", "Prenom", null));
+        circonscription.ajouterVoix(0, voixA);
+        circonscription.ajouterVoix(1, voixB);
+        return circonscription;
+    }
+
+    @Test
+    void favoriProjeteEtResultatDefinitifApresCloture() {
+        Circonscription nette = circonscription("Nette", 400, 100);
+        Circonscription serree = circonscription("Serrée", 250, 250);
+        try (ProjectionResultats projection = new ProjectionResultats(List.of(nette, serree), 0.6, 10_000, 42)) {
+            ProjectionResultats.Projection p = projection.projeter(BUDGET).get("Nette");
+            assertTrue(p.getTirages() >= 10_000);
+            assertEquals(0, p.getFavori());
+            assertTrue(p.getProbabiliteVictoire(0) > 0.99);
+            assertEquals(100, p.getPartProjetee(0) + p.getPartProjetee(1), 1e-6);
+            assertTrue(p.getPartMin(0) <= p.getPartProjetee(0) && p.getPartProjetee(0) <= p.getPartMax(0));
+
+            ProjectionResultats.Projection q = projection.projeter(BUDGET).get("Serrée");
+            assertEquals(0.5, q.getProbabiliteVictoire(0), 0.05);
+
+            // Une variation de voix est prise en compte ; la clôture rend la projection définitive
+            nette.ajouterVoix(1, 50);
+            nette.cloreElection();
+            p = projection.projeter(BUDGET).get("Nette");
+            assertTrue(p.isDefinitive());
+            assertEquals(0, p.getTirages());
+            assertEquals(1.0, p.getProbabiliteVictoire(0));
+            assertEquals(400 * 100.0 / 550, p.getPartProjetee(0), 1e-9);
+        }
+    }
+
+    @Test
+    void projectionFermeeRefusee() {
+        Circonscription circonscription = circonscription("Fermée", 10, 5);
+        ProjectionResultats projection = new ProjectionResultats(List.of(circonscription), 0.5, 1_000, 1);
+        projection.projeter(BUDGET);
+        projection.close();
+        projection.close();
+        assertThrows(IllegalStateException.class, () -> projection.projeter(BUDGET));
+    }
+}
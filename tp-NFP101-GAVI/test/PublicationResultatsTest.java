@@ -0,0 +1,195 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la diffusion en direct des résultats, avec un exécuteur manuel
+ * pour maîtriser le moment des fusions et des livraisons.
+ */
+class PublicationResultatsTest {
+    private final ArrayDeque<Runnable> taches = new ArrayDeque<>();
+
+    private void executer() {
+        Runnable tache;
+        while ((tache = taches.poll()) != null) {
+            tache.run();
+        }
+    }
+
+    private static Circonscription circonscription() {
+        Circonscription circonscription = new Circonscription("Circo", 100);
+        circonscription.ajouterCandidat(new Candidat("DUPONT", "Jean", "Parti A"));
+        circonscription.ajouterCandidat(new Candidat("MARTIN", "Anne", "Parti B"));
+        circonscription.ajouterCandidat(new Candidat("DURAND", "Léa", "Parti C"));
+        return circonscription;
+    }
+
+    /**
+     * Abonné qui mémorise ce qu'il reçoit et ne demande que ce qu'on lui dit de demander.
+     */
+    private static final class Abonne implements Flow.Subscriber<ResultatsPartiels> {
+        final List<ResultatsPartiels> recus = new ArrayList<>();
+        Flow.Subscription abonnement;
+        Throwable erreur;
+        boolean termine;
+
+        @Override
+        public void onSubscribe(Flow.Subscription abonnement) {
+            this.abonnement = abonnement;
+        }
+
+        @Override
+        public void onNext(ResultatsPartiels variation) {
+            recus.add(variation);
+        }
+
+        @Override
+        public void onError(Throwable erreur) {
+            this.erreur = erreur;
+        }
+
+        @Override
+        public void onComplete() {
+            termine = true;
+        }
+
+        ResultatsPartiels derniere() {
+            return recus.get(recus.size() - 1);
+        }
+    }
+
+    @Test
+    void variationsRegroupeesEnUneSeuleFusion() {
+        Circonscription circonscription = circonscription();
+        PublicationResultats publication = new PublicationResultats(circonscription, taches::add, 10, 50);
+        Abonne abonne = new Abonne();
+        publication.subscribe(abonne);
+        abonne.abonnement.request(Long.MAX_VALUE);
+        executer();
+        assertEquals(1, abonne.recus.size());
+        assertTrue(abonne.derniere().isComplet());
+        assertEquals(0, abonne.derniere().getVersion());
+        assertEquals(3, abonne.derniere().getNombreCandidatsModifies());
+
+        circonscription.ajouterVoix(0, 4);
+        circonscription.ajouterVoix(1, 2);
+        circonscription.ajouterVoix(0, 8);
+        assertEquals(1, taches.size()); // Une seule fusion planifiée pour les trois variations
+        executer();
+        assertEquals(2, abonne.recus.size());
+        ResultatsPartiels variation = abonne.derniere();
+        assertFalse(variation.isComplet());
+        assertEquals(1, variation.getVersion());
+        assertEquals(2, variation.getNombreCandidatsModifies());
+        assertEquals(0, variation.getIdCandidat(0));
+        assertEquals(12, variation.getVoix(0));
+        assertEquals(1, variation.getIdCandidat(1));
+        assertEquals(2, variation.getVoix(1));
+        assertEquals(List.of(circonscription.getCandidat(0)), variation.getVainqueurs());
+        assertEquals(14, variation.getTotalVoix());
+        assertTrue(variation.isSeuilModifie());
+        assertEquals(10, variation.getSeuilParticipation());
+
+        circonscription.ajouterVoix(0, 1); // Le meneur creuse l'écart : la tête est inchangée
+        executer();
+        assertEquals(3, abonne.recus.size());
+        assertFalse(abonne.derniere().isVainqueursModifies());
+        assertNull(abonne.derniere().getVainqueurs());
+        assertFalse(abonne.derniere().isSeuilModifie());
+        publication.close();
+    }
+
+    @Test
+    void abonneLentRecoitUneVariationFusionnee() {
+        Circonscription circonscription = circonscription();
+        PublicationResultats publication = new PublicationResultats(circonscription, taches::add, 10, 50);
+        Abonne rapide = new Abonne();
+        Abonne lent = new Abonne();
+        publication.subscribe(rapide);
+        publication.subscribe(lent);
+        rapide.abonnement.request(Long.MAX_VALUE);
+        lent.abonnement.request(1);
+        executer();
+        assertEquals(1, lent.recus.size());
+
+        for (int i = 0; i < 3; i++) {
+            circonscription.ajouterVoix(i == 2 ? 2 : 0, 20);
+            executer();
+        }
+        assertEquals(4, rapide.recus.size());
+        assertEquals(1, lent.recus.size()); // Aucune demande en attente
+
+        lent.abonnement.request(5);
+        executer();
+        assertEquals(2, lent.recus.size()); // Les trois versions manquées en une seule variation
+        ResultatsPartiels fusionnee = lent.derniere();
+        assertEquals(3, fusionnee.getVersion());
+        assertFalse(fusionnee.isComplet());
+        assertEquals(2, fusionnee.getNombreCandidatsModifies());
+        assertEquals(0, fusionnee.getIdCandidat(0));
+        assertEquals(40, fusionnee.getVoix(0));
+        assertEquals(2, fusionnee.getIdCandidat(1));
+        assertEquals(20, fusionnee.getVoix(1));
+        assertEquals(List.of(circonscription.getCandidat(0)), fusionnee.getVainqueurs());
+        assertEquals(50, fusionnee.getSeuilParticipation());
+
+        circonscription.ajouterVoix(1, 1);
+        executer();
+        assertSame(rapide.derniere(), lent.derniere()); // Abonnés à jour : variation partagée
+        publication.close();
+    }
+
+    @Test
+    void fermetureLivreLesDerniersResultatsPuisTermine() {
+        Circonscription circonscription = circonscription();
+        PublicationResultats publication = new PublicationResultats(circonscription, taches::add);
+        Abonne abonne = new Abonne();
+        Abonne sansDemande = new Abonne();
+        publication.subscribe(abonne);
+        publication.subscribe(sansDemande);
+        abonne.abonnement.request(Long.MAX_VALUE);
+        executer();
+
+        circonscription.ajouterVoix(1, 30);
+        publication.close();
+        executer();
+        assertTrue(abonne.termine);
+        assertEquals(30, abonne.derniere().getVoix(0));
+        assertFalse(sansDemande.termine); // Attend d'avoir reçu les derniers résultats
+        assertEquals(1, publication.getNombreAbonnes());
+
+        sansDemande.abonnement.request(1);
+        executer();
+        assertTrue(sansDemande.recus.get(0).isComplet());
+        assertEquals(30, sansDemande.recus.get(0).getVoix(1));
+        assertTrue(sansDemande.termine);
+        assertEquals(0, publication.getNombreAbonnes());
+
+        circonscription.ajouterVoix(0, 1); // Plus observée après la fermeture
+        assertTrue(taches.isEmpty());
+        assertEquals(2, abonne.recus.size());
+    }
+
+    @Test
+    void demandeInvalideSignaleeParOnError() {
+        PublicationResultats publication = new PublicationResultats(circonscription(), taches::add);
+        Abonne abonne = new Abonne();
+        publication.subscribe(abonne);
+        abonne.abonnement.request(0);
+        executer();
+        assertInstanceOf(IllegalArgumentException.class, abonne.erreur);
+        assertTrue(abonne.recus.isEmpty());
+        assertEquals(0, publication.getNombreAbonnes());
+        publication.close();
+    }
+}
@@ -0,0 +1,166 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de convergence des répliques (voir {@link RepliqueVoix}) : deltas remis dans le désordre,
+ * en double, pendant l'ingestion, et reprise d'un nœud redémarré à vide.
+ */
+class RepliqueVoixTest {
+    private static final int NB_NOEUDS = 4;
+    private static final int NB_CANDIDATS = 6;
+
+    private static RepliqueVoix replique(String idNoeud) {
+        Circonscription circonscription = new Circonscription("Réplication", Integer.MAX_VALUE);
+        for (int i = 0; i < NB_CANDIDATS; i++) {
+            circonscription.ajouterCandidat(new Candidat("NOM" + i, "Prenom" + i, null));
+        }
+        return new RepliqueVoix(circonscription, idNoeud);
+    }
+
+    @Test
+    void repliquesConvergentMalgreDesordreEtDoublons() throws Exception {
+        List<RepliqueVoix> repliques = new ArrayList<>();
+        List<BureauDeVote> bureaux = new ArrayList<>();
+        for (int n = 0; n < NB_NOEUDS; n++) {
+            RepliqueVoix replique = replique("nœud-" + n);
+            repliques.add(replique);
+            bureaux.add(replique.getCirconscription().ajouterBureau("Bureau " + n));
+        }
+
+        // Ingestion concurrente sur chaque nœud : ajouts, et corrections (parfois à la baisse) par le bureau
+        long[][] ajoutees = new long[NB_NOEUDS][NB_CANDIDATS];
+        ExecutorService executeur = Executors.newFixedThreadPool(NB_NOEUDS);
+        CountDownLatch depart = new CountDownLatch(1);
+        for (int n = 0; n < NB_NOEUDS; n++) {
+            Circonscription circonscription = repliques.get(n).getCirconscription();
+            BureauDeVote bureau = bureaux.get(n);
+            long[] voix = ajoutees[n];
+            SplittableRandom aleatoire = new SplittableRandom(n);
+            executeur.execute(() -> {
+                try {
+                    depart.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 20_000; i++) {
+                    int idCandidat = aleatoire.nextInt(NB_CANDIDATS);
+                    if (i % 50 == 0) {
+                        bureau.corriger(idCandidat, aleatoire.nextInt(200));
+                    } else {
+                        int nb = 1 + aleatoire.nextInt(3);
+                        circonscription.ajouterVoix(idCandidat, nb);
+                        voix[idCandidat] += nb;
+                    }
+                }
+            });
+        }
+
+        // Échanges pendant l'ingestion : deltas remis à tous les autres nœuds, mélangés et parfois en double
+        SplittableRandom aleatoire = new SplittableRandom(42);
+        List<byte[]> enTransit = new ArrayList<>();
+        List<Integer> destinataires = new ArrayList<>();
+        depart.countDown();
+        executeur.shutdown();
+        while (!executeur.isTerminated()) {
+            int source = aleatoire.nextInt(NB_NOEUDS);
+            byte[] delta = repliques.get(source).extraireDelta();
+            for (int cible = 0; cible < NB_NOEUDS; cible++) {
+                if (cible != source) {
+                    enTransit.add(delta);
+                    destinataires.add(cible);
+                }
+            }
+            for (int k = aleatoire.nextInt(2 * NB_NOEUDS); k > 0 && !enTransit.isEmpty(); k--) {
+                int i = aleatoire.nextInt(enTransit.size());
+                for (int remises = aleatoire.nextInt(10) == 0 ? 2 : 1; remises > 0; remises--) {
+                    repliques.get(destinataires.get(i)).fusionner(enTransit.get(i));
+                }
+                enTransit.remove(i);
+                destinataires.remove(i);
+            }
+        }
+        assertTrue(executeur.awaitTermination(1, TimeUnit.MINUTES));
+        for (int i = 0; i < enTransit.size(); i++) {
+            repliques.get(destinataires.get(i)).fusionner(enTransit.get(i));
+        }
+        boolean stable;
+        do {
+            stable = true;
+            for (RepliqueVoix source : repliques) {
+                byte[] delta = source.extraireDelta();
+                for (RepliqueVoix cible : repliques) {
+                    if (cible != source && cible.fusionner(delta) > 0) {
+                        stable = false;
+                    }
+                }
+            }
+        } while (!stable);
+
+        // Voix attendues : ajouts de tous les nœuds, plus les dernières voix déclarées par chaque bureau
+        long[] attendu = new long[NB_CANDIDATS];
+        for (int n = 0; n < NB_NOEUDS; n++) {
+            for (int c = 0; c < NB_CANDIDATS; c++) {
+                attendu[c] += ajoutees[n][c] + bureaux.get(n).getVoix(c);
+            }
+        }
+        RepliqueVoix redemarree = replique(repliques.get(0).getIdNoeud());
+        redemarree.fusionner(repliques.get(NB_NOEUDS - 1).exporterEtat());
+        repliques.add(redemarree);
+        for (RepliqueVoix replique : repliques) {
+            Circonscription circonscription = replique.getCirconscription();
+            long total = 0;
+            for (int c = 0; c < NB_CANDIDATS; c++) {
+                assertEquals(attendu[c], circonscription.getCandidat(c).getVoix(),
+                        replique.getIdNoeud() + ", candidat " + c);
+                assertEquals(attendu[c], replique.getValeur(c));
+                total += attendu[c];
+            }
+            assertEquals(total, circonscription.getTotalVoix());
+            assertEquals(repliques.get(0).getCirconscription().trouverVainqueur().toString(),
+                    circonscription.trouverVainqueur().toString());
+        }
+    }
+
+    @Test
+    void retraitEnAttenteCompenseParDesVoixLocales() {
+        RepliqueVoix replique = replique("local");
+        Circonscription circonscription = replique.getCirconscription();
+        circonscription.ajouterVoix(1, 2);
+
+        // Delta d'un nœud « distant » qui retire 5 voix au candidat 0, qui n'en a aucune
+        byte[] id = "distant".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer delta = ByteBuffer.allocate(64).put((byte) 1).put((byte) 1).put((byte) id.length).put(id)
+                .put((byte) 1).put((byte) 0).put((byte) 0).put((byte) 5);
+        assertEquals(1, replique.fusionner(Arrays.copyOf(delta.array(), delta.position())));
+        assertEquals(0, circonscription.getCandidat(0).getVoix());
+        assertEquals(-5, replique.getValeur(0));
+
+        // Sans autre fusion, les voix locales suivantes compensent le retrait dès leur arrivée
+        circonscription.ajouterVoix(0, 3);
+        assertEquals(0, circonscription.getCandidat(0).getVoix());
+        circonscription.ajouterVoix(0, 4);
+        assertEquals(2, circonscription.getCandidat(0).getVoix());
+        assertEquals(2, replique.getValeur(0));
+        assertEquals(4, circonscription.getTotalVoix());
+
+        // Le nœud local n'a retiré aucune voix : son delta ne porte que ses ajouts
+        RepliqueVoix autre = replique("distant");
+        autre.fusionner(Arrays.copyOf(delta.array(), delta.position()));
+        autre.fusionner(replique.extraireDelta());
+        assertEquals(2, autre.getCirconscription().getCandidat(0).getVoix());
+        assertEquals(2, autre.getCirconscription().getCandidat(1).getVoix());
+    }
+}
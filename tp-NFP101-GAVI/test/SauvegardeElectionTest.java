@@ -0,0 +1,82 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests de la cohérence des sauvegardes écrites pendant l'ingestion.
+ */
+class SauvegardeElectionTest {
+    private static final int NB_CANDIDATS = 8;
+    private static final int NB_BUREAUX = 4;
+    private static final int VOIX_PAR_REMONTEE = 3;
+    private static final int NB_ECRITURES = 200_000; // Par écrivain
+
+    @TempDir
+    Path repertoire;
+
+    @Test
+    void sauvegardePendantIngestionCoherente() throws Exception {
+        Circonscription circonscription = new Circonscription("Sauvegardée", Integer.MAX_VALUE);
+        for (int i = 0; i < NB_CANDIDATS; i++) {
+            circonscription.ajouterCandidat(new Candidat("NOM" + i, "Prenom" + i, null));
+        }
+        for (int b = 0; b < NB_BUREAUX; b++) {
+            circonscription.ajouterBureau("Bureau " + b);
+        }
+
+        // Le candidat 0 ne reçoit que des remontées, les autres que des voix de bureaux
+        ExecutorService executeur = Executors.newFixedThreadPool(NB_BUREAUX + 1);
+        List<Future<?>> ecrivains = new ArrayList<>();
+        for (int b = 0; b < NB_BUREAUX; b++) {
+            BureauDeVote bureau = circonscription.getBureau(b);
+            SplittableRandom aleatoire = new SplittableRandom(b);
+            ecrivains.add(executeur.submit(() -> {
+                for (int i = 0; i < NB_ECRITURES; i++) {
+                    bureau.corriger(1 + aleatoire.nextInt(NB_CANDIDATS - 1), aleatoire.nextInt(1_000));
+                }
+            }));
+        }
+        ecrivains.add(executeur.submit(() -> {
+            for (long id = 0; id < NB_ECRITURES; id++) {
+                circonscription.soumettreRemontee(id, new int[]{VOIX_PAR_REMONTEE});
+            }
+        }));
+
+        Path fichier = repertoire.resolve("election.snap");
+        try {
+            do {
+                SauvegardeElection.sauvegarder(circonscription, fichier);
+                Circonscription restauree = SauvegardeElection.charger(fichier).get(0);
+                assertEquals((long) VOIX_PAR_REMONTEE * restauree.getNombreRemontees(),
+                        restauree.getCandidat(0).getVoix(), "Remontées et voix copiées au même instant");
+                long total = restauree.getCandidat(0).getVoix();
+                for (int c = 1; c < NB_CANDIDATS; c++) {
+                    long voixBureaux = 0;
+                    for (int b = 0; b < NB_BUREAUX; b++) {
+                        voixBureaux += restauree.getBureau(b).getVoix(c);
+                    }
+                    assertEquals(voixBureaux, restauree.getCandidat(c).getVoix(), "Voix des bureaux du candidat " + c);
+                    total += voixBureaux;
+                }
+                assertEquals(total, restauree.getTotalVoix());
+            } while (!ecrivains.stream().allMatch(Future::isDone));
+        } finally {
+            for (Future<?> ecrivain : ecrivains) {
+                ecrivain.get(1, TimeUnit.MINUTES);
+            }
+            executeur.shutdown();
+            assertTrue(executeur.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests du serveur d'ingestion en boucle locale : acquittements, historique et remontées mal formées.
+ */
+class ServeurIngestionTest {
+    private static final int NB_CANDIDATS = 3;
+
+    private static void remontee(ByteBuffer tampon, long numero, byte options, int... voix) {
+        tampon.putInt(ServeurIngestion.TAILLE_ENTETE - 4 + voix.length * ServeurIngestion.TAILLE_PAIRE)
+                .putLong(numero).put(options).putInt(0).putShort((short) voix.length);
+        for (int idCandidat = 0; idCandidat < voix.length; idCandidat++) {
+            tampon.putShort((short) idCandidat).putInt(voix[idCandidat]);
+        }
+    }
+
+    @Test
+    void remonteesPrecedantUneTrameMalFormeeAcquittees() throws IOException {
+        Circonscription circonscription = new Circonscription("Réseau", 1_000);
+        for (int i = 0; i < NB_CANDIDATS; i++) {
+            circonscription.ajouterCandidat(new Candidat("NOM" + i, "Prenom" + i, null));
+        }
+        try (ServeurIngestion serveur = ServeurIngestion.demarrer(List.of(circonscription),
+                new InetSocketAddress("127.0.0.1", 0), 1);
+             SocketChannel canal = SocketChannel.open(serveur.getAdresse())) {
+            // Deux remontées valides puis une longueur hors bornes, dans la même écriture
+            ByteBuffer envoi = ByteBuffer.allocate(256);
+            remontee(envoi, 1, (byte) 0, 1, 2, 3);
+            remontee(envoi, 2, ServeurIngestion.IDENTIFIEE, 4, 5, 6);
+            envoi.putInt(1).putLong(3);
+            envoi.flip();
+            while (envoi.hasRemaining()) {
+                canal.write(envoi);
+            }
+
+            // Les deux acquittements arrivent avant la fermeture de la connexion par le serveur
+            ByteBuffer recu = ByteBuffer.allocate(256);
+            while (canal.read(recu) >= 0) {
+                assertTrue(recu.hasRemaining(), "Données inattendues");
+            }
+            recu.flip();
+            assertEquals(2 * ServeurIngestion.TAILLE_ACQUITTEMENT, recu.remaining());
+            for (long numero = 1; numero <= 2; numero++) {
+                assertEquals(numero, recu.getLong());
+                assertEquals(ServeurIngestion.APPLIQUEE, recu.get());
+            }
+            assertEquals(21, circonscription.getTotalVoix());
+            assertEquals(2, serveur.getRemonteesRecues()); // La trame mal formée n'est pas comptée
+        }
+        assertTrue(circonscription.getHistoriqueActions().stream()
+                .anyMatch(a -> a.endsWith("Réception d'un lot de 1 remontée(s) : 6 voix")));
+
+        // Les lots reçus du réseau ont leur propre type dans les exports texte
+        for (ExportResultats.Format format : List.of(ExportResultats.Format.CSV, ExportResultats.Format.JSON_LIGNES)) {
+            StringWriter sortie = new StringWriter();
+            new ExportResultats(format, 1).exporterHistoriques(List.of(circonscription), sortie);
+            assertTrue(sortie.toString().contains("lot_reseau"), format.name());
+        }
+    }
+}